@@ -0,0 +1,72 @@
+package com.konex.Konex.benchmark;
+
+import com.konex.Konex.KonexApplication;
+import com.konex.Konex.dto.MedicamentoRequest;
+import com.konex.Konex.model.Laboratorio;
+import com.konex.Konex.repository.LaboratorioRepository;
+import com.konex.Konex.service.MedicamentoService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Arranque de la aplicación sobre H2 en memoria (perfil {@code h2}) y datos semilla, compartido por
+ * los benchmarks.
+ */
+final class BenchmarkApp {
+
+    private BenchmarkApp() {
+    }
+
+    /**
+     * Arranca el contexto completo con el perfil {@code h2} (que se suma a los de {@code extra}):
+     * base H2 en memoria (modo Oracle) con el esquema y los índices de las migraciones Flyway. Los
+     * argumentos se pasan como línea de comandos para prevalecer sobre {@code application.properties}.
+     *
+     * @param baseDatos nombre de la base en memoria (uno distinto por contexto)
+     * @param tipo      servidor web o no
+     * @param extra     argumentos adicionales ({@code --clave=valor})
+     * @return contexto iniciado
+     */
+    static ConfigurableApplicationContext iniciar(String baseDatos, WebApplicationType tipo, String... extra) {
+        String[] base = {
+                "--konex.h2.database=" + baseDatos,
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--logging.level.root=WARN"
+        };
+        return new SpringApplicationBuilder(KonexApplication.class)
+                .web(tipo)
+                .profiles("h2")
+                .run(Stream.concat(Stream.of(base), Stream.of(extra)).toArray(String[]::new));
+    }
+
+    /**
+     * Crea un laboratorio y {@code cantidad} medicamentos con stock prácticamente ilimitado.
+     *
+     * @return ids de los medicamentos creados
+     */
+    static List<Long> sembrar(ConfigurableApplicationContext ctx, int cantidad) {
+        MedicamentoService medicamentoService = ctx.getBean(MedicamentoService.class);
+        Laboratorio lab = ctx.getBean(LaboratorioRepository.class)
+                .save(Laboratorio.builder().nombre("Acme").nit("900123").build());
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            MedicamentoRequest req = new MedicamentoRequest();
+            req.setNombre("Medicamento " + i);
+            req.setLaboratorioId(lab.getId());
+            req.setFechaFabricacion(LocalDate.of(2025, 1, 1));
+            req.setFechaVencimiento(LocalDate.of(2030, 1, 1));
+            req.setCantidadStock(Long.MAX_VALUE / 4);
+            req.setValorUnitario(new BigDecimal("2500.50"));
+            ids.add(medicamentoService.crear(req).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,147 @@
+package com.konex.Konex.benchmark;
+
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.utils.TextoBusqueda;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda por subcadena en un catálogo de {@value #MEDICAMENTOS} medicamentos: el índice de
+ * trigramas ({@code trigramas}, la consulta de {@code GET /api/medicamentos/cursor?nombre=}) frente
+ * al {@code UPPER(NOMBRE) LIKE '%texto%'} que recorre la tabla ({@code like}).
+ * <p>
+ * Ambas devuelven la primera página de {@value #TAMANO_PAGINA} medicamentos activos en orden
+ * {@code (nombre, id)} con su laboratorio. {@code consulta} cubre un texto selectivo (pocas
+ * coincidencias) y uno amplio (una de cada {@code NOMBRES.length} filas).
+ * </p>
+ * <p>
+ * Las filas y sus trigramas se siembran con {@code INSERT ... SELECT} sobre una base H2 en archivo
+ * (perfil {@code h2}): millones de trigramas no caben con holgura en una base en memoria.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BusquedaCatalogoBenchmark {
+
+    private static final int MEDICAMENTOS = 500_000;
+    private static final int TAMANO_PAGINA = 20;
+    /** Filas por sentencia al generar los trigramas (acota el {@code DISTINCT} de cada una). */
+    private static final int TRAMO_TRIGRAMAS = 50_000;
+    /** Principios activos sin tildes: su nombre normalizado es el nombre en mayúsculas. */
+    private static final String[] NOMBRES = {
+            "Acetaminofen", "Ibuprofeno", "Loratadina", "Amoxicilina", "Omeprazol",
+            "Losartan", "Metformina", "Atorvastatina", "Salbutamol", "Diclofenaco",
+            "Naproxeno", "Cetirizina", "Azitromicina", "Ranitidina", "Enalapril",
+            "Furosemida", "Prednisolona", "Clonazepam", "Sertralina", "Fluconazol"
+    };
+
+    @Param({"ibuprofeno 12345", "loratadina"})
+    String consulta;
+
+    ConfigurableApplicationContext ctx;
+    MedicamentoRepository medicamentoRepository;
+    EntityManager entityManager;
+    TransactionTemplate lectura;
+    JdbcTemplate jdbc;
+
+    Set<String> trigramas;
+    long minimo;
+    String patron;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("konex-busqueda");
+        ctx = BenchmarkApp.iniciar("konex-busqueda", WebApplicationType.NONE,
+                "--spring.datasource.url=jdbc:h2:file:" + dir.resolve("konex").toAbsolutePath()
+                        + ";MODE=Oracle;CACHE_SIZE=262144;INIT=CREATE SCHEMA IF NOT EXISTS KONEX\\;SET SCHEMA KONEX",
+                // Sin reconstruir la instantánea del catálogo en segundo plano tras la siembra
+                "--konex.snapshot.check-interval=PT24H",
+                "--konex.snapshot.max-age=PT24H");
+        medicamentoRepository = ctx.getBean(MedicamentoRepository.class);
+        entityManager = ctx.getBean(EntityManager.class);
+        lectura = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+        lectura.setReadOnly(true);
+        jdbc = ctx.getBean(JdbcTemplate.class);
+        sembrar();
+
+        String normalizado = TextoBusqueda.normalizar(consulta);
+        trigramas = TextoBusqueda.trigramas(normalizado);
+        minimo = TextoBusqueda.minimoCoincidencias(trigramas.size());
+        patron = "%" + normalizado + "%";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // Cierra la base y borra su archivo
+        jdbc.execute("DROP ALL OBJECTS DELETE FILES");
+        ctx.close();
+    }
+
+    @Benchmark
+    public List<Medicamento> trigramas() {
+        return medicamentoRepository.buscarPrimerosPorTrigramas(trigramas, minimo,
+                PageRequest.of(0, TAMANO_PAGINA + 1));
+    }
+
+    /** La misma página con el filtro por subcadena anterior al índice de trigramas. */
+    @Benchmark
+    public List<Medicamento> like() {
+        return lectura.execute(s -> entityManager.createQuery("""
+                        SELECT m
+                        FROM Medicamento m JOIN FETCH m.laboratorio
+                        WHERE m.activo = 1
+                          AND UPPER(m.nombre) LIKE :patron
+                        ORDER BY m.nombre, m.id
+                        """, Medicamento.class)
+                .setParameter("patron", patron)
+                .setMaxResults(TAMANO_PAGINA + 1)
+                .getResultList());
+    }
+
+    /** Siembra los medicamentos y sus trigramas en la base, sin pasar filas por el heap. */
+    private void sembrar() {
+        jdbc.update("INSERT INTO LABORATORIO (ID_LABORATORIO, NOMBRE, NIT) VALUES (1, 'Acme', '900123')");
+        StringBuilder nombres = new StringBuilder();
+        for (int i = 0; i < NOMBRES.length; i++) {
+            if (i > 0) nombres.append(", ");
+            nombres.append('(').append(i).append(", '").append(NOMBRES[i]).append("')");
+        }
+        jdbc.update("""
+                INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, NOMBRE_NORMALIZADO, ID_LABORATORIO,
+                                         FECHA_FABRICACION, FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO, ACTIVO)
+                SELECT r.X, p.NOMBRE || ' ' || r.X, UPPER(p.NOMBRE) || ' ' || r.X, 1,
+                       DATE '2025-01-01', DATE '2030-01-01', 100, 2500, 1
+                FROM SYSTEM_RANGE(1, ?) r
+                JOIN (VALUES %s) p (I, NOMBRE) ON p.I = MOD(r.X, ?)
+                """.formatted(nombres), MEDICAMENTOS, NOMBRES.length);
+        // Los mismos trigramas que TextoBusqueda.trigramas: subcadenas de 3 del nombre normalizado
+        for (long desde = 1; desde <= MEDICAMENTOS; desde += TRAMO_TRIGRAMAS) {
+            jdbc.update("""
+                    INSERT INTO MEDICAMENTO_TRIGRAMA (ID_MEDICAMENTO, TRIGRAMA)
+                    SELECT DISTINCT m.ID_MEDICAMENTO, SUBSTR(m.NOMBRE_NORMALIZADO, p.X, 3)
+                    FROM MEDICAMENTO m
+                    JOIN SYSTEM_RANGE(1, 160) p ON p.X <= LENGTH(m.NOMBRE_NORMALIZADO) - 2
+                    WHERE m.ID_MEDICAMENTO BETWEEN ? AND ?
+                    """, desde, desde + TRAMO_TRIGRAMAS - 1);
+        }
+        jdbc.execute("ANALYZE");
+    }
+}
@@ -0,0 +1,83 @@
+package com.konex.Konex.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparación de carga entre hilos de plataforma y hilos virtuales sobre los endpoints de
+ * venta y cotización, con el servidor HTTP real (Tomcat) y H2 en memoria.
+ * <p>
+ * Cada hilo de JMH actúa como un cliente concurrente. Con {@code hilosVirtuales=true} la
+ * aplicación arranca con el perfil Spring {@code virtual}; requiere JDK 21+
+ * ({@code mvn -Pjmh,virtual-threads verify -Djmh.args=CargaHttp}). En JDK 17 ambos casos
+ * usan hilos de plataforma.
+ * </p>
+ * <p>
+ * H2 responde en microsegundos, por lo que la diferencia aquí subestima la de producción,
+ * donde cada petición espera la ida y vuelta a Oracle.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(400)
+@State(Scope.Benchmark)
+public class CargaHttpBenchmark {
+
+    @Param({"false", "true"})
+    boolean hilosVirtuales;
+
+    ConfigurableApplicationContext ctx;
+    HttpClient client;
+    HttpRequest cotizar;
+    HttpRequest vender;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = hilosVirtuales
+                ? BenchmarkApp.iniciar("konex-carga-vt", WebApplicationType.SERVLET,
+                        "--server.port=0", "--spring.profiles.active=virtual")
+                : BenchmarkApp.iniciar("konex-carga", WebApplicationType.SERVLET, "--server.port=0");
+        List<Long> ids = BenchmarkApp.sembrar(ctx, 10);
+        int puerto = ((ServletWebServerApplicationContext) ctx).getWebServer().getPort();
+        String base = "http://localhost:" + puerto + "/api";
+
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        cotizar = HttpRequest.newBuilder(URI.create(base + "/medicamentos/" + ids.get(0) + "/cotizar?cantidad=2"))
+                .GET().build();
+        vender = HttpRequest.newBuilder(URI.create(base + "/ventas"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"items\":[{\"medicamentoId\":" + ids.get(1) + ",\"cantidad\":1},"
+                        + "{\"medicamentoId\":" + ids.get(2) + ",\"cantidad\":1}]}"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public int cotizar() throws IOException, InterruptedException {
+        return client.send(cotizar, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int vender() throws IOException, InterruptedException {
+        return client.send(vender, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
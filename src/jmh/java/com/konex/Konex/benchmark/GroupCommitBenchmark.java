@@ -0,0 +1,80 @@
+package com.konex.Konex.benchmark;
+
+import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.groupcommit.VentaGroupCommitter;
+import com.konex.Konex.service.VentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ventas unitarias concurrentes: una transacción por venta ({@code directo}) frente al modo
+ * <i>group commit</i> ({@code agrupado}), sobre el contexto Spring completo y H2 en memoria.
+ * <p>
+ * Reporta el rendimiento ({@code thrpt}) y la distribución de latencia ({@code sample}, con
+ * p50/p99/p99.9) por venta. Cada hilo de JMH vende una unidad de un medicamento al azar entre
+ * {@value #MEDICAMENTOS}, de modo que hay contención por filas como en una promoción.
+ * </p>
+ * <p>
+ * H2 en memoria no vuelca redo a disco al confirmar, así que el ahorro por commit aquí es menor
+ * que en Oracle; sirve para comparar la sobrecarga del encolado y el efecto de
+ * {@code konex.ventas.group-commit.max-wait} ({@code -p maxEspera=...}).
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    private static final int MEDICAMENTOS = 20;
+
+    @Param({"directo", "agrupado"})
+    String modo;
+
+    @Param({"PT0.002S"})
+    String maxEspera;
+
+    ConfigurableApplicationContext ctx;
+    VentaService ventaService;
+    VentaGroupCommitter groupCommitter;
+    List<VentaCreateRequest> ventas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean agrupado = "agrupado".equals(modo);
+        ctx = BenchmarkApp.iniciar("konex-group-commit-" + modo, WebApplicationType.NONE,
+                "--konex.ventas.group-commit.enabled=" + agrupado,
+                "--konex.ventas.group-commit.max-wait=" + maxEspera);
+        ventaService = ctx.getBean(VentaService.class);
+        groupCommitter = agrupado ? ctx.getBean(VentaGroupCommitter.class) : null;
+
+        ventas = new ArrayList<>();
+        for (Long id : BenchmarkApp.sembrar(ctx, MEDICAMENTOS)) {
+            VentaCreateRequest req = new VentaCreateRequest();
+            req.setMedicamentoId(id);
+            req.setCantidad(1L);
+            ventas.add(req);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public VentaResponse venderUnitaria() {
+        VentaCreateRequest req = ventas.get(ThreadLocalRandom.current().nextInt(ventas.size()));
+        return groupCommitter != null ? groupCommitter.crear(req) : ventaService.crearVenta(req);
+    }
+}
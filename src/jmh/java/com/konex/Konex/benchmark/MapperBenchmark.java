@@ -0,0 +1,99 @@
+package com.konex.Konex.benchmark;
+
+import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.mapper.CotizacionMapper;
+import com.konex.Konex.mapper.MedicamentoMapper;
+import com.konex.Konex.mapper.VentaMapper;
+import com.konex.Konex.model.DetalleVenta;
+import com.konex.Konex.model.Laboratorio;
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.Venta;
+import com.konex.Konex.utils.Validators;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks de los mappers, la aritmética monetaria de la cotización y {@link Validators}.
+ * <p>
+ * Se ejecutan con {@code mvn -Pjmh verify}; el perfilador GC reporta
+ * {@code gc.alloc.rate.norm} (bytes asignados por operación).
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapperBenchmark {
+
+    /** Líneas de la venta mapeada por {@link #ventaToResponse()}. */
+    @Param({"1", "10"})
+    int lineas;
+
+    Medicamento medicamento;
+    MedicamentoResponse medicamentoResponse;
+    Venta venta;
+    long cantidad = 7;
+
+    @Setup
+    public void setUp() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").nit("900123").build();
+        medicamento = Medicamento.builder()
+                .id(5L).nombre("Ibuprofeno 400mg").laboratorio(lab)
+                .fechaFabricacion(LocalDate.of(2025, 1, 1))
+                .fechaVencimiento(LocalDate.of(2027, 1, 1))
+                .cantidadStock(1_000L)
+                .valorUnitario(new BigDecimal("2500.50"))
+                .build();
+        medicamentoResponse = MedicamentoMapper.toResponse(medicamento);
+
+        venta = new Venta();
+        venta.setId(100L);
+        venta.setFechaHora(LocalDateTime.of(2025, 6, 1, 12, 0));
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lineas; i++) {
+            DetalleVenta d = new DetalleVenta();
+            d.setId((long) i);
+            d.setMedicamento(medicamento);
+            d.setCantidad(2L);
+            d.setValorUnitario(medicamento.getValorUnitario());
+            d.setValorLinea(medicamento.getValorUnitario().multiply(BigDecimal.valueOf(2)));
+            venta.addDetalle(d);
+            total = total.add(d.getValorLinea());
+        }
+        venta.setValorTotal(total);
+    }
+
+    @Benchmark
+    public VentaResponse ventaToResponse() {
+        return VentaMapper.toResponse(venta);
+    }
+
+    @Benchmark
+    public MedicamentoResponse medicamentoToResponse() {
+        return MedicamentoMapper.toResponse(medicamento);
+    }
+
+    @Benchmark
+    public CotizacionResponse cotizacionDesdeEntidad() {
+        return CotizacionMapper.toResponse(medicamento, cantidad);
+    }
+
+    @Benchmark
+    public CotizacionResponse cotizacionDesdeDto() {
+        return CotizacionMapper.toResponse(medicamentoResponse, cantidad);
+    }
+
+    @Benchmark
+    public long validatorsCheck() {
+        Validators.check(cantidad > 0, "La cantidad debe ser mayor que cero");
+        return cantidad;
+    }
+}
@@ -0,0 +1,91 @@
+package com.konex.Konex.benchmark;
+
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaItemRequest;
+import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.service.MedicamentoService;
+import com.konex.Konex.service.VentaService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de extremo a extremo de la capa de servicio ({@code crearVenta}, {@code cotizar})
+ * sobre el contexto Spring completo y una base H2 en memoria.
+ * <p>
+ * Mide transacción, SQL y mapeo juntos; el esquema y sus índices los crean las migraciones Flyway
+ * al arrancar (perfil {@code h2}) y el stock inicial es suficiente para cualquier corrida.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    /** Medicamentos sembrados; la canasta usa los primeros {@value #LINEAS_CANASTA}. */
+    private static final int MEDICAMENTOS = 50;
+    private static final int LINEAS_CANASTA = 5;
+
+    ConfigurableApplicationContext ctx;
+    VentaService ventaService;
+    MedicamentoService medicamentoService;
+    MedicamentoCache medicamentoCache;
+
+    Long medicamentoId;
+    VentaCreateRequest ventaUnitaria;
+    VentaCreateRequest ventaCanasta;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchmarkApp.iniciar("konex-bench", WebApplicationType.NONE);
+        ventaService = ctx.getBean(VentaService.class);
+        medicamentoService = ctx.getBean(MedicamentoService.class);
+        medicamentoCache = ctx.getBean(MedicamentoCache.class);
+        List<Long> ids = BenchmarkApp.sembrar(ctx, MEDICAMENTOS);
+        medicamentoId = ids.get(0);
+
+        ventaUnitaria = new VentaCreateRequest();
+        ventaUnitaria.setMedicamentoId(medicamentoId);
+        ventaUnitaria.setCantidad(1L);
+
+        ventaCanasta = new VentaCreateRequest();
+        List<VentaItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < LINEAS_CANASTA; i++) items.add(new VentaItemRequest(ids.get(i), 1L));
+        ventaCanasta.setItems(items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public CotizacionResponse cotizar() {
+        return medicamentoService.cotizar(medicamentoId, 3);
+    }
+
+    @Benchmark
+    public CotizacionResponse cotizarFalloDeCache() {
+        medicamentoCache.invalidar(medicamentoId);
+        return medicamentoService.cotizar(medicamentoId, 3);
+    }
+
+    @Benchmark
+    public VentaResponse crearVentaUnitaria() {
+        return ventaService.crearVenta(ventaUnitaria);
+    }
+
+    @Benchmark
+    public VentaResponse crearVentaCanasta() {
+        return ventaService.crearVenta(ventaCanasta);
+    }
+}
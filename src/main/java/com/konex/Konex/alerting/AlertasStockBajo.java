@@ -0,0 +1,197 @@
+package com.konex.Konex.alerting;
+
+import com.konex.Konex.dto.AlertaStockResponse;
+import com.konex.Konex.repository.MedicamentoRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Alertas de stock bajo evaluadas de forma incremental, en el momento en que cambia el stock.
+ * <p>
+ * No hay un barrido periódico de {@code MEDICAMENTO}: cada escritura de stock informa el nivel que
+ * dejó y solo se evalúan los medicamentos tocados.
+ * </p>
+ * <ul>
+ *   <li>Ediciones y ventas agrupadas (group commit): llaman a {@link #evaluar(Collection)} con el
+ *       stock resultante, que ya conocen porque tienen las filas bloqueadas.</li>
+ *   <li>Ventas, descuentos sueltos, ajustes masivos y recepciones de lotes (un {@code UPDATE} sin
+ *       conocer el stock que quedó): llaman a {@link #revisar(Collection)}; tras el commit, un hilo
+ *       propio lee el nivel de esos ids que tienen punto de reorden
+ *       ({@link MedicamentoRepository#nivelesStock(Collection)}), fuera de la petición y sin
+ *       consultas extra en la transacción de la venta.</li>
+ * </ul>
+ * <p>
+ * La evaluación ocurre tras el commit. Una alerta se crea cuando un medicamento activo queda en su
+ * {@code STOCK_MINIMO} o por debajo, y en ese momento se publica {@link StockBajoEvent}. Mientras siga
+ * activa solo se actualiza su stock, sin volver a notificar. Se resuelve cuando el stock supera el
+ * mínimo, se quita el mínimo o el medicamento se inactiva.
+ * </p>
+ * <p>
+ * Con ventas concurrentes del mismo medicamento los commits pueden evaluarse en otro orden, pero
+ * cada nivel ya está confirmado y toda venta posterior vuelve a evaluarlo, así que el
+ * cruce no se pierde. Las alertas activas viven en memoria de
+ * cada nodo: se reconstruyen al arrancar con una única consulta ({@link MedicamentoRepository#bajoMinimo()})
+ * y cada nodo evalúa los cambios que confirma.
+ * </p>
+ */
+@Component
+public class AlertasStockBajo implements DisposableBean {
+
+    /** Máximo de ids por consulta de revisión (límite de {@code IN} en Oracle). */
+    private static final int MAX_IDS = 1000;
+
+    private final MedicamentoRepository medicamentoRepository;
+    private final ApplicationEventPublisher eventos;
+    private final Map<Long, AlertaStockResponse> activas = new ConcurrentHashMap<>();
+    private final Set<Long> porRevisar = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean programada = new AtomicBoolean();
+    private final ExecutorService revisor;
+
+    /**
+     * @param medicamentoRepository repositorio de medicamentos (revisiones y carga inicial)
+     * @param eventos               publicador de {@link StockBajoEvent}
+     */
+    public AlertasStockBajo(MedicamentoRepository medicamentoRepository, ApplicationEventPublisher eventos) {
+        this.medicamentoRepository = medicamentoRepository;
+        this.eventos = eventos;
+        this.revisor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "konex-alertas-stock");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Evalúa el nivel que dejó una escritura, tras su commit (de inmediato si no hay transacción).
+     * Los medicamentos sin punto de reorden ni alerta activa se descartan sin más trabajo.
+     *
+     * @param niveles stock resultante de los medicamentos modificados
+     */
+    public void evaluar(Collection<NivelStock> niveles) {
+        List<NivelStock> relevantes = new ArrayList<>();
+        for (NivelStock n : niveles) {
+            if (n.stockMinimo() != null || activas.containsKey(n.id())) relevantes.add(n);
+        }
+        if (!relevantes.isEmpty()) despuesDelCommit(() -> aplicar(relevantes));
+    }
+
+    /**
+     * Programa, tras el commit, la revisión de medicamentos cuyo stock cambió sin cargar la entidad.
+     *
+     * @param medicamentoIds medicamentos modificados
+     */
+    public void revisar(Collection<Long> medicamentoIds) {
+        if (medicamentoIds.isEmpty()) return;
+        List<Long> copia = List.copyOf(medicamentoIds);
+        despuesDelCommit(() -> {
+            porRevisar.addAll(copia);
+            programar();
+        });
+    }
+
+    /**
+     * Alertas activas, de la más antigua a la más reciente.
+     *
+     * @return alertas de stock bajo vigentes en este nodo
+     */
+    public List<AlertaStockResponse> activas() {
+        return activas.values().stream()
+                .sorted(Comparator.comparing(AlertaStockResponse::getFechaAlerta)
+                        .thenComparing(AlertaStockResponse::getMedicamentoId))
+                .toList();
+    }
+
+    /** Reconstruye las alertas activas al terminar el arranque. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        revisor.execute(() -> {
+            try {
+                aplicar(medicamentoRepository.bajoMinimo());
+            } catch (RuntimeException ex) {
+                // Sin base de datos al arrancar: las alertas se irán creando con los cambios
+            }
+        });
+    }
+
+    private void aplicar(Collection<NivelStock> niveles) {
+        for (NivelStock n : niveles) {
+            if (!n.bajoMinimo()) {
+                activas.remove(n.id());
+                continue;
+            }
+            boolean[] nueva = {false};
+            AlertaStockResponse alerta = activas.compute(n.id(), (id, previa) -> {
+                nueva[0] = previa == null;
+                return AlertaStockResponse.builder()
+                        .medicamentoId(id)
+                        .nombre(n.nombre())
+                        .stockActual(n.stock())
+                        .stockMinimo(n.stockMinimo())
+                        .fechaAlerta(previa == null ? LocalDateTime.now() : previa.getFechaAlerta())
+                        .build();
+            });
+            if (nueva[0]) eventos.publishEvent(new StockBajoEvent(alerta));
+        }
+    }
+
+    private void programar() {
+        if (!programada.compareAndSet(false, true)) return;
+        revisor.execute(() -> {
+            // Se libera antes de leer: lo que llegue durante la revisión programa otra
+            programada.set(false);
+            List<Long> ids = new ArrayList<>();
+            for (Iterator<Long> it = porRevisar.iterator(); it.hasNext(); ) {
+                ids.add(it.next());
+                it.remove();
+            }
+            for (int i = 0; i < ids.size(); i += MAX_IDS) {
+                List<Long> tramo = ids.subList(i, Math.min(i + MAX_IDS, ids.size()));
+                try {
+                    aplicar(medicamentoRepository.nivelesStock(tramo));
+                } catch (RuntimeException ex) {
+                    // Base de datos no disponible: se reintenta con el siguiente cambio
+                    porRevisar.addAll(tramo);
+                }
+            }
+        });
+    }
+
+    private static void despuesDelCommit(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
+    /**
+     * Detiene el hilo de revisión al cerrar el contexto.
+     */
+    @Override
+    public void destroy() {
+        revisor.shutdownNow();
+    }
+}
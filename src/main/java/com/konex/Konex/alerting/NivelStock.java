@@ -0,0 +1,45 @@
+package com.konex.Konex.alerting;
+
+import com.konex.Konex.model.Medicamento;
+
+/**
+ * Stock de un medicamento frente a su punto de reorden, tal como lo evalúa {@link AlertasStockBajo}.
+ *
+ * @param id          identificador del medicamento
+ * @param nombre      nombre del medicamento (para la alerta)
+ * @param stock       stock total resultante (fila principal más buckets)
+ * @param stockMinimo punto de reorden ({@code null} = sin alerta)
+ * @param activo      1 = activo, 0 = inactivo
+ */
+public record NivelStock(Long id, String nombre, Long stock, Long stockMinimo, Integer activo) {
+
+    /**
+     * Nivel de un medicamento ya cargado con su stock actual.
+     *
+     * @param m medicamento
+     * @return nivel con {@link Medicamento#stockTotal()}
+     */
+    public static NivelStock de(Medicamento m) {
+        return de(m, m.stockTotal());
+    }
+
+    /**
+     * Nivel de un medicamento ya cargado con el stock que dejó una operación.
+     *
+     * @param m     medicamento
+     * @param stock stock total resultante
+     * @return nivel del medicamento
+     */
+    public static NivelStock de(Medicamento m, long stock) {
+        return new NivelStock(m.getId(), m.getNombre(), stock, m.getStockMinimo(), m.getActivo());
+    }
+
+    /**
+     * Indica si el medicamento está activo y en su punto de reorden o por debajo.
+     *
+     * @return {@code true} si corresponde una alerta
+     */
+    public boolean bajoMinimo() {
+        return activo != null && activo == 1 && stockMinimo != null && stock != null && stock <= stockMinimo;
+    }
+}
@@ -0,0 +1,17 @@
+package com.konex.Konex.alerting;
+
+import com.konex.Konex.dto.AlertaStockResponse;
+
+/**
+ * Evento publicado por {@link AlertasStockBajo} una sola vez por cruce del punto de reorden: cuando
+ * el stock de un medicamento baja hasta su mínimo tras un cambio confirmado. No se repite mientras
+ * la alerta siga activa; se vuelve a publicar solo si el stock se recupera y cruza de nuevo.
+ * <p>
+ * Se publica de forma síncrona en el hilo que confirmó la transacción (o en el de revisión): los
+ * listeners deben ser baratos y delegar el trabajo pesado a su propio hilo.
+ * </p>
+ *
+ * @param alerta alerta emitida
+ */
+public record StockBajoEvent(AlertaStockResponse alerta) {
+}
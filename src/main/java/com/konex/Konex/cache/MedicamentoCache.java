@@ -0,0 +1,150 @@
+package com.konex.Konex.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.konex.Konex.dto.CacheEstadisticasResponse;
+import com.konex.Konex.dto.MedicamentoResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria (read-through) de medicamentos, indexada por id.
+ * <p>
+ * Evita consultar la base de datos en cada lectura de {@code obtener} o {@code cotizar},
+ * que son mucho más frecuentes que los cambios al catálogo. Está acotada por tamaño
+ * ({@code konex.cache.medicamentos.max-size}) y por tiempo de vida desde la escritura
+ * ({@code konex.cache.medicamentos.ttl}), y registra estadísticas de aciertos, fallos y desalojos.
+ * </p>
+ *
+ * <p><b>Consistencia:</b></p>
+ * <ul>
+ *   <li>Toda escritura sobre un medicamento (incluidas las ventas) debe llamar a
+ *       {@link #invalidar(Long)}; si hay una transacción activa, la invalidación se aplica
+ *       <i>después del commit</i>, de modo que ninguna lectura posterior vea el valor previo.</li>
+ *   <li>La carga de un id es atómica en Caffeine: una invalidación que llega mientras se carga
+ *       ese id espera a que termine y descarta el valor cargado, evitando repoblar con stock viejo.</li>
+ *   <li>Los cambios hechos por <i>otros</i> nodos solo se reflejan al expirar el TTL.</li>
+ * </ul>
+ *
+ * <p>Como todas las escrituras pasan por aquí, cada invalidación confirmada se publica además como
+ * {@link MedicamentosModificadosEvent} para los consumidores derivados del catálogo (p. ej. la
+ * instantánea de {@code GET /api/medicamentos/snapshot}).</p>
+ */
+@Component
+public class MedicamentoCache {
+
+    private final Cache<Long, MedicamentoResponse> cache;
+    private final ApplicationEventPublisher eventos;
+
+    /**
+     * Crea la caché con los límites indicados, sin publicar eventos de modificación.
+     *
+     * @param maxSize número máximo de medicamentos en memoria
+     * @param ttl     tiempo de vida de cada entrada desde que se cargó
+     */
+    public MedicamentoCache(long maxSize, Duration ttl) {
+        this(maxSize, ttl, null);
+    }
+
+    /**
+     * Crea la caché con los límites indicados.
+     *
+     * @param maxSize número máximo de medicamentos en memoria
+     * @param ttl     tiempo de vida de cada entrada desde que se cargó
+     * @param eventos publicador de {@link MedicamentosModificadosEvent} (opcional)
+     */
+    @Autowired
+    public MedicamentoCache(@Value("${konex.cache.medicamentos.max-size:10000}") long maxSize,
+                            @Value("${konex.cache.medicamentos.ttl:PT5M}") Duration ttl,
+                            ApplicationEventPublisher eventos) {
+        this.eventos = eventos;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Obtiene un medicamento de la caché o lo carga con {@code loader} si no está.
+     *
+     * @param id     identificador del medicamento
+     * @param loader función de carga; si devuelve {@code null} no se almacena nada
+     * @return el medicamento, o {@code null} si el loader no lo encontró
+     */
+    public MedicamentoResponse obtener(Long id, Function<Long, MedicamentoResponse> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Devuelve el medicamento solo si ya está en caché, sin cargarlo.
+     *
+     * @param id identificador del medicamento
+     * @return el medicamento en caché, o {@code null}
+     */
+    public MedicamentoResponse enCache(Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * Invalida un medicamento (tras el commit si hay transacción activa).
+     *
+     * @param id identificador del medicamento modificado
+     */
+    public void invalidar(Long id) {
+        invalidar(List.of(id));
+    }
+
+    /**
+     * Invalida varios medicamentos en una sola pasada (tras el commit si hay transacción activa)
+     * y, si el cambio se confirmó, publica {@link MedicamentosModificadosEvent}.
+     *
+     * @param ids identificadores de los medicamentos modificados
+     */
+    public void invalidar(Collection<Long> ids) {
+        List<Long> copia = List.copyOf(ids);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(copia);
+            publicar(copia);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // También tras rollback: es barato y cubre lecturas hechas dentro de la transacción
+                cache.invalidateAll(copia);
+                if (status == STATUS_COMMITTED) publicar(copia);
+            }
+        });
+    }
+
+    private void publicar(List<Long> ids) {
+        if (eventos != null && !ids.isEmpty()) eventos.publishEvent(new MedicamentosModificadosEvent(ids));
+    }
+
+    /**
+     * Devuelve las estadísticas acumuladas de la caché.
+     *
+     * @return aciertos, fallos, desalojos, tasa de aciertos y tamaño estimado
+     */
+    public CacheEstadisticasResponse estadisticas() {
+        CacheStats stats = cache.stats();
+        return CacheEstadisticasResponse.builder()
+                .aciertos(stats.hitCount())
+                .fallos(stats.missCount())
+                .desalojos(stats.evictionCount())
+                .tasaAciertos(stats.hitRate())
+                .tamano(cache.estimatedSize())
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.konex.Konex.cache;
+
+import java.util.List;
+
+/**
+ * Evento publicado por {@link MedicamentoCache} después del commit de cualquier escritura sobre
+ * medicamentos (edición, inactivación, venta, ajuste o lote).
+ * <p>
+ * Se publica de forma síncrona en el hilo que confirmó la transacción: los listeners deben ser
+ * baratos y delegar el trabajo pesado a su propio hilo.
+ * </p>
+ *
+ * @param ids medicamentos modificados
+ */
+public record MedicamentosModificadosEvent(List<Long> ids) {
+}
@@ -0,0 +1,175 @@
+package com.konex.Konex.changelog;
+
+import com.konex.Konex.exception.TokenExpiradoException;
+import com.konex.Konex.model.MedicamentoCambio;
+import com.konex.Konex.repository.MedicamentoCambioRepository;
+import com.konex.Konex.utils.TokenCambios;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registro de cambios del catálogo para la sincronización incremental de los puntos de venta.
+ * <p>
+ * Cada escritura sobre medicamentos llama a {@link #registrar(Collection)} dentro de su propia
+ * transacción: los cambios quedan en {@code MEDICAMENTO_CAMBIO} solo si la escritura se confirma.
+ * {@link #leer(TokenCambios, int)} recorre el registro por <i>keyset</i> desde la posición del
+ * cliente, así que el costo de cada consulta depende de los cambios pendientes y no del tamaño
+ * del catálogo.
+ * </p>
+ *
+ * <p><b>Orden de confirmación:</b> un cambio es visible al confirmar su transacción, y los ids de
+ * la secuencia no siguen el orden de commit entre nodos. Los cambios se fechan e insertan justo
+ * antes del commit ({@code beforeCommit}, tras volcar el resto de la transacción), no al
+ * registrarlos, así que una transacción larga (p. ej. un lote de la importación) no deja filas
+ * fechadas segundos antes de hacerse visibles. Aun así solo se entregan cambios con más de
+ * {@code konex.cambios.margen} de antigüedad: el margen debe superar la duración del
+ * {@code INSERT} del registro más el commit y la diferencia de reloj entre nodos.</p>
+ *
+ * <p><b>Retención:</b> los cambios se purgan tras {@code konex.cambios.retencion}; un token más
+ * antiguo se rechaza con {@link TokenExpiradoException} y el cliente debe volver a la
+ * instantánea completa.</p>
+ */
+@Component
+public class MedicamentoChangeLog {
+
+    private final MedicamentoCambioRepository cambioRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration margen;
+    private final Duration retencion;
+
+    /**
+     * Resultado de una lectura del registro.
+     *
+     * @param medicamentoIds medicamentos modificados, sin repetir, en el orden de su último cambio
+     * @param token          posición del último cambio leído
+     * @param hayMas         si la lectura se cortó por tamaño
+     */
+    public record Lectura(List<Long> medicamentoIds, TokenCambios token, boolean hayMas) {
+    }
+
+    /**
+     * @param cambioRepository    repositorio del registro
+     * @param transactionTemplate transacción de la purga
+     * @param margen              antigüedad mínima de un cambio para entregarlo
+     * @param retencion           antigüedad máxima de un cambio antes de purgarlo
+     */
+    public MedicamentoChangeLog(MedicamentoCambioRepository cambioRepository,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${konex.cambios.margen:PT5S}") Duration margen,
+                                @Value("${konex.cambios.retencion:P7D}") Duration retencion) {
+        this.cambioRepository = cambioRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.margen = margen;
+        this.retencion = retencion;
+    }
+
+    /**
+     * Registra los medicamentos modificados en la transacción en curso. Se acumulan y se insertan
+     * al confirmarla (un {@code INSERT} por id, en batch) con la hora del commit; sin transacción,
+     * de inmediato.
+     *
+     * @param medicamentoIds medicamentos modificados
+     */
+    public void registrar(Collection<Long> medicamentoIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            guardar(medicamentoIds);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> pendientes = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            Set<Long> deLaTransaccion = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, deLaTransaccion);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Primero lo pendiente de la transacción, para que la hora quede lo más cerca posible del commit
+                    cambioRepository.flush();
+                    guardar(deLaTransaccion);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(MedicamentoChangeLog.this);
+                }
+            });
+            pendientes = deLaTransaccion;
+        }
+        pendientes.addAll(medicamentoIds);
+    }
+
+    private void guardar(Collection<Long> medicamentoIds) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<MedicamentoCambio> filas = new ArrayList<>(medicamentoIds.size());
+        for (Long id : new LinkedHashSet<>(medicamentoIds)) {
+            filas.add(MedicamentoCambio.builder().medicamentoId(id).fechaHora(ahora).build());
+        }
+        cambioRepository.saveAll(filas);
+    }
+
+    /**
+     * Posición actual del registro: un cliente que acaba de leer el catálogo completo puede
+     * sincronizar desde aquí. Solo considera el margen, así que puede repetir algunos cambios ya
+     * incluidos en esa lectura, pero no omitirlos.
+     *
+     * @return token de la posición actual
+     */
+    public TokenCambios posicionActual() {
+        return new TokenCambios(LocalDateTime.now().minus(margen), 0L);
+    }
+
+    /**
+     * Lee los cambios posteriores a {@code desde}, compactados por medicamento.
+     *
+     * @param desde  posición del cliente
+     * @param limite máximo de cambios leídos (antes de compactar)
+     * @return medicamentos modificados y la nueva posición
+     * @throws TokenExpiradoException si {@code desde} es anterior a la retención
+     */
+    public Lectura leer(TokenCambios desde, int limite) {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (desde.fecha().isBefore(ahora.minus(retencion))) {
+            throw new TokenExpiradoException("El token de cambios expiró; descargue de nuevo el catálogo completo");
+        }
+        LocalDateTime hasta = ahora.minus(margen);
+        List<MedicamentoCambio> cambios = cambioRepository.siguientes(
+                desde.fecha(), desde.id(), hasta, PageRequest.of(0, limite));
+        if (cambios.isEmpty()) {
+            // Sin cambios hasta "hasta": el token avanza para no acercarse a la retención
+            TokenCambios vacio = new TokenCambios(hasta, 0L);
+            return new Lectura(List.of(), vacio.esPosteriorA(desde) ? vacio : desde, false);
+        }
+
+        // Compactación: cada medicamento una vez, en la posición de su último cambio
+        LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        for (MedicamentoCambio c : cambios) {
+            ids.remove(c.getMedicamentoId());
+            ids.add(c.getMedicamentoId());
+        }
+        MedicamentoCambio ultimo = cambios.get(cambios.size() - 1);
+        return new Lectura(List.copyOf(ids), new TokenCambios(ultimo.getFechaHora(), ultimo.getId()),
+                cambios.size() == limite);
+    }
+
+    /**
+     * Purga periódica de los cambios más antiguos que la retención.
+     */
+    @Scheduled(fixedDelayString = "${konex.cambios.cleanup-interval:PT1H}")
+    public void purgar() {
+        LocalDateTime limite = LocalDateTime.now().minus(retencion);
+        transactionTemplate.executeWithoutResult(s -> cambioRepository.purgar(limite));
+    }
+}
@@ -0,0 +1,46 @@
+package com.konex.Konex.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Configuración del modo de ejecución con hilos virtuales (opt-in).
+ * <p>
+ * Con {@code spring.threads.virtual.enabled=true} (JDK 21+, perfil Maven {@code virtual-threads}
+ * y perfil Spring {@code virtual}) Spring Boot atiende cada petición de Tomcat, las tareas
+ * asíncronas de MVC (p. ej., las exportaciones en streaming) y el {@code applicationTaskExecutor}
+ * en hilos virtuales; las llamadas {@code @Transactional} corren en el mismo hilo de la petición.
+ * </p>
+ * <p>
+ * Como Tomcat deja de acotar la concurrencia, aquí se registra {@link LimiteConcurrenciaFilter}
+ * delante de la API para que las peticiones no se amontonen sobre el pool de conexiones.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class HilosVirtualesConfig {
+
+    /**
+     * Registra la compuerta de concurrencia sobre {@code /api/*}, antes que cualquier otro filtro.
+     *
+     * @param maxConcurrentes peticiones de API admitidas en paralelo
+     * @param espera          espera máxima por un turno antes de responder 503
+     * @return registro del filtro
+     */
+    @Bean
+    public FilterRegistrationBean<LimiteConcurrenciaFilter> limiteConcurrenciaFilter(
+            @Value("${konex.virtual.max-concurrent-requests:200}") int maxConcurrentes,
+            @Value("${konex.virtual.acquire-timeout:PT2S}") Duration espera) {
+        FilterRegistrationBean<LimiteConcurrenciaFilter> bean =
+                new FilterRegistrationBean<>(new LimiteConcurrenciaFilter(maxConcurrentes, espera));
+        bean.addUrlPatterns("/api/*");
+        bean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return bean;
+    }
+}
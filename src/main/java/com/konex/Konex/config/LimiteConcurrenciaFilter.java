@@ -0,0 +1,69 @@
+package com.konex.Konex.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compuerta de concurrencia (<i>bulkhead</i>) para el modo de hilos virtuales.
+ * <p>
+ * Con hilos virtuales Tomcat deja de limitar las peticiones simultáneas: miles de ellas
+ * podrían quedar esperando una de las conexiones del pool Hikari hasta agotar su
+ * {@code connection-timeout}, acumulando memoria y latencia. Este filtro admite como máximo
+ * {@code maxConcurrentes} peticiones a la vez; las demás esperan turno en orden de llegada
+ * hasta {@code espera} y, si no lo obtienen, reciben {@code 503} con {@code Retry-After}.
+ * </p>
+ */
+public class LimiteConcurrenciaFilter extends OncePerRequestFilter {
+
+    private final Semaphore permisos;
+    private final long esperaNanos;
+
+    /**
+     * @param maxConcurrentes peticiones admitidas en paralelo
+     * @param espera          tiempo máximo de espera por un turno
+     */
+    public LimiteConcurrenciaFilter(int maxConcurrentes, Duration espera) {
+        this.permisos = new Semaphore(maxConcurrentes, true);
+        this.esperaNanos = espera.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean admitida;
+        try {
+            admitida = permisos.tryAcquire(esperaNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitida = false;
+        }
+        if (!admitida) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Servidor saturado, reintente en unos segundos\",\"status\":503}");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /** @return turnos libres en este momento */
+    public int disponibles() {
+        return permisos.availablePermits();
+    }
+}
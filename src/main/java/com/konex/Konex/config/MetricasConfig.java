@@ -0,0 +1,34 @@
+package com.konex.Konex.config;
+
+import com.konex.Konex.metrics.SentenciasPorPeticionFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración de métricas propias de la aplicación.
+ * <p>
+ * Las métricas estándar (latencia por endpoint {@code http.server.requests}, pool Hikari
+ * {@code hikaricp.*}, Hibernate {@code hibernate.*} y repositorios
+ * {@code spring.data.repository.invocations}) las configura Spring Boot Actuator;
+ * ver {@code application.properties}.
+ * </p>
+ */
+@Configuration
+public class MetricasConfig {
+
+    /**
+     * Registra el filtro que cuenta sentencias SQL por petición sobre todas las rutas de la API.
+     *
+     * @param registry registro de métricas
+     * @return registro del filtro
+     */
+    @Bean
+    public FilterRegistrationBean<SentenciasPorPeticionFilter> sentenciasPorPeticionFilter(MeterRegistry registry) {
+        FilterRegistrationBean<SentenciasPorPeticionFilter> bean =
+                new FilterRegistrationBean<>(new SentenciasPorPeticionFilter(registry));
+        bean.addUrlPatterns("/api/*");
+        return bean;
+    }
+}
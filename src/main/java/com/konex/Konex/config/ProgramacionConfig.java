@@ -0,0 +1,12 @@
+package com.konex.Konex.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas ({@code @Scheduled}), p. ej. la purga de claves de idempotencia.
+ */
+@Configuration
+@EnableScheduling
+public class ProgramacionConfig {
+}
@@ -0,0 +1,137 @@
+package com.konex.Konex.config;
+
+import com.konex.Konex.replica.EnrutadorLecturasDataSource;
+import com.konex.Konex.replica.LecturaPropiaFilter;
+import com.konex.Konex.replica.MonitorReplicas;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réplicas de lectura (opt-in con {@code konex.replica.enabled=true}).
+ * <p>
+ * El {@code DataSource} de la aplicación pasa a ser un {@link EnrutadorLecturasDataSource}: las
+ * transacciones de solo lectura de las peticiones HTTP ({@code listar}, {@code obtener},
+ * {@code cotizar}, {@code listarTodas}, {@code listarPorRango}, {@code obtenerVenta}, …) se reparten
+ * entre los pools de {@code konex.replica.urls} y dejan el pool del primario
+ * ({@code spring.datasource.*}) para las ventas y demás escrituras. Flyway, las tareas programadas
+ * y los hilos internos siguen usando el primario.
+ * </p>
+ * <p>
+ * Las réplicas que superan {@code konex.replica.max-lag} o no responden quedan fuera
+ * ({@link MonitorReplicas}); sin réplicas aptas todo va al primario. Tras escribir, un cliente lee
+ * del primario hasta que las réplicas pueden tener su cambio ({@link LecturaPropiaFilter}).
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "konex.replica.enabled", havingValue = "true")
+public class ReplicasConfig {
+
+    /**
+     * Pool del primario, con la misma configuración que el de Spring Boot sin réplicas.
+     *
+     * @param properties {@code spring.datasource.*}
+     * @return pool Hikari del primario
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrimario(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Crea un pool por réplica y el monitor que verifica su retraso.
+     *
+     * @param primario   pool del primario
+     * @param properties {@code spring.datasource.*} (driver de las réplicas)
+     * @param urls       URL JDBC de cada réplica
+     * @param usuario    usuario de las réplicas
+     * @param clave      contraseña de las réplicas
+     * @param tamanoPool conexiones máximas por réplica
+     * @param maxRetraso retraso máximo tolerado
+     * @param intervalo  cada cuánto se verifican las réplicas
+     * @param registry   registro de métricas (opcional)
+     * @return monitor de las réplicas
+     */
+    @Bean
+    public MonitorReplicas monitorReplicas(@Qualifier("dataSourcePrimario") DataSource primario,
+                                           DataSourceProperties properties,
+                                           @Value("${konex.replica.urls}") List<String> urls,
+                                           @Value("${konex.replica.username:${spring.datasource.username:}}") String usuario,
+                                           @Value("${konex.replica.password:${spring.datasource.password:}}") String clave,
+                                           @Value("${konex.replica.pool-size:10}") int tamanoPool,
+                                           @Value("${konex.replica.max-lag:PT5S}") Duration maxRetraso,
+                                           @Value("${konex.replica.check-interval:PT1S}") Duration intervalo,
+                                           ObjectProvider<MeterRegistry> registry) {
+        MeterRegistry metricas = registry.getIfAvailable(SimpleMeterRegistry::new);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String nombre = "konex-replica-" + (i + 1);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.getDriverClassName())
+                    .url(urls.get(i).trim())
+                    .username(usuario)
+                    .password(clave)
+                    .build();
+            pool.setPoolName(nombre);
+            pool.setMaximumPoolSize(tamanoPool);
+            pool.setReadOnly(true);
+            // Sin réplica disponible se falla pronto y el monitor la saca de la rotación
+            pool.setConnectionTimeout(Math.max(250, intervalo.toMillis()));
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(metricas));
+            replicas.put(nombre, pool);
+        }
+        return new MonitorReplicas(primario, replicas, maxRetraso, intervalo, metricas);
+    }
+
+    /**
+     * {@code DataSource} de la aplicación: enruta por transacción y pide la conexión en la primera
+     * sentencia ({@link LazyConnectionDataSourceProxy}).
+     *
+     * @param primario pool del primario
+     * @param monitor  monitor de las réplicas
+     * @return {@code DataSource} enrutado
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("dataSourcePrimario") DataSource primario, MonitorReplicas monitor) {
+        return new LazyConnectionDataSourceProxy(new EnrutadorLecturasDataSource(primario, monitor));
+    }
+
+    /**
+     * Registra el filtro de lectura de escrituras propias sobre {@code /api/*}.
+     *
+     * @param maxRetraso retraso máximo tolerado de una réplica
+     * @param intervalo  cada cuánto se verifican las réplicas
+     * @return registro del filtro
+     */
+    @Bean
+    public FilterRegistrationBean<LecturaPropiaFilter> lecturaPropiaFilter(
+            @Value("${konex.replica.max-lag:PT5S}") Duration maxRetraso,
+            @Value("${konex.replica.check-interval:PT1S}") Duration intervalo) {
+        FilterRegistrationBean<LecturaPropiaFilter> bean =
+                new FilterRegistrationBean<>(new LecturaPropiaFilter(maxRetraso.plus(intervalo)));
+        bean.addUrlPatterns("/api/*");
+        return bean;
+    }
+}
@@ -1,14 +1,43 @@
 package com.konex.Konex.controller;
 
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.dto.AjusteStockRequest;
+import com.konex.Konex.dto.AjusteStockResponse;
+import com.konex.Konex.dto.AlertaStockResponse;
+import com.konex.Konex.dto.CacheEstadisticasResponse;
+import com.konex.Konex.dto.CambiosResponse;
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.ImportacionResponse;
+import com.konex.Konex.dto.LoteRequest;
+import com.konex.Konex.dto.LoteResponse;
 import com.konex.Konex.dto.MedicamentoRequest;
 import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.importer.FormatoImportacion;
+import com.konex.Konex.retry.ReintentosConcurrencia;
 import com.konex.Konex.service.MedicamentoService;
+import com.konex.Konex.snapshot.CatalogoSnapshot;
+import com.konex.Konex.stream.MedicamentoStreamPublisher;
+import com.konex.Konex.utils.ValidadorMedicamento;
+import com.konex.Konex.utils.VersionEtag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 /**
  * Controlador REST para gestionar operaciones sobre medicamentos.
  * <p>
@@ -21,6 +50,17 @@ import org.springframework.web.bind.annotation.*;
  *   <li>Habilita CORS para cualquier origen ({@code @CrossOrigin(origins="*")}).</li>
  *   <li>Las validaciones de entrada usan Jakarta Bean Validation ({@code @Valid}).</li>
  *   <li>La eliminación se maneja de forma lógica (campo {@code activo = 0}).</li>
+ *   <li>Los descuentos de stock se reintentan ante conflictos de concurrencia
+ *       ({@link ReintentosConcurrencia}); las ediciones no, fallan con 409/412.</li>
+ *   <li>Las lecturas del catálogo ({@link #obtener} y {@link #listar}) envían {@code ETag} y
+ *       {@code Last-Modified} y responden {@code 304 Not Modified} a las peticiones condicionales
+ *       cuyo validador sigue vigente, sin volver a consultar ni serializar el medicamento.</li>
+ *   <li>{@link #snapshot} sirve el catálogo completo desde una instantánea precalculada
+ *       ({@link CatalogoSnapshot}).</li>
+ *   <li>{@link #stream} difunde los cambios de stock, precio y estado por SSE
+ *       ({@link MedicamentoStreamPublisher}).</li>
+ *   <li>{@link #alertasStock} lista los medicamentos en su punto de reorden
+ *       ({@link AlertasStockBajo}).</li>
  * </ul>
  */
 @RestController
@@ -30,6 +70,10 @@ import org.springframework.web.bind.annotation.*;
 public class MedicamentoController {
 
     private final MedicamentoService service;
+    private final ReintentosConcurrencia reintentos;
+    private final CatalogoSnapshot catalogoSnapshot;
+    private final MedicamentoStreamPublisher streamPublisher;
+    private final AlertasStockBajo alertasStock;
 
     /**
      * Crea un nuevo medicamento.
@@ -42,18 +86,48 @@ public class MedicamentoController {
         return service.crear(req);
     }
 
+    /**
+     * Importa medicamentos en bloque desde el cuerpo de la petición, leído en streaming.
+     * <p>
+     * {@code Content-Type: text/csv} (encabezado
+     * {@code nombre,laboratorio_id,fecha_fabricacion,fecha_vencimiento,cantidad_stock,valor_unitario})
+     * o {@code application/x-ndjson} (un objeto como el de {@link #crear} por línea). Las filas
+     * inválidas se reportan y no detienen la importación.
+     * </p>
+     *
+     * @param contentType tipo del cuerpo
+     * @param cuerpo      contenido del archivo
+     * @return filas leídas, importadas y rechazadas (con su línea y causa)
+     */
+    @PostMapping(value = "/importar", consumes = {"text/csv", "application/x-ndjson"})
+    public ImportacionResponse importar(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream cuerpo) {
+        return service.importar(cuerpo, FormatoImportacion.desde(contentType));
+    }
 
     /**
      * Actualiza un medicamento existente.
+     * <p>
+     * Con {@code If-Match} (la {@code version} o el {@code ETag} leídos), la edición se rechaza con
+     * 412 si el medicamento cambió desde esa lectura, p. ej. por una venta, en lugar de
+     * sobrescribir su stock. Con stock repartido en buckets se exige el {@code ETag}, que incluye
+     * el stock total. La respuesta incluye el {@code ETag} de la nueva versión.
+     * </p>
      *
-     * @param id  identificador del medicamento a actualizar
-     * @param req payload con los datos a modificar; validado con {@link Valid}
+     * @param id      identificador del medicamento a actualizar
+     * @param req     payload con los datos a modificar; validado con {@link Valid}
+     * @param ifMatch versión esperada (opcional)
      * @return DTO del medicamento actualizado
      */
     @PutMapping("/{id}")
-    public MedicamentoResponse actualizar(@PathVariable Long id,
-                                          @Valid @RequestBody MedicamentoRequest req) {
-        return service.actualizar(id, req);
+    public ResponseEntity<MedicamentoResponse> actualizar(@PathVariable Long id,
+                                                          @Valid @RequestBody MedicamentoRequest req,
+                                                          @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Long version = VersionEtag.version(ifMatch);
+        Long stock = VersionEtag.stock(ifMatch);
+        MedicamentoResponse resp = reintentos.sinReintentos("actualizar_medicamento", id,
+                () -> version == null ? service.actualizar(id, req) : service.actualizar(id, req, version, stock));
+        return conValidadores(resp);
     }
     /**
      * Elimina lógicamente un medicamento (marca {@code activo = 0}).
@@ -67,13 +141,22 @@ public class MedicamentoController {
     }
     /**
      * Obtiene un medicamento por su identificador (solo si está activo).
+     * <p>
+     * Con {@code If-None-Match} o {@code If-Modified-Since}, el validador se obtiene de la caché o
+     * de una consulta de solo versión; si no cambió responde {@code 304} sin cuerpo.
+     * </p>
      *
-     * @param id identificador del medicamento
-     * @return DTO del medicamento
+     * @param id      identificador del medicamento
+     * @param request petición, para evaluar los encabezados condicionales
+     * @return DTO del medicamento con {@code ETag} y {@code Last-Modified}, o {@code 304}
      */
     @GetMapping("/{id}")
-    public MedicamentoResponse obtener(@PathVariable Long id) {
-        return service.obtener(id);
+    public ResponseEntity<MedicamentoResponse> obtener(@PathVariable Long id, WebRequest request) {
+        if (esCondicional(request)) {
+            ValidadorMedicamento v = service.validador(id);
+            if (request.checkNotModified(v.etag(), v.ultimaModificacion())) return null;
+        }
+        return conValidadores(service.obtener(id));
     }
 
     /**
@@ -89,12 +172,114 @@ public class MedicamentoController {
      * @param nombre texto a buscar en el nombre (opcional; {@code null} o vacío = sin filtro)
      * @param page   número de página (0-indexed), por defecto 0
      * @param size   tamaño de página, por defecto 10
-     * @return página de medicamentos que cumplen el filtro
+     * @param request petición, para evaluar los encabezados condicionales
+     * @return página de medicamentos que cumplen el filtro, o {@code 304} si el catálogo no cambió
+     *         desde la marca de agua indicada por el cliente
      */    @GetMapping
-    public Page<MedicamentoResponse> listar(@RequestParam(required = false) String nombre,
-                                            @RequestParam(defaultValue = "0") int page,
-                                            @RequestParam(defaultValue = "10") int size) {
-        return service.listar(nombre, PageRequest.of(page, size));
+    public ResponseEntity<Page<MedicamentoResponse>> listar(@RequestParam(required = false) String nombre,
+                                                            @RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(defaultValue = "10") int size,
+                                                            WebRequest request) {
+        // La marca se lee antes que la página: un cambio entre ambas lecturas solo provoca un 200 extra
+        LocalDateTime marca = service.ultimaModificacionCatalogo();
+        String etag = VersionEtag.catalogo(marca);
+        long ultimaModificacion = VersionEtag.milisegundos(marca);
+        if (request.checkNotModified(etag, ultimaModificacion)) return null;
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(etag);
+        if (ultimaModificacion >= 0) ok.lastModified(ultimaModificacion);
+        return ok.body(service.listar(nombre, PageRequest.of(page, size)));
+    }
+
+    /**
+     * Descarga el catálogo activo completo como un único JSON
+     * ({@code {"version","generado","token","medicamentos":[...],"total"}}); {@code token} es la
+     * posición desde la que seguir con {@link #cambios}.
+     * <p>
+     * Los bytes se toman de la instantánea precalculada y comprimida con gzip; si el cliente no
+     * acepta gzip se descomprimen al vuelo. Con {@code If-None-Match} igual a la {@code version}
+     * vigente responde {@code 304} sin cuerpo. La instantánea se regenera unos segundos después
+     * de cada cambio, así que puede ir levemente por detrás de {@link #obtener}.
+     * </p>
+     *
+     * @param aceptaCodificacion encabezado {@code Accept-Encoding} (opcional)
+     * @param request            petición, para evaluar los encabezados condicionales
+     * @return el catálogo con {@code ETag} y {@code Last-Modified}, o {@code 304}
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<Resource> snapshot(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                             String aceptaCodificacion,
+                                             WebRequest request) {
+        CatalogoSnapshot.Instantanea s = catalogoSnapshot.actual();
+        long ultimaModificacion = VersionEtag.milisegundos(s.marca());
+        if (request.checkNotModified(s.etag(), ultimaModificacion)) return null;
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .eTag(s.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (ultimaModificacion >= 0) ok.lastModified(ultimaModificacion);
+        if (!aceptaGzip(aceptaCodificacion)) return ok.body(new InputStreamResource(s.descomprimido()));
+        return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .contentLength(s.gzip().length)
+                .body(new ByteArrayResource(s.gzip()));
+    }
+
+    /**
+     * Sincronización incremental del catálogo para los puntos de venta.
+     * <p>
+     * Devuelve los medicamentos que cambiaron desde {@code desde} (una vez cada uno, con su estado
+     * actual; {@code activo = 0} indica que se retiró) y el {@code token} para la siguiente
+     * llamada. Si {@code hasMore} es {@code true} quedan cambios y conviene llamar de inmediato.
+     * El token inicial es el {@code token} de {@link #snapshot}; uno expirado responde
+     * {@code 410} y obliga a descargar de nuevo la instantánea.
+     * </p>
+     *
+     * @param desde token de la sincronización anterior (opcional)
+     * @param size  máximo de cambios leídos por llamada, por defecto 500
+     * @return medicamentos modificados y el nuevo token
+     */
+    @GetMapping("/cambios")
+    public CambiosResponse cambios(@RequestParam(required = false) String desde,
+                                   @RequestParam(defaultValue = "500") int size) {
+        return service.cambios(desde, size);
+    }
+
+    /**
+     * Suscripción por <i>Server-Sent Events</i> a los cambios de stock, precio y estado.
+     * <p>
+     * Cada cambio llega como un evento {@code stock} con
+     * {@code {"id","laboratorioId","cantidadStock","valorUnitario","activo"}}; varios cambios
+     * seguidos de un mismo medicamento se fusionan en el último. Con {@code ids}, primero se envía
+     * el estado actual de esos medicamentos. Un cliente que no lee al ritmo de los cambios se
+     * desconecta y debe reconectar.
+     * </p>
+     *
+     * @param ids           medicamentos a seguir (opcional; como máximo 1000)
+     * @param laboratorioId laboratorio a seguir (opcional)
+     * @return flujo {@code text/event-stream}
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) List<Long> ids,
+                             @RequestParam(required = false) Long laboratorioId) {
+        return streamPublisher.suscribir(ids, laboratorioId);
+    }
+
+    /**
+     * Lista medicamentos activos paginando por cursor en orden de nombre, sin total de elementos.
+     * <p>
+     * La primera llamada omite {@code after}; las siguientes envían el valor {@code next}
+     * de la respuesta anterior.
+     * </p>
+     *
+     * @param nombre texto a buscar en el nombre (opcional)
+     * @param after  token opaco de la página anterior (opcional)
+     * @param size   tamaño de página, por defecto 10
+     * @return página de medicamentos con el token de la siguiente
+     */
+    @GetMapping("/cursor")
+    public CursorPageResponse<MedicamentoResponse> listarCursor(@RequestParam(required = false) String nombre,
+                                                                @RequestParam(required = false) String after,
+                                                                @RequestParam(defaultValue = "10") int size) {
+        return service.listarCursor(nombre, after, size);
     }
 
 
@@ -112,13 +297,162 @@ public class MedicamentoController {
 
 
     /**
-     * Descuenta unidades del stock de un medicamento.
+     * Descuenta unidades del stock de un medicamento, reintentando ante conflictos de concurrencia.
      *
      * @param id       identificador del medicamento
      * @param cantidad unidades a descontar
      */    @PatchMapping("/{id}/descontar")
     public void descontar(@PathVariable Long id,
                           @RequestParam long cantidad) {
-        service.descontarStock(id, cantidad);
+        reintentos.ejecutar("descontar_stock", List.of(id), () -> {
+            service.descontarStock(id, cantidad);
+            return null;
+        });
+    }
+
+    /**
+     * Aplica en bloque movimientos de stock (recepción de un proveedor, conteo físico) en una
+     * sola transacción. Por defecto es todo o nada (400 con los movimientos fallidos); con
+     * {@code "parcial": true} aplica los válidos y reporta el resto.
+     * <p>
+     * Ejemplo: {@code {"movimientos":[{"medicamentoId":1,"delta":120,"motivo":"Recepción OC-77"},
+     * {"medicamentoId":7,"delta":-3,"motivo":"Conteo físico"}]}}.
+     * </p>
+     *
+     * @param req movimientos; validado con {@link Valid}
+     * @return movimientos aplicados y rechazados
+     */
+    @PostMapping("/stock/ajustes")
+    public AjusteStockResponse ajustarStock(@Valid @RequestBody AjusteStockRequest req) {
+        List<Long> ids = req.getMovimientos().stream().map(m -> m.getMedicamentoId()).distinct().toList();
+        return reintentos.ejecutar("ajuste_stock", ids, () -> service.ajustarStock(req));
+    }
+
+    /**
+     * Registra la recepción de un lote (código, vencimiento y cantidad); sus unidades se suman al
+     * stock del medicamento y las ventas las consumen en orden de vencimiento (FEFO).
+     *
+     * @param id  identificador del medicamento
+     * @param req datos del lote; validado con {@link Valid}
+     * @return el lote registrado
+     */
+    @PostMapping("/{id}/lotes")
+    public LoteResponse registrarLote(@PathVariable Long id, @Valid @RequestBody LoteRequest req) {
+        return reintentos.ejecutar("registrar_lote", List.of(id), () -> service.registrarLote(id, req));
+    }
+
+    /**
+     * Lista los lotes con unidades de un medicamento, del primero al último en vencer.
+     *
+     * @param id identificador del medicamento
+     * @return lotes abiertos en orden FEFO
+     */
+    @GetMapping("/{id}/lotes")
+    public List<LoteResponse> listarLotes(@PathVariable Long id) {
+        return service.listarLotes(id);
+    }
+
+    /**
+     * Reparte el stock de un medicamento muy vendido en buckets para que sus ventas no se
+     * serialicen sobre una sola fila ({@code buckets=0} lo devuelve a una sola fila).
+     *
+     * @param id      identificador del medicamento
+     * @param buckets buckets adicionales
+     * @return DTO del medicamento con el stock total
+     */
+    @PutMapping("/{id}/stock-buckets")
+    public MedicamentoResponse configurarBucketsStock(@PathVariable Long id,
+                                                      @RequestParam int buckets) {
+        return service.configurarBucketsStock(id, buckets);
+    }
+
+    /**
+     * Fija o quita el punto de reorden de un medicamento: cuando su stock baja hasta ese valor se
+     * emite una alerta de stock bajo.
+     *
+     * @param id          identificador del medicamento
+     * @param stockMinimo punto de reorden (sin valor = quitar la alerta)
+     * @return DTO del medicamento actualizado
+     */
+    @PutMapping("/{id}/stock-minimo")
+    public MedicamentoResponse configurarStockMinimo(@PathVariable Long id,
+                                                     @RequestParam(required = false) Long stockMinimo) {
+        return service.configurarStockMinimo(id, stockMinimo);
+    }
+
+    /**
+     * Alertas de stock bajo activas: medicamentos cuyo stock está en su punto de reorden o por
+     * debajo, de la más antigua a la más reciente.
+     *
+     * @return alertas activas
+     */
+    @GetMapping("/alertas-stock")
+    public List<AlertaStockResponse> alertasStock() {
+        return alertasStock.activas();
+    }
+
+    /**
+     * Medicamentos con más conflictos de concurrencia (ventas, descuentos y ediciones) desde el
+     * arranque, para identificar los SKU con contención.
+     *
+     * @param top número máximo de medicamentos, por defecto 20
+     * @return id del medicamento → conflictos, de mayor a menor
+     */
+    @GetMapping("/conflictos")
+    public Map<Long, Long> conflictos(@RequestParam(defaultValue = "20") int top) {
+        return reintentos.conflictosPorMedicamento(top);
+    }
+
+    /**
+     * Estadísticas de la caché de lecturas de medicamentos (aciertos, fallos, desalojos).
+     *
+     * @return DTO con las estadísticas acumuladas de la caché
+     */
+    @GetMapping("/cache/estadisticas")
+    public CacheEstadisticasResponse estadisticasCache() {
+        return service.estadisticasCache();
+    }
+
+    /**
+     * Reconstruye el índice de búsqueda por nombre de todo el catálogo.
+     *
+     * @return número de medicamentos procesados
+     */
+    @PostMapping("/indice/reconstruir")
+    public int reconstruirIndice() {
+        return service.reconstruirIndiceBusqueda();
+    }
+
+    /**
+     * Indica si {@code Accept-Encoding} admite gzip ({@code gzip} o {@code *} sin {@code q=0}).
+     */
+    private static boolean aceptaGzip(String aceptaCodificacion) {
+        if (aceptaCodificacion == null) return false;
+        for (String opcion : aceptaCodificacion.split(",")) {
+            String[] partes = opcion.split(";");
+            String codificacion = partes[0].trim();
+            if (!codificacion.equalsIgnoreCase("gzip") && !codificacion.equals("*")) continue;
+            boolean rechazada = partes.length > 1 && partes[1].trim().matches("(?i)q\\s*=\\s*0(\\.0*)?");
+            if (!rechazada) return true;
+        }
+        return false;
+    }
+
+    private static boolean esCondicional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * Respuesta 200 con los validadores ({@code ETag}, {@code Last-Modified}) del medicamento.
+     */
+    private static ResponseEntity<MedicamentoResponse> conValidadores(MedicamentoResponse med) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (med.getVersion() != null) {
+            ValidadorMedicamento v = ValidadorMedicamento.de(med);
+            ok.eTag(v.etag());
+            if (v.ultimaModificacion() >= 0) ok.lastModified(v.ultimaModificacion());
+        }
+        return ok.body(med);
     }
 }
@@ -0,0 +1,59 @@
+package com.konex.Konex.controller;
+
+import com.konex.Konex.dto.AgrupacionReporte;
+import com.konex.Konex.dto.ReporteVentasResponse;
+import com.konex.Konex.service.ReporteService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+/**
+ * Controlador REST de reportes agregados de ventas.
+ * <p>
+ * Las sumas se calculan en la base de datos; el cliente no necesita descargar las ventas.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/reportes")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ReporteController {
+
+    private final ReporteService service;
+
+    /**
+     * Unidades y valor vendidos en un rango de fechas, agrupados.
+     * <p>Ejemplo: {@code GET /api/reportes/ventas?desde=2025-01-01&hasta=2025-12-31&agrupar=laboratorio}.</p>
+     *
+     * @param desde   fecha inicial (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param hasta   fecha final (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param agrupar {@code dia} (por defecto), {@code mes}, {@code medicamento} o {@code laboratorio}
+     * @param detalle {@code true} para calcular sobre las líneas de venta en lugar del resumen diario
+     * @return totales por grupo y del rango
+     */
+    @GetMapping("/ventas")
+    public ReporteVentasResponse ventas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "dia") String agrupar,
+            @RequestParam(defaultValue = "false") boolean detalle
+    ) {
+        return service.ventas(desde, hasta, AgrupacionReporte.desde(agrupar), detalle);
+    }
+
+    /**
+     * Recalcula el resumen diario de ventas de un rango a partir de las líneas de venta.
+     *
+     * @param desde fecha inicial (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param hasta fecha final (inclusive), en formato ISO (yyyy-MM-dd)
+     * @return filas de resumen generadas
+     */
+    @PostMapping("/ventas/resumen/reconstruir")
+    public int reconstruirResumen(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return service.reconstruirResumen(desde, hasta);
+    }
+}
@@ -1,14 +1,24 @@
 package com.konex.Konex.controller;
 import org.springframework.data.domain.*;
+import com.konex.Konex.dto.CursorPageResponse;
 import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaItemRequest;
 import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.export.FormatoExportacion;
+import com.konex.Konex.groupcommit.VentaGroupCommitter;
+import com.konex.Konex.retry.ReintentosConcurrencia;
 import com.konex.Konex.service.VentaService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,16 +43,43 @@ import java.util.List;
 public class VentaController {
 
     private final VentaService service;
+    /** Presente solo con {@code konex.ventas.group-commit.enabled=true}. */
+    private final ObjectProvider<VentaGroupCommitter> groupCommit;
+    private final ReintentosConcurrencia reintentos;
 
     /**
-     * Crea/confirmar una venta a partir de un medicamento y su cantidad.
+     * Crea/confirmar una venta a partir de una canasta de líneas o de un medicamento y su cantidad.
+     * <p>
+     * Ejemplo de canasta: {@code {"items":[{"medicamentoId":1,"cantidad":2},{"medicamentoId":7,"cantidad":1}]}}.
+     * Toda la canasta se registra en una sola transacción.
+     * </p>
+     *
+     * <p>
+     * Con el encabezado {@code Idempotency-Key} los reintentos de la misma solicitud devuelven la
+     * venta original sin registrar otra ni descontar stock de nuevo.
+     * </p>
+     * <p>
+     * Con el modo <i>group commit</i> activo, las ventas sin clave se confirman por lotes junto
+     * con otras concurrentes (ver {@link VentaGroupCommitter}); la respuesta es la misma.
+     * </p>
+     * <p>
+     * Un conflicto de concurrencia (interbloqueo, espera de bloqueo agotada) reintenta la venta
+     * completa en una transacción nueva ({@link ReintentosConcurrencia}).
+     * </p>
      *
-     * @param req payload con {@code medicamentoId} y {@code cantidad}; validado con {@link Valid}
+     * @param req            payload con {@code items} o con {@code medicamentoId} y {@code cantidad}; validado con {@link Valid}
+     * @param idempotencyKey clave de idempotencia del cliente (opcional)
      * @return DTO de la venta creada
      */
     @PostMapping
-    public VentaResponse crear(@Valid @RequestBody VentaCreateRequest req) {
-        return service.crearVenta(req);
+    public VentaResponse crear(@Valid @RequestBody VentaCreateRequest req,
+                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        VentaGroupCommitter agrupador = groupCommit.getIfAvailable();
+        if (idempotencyKey == null && agrupador != null) return agrupador.crear(req);
+        List<Long> ids = req.lineas().stream().map(VentaItemRequest::getMedicamentoId).toList();
+        return reintentos.ejecutar("venta", ids, () -> idempotencyKey != null
+                ? service.crearVentaIdempotente(idempotencyKey, req)
+                : service.crearVenta(req));
     }
     /**
      * Lista todas las ventas sin paginación.
@@ -51,7 +88,7 @@ public class VentaController {
      */
     @GetMapping("/all")
     public Page<VentaResponse> listarTodas(
-            @PageableDefault(size = 20, sort = "fecha", direction = Sort.Direction.DESC)
+            @PageableDefault(size = 20, sort = "fechaHora", direction = Sort.Direction.DESC)
             Pageable pageable
     ) {
         return service.listarTodas(pageable);
@@ -92,4 +129,68 @@ public class VentaController {
         return service.listarPorRango(desde, hasta, PageRequest.of(page, size));
     }
 
+    /**
+     * Lista todas las ventas paginando por cursor (más reciente primero), sin total de elementos.
+     * <p>
+     * Para recorrer listados largos (exportaciones): la primera llamada omite {@code after} y las
+     * siguientes envían el valor {@code next} de la respuesta anterior.
+     * </p>
+     *
+     * @param after token opaco de la página anterior (opcional)
+     * @param size  tamaño de página; por defecto 20
+     * @return página de ventas con el token de la siguiente
+     */
+    @GetMapping("/all/cursor")
+    public CursorPageResponse<VentaResponse> listarTodasCursor(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return service.listarTodasCursor(after, size);
+    }
+
+    /**
+     * Lista ventas dentro de un rango de fechas paginando por cursor (más reciente primero),
+     * sin total de elementos.
+     *
+     * @param desde fecha inicial (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param hasta fecha final (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param after token opaco de la página anterior (opcional)
+     * @param size  tamaño de página; por defecto 10
+     * @return página de ventas del rango con el token de la siguiente
+     */
+    @GetMapping("/cursor")
+    public CursorPageResponse<VentaResponse> listarPorRangoCursor(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return service.listarPorRangoCursor(desde, hasta, after, size);
+    }
+
+    /**
+     * Exporta las líneas de venta de un rango de fechas en streaming (CSV o NDJSON).
+     * <p>
+     * La respuesta se escribe a medida que se leen las filas, sin paginar ni cargar el
+     * rango completo en memoria; apta para exportar meses de ventas en una sola descarga.
+     * </p>
+     *
+     * @param desde  fecha inicial (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param hasta  fecha final (inclusive), en formato ISO (yyyy-MM-dd)
+     * @param format {@code csv} (por defecto) o {@code ndjson}
+     * @return cuerpo en streaming con una fila por línea de venta
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "csv") String format
+    ) {
+        FormatoExportacion formato = FormatoExportacion.desde(format);
+        String archivo = "ventas_" + desde + "_" + hasta + "." + formato.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo + "\"")
+                .body(out -> service.exportarPorRango(desde, hasta, formato, out));
+    }
 }
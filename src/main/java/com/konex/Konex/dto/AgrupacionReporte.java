@@ -0,0 +1,34 @@
+package com.konex.Konex.dto;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * Criterios de agrupación del reporte de ventas.
+ */
+public enum AgrupacionReporte {
+
+    /** Un total por día calendario ({@code yyyy-MM-dd}). */
+    DIA,
+    /** Un total por mes ({@code yyyy-MM}). */
+    MES,
+    /** Un total por medicamento. */
+    MEDICAMENTO,
+    /** Un total por laboratorio fabricante. */
+    LABORATORIO;
+
+    /**
+     * Resuelve la agrupación a partir del parámetro de la petición (sin distinguir mayúsculas).
+     *
+     * @param valor {@code dia}, {@code mes}, {@code medicamento} o {@code laboratorio}
+     * @return agrupación correspondiente
+     * @throws BusinessException si el valor no está soportado
+     */
+    public static AgrupacionReporte desde(String valor) {
+        for (AgrupacionReporte a : values()) {
+            if (a.name().equals(valor == null ? null : valor.toUpperCase(Locale.ROOT))) return a;
+        }
+        throw new BusinessException("Agrupación no soportada: " + valor);
+    }
+}
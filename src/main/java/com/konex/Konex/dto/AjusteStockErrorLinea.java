@@ -0,0 +1,27 @@
+package com.konex.Konex.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Movimiento rechazado en un ajuste masivo de stock.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjusteStockErrorLinea {
+
+    /**
+     * Posición del movimiento en la solicitud (desde 1).
+     */
+    private int linea;
+    /**
+     * Medicamento del movimiento.
+     */
+    private Long medicamentoId;
+    /**
+     * Causa del rechazo.
+     */
+    private String error;
+}
@@ -0,0 +1,35 @@
+package com.konex.Konex.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO de entrada para aplicar varios movimientos de stock en una sola transacción
+ * (recepción de un proveedor, conteo físico de inventario).
+ *
+ * @see MovimientoStockRequest
+ * @see AjusteStockResponse
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjusteStockRequest {
+
+    /**
+     * Movimientos a aplicar; se aplican en orden para un mismo medicamento.
+     */
+    @NotEmpty
+    @Valid
+    private List<MovimientoStockRequest> movimientos;
+
+    /**
+     * {@code false} (por defecto): si algún movimiento falla no se aplica ninguno.
+     * {@code true}: se aplican los válidos y se reportan los que fallaron.
+     */
+    private boolean parcial;
+}
@@ -0,0 +1,27 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO de salida de un ajuste masivo de stock.
+ */
+@Data
+@Builder
+public class AjusteStockResponse {
+
+    /**
+     * Movimientos aplicados.
+     */
+    private int aplicados;
+    /**
+     * Movimientos rechazados (solo en modo parcial; en el modo por defecto un rechazo revierte todo).
+     */
+    private int rechazados;
+    /**
+     * Detalle de los movimientos rechazados.
+     */
+    private List<AjusteStockErrorLinea> errores;
+}
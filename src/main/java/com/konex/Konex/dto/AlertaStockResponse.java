@@ -0,0 +1,31 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de salida de una alerta de stock bajo activa.
+ *
+ * @see com.konex.Konex.alerting.AlertasStockBajo
+ */
+@Data
+@Builder
+public class AlertaStockResponse {
+
+    private Long medicamentoId;
+    private String nombre;
+    /**
+     * Stock total del medicamento en la última evaluación.
+     */
+    private Long stockActual;
+    /**
+     * Punto de reorden configurado.
+     */
+    private Long stockMinimo;
+    /**
+     * Momento en que el stock cruzó el punto de reorden (no cambia mientras la alerta siga activa).
+     */
+    private LocalDateTime fechaAlerta;
+}
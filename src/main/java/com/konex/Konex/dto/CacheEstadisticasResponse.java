@@ -0,0 +1,35 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DTO de salida con las estadísticas de la caché de medicamentos.
+ *
+ * @see com.konex.Konex.cache.MedicamentoCache
+ */
+@Data
+@Builder
+public class CacheEstadisticasResponse {
+
+    /**
+     * Lecturas resueltas desde la caché.
+     */
+    private long aciertos;
+    /**
+     * Lecturas que requirieron consultar la base de datos.
+     */
+    private long fallos;
+    /**
+     * Entradas desalojadas por tamaño o expiración.
+     */
+    private long desalojos;
+    /**
+     * Proporción de aciertos sobre el total de lecturas (0..1).
+     */
+    private double tasaAciertos;
+    /**
+     * Número aproximado de entradas en la caché.
+     */
+    private long tamano;
+}
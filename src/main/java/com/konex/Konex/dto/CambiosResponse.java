@@ -0,0 +1,31 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO de salida de la sincronización incremental del catálogo ({@code GET /api/medicamentos/cambios}).
+ * <p>
+ * Cada medicamento aparece una sola vez, con su estado actual, aunque haya cambiado varias veces
+ * desde el token; los inactivados vienen con {@code activo = 0} para que el cliente los retire.
+ * </p>
+ */
+@Data
+@Builder
+public class CambiosResponse {
+
+    /**
+     * Medicamentos modificados desde el token, en el orden de su último cambio.
+     */
+    private List<MedicamentoResponse> medicamentos;
+    /**
+     * Token opaco para la siguiente sincronización (parámetro {@code desde}).
+     */
+    private String token;
+    /**
+     * Indica si quedan cambios pendientes: el cliente debe volver a llamar de inmediato con {@code token}.
+     */
+    private boolean hasMore;
+}
@@ -0,0 +1,38 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO de salida para listados paginados por cursor (<i>keyset</i>).
+ * <p>
+ * A diferencia de {@code Page}, no incluye total de elementos ni número de página:
+ * evita el {@code COUNT(*)} y el recorrido de filas previas, por lo que el costo de cada
+ * página es constante sin importar qué tan profunda sea.
+ * </p>
+ *
+ * @param <T> tipo de los elementos del listado
+ */
+@Data
+@Builder
+public class CursorPageResponse<T> {
+
+    /**
+     * Elementos de la página, en el orden del listado.
+     */
+    private List<T> content;
+    /**
+     * Tamaño de página solicitado.
+     */
+    private int size;
+    /**
+     * Token opaco para pedir la página siguiente (parámetro {@code after}); {@code null} si es la última.
+     */
+    private String next;
+    /**
+     * Indica si existe una página siguiente.
+     */
+    private boolean hasNext;
+}
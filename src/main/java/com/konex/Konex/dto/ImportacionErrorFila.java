@@ -0,0 +1,23 @@
+package com.konex.Konex.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fila rechazada en una importación masiva de medicamentos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionErrorFila {
+
+    /**
+     * Número de línea en el archivo (1 = primera línea, incluido el encabezado CSV).
+     */
+    private long linea;
+    /**
+     * Causa del rechazo.
+     */
+    private String error;
+}
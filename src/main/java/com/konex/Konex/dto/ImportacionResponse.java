@@ -0,0 +1,33 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO de salida de la importación masiva de medicamentos.
+ *
+ * @see com.konex.Konex.importer.MedicamentoImporter
+ */
+@Data
+@Builder
+public class ImportacionResponse {
+
+    /**
+     * Filas de datos leídas (sin encabezado ni líneas vacías).
+     */
+    private long filasLeidas;
+    /**
+     * Medicamentos creados.
+     */
+    private long importadas;
+    /**
+     * Filas rechazadas por formato, validación, laboratorio inexistente o error al guardar.
+     */
+    private long rechazadas;
+    /**
+     * Detalle de las filas rechazadas, limitado a {@code konex.import.max-errors} entradas.
+     */
+    private List<ImportacionErrorFila> errores;
+}
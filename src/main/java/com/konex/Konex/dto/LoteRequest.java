@@ -0,0 +1,38 @@
+package com.konex.Konex.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * DTO de entrada para registrar la recepción de un lote de un {@code Medicamento}.
+ *
+ * @see com.konex.Konex.model.Lote
+ * @see LoteResponse
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteRequest {
+
+    /**
+     * Código del lote asignado por el fabricante.
+     */
+    @NotBlank @Size(max = 40)
+    private String codigo;
+
+    /**
+     * Fecha de vencimiento del lote.
+     */
+    @NotNull
+    private LocalDate fechaVencimiento;
+
+    /**
+     * Unidades recibidas; se suman al stock del medicamento.
+     */
+    @NotNull @Positive
+    private Long cantidad;
+}
@@ -0,0 +1,25 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * DTO de salida de un lote de medicamento.
+ *
+ * @see com.konex.Konex.model.Lote
+ */
+@Data
+@Builder
+public class LoteResponse {
+
+    private Long id;
+    private Long medicamentoId;
+    private String codigo;
+    private LocalDate fechaVencimiento;
+    /**
+     * Unidades que quedan del lote.
+     */
+    private Long cantidad;
+}
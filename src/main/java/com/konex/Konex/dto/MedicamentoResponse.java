@@ -5,6 +5,7 @@ import lombok.Data;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 /**
  * DTO de salida que representa la información pública de un medicamento.
  * <p>
@@ -54,6 +55,10 @@ public class MedicamentoResponse {
      * Cantidad disponible en inventario (stock).
      */
     private Long cantidadStock;
+    /**
+     * Punto de reorden para las alertas de stock bajo ({@code null} = sin alerta).
+     */
+    private Long stockMinimo;
 
     /**
      * Precio unitario vigente del medicamento.
@@ -63,4 +68,12 @@ public class MedicamentoResponse {
      * Indicador de estado: 1 = activo, 0 = inactivo.
      */
     private Integer activo;
+    /**
+     * Versión de la entidad (bloqueo optimista); se envía en {@code If-Match} al actualizar.
+     */
+    private Long version;
+    /**
+     * Última modificación del medicamento; se expone también como {@code Last-Modified}.
+     */
+    private LocalDateTime fechaModificacion;
 }
@@ -0,0 +1,36 @@
+package com.konex.Konex.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Movimiento de stock de un medicamento dentro de un ajuste masivo.
+ *
+ * @see AjusteStockRequest
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovimientoStockRequest {
+
+    /**
+     * Identificador del medicamento.
+     */
+    @NotNull
+    private Long medicamentoId;
+
+    /**
+     * Unidades a sumar (recepción, sobrante) o restar (merma, faltante en conteo); distinto de cero.
+     */
+    @NotNull
+    private Long delta;
+
+    /**
+     * Causa del movimiento (p. ej., {@code "Recepción OC-1234"}, {@code "Conteo físico"}).
+     */
+    @Size(max = 100)
+    private String motivo;
+}
@@ -0,0 +1,61 @@
+package com.konex.Konex.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO de salida con un total agregado del reporte de ventas.
+ * <p>
+ * Se construye directamente en las consultas {@code GROUP BY} ({@code SELECT new ...}); cada
+ * constructor corresponde a un criterio de {@link AgrupacionReporte}.
+ * </p>
+ *
+ * <p><b>Clave:</b> {@code yyyy-MM-dd} por día, {@code yyyy-MM} por mes y el id por medicamento
+ * o laboratorio (en cuyo caso {@code nombre} trae su nombre).</p>
+ */
+@Data
+@NoArgsConstructor
+public class ReporteVentaFila {
+
+    /** Clave del grupo (día, mes o id). */
+    private String clave;
+    /** Nombre del medicamento o laboratorio; {@code null} en agrupaciones por fecha. */
+    private String nombre;
+    /** Unidades vendidas. */
+    private Long unidades;
+    /** Valor vendido. */
+    private BigDecimal valorTotal;
+    /** Número de líneas de venta. */
+    private Long lineas;
+
+    /** Agrupación por día (desde el resumen diario). */
+    public ReporteVentaFila(LocalDate dia, Long unidades, BigDecimal valorTotal, Long lineas) {
+        this(dia.toString(), null, unidades, valorTotal, lineas);
+    }
+
+    /** Agrupación por día (desde las líneas de venta). */
+    public ReporteVentaFila(Integer anio, Integer mes, Integer dia, Long unidades, BigDecimal valorTotal, Long lineas) {
+        this(LocalDate.of(anio, mes, dia), unidades, valorTotal, lineas);
+    }
+
+    /** Agrupación por mes. */
+    public ReporteVentaFila(Integer anio, Integer mes, Long unidades, BigDecimal valorTotal, Long lineas) {
+        this(String.format("%04d-%02d", anio, mes), null, unidades, valorTotal, lineas);
+    }
+
+    /** Agrupación por medicamento o laboratorio. */
+    public ReporteVentaFila(Long id, String nombre, Long unidades, BigDecimal valorTotal, Long lineas) {
+        this(String.valueOf(id), nombre, unidades, valorTotal, lineas);
+    }
+
+    private ReporteVentaFila(String clave, String nombre, Long unidades, BigDecimal valorTotal, Long lineas) {
+        this.clave = clave;
+        this.nombre = nombre;
+        this.unidades = unidades;
+        this.valorTotal = valorTotal;
+        this.lineas = lineas;
+    }
+}
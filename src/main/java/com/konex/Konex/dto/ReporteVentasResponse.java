@@ -0,0 +1,31 @@
+package com.konex.Konex.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO de salida del reporte de ventas agregado.
+ *
+ * @see ReporteVentaFila
+ */
+@Data
+@Builder
+public class ReporteVentasResponse {
+
+    /** Día inicial del rango (inclusive). */
+    private LocalDate desde;
+    /** Día final del rango (inclusive). */
+    private LocalDate hasta;
+    /** Criterio de agrupación aplicado. */
+    private AgrupacionReporte agrupacion;
+    /** Totales por grupo, ordenados por clave (fechas) o por valor descendente (medicamento/laboratorio). */
+    private List<ReporteVentaFila> filas;
+    /** Unidades vendidas en todo el rango. */
+    private long totalUnidades;
+    /** Valor vendido en todo el rango. */
+    private BigDecimal totalValor;
+}
@@ -1,32 +1,56 @@
 package com.konex.Konex.dto;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
-import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+
+import java.util.List;
 /**
- * DTO de entrada para registrar una venta de un medicamento.
+ * DTO de entrada para registrar una venta.
  * <p>
- * Este objeto se utiliza en la capa de API para recibir los datos necesarios
- * al crear una venta (o agregar un detalle) indicando el medicamento y la cantidad.
- * Incluye validaciones con Jakarta Bean Validation.
+ * Admite dos formas de uso:
  * </p>
+ * <ul>
+ *   <li><b>Canasta</b>: lista {@link #items} con varias líneas {@code (medicamentoId, cantidad)};
+ *       toda la canasta se registra en una sola venta y una sola transacción.</li>
+ *   <li><b>Ítem único</b> (compatibilidad): campos {@link #medicamentoId} y {@link #cantidad}
+ *       en la raíz del payload, usados cuando {@code items} no se envía.</li>
+ * </ul>
+ * Incluye validaciones con Jakarta Bean Validation.
  *
+ * @see VentaItemRequest
  * @see VentaResponse
  * @see VentaItemResponse
  */
 @Data
 public class VentaCreateRequest {
     /**
-     * Identificador del medicamento a vender.
-     * <p>Debe corresponder a un {@code Medicamento} existente.</p>
+     * Identificador del medicamento a vender (modo ítem único).
+     * <p>Se ignora cuando se envía {@link #items}.</p>
      */
-    @NotNull
     private Long medicamentoId;
 
     /**
-     * Cantidad de unidades a vender.
+     * Cantidad de unidades a vender (modo ítem único).
      * <p>Debe ser un valor entero mayor o igual a 1.</p>
      */
-    @NotNull @Min(1)
+    @Min(1)
     private Long cantidad;
+
+    /**
+     * Líneas de la canasta. Si es {@code null} o vacía se usa el modo ítem único.
+     */
+    @Valid
+    private List<VentaItemRequest> items;
+
+    /**
+     * Devuelve las líneas efectivas de la venta, independientemente del modo usado.
+     *
+     * @return {@link #items} si trae elementos; en otro caso, una lista con la línea
+     *         formada por {@link #medicamentoId} y {@link #cantidad}
+     */
+    public List<VentaItemRequest> lineas() {
+        if (items != null && !items.isEmpty()) return items;
+        return List.of(new VentaItemRequest(medicamentoId, cantidad));
+    }
 }
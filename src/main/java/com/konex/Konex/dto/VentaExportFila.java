@@ -0,0 +1,41 @@
+package com.konex.Konex.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Fila plana de la exportación de ventas: una por cada línea (detalle) de venta.
+ * <p>
+ * Se construye directamente en la consulta JPQL ({@code SELECT new ...}), por lo que no
+ * involucra entidades administradas: recorrer millones de filas no hace crecer el
+ * contexto de persistencia.
+ * </p>
+ *
+ * @see com.konex.Konex.repository.VentaRepository#streamExportacion(LocalDateTime, LocalDateTime)
+ */
+@Data
+@AllArgsConstructor
+public class VentaExportFila {
+
+    /** Identificador de la venta. */
+    private Long ventaId;
+    /** Fecha y hora de la venta. */
+    private LocalDateTime fechaHora;
+    /** Valor total de la venta (se repite en cada línea). */
+    private BigDecimal valorTotal;
+    /** Identificador de la línea de venta. */
+    private Long detalleId;
+    /** Identificador del medicamento vendido. */
+    private Long medicamentoId;
+    /** Nombre del medicamento vendido. */
+    private String medicamentoNombre;
+    /** Cantidad vendida. */
+    private Long cantidad;
+    /** Precio unitario aplicado. */
+    private BigDecimal valorUnitario;
+    /** Importe de la línea. */
+    private BigDecimal valorLinea;
+}
@@ -0,0 +1,36 @@
+package com.konex.Konex.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO de entrada que representa una línea (ítem) de una venta con varios productos.
+ * <p>
+ * Se recibe dentro de {@link VentaCreateRequest#getItems()} para registrar una canasta
+ * completa en una sola llamada y una sola transacción.
+ * </p>
+ *
+ * @see VentaCreateRequest
+ * @see VentaItemResponse
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaItemRequest {
+    /**
+     * Identificador del medicamento a vender.
+     * <p>Debe corresponder a un {@code Medicamento} existente.</p>
+     */
+    @NotNull
+    private Long medicamentoId;
+
+    /**
+     * Cantidad de unidades a vender.
+     * <p>Debe ser un valor entero mayor o igual a 1.</p>
+     */
+    @NotNull @Min(1)
+    private Long cantidad;
+}
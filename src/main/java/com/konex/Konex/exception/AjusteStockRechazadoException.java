@@ -0,0 +1,31 @@
+package com.konex.Konex.exception;
+
+import com.konex.Konex.dto.AjusteStockErrorLinea;
+
+import java.util.List;
+
+/**
+ * Excepción de negocio para un ajuste masivo de stock rechazado completo (modo por defecto,
+ * todo o nada) porque alguno de sus movimientos no se pudo aplicar.
+ * <p>
+ * Revierte la transacción del ajuste; el {@code GlobalExceptionHandler} responde 400 con el
+ * detalle de los movimientos fallidos en {@code errores}.
+ * </p>
+ */
+public class AjusteStockRechazadoException extends BusinessException {
+
+    private final List<AjusteStockErrorLinea> errores;
+
+    /**
+     * @param errores movimientos que no se pudieron aplicar
+     */
+    public AjusteStockRechazadoException(List<AjusteStockErrorLinea> errores) {
+        super("Ajuste de stock rechazado: " + errores.size() + " movimiento(s) no se pudieron aplicar");
+        this.errores = List.copyOf(errores);
+    }
+
+    /** @return movimientos que no se pudieron aplicar */
+    public List<AjusteStockErrorLinea> getErrores() {
+        return errores;
+    }
+}
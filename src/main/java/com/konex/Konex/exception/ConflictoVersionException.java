@@ -0,0 +1,22 @@
+package com.konex.Konex.exception;
+
+/**
+ * Excepción para ediciones rechazadas porque el recurso cambió desde que el cliente lo leyó.
+ * <p>
+ * Se lanza cuando la versión enviada en {@code If-Match} no coincide con la actual. El
+ * {@code GlobalExceptionHandler} la mapea a <b>HTTP 412 Precondition Failed</b>; el cliente debe
+ * volver a leer el recurso antes de reintentar la edición.
+ * </p>
+ *
+ * @see GlobalExceptionHandler
+ */
+public class ConflictoVersionException extends RuntimeException {
+    /**
+     * Crea la excepción con el mensaje especificado.
+     *
+     * @param message descripción legible del conflicto
+     */
+    public ConflictoVersionException(String message) {
+        super(message);
+    }
+}
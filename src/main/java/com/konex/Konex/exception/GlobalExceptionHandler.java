@@ -1,5 +1,10 @@
 package com.konex.Konex.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -20,7 +25,7 @@ import java.util.Map;
  * <pre>
  * {
  *   "error":   "Mensaje legible",
- *   "status":  400|404|500,
+ *   "status":  400|404|409|410|412|500,
  *   "details": "Mensaje técnico (solo en errores genéricos)"
  * }
  * </pre>
@@ -29,11 +34,26 @@ import java.util.Map;
  * <ul>
  *   <li>Este handler no expone trazas de pila. Para depuración, usa logs.</li>
  *   <li>El endpoint genérico devuelve un mensaje controlado para evitar fugas de información.</li>
+ *   <li>Cada error manejado incrementa el contador {@value #METRICA} con la etiqueta {@code type}
+ *       ({@code not_found}, {@code business}, {@code insufficient_stock}, {@code validation},
+ *       {@code conflict}, {@code precondition_failed}, {@code gone}, {@code internal}).</li>
  * </ul>
  */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    /** Contador de errores de la API publicado en Micrometer. */
+    public static final String METRICA = "konex.api.errors";
+
+    private final MeterRegistry registry;
+
+    /**
+     * @param registry registro de métricas; si no hay uno disponible (p. ej., en tests de slice)
+     *                 se usa un registro en memoria
+     */
+    public GlobalExceptionHandler(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry.getIfAvailable(SimpleMeterRegistry::new);
+    }
 
     /**
      * Maneja recursos no encontrados en el dominio (404).
@@ -44,6 +64,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<Map<String, Object>> handleNotFound(NotFoundException ex) {
+        contar("not_found");
         Map<String, Object> error = new HashMap<>();
         error.put("error", ex.getMessage());
         error.put("status", HttpStatus.NOT_FOUND.value());
@@ -52,16 +73,20 @@ public class GlobalExceptionHandler {
 
     /**
      * Maneja violaciones de reglas de negocio (400).
-     * <p>Mapea {@link BusinessException} a <code>HTTP 400 Bad Request</code>.</p>
+     * <p>Mapea {@link BusinessException} a <code>HTTP 400 Bad Request</code>; los rechazos por
+     * {@link StockInsuficienteException} se contabilizan aparte y un
+     * {@link AjusteStockRechazadoException} incluye sus movimientos fallidos en {@code errores}.</p>
      *
      * @param ex excepción de negocio
      * @return respuesta con mensaje de error y código 400
      */
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<Map<String, Object>> handleBusiness(BusinessException ex) {
+        contar(ex instanceof StockInsuficienteException ? "insufficient_stock" : "business");
         Map<String, Object> error = new HashMap<>();
         error.put("error", ex.getMessage());
         error.put("status", HttpStatus.BAD_REQUEST.value());
+        if (ex instanceof AjusteStockRechazadoException rechazado) error.put("errores", rechazado.getErrores());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
@@ -80,12 +105,59 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, Object>> handleValidation(MethodArgumentNotValidException ex) {
+        contar("validation");
         Map<String, Object> error = new HashMap<>();
         error.put("error", ex.getBindingResult().getFieldError().getDefaultMessage());
         error.put("status", HttpStatus.BAD_REQUEST.value());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    /**
+     * Maneja ediciones con una versión desactualizada en {@code If-Match} (412).
+     *
+     * @param ex excepción de conflicto de versión
+     * @return respuesta con mensaje de error y código 412
+     */
+    @ExceptionHandler(ConflictoVersionException.class)
+    public ResponseEntity<Map<String, Object>> handleConflictoVersion(ConflictoVersionException ex) {
+        contar("precondition_failed");
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        error.put("status", HttpStatus.PRECONDITION_FAILED.value());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(error);
+    }
+
+    /**
+     * Maneja tokens de sincronización de cambios ya purgados (410).
+     *
+     * @param ex excepción de token expirado
+     * @return respuesta con mensaje de error y código 410
+     */
+    @ExceptionHandler(TokenExpiradoException.class)
+    public ResponseEntity<Map<String, Object>> handleTokenExpirado(TokenExpiradoException ex) {
+        contar("gone");
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        error.put("status", HttpStatus.GONE.value());
+        return ResponseEntity.status(HttpStatus.GONE).body(error);
+    }
+
+    /**
+     * Maneja conflictos de concurrencia en base de datos (409): bloqueo optimista fallido,
+     * interbloqueo o espera de bloqueo agotada, una vez agotados los reintentos.
+     *
+     * @param ex excepción de concurrencia traducida por Spring
+     * @return respuesta con mensaje de error y código 409
+     */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrencia(ConcurrencyFailureException ex) {
+        contar("conflict");
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "El recurso fue modificado por otra operación; intente de nuevo");
+        error.put("status", HttpStatus.CONFLICT.value());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
     /**
      * Manejo genérico de excepciones no contempladas (500).
      * <p>
@@ -98,10 +170,19 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGeneric(Exception ex) {
+        contar("internal");
         Map<String, Object> error = new HashMap<>();
         error.put("error", "Error interno del servidor");
         error.put("details", ex.getMessage());
         error.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
+
+    private void contar(String tipo) {
+        Counter.builder(METRICA)
+                .description("Errores devueltos por la API")
+                .tag("type", tipo)
+                .register(registry)
+                .increment();
+    }
 }
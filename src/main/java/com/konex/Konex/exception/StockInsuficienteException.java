@@ -0,0 +1,19 @@
+package com.konex.Konex.exception;
+
+/**
+ * Excepción de negocio para ventas o descuentos rechazados por falta de stock.
+ * <p>
+ * Se distingue de {@link BusinessException} genérica para poder contabilizar las
+ * rechazadas por stock (contención en inventario) por separado en las métricas.
+ * </p>
+ */
+public class StockInsuficienteException extends BusinessException {
+    /**
+     * Crea la excepción con el mensaje especificado.
+     *
+     * @param message descripción legible de la causa del error
+     */
+    public StockInsuficienteException(String message) {
+        super(message);
+    }
+}
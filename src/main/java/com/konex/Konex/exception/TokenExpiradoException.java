@@ -0,0 +1,22 @@
+package com.konex.Konex.exception;
+
+/**
+ * Excepción para tokens de sincronización más antiguos que la retención del registro de cambios.
+ * <p>
+ * El {@code GlobalExceptionHandler} la mapea a <b>HTTP 410 Gone</b>: los cambios posteriores al
+ * token ya se purgaron y el cliente debe volver a descargar el catálogo completo
+ * ({@code GET /api/medicamentos/snapshot}) antes de seguir sincronizando.
+ * </p>
+ *
+ * @see GlobalExceptionHandler
+ */
+public class TokenExpiradoException extends RuntimeException {
+    /**
+     * Crea la excepción con el mensaje especificado.
+     *
+     * @param message descripción legible del error
+     */
+    public TokenExpiradoException(String message) {
+        super(message);
+    }
+}
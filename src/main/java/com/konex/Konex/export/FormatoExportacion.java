@@ -0,0 +1,48 @@
+package com.konex.Konex.export;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * Formatos soportados por la exportación de ventas.
+ */
+public enum FormatoExportacion {
+
+    /** Valores separados por comas (RFC 4180) con fila de encabezado. */
+    CSV("text/csv", "csv"),
+    /** Un objeto JSON por línea (<i>newline-delimited JSON</i>). */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    FormatoExportacion(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /** @return tipo MIME de la respuesta */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** @return extensión sugerida para el archivo descargado */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Resuelve el formato a partir del parámetro de la petición (sin distinguir mayúsculas).
+     *
+     * @param valor nombre del formato ({@code csv} o {@code ndjson})
+     * @return formato correspondiente
+     * @throws BusinessException si el formato no está soportado
+     */
+    public static FormatoExportacion desde(String valor) {
+        for (FormatoExportacion f : values()) {
+            if (f.extension.equals(valor == null ? null : valor.toLowerCase(Locale.ROOT))) return f;
+        }
+        throw new BusinessException("Formato de exportación no soportado: " + valor);
+    }
+}
@@ -0,0 +1,157 @@
+package com.konex.Konex.export;
+
+import com.konex.Konex.dto.VentaExportFila;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Serializa filas de exportación de ventas a CSV o NDJSON sobre un {@link OutputStream}.
+ * <p>
+ * Escribe fila a fila a través de un búfer de tamaño fijo, sin acumular la salida: la memoria
+ * usada no depende del número de filas exportadas.
+ * </p>
+ *
+ * <p><b>Uso:</b> {@link #escribir(VentaExportFila)} por cada fila y {@link #flush()} al terminar.
+ * No cierra el flujo subyacente (lo administra el contenedor de servlets).</p>
+ */
+public class VentaExportWriter implements Flushable {
+
+    /** Tamaño del búfer de escritura, en caracteres. */
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    private static final String ENCABEZADO_CSV =
+            "id_venta,fecha_hora,valor_total,id_detalle,id_medicamento,medicamento,cantidad,valor_unitario,valor_linea";
+
+    private final Writer out;
+    private final FormatoExportacion formato;
+    private long filas;
+
+    /**
+     * @param out     flujo de salida (la respuesta HTTP)
+     * @param formato formato de serialización
+     */
+    public VentaExportWriter(OutputStream out, FormatoExportacion formato) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), TAMANO_BUFER);
+        this.formato = formato;
+    }
+
+    /**
+     * Escribe una fila (precedida del encabezado si es la primera en CSV).
+     *
+     * @param f fila a escribir
+     * @throws UncheckedIOException si falla la escritura (p. ej., el cliente cerró la conexión)
+     */
+    public void escribir(VentaExportFila f) {
+        try {
+            if (formato == FormatoExportacion.CSV) escribirCsv(f);
+            else escribirNdjson(f);
+            filas++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Vacía el búfer; en CSV garantiza el encabezado aunque no haya filas.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (filas == 0 && formato == FormatoExportacion.CSV) out.write(ENCABEZADO_CSV + "\n");
+        out.flush();
+    }
+
+    /** @return número de filas escritas */
+    public long getFilas() {
+        return filas;
+    }
+
+    private void escribirCsv(VentaExportFila f) throws IOException {
+        if (filas == 0) out.write(ENCABEZADO_CSV + "\n");
+        out.write(String.valueOf(f.getVentaId()));
+        out.write(',');
+        out.write(fecha(f.getFechaHora()));
+        out.write(',');
+        out.write(numero(f.getValorTotal()));
+        out.write(',');
+        out.write(String.valueOf(f.getDetalleId()));
+        out.write(',');
+        out.write(String.valueOf(f.getMedicamentoId()));
+        out.write(',');
+        out.write(csv(f.getMedicamentoNombre()));
+        out.write(',');
+        out.write(String.valueOf(f.getCantidad()));
+        out.write(',');
+        out.write(numero(f.getValorUnitario()));
+        out.write(',');
+        out.write(numero(f.getValorLinea()));
+        out.write('\n');
+    }
+
+    private void escribirNdjson(VentaExportFila f) throws IOException {
+        out.write("{\"ventaId\":");
+        out.write(String.valueOf(f.getVentaId()));
+        out.write(",\"fechaHora\":\"");
+        out.write(fecha(f.getFechaHora()));
+        out.write("\",\"valorTotal\":");
+        out.write(numero(f.getValorTotal()));
+        out.write(",\"detalleId\":");
+        out.write(String.valueOf(f.getDetalleId()));
+        out.write(",\"medicamentoId\":");
+        out.write(String.valueOf(f.getMedicamentoId()));
+        out.write(",\"medicamentoNombre\":");
+        out.write(json(f.getMedicamentoNombre()));
+        out.write(",\"cantidad\":");
+        out.write(String.valueOf(f.getCantidad()));
+        out.write(",\"valorUnitario\":");
+        out.write(numero(f.getValorUnitario()));
+        out.write(",\"valorLinea\":");
+        out.write(numero(f.getValorLinea()));
+        out.write("}\n");
+    }
+
+    private static String fecha(LocalDateTime v) {
+        return v == null ? "" : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(v);
+    }
+
+    private static String numero(BigDecimal v) {
+        return v == null ? "null" : v.toPlainString();
+    }
+
+    /** Entrecomilla el valor si contiene separadores, comillas o saltos de línea (RFC 4180). */
+    private static String csv(String v) {
+        if (v == null) return "";
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
+    }
+
+    /** Literal de cadena JSON con los escapes obligatorios. */
+    private static String json(String v) {
+        if (v == null) return "null";
+        StringBuilder sb = new StringBuilder(v.length() + 2).append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.konex.Konex.groupcommit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cola de <i>group commit</i>: agrupa solicitudes concurrentes en lotes y procesa cada lote de
+ * una sola vez (típicamente en una única transacción), devolviendo a cada llamador su propio
+ * resultado.
+ * <p>
+ * Un hilo trabajador toma la primera solicitud disponible y sigue juntando hasta reunir
+ * {@code maxLote} solicitudes o hasta que pasen {@code maxEspera} desde la primera; luego invoca
+ * el procesador con el lote. Mientras un lote se confirma, los siguientes llamadores se acumulan
+ * en la cola, así que bajo carga los lotes crecen solos; con {@code maxEspera = 0} el lote es
+ * exactamente lo acumulado durante el commit anterior y una solicitud aislada no espera nada.
+ * </p>
+ * <p>
+ * Si el procesador lanza una excepción (p. ej. falla el commit), todas las solicitudes del lote
+ * la reciben. La cola es acotada: con {@code capacidad} solicitudes en espera, los llamadores
+ * se bloquean hasta que haya espacio.
+ * </p>
+ *
+ * @param <S> tipo de la solicitud
+ * @param <R> tipo de la respuesta
+ */
+public class GroupCommitQueue<S, R> implements AutoCloseable {
+
+    /** Intervalo con el que el trabajador inactivo revisa si la cola se cerró. */
+    private static final long ESPERA_INACTIVO_MS = 100;
+
+    private final int maxLote;
+    private final long maxEsperaNanos;
+    private final Function<List<S>, List<ResultadoLote<R>>> procesador;
+    private final BlockingQueue<Pendiente<S, R>> cola;
+    private final Thread trabajador;
+    private volatile boolean activa = true;
+
+    /**
+     * Crea la cola e inicia su hilo trabajador.
+     *
+     * @param nombre     nombre del hilo trabajador
+     * @param maxLote    máximo de solicitudes por lote ({@code >= 1})
+     * @param maxEspera  espera máxima desde la primera solicitud del lote antes de procesarlo
+     * @param capacidad  máximo de solicitudes en espera
+     * @param procesador procesa un lote y devuelve un resultado por solicitud, en el mismo orden
+     */
+    public GroupCommitQueue(String nombre, int maxLote, Duration maxEspera, int capacidad,
+                            Function<List<S>, List<ResultadoLote<R>>> procesador) {
+        if (maxLote < 1) throw new IllegalArgumentException("maxLote debe ser >= 1");
+        this.maxLote = maxLote;
+        this.maxEsperaNanos = maxEspera.toNanos();
+        this.procesador = procesador;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.trabajador = new Thread(this::atender, nombre);
+        this.trabajador.setDaemon(true);
+        this.trabajador.start();
+    }
+
+    /**
+     * Encola la solicitud y espera el resultado de su lote.
+     *
+     * @param solicitud solicitud a procesar
+     * @return respuesta de la solicitud
+     * @throws RuntimeException el error propio de la solicitud o el del lote completo
+     * @throws IllegalStateException si la cola está cerrada
+     */
+    public R enviar(S solicitud) {
+        if (!activa) throw new IllegalStateException("La cola de group commit está cerrada");
+        Pendiente<S, R> pendiente = new Pendiente<>(solicitud, new CompletableFuture<>());
+        try {
+            cola.put(pendiente);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido al encolar la solicitud", e);
+        }
+        // Cierre concurrente: si el trabajador ya no la verá, se rechaza aquí
+        if (!activa && cola.remove(pendiente)) {
+            throw new IllegalStateException("La cola de group commit está cerrada");
+        }
+        try {
+            return pendiente.resultado().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /**
+     * Deja de aceptar solicitudes, procesa las ya encoladas y detiene el trabajador.
+     */
+    @Override
+    public void close() {
+        activa = false;
+        try {
+            trabajador.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pendiente<S, R>> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        IllegalStateException cerrada = new IllegalStateException("La cola de group commit está cerrada");
+        restantes.forEach(p -> p.resultado().completeExceptionally(cerrada));
+    }
+
+    private void atender() {
+        List<Pendiente<S, R>> lote = new ArrayList<>(maxLote);
+        while (activa || !cola.isEmpty()) {
+            try {
+                Pendiente<S, R> primera = cola.poll(ESPERA_INACTIVO_MS, TimeUnit.MILLISECONDS);
+                if (primera == null) continue;
+                lote.add(primera);
+                juntar(lote, System.nanoTime() + maxEsperaNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                activa = false;
+            }
+            procesar(lote);
+            lote.clear();
+        }
+    }
+
+    /** Completa el lote hasta {@code maxLote} solicitudes o hasta el instante {@code limite}. */
+    private void juntar(List<Pendiente<S, R>> lote, long limite) throws InterruptedException {
+        while (lote.size() < maxLote) {
+            cola.drainTo(lote, maxLote - lote.size());
+            long resta = limite - System.nanoTime();
+            if (lote.size() >= maxLote || resta <= 0) return;
+            Pendiente<S, R> siguiente = cola.poll(resta, TimeUnit.NANOSECONDS);
+            if (siguiente == null) return;
+            lote.add(siguiente);
+        }
+    }
+
+    private void procesar(List<Pendiente<S, R>> lote) {
+        if (lote.isEmpty()) return;
+        List<S> solicitudes = new ArrayList<>(lote.size());
+        for (Pendiente<S, R> p : lote) solicitudes.add(p.solicitud());
+        try {
+            List<ResultadoLote<R>> resultados = procesador.apply(solicitudes);
+            if (resultados.size() != lote.size()) {
+                throw new IllegalStateException("El procesador devolvió " + resultados.size()
+                        + " resultados para un lote de " + lote.size());
+            }
+            for (int i = 0; i < lote.size(); i++) {
+                ResultadoLote<R> r = resultados.get(i);
+                if (r.error() != null) lote.get(i).resultado().completeExceptionally(r.error());
+                else lote.get(i).resultado().complete(r.valor());
+            }
+        } catch (RuntimeException | Error ex) {
+            // Falló el lote completo (p. ej. el commit): cada solicitud recibe el mismo error
+            for (Pendiente<S, R> p : lote) p.resultado().completeExceptionally(ex);
+        }
+    }
+
+    /** Solicitud en espera junto con el resultado que recibirá su llamador. */
+    private record Pendiente<S, R>(S solicitud, CompletableFuture<R> resultado) {
+    }
+}
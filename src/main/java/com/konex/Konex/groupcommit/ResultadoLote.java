@@ -0,0 +1,32 @@
+package com.konex.Konex.groupcommit;
+
+/**
+ * Resultado individual de una solicitud procesada dentro de un lote de <i>group commit</i>.
+ * <p>
+ * Un lote se confirma en una sola transacción, pero cada solicitud conserva su propio desenlace:
+ * su respuesta o el error de negocio que la rechazó (p. ej. stock insuficiente) sin afectar a
+ * las demás del lote.
+ * </p>
+ *
+ * @param valor respuesta de la solicitud; {@code null} si falló
+ * @param error error que rechazó la solicitud; {@code null} si tuvo éxito
+ * @param <R>   tipo de la respuesta
+ */
+public record ResultadoLote<R>(R valor, RuntimeException error) {
+
+    /**
+     * @param valor respuesta de la solicitud
+     * @return resultado exitoso
+     */
+    public static <R> ResultadoLote<R> ok(R valor) {
+        return new ResultadoLote<>(valor, null);
+    }
+
+    /**
+     * @param error error que rechazó la solicitud
+     * @return resultado fallido
+     */
+    public static <R> ResultadoLote<R> fallo(RuntimeException error) {
+        return new ResultadoLote<>(null, error);
+    }
+}
@@ -0,0 +1,91 @@
+package com.konex.Konex.groupcommit;
+
+import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaItemRequest;
+import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.retry.ReintentosConcurrencia;
+import com.konex.Konex.service.VentaService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Modo <i>group commit</i> de {@code POST /api/ventas} (opt-in).
+ * <p>
+ * Con {@code konex.ventas.group-commit.enabled=true}, las ventas concurrentes se encolan en una
+ * {@link GroupCommitQueue} y se confirman por lotes con
+ * {@link VentaService#crearVentasEnLote(java.util.List)}: un commit (y un volcado de redo) por
+ * lote en lugar de uno por venta. Cada llamador recibe su propia {@link VentaResponse} o su
+ * propio error de stock o validación.
+ * </p>
+ * <p>
+ * A cambio, cada venta espera como máximo {@code konex.ventas.group-commit.max-wait} a que se
+ * complete su lote. El tamaño de los lotes se publica en {@value #METRICA}. Un lote que choca
+ * con otra transacción (interbloqueo, espera de bloqueo agotada) se reintenta completo
+ * ({@link ReintentosConcurrencia}).
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "konex.ventas.group-commit.enabled", havingValue = "true")
+public class VentaGroupCommitter implements DisposableBean {
+
+    /** Distribución del número de ventas confirmadas por lote. */
+    public static final String METRICA = "konex.sales.group.commit.batch.size";
+
+    private final GroupCommitQueue<VentaCreateRequest, VentaResponse> cola;
+
+    /**
+     * @param ventaService servicio (proxy transaccional) que confirma cada lote
+     * @param maxLote      máximo de ventas por lote
+     * @param maxEspera    espera máxima de la primera venta de un lote
+     * @param capacidad    ventas en espera admitidas antes de bloquear a los llamadores
+     * @param reintentos   política de reintentos ante conflictos de concurrencia
+     * @param registry     registro de métricas (opcional)
+     */
+    public VentaGroupCommitter(VentaService ventaService,
+                               @Value("${konex.ventas.group-commit.max-batch:64}") int maxLote,
+                               @Value("${konex.ventas.group-commit.max-wait:PT0.002S}") Duration maxEspera,
+                               @Value("${konex.ventas.group-commit.queue-capacity:10000}") int capacidad,
+                               ReintentosConcurrencia reintentos,
+                               ObjectProvider<MeterRegistry> registry) {
+        DistributionSummary tamano = DistributionSummary.builder(METRICA)
+                .description("Ventas confirmadas por transacción en modo group commit")
+                .register(registry.getIfAvailable(SimpleMeterRegistry::new));
+        this.cola = new GroupCommitQueue<>("konex-group-commit-ventas", maxLote, maxEspera, capacidad, lote -> {
+            tamano.record(lote.size());
+            List<Long> ids = lote.stream()
+                    .flatMap(req -> req.lineas().stream())
+                    .map(VentaItemRequest::getMedicamentoId)
+                    .distinct()
+                    .toList();
+            return reintentos.ejecutar("venta_lote", ids, () -> ventaService.crearVentasEnLote(lote));
+        });
+    }
+
+    /**
+     * Encola la venta y espera a que su lote se confirme.
+     *
+     * @param req datos de la venta
+     * @return la venta creada
+     * @throws RuntimeException el error de la venta (p. ej. stock insuficiente) o el del lote
+     */
+    public VentaResponse crear(VentaCreateRequest req) {
+        return cola.enviar(req);
+    }
+
+    /**
+     * Confirma las ventas ya encoladas y detiene el trabajador al cerrar el contexto.
+     */
+    @Override
+    public void destroy() {
+        cola.close();
+    }
+}
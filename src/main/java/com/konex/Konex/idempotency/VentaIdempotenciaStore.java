@@ -0,0 +1,166 @@
+package com.konex.Konex.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.exception.BusinessException;
+import com.konex.Konex.model.VentaIdempotencia;
+import com.konex.Konex.repository.VentaIdempotenciaRepository;
+import com.konex.Konex.utils.Validators;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Almacén de respuestas idempotentes de {@code POST /api/ventas} ({@code Idempotency-Key}).
+ * <p>
+ * Garantiza que una misma clave registre como máximo una venta y que sus reintentos reciban
+ * la misma {@link VentaResponse} sin volver a descontar stock:
+ * </p>
+ * <ol>
+ *   <li><b>Memoria:</b> caché Caffeine acotada (tamaño y TTL) con las respuestas recientes; un
+ *       reintento típico se responde sin tocar la base de datos.</li>
+ *   <li><b>En curso:</b> un duplicado concurrente en esta instancia espera el resultado de la
+ *       solicitud original en lugar de ejecutarse.</li>
+ *   <li><b>Base de datos:</b> la clave se inserta en <code>VENTA_IDEMPOTENCIA</code> dentro de la
+ *       transacción de la venta, antes de descontar stock. En otra instancia, un duplicado queda
+ *       bloqueado por la PK hasta el commit y luego se responde desde la tabla.</li>
+ * </ol>
+ * <p>
+ * El camino normal (clave nueva) solo agrega una búsqueda en memoria y el {@code INSERT} de la
+ * clave. Las claves expiran tras {@code konex.idempotency.ttl}; una tarea programada las purga.
+ * Si la venta falla, no queda nada registrado y el reintento vuelve a ejecutarse.
+ * </p>
+ */
+@Component
+public class VentaIdempotenciaStore {
+
+    /** Longitud máxima de la clave (columna <code>CLAVE</code>). */
+    static final int LONGITUD_MAXIMA_CLAVE = 100;
+
+    private final VentaIdempotenciaRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Cache<String, Registro> memoria;
+    private final ConcurrentMap<String, CompletableFuture<Registro>> enCurso = new ConcurrentHashMap<>();
+
+    /**
+     * @param repository          repositorio de claves
+     * @param transactionTemplate plantilla para la transacción de la venta
+     * @param maxSize             máximo de respuestas en memoria
+     * @param ttl                 vigencia de cada clave
+     */
+    public VentaIdempotenciaStore(VentaIdempotenciaRepository repository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${konex.idempotency.max-size:100000}") long maxSize,
+                                  @Value("${konex.idempotency.ttl:PT24H}") Duration ttl) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.memoria = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Ejecuta {@code operacion} una sola vez por clave y devuelve su respuesta (o la ya registrada).
+     *
+     * @param clave     valor del encabezado {@code Idempotency-Key}
+     * @param huella    huella de la solicitud; una clave reutilizada con otra huella se rechaza
+     * @param operacion creación de la venta; corre dentro de la transacción que registra la clave
+     * @param cargar    obtiene la respuesta de una venta ya registrada a partir de su id
+     * @return respuesta de la venta
+     * @throws BusinessException si la clave es inválida o se reutiliza con otra solicitud
+     */
+    public VentaResponse ejecutar(String clave, String huella,
+                                  Supplier<VentaResponse> operacion,
+                                  Function<Long, VentaResponse> cargar) {
+        Validators.check(clave != null && !clave.isBlank() && clave.length() <= LONGITUD_MAXIMA_CLAVE,
+                "Idempotency-Key inválida (1 a " + LONGITUD_MAXIMA_CLAVE + " caracteres)");
+
+        Registro conocido = memoria.getIfPresent(clave);
+        if (conocido != null) return conocido.respuestaPara(huella);
+
+        CompletableFuture<Registro> propio = new CompletableFuture<>();
+        CompletableFuture<Registro> previo = enCurso.putIfAbsent(clave, propio);
+        if (previo != null) return esperar(previo).respuestaPara(huella);
+
+        try {
+            Registro r = registrar(clave, huella, operacion, cargar);
+            memoria.put(clave, r);
+            propio.complete(r);
+            return r.respuestaPara(huella);
+        } catch (RuntimeException ex) {
+            propio.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            enCurso.remove(clave, propio);
+        }
+    }
+
+    /**
+     * Purga periódica de claves expiradas en la base de datos.
+     */
+    @Scheduled(fixedDelayString = "${konex.idempotency.cleanup-interval:PT1H}")
+    public void purgarExpiradas() {
+        transactionTemplate.executeWithoutResult(s ->
+                repository.eliminarAnterioresA(LocalDateTime.now().minus(ttl)));
+    }
+
+    private Registro registrar(String clave, String huella,
+                               Supplier<VentaResponse> operacion,
+                               Function<Long, VentaResponse> cargar) {
+        try {
+            return transactionTemplate.execute(status -> {
+                // Primero la clave: un duplicado en otra instancia se bloquea aquí (PK) y no descuenta stock
+                VentaIdempotencia fila = repository.saveAndFlush(
+                        new VentaIdempotencia(clave, huella, null, LocalDateTime.now()));
+                VentaResponse respuesta = operacion.get();
+                fila.setVentaId(respuesta.getId());
+                return new Registro(huella, respuesta);
+            });
+        } catch (DataIntegrityViolationException duplicada) {
+            VentaIdempotencia fila = repository.findById(clave)
+                    .filter(f -> f.getVentaId() != null)
+                    .orElseThrow(() -> duplicada);
+            return new Registro(fila.getHuella(), cargar.apply(fila.getVentaId()));
+        }
+    }
+
+    private static Registro esperar(CompletableFuture<Registro> enCurso) {
+        try {
+            return enCurso.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Solicitud interrumpida mientras se procesaba la original");
+        } catch (ExecutionException e) {
+            // El duplicado recibe el mismo error que la solicitud original
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Respuesta registrada para una clave junto con la huella de su solicitud. */
+    private record Registro(String huella, VentaResponse respuesta) {
+        VentaResponse respuestaPara(String huellaSolicitud) {
+            Validators.check(huella.equals(huellaSolicitud),
+                    "La Idempotency-Key ya se usó con una solicitud diferente");
+            return respuesta;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.konex.Konex.importer;
+
+import com.konex.Konex.exception.BusinessException;
+import org.springframework.http.MediaType;
+
+/**
+ * Formatos soportados por la importación masiva de medicamentos.
+ */
+public enum FormatoImportacion {
+
+    /**
+     * Valores separados por comas (RFC 4180) con fila de encabezado:
+     * {@code nombre,laboratorio_id,fecha_fabricacion,fecha_vencimiento,cantidad_stock,valor_unitario}.
+     */
+    CSV("text/csv"),
+    /** Un {@code MedicamentoRequest} en JSON por línea (<i>newline-delimited JSON</i>). */
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    FormatoImportacion(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /** @return tipo MIME del cuerpo de la petición */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Resuelve el formato a partir del {@code Content-Type} de la petición (ignora parámetros como
+     * {@code charset}).
+     *
+     * @param contentType encabezado {@code Content-Type}
+     * @return formato correspondiente
+     * @throws BusinessException si el tipo no está soportado
+     */
+    public static FormatoImportacion desde(String contentType) {
+        if (contentType != null) {
+            MediaType tipo = MediaType.parseMediaType(contentType);
+            for (FormatoImportacion f : values()) {
+                if (MediaType.parseMediaType(f.contentType).equalsTypeAndSubtype(tipo)) return f;
+            }
+        }
+        throw new BusinessException("Formato de importación no soportado: " + contentType);
+    }
+}
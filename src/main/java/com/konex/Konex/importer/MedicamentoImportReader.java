@@ -0,0 +1,187 @@
+package com.konex.Konex.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.konex.Konex.dto.MedicamentoRequest;
+import com.konex.Konex.exception.BusinessException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Lee un archivo de importación de medicamentos (CSV o NDJSON) fila a fila.
+ * <p>
+ * Lee el flujo por bloques a través de un búfer de tamaño fijo y entrega cada fila en cuanto se
+ * completa: la memoria usada no depende del tamaño del archivo. Una fila mal formada no detiene la
+ * lectura; se entrega con su error para el reporte.
+ * </p>
+ *
+ * <p><b>CSV:</b> la primera línea es el encabezado ({@link #COLUMNAS}, en cualquier orden); los
+ * campos pueden ir entre comillas dobles ({@code ""} para una comilla) y los vacíos equivalen a
+ * {@code null}. Fechas en ISO ({@code yyyy-MM-dd}) y decimales con punto.</p>
+ */
+public class MedicamentoImportReader implements Closeable {
+
+    /** Tamaño del búfer de lectura, en caracteres. */
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    /** Columnas obligatorias del encabezado CSV. */
+    static final List<String> COLUMNAS = List.of(
+            "nombre", "laboratorio_id", "fecha_fabricacion", "fecha_vencimiento", "cantidad_stock", "valor_unitario");
+
+    /**
+     * Fila leída: la solicitud o, si la línea no se pudo interpretar, el error.
+     *
+     * @param linea   número de línea en el archivo (desde 1)
+     * @param request datos de la fila ({@code null} si hay error)
+     * @param error   causa del rechazo ({@code null} si se interpretó)
+     */
+    public record Fila(long linea, MedicamentoRequest request, String error) {
+    }
+
+    private final BufferedReader in;
+    private final FormatoImportacion formato;
+    private final ObjectMapper objectMapper;
+    private int[] posiciones;
+    private long linea;
+
+    /**
+     * @param in           cuerpo de la petición
+     * @param formato      formato del archivo
+     * @param objectMapper mapper de Jackson (para NDJSON)
+     */
+    public MedicamentoImportReader(InputStream in, FormatoImportacion formato, ObjectMapper objectMapper) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), TAMANO_BUFER);
+        this.formato = formato;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lee la siguiente fila de datos, omitiendo líneas vacías.
+     *
+     * @return la fila, o {@code null} al terminar el archivo
+     * @throws BusinessException si el encabezado CSV no tiene las columnas requeridas
+     * @throws IOException       si falla la lectura del flujo
+     */
+    public Fila siguiente() throws IOException {
+        String texto;
+        while ((texto = in.readLine()) != null) {
+            linea++;
+            if (linea == 1 && !texto.isEmpty() && texto.charAt(0) == '\uFEFF') texto = texto.substring(1);
+            if (texto.isBlank()) continue;
+            if (formato == FormatoImportacion.NDJSON) return leerJson(texto);
+            if (posiciones == null) {
+                leerEncabezado(texto);
+                continue;
+            }
+            return leerCsv(texto);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Fila leerJson(String texto) {
+        try {
+            return new Fila(linea, objectMapper.readValue(texto, MedicamentoRequest.class), null);
+        } catch (JsonProcessingException e) {
+            return new Fila(linea, null, "JSON inválido: " + e.getOriginalMessage());
+        }
+    }
+
+    private void leerEncabezado(String texto) {
+        List<String> encabezado = separar(texto);
+        Map<String, Integer> indice = new HashMap<>();
+        for (int i = 0; i < encabezado.size(); i++) {
+            if (encabezado.get(i) != null) indice.put(encabezado.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        posiciones = new int[COLUMNAS.size()];
+        for (int c = 0; c < COLUMNAS.size(); c++) {
+            Integer i = indice.get(COLUMNAS.get(c));
+            if (i == null) throw new BusinessException("Encabezado CSV inválido: falta la columna " + COLUMNAS.get(c));
+            posiciones[c] = i;
+        }
+    }
+
+    private Fila leerCsv(String texto) {
+        List<String> campos = separar(texto);
+        MedicamentoRequest req = new MedicamentoRequest();
+        try {
+            req.setNombre(campo(campos, 0, Function.identity()));
+            req.setLaboratorioId(campo(campos, 1, Long::valueOf));
+            req.setFechaFabricacion(campo(campos, 2, LocalDate::parse));
+            req.setFechaVencimiento(campo(campos, 3, LocalDate::parse));
+            req.setCantidadStock(campo(campos, 4, Long::valueOf));
+            req.setValorUnitario(campo(campos, 5, BigDecimal::new));
+        } catch (ValorInvalido e) {
+            return new Fila(linea, null, e.getMessage());
+        }
+        return new Fila(linea, req, null);
+    }
+
+    private <T> T campo(List<String> campos, int columna, Function<String, T> convertir) {
+        int i = posiciones[columna];
+        String valor = i < campos.size() ? campos.get(i) : null;
+        if (valor == null) return null;
+        try {
+            return convertir.apply(valor);
+        } catch (RuntimeException e) {
+            throw new ValorInvalido("Valor inválido en " + COLUMNAS.get(columna) + ": " + valor);
+        }
+    }
+
+    /**
+     * Separa una línea CSV en campos (sin espacios alrededor; vacío = {@code null}).
+     */
+    static List<String> separar(String texto) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        boolean citado = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreComillas) {
+                if (c != '"') actual.append(c);
+                else if (i + 1 < texto.length() && texto.charAt(i + 1) == '"') actual.append(texto.charAt(++i));
+                else entreComillas = false;
+            } else if (c == '"') {
+                entreComillas = citado = true;
+            } else if (c == ',') {
+                campos.add(valor(actual, citado));
+                actual.setLength(0);
+                citado = false;
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(valor(actual, citado));
+        return campos;
+    }
+
+    private static String valor(StringBuilder actual, boolean citado) {
+        String v = citado ? actual.toString() : actual.toString().trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    /** Valor de una columna que no se pudo convertir. */
+    private static class ValorInvalido extends RuntimeException {
+        ValorInvalido(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
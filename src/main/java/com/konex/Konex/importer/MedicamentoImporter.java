@@ -0,0 +1,218 @@
+package com.konex.Konex.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.dto.ImportacionErrorFila;
+import com.konex.Konex.dto.ImportacionResponse;
+import com.konex.Konex.dto.MedicamentoRequest;
+import com.konex.Konex.mapper.MedicamentoMapper;
+import com.konex.Konex.model.Laboratorio;
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.repository.LaboratorioRepository;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.search.MedicamentoSearchIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importación masiva del catálogo de medicamentos desde un archivo CSV o NDJSON.
+ * <p>
+ * El archivo se lee en streaming ({@link MedicamentoImportReader}) y se guarda por lotes de
+ * {@code konex.import.batch-size} filas, cada lote en su propia transacción:
+ * </p>
+ * <ol>
+ *   <li>Cada fila se valida con las mismas reglas que {@code POST /api/medicamentos}
+ *       (Bean Validation de {@link MedicamentoRequest}).</li>
+ *   <li>Los laboratorios se resuelven con un mapa propio de la importación: un solo
+ *       {@code SELECT ... IN} por lote para los ids aún no vistos, en lugar de un
+ *       {@code findById} por fila.</li>
+ *   <li>Los medicamentos y sus trigramas de búsqueda se insertan en batches JDBC (ids de la
+ *       secuencia {@code SEQ_MEDICAMENTO}); al cerrar el lote se hace {@code flush} y
+ *       {@code clear}, de modo que el contexto de persistencia no crece con el archivo.</li>
+ *   <li>Los ids del lote pasan por {@link MedicamentoCache#invalidar(java.util.Collection)}, que
+ *       tras el commit publica un solo {@code MedicamentosModificadosEvent} por lote (p. ej. para
+ *       la instantánea del catálogo).</li>
+ *   <li>Los medicamentos insertados se anotan en el registro de cambios
+ *       ({@link MedicamentoChangeLog}) en la misma transacción del lote.</li>
+ * </ol>
+ * <p>
+ * Las filas inválidas no detienen la importación: se reportan con su número de línea. Si un lote
+ * falla en la base de datos, se revierte solo ese lote y sus filas se reportan como rechazadas.
+ * </p>
+ */
+@Component
+public class MedicamentoImporter {
+
+    private final MedicamentoRepository medicamentoRepository;
+    private final LaboratorioRepository laboratorioRepository;
+    private final MedicamentoSearchIndex medicamentoSearchIndex;
+    private final MedicamentoCache medicamentoCache;
+    private final MedicamentoChangeLog changeLog;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int tamanoLote;
+    private final int maxErrores;
+
+    /**
+     * @param medicamentoRepository  repositorio de medicamentos
+     * @param laboratorioRepository  repositorio de laboratorios
+     * @param medicamentoSearchIndex índice de búsqueda (se alimenta en la misma transacción)
+     * @param medicamentoCache       caché de medicamentos (invalidación y evento por lote)
+     * @param changeLog              registro de cambios del catálogo (misma transacción)
+     * @param transactionTemplate    transacción de cada lote
+     * @param entityManager          contexto de persistencia compartido (flush/clear por lote)
+     * @param validator              validador de Bean Validation
+     * @param objectMapper           mapper de Jackson para NDJSON
+     * @param tamanoLote             filas por transacción
+     * @param maxErrores             máximo de filas rechazadas detalladas en el reporte
+     */
+    public MedicamentoImporter(MedicamentoRepository medicamentoRepository,
+                               LaboratorioRepository laboratorioRepository,
+                               MedicamentoSearchIndex medicamentoSearchIndex,
+                               MedicamentoCache medicamentoCache,
+                               MedicamentoChangeLog changeLog,
+                               TransactionTemplate transactionTemplate,
+                               EntityManager entityManager,
+                               Validator validator,
+                               ObjectMapper objectMapper,
+                               @Value("${konex.import.batch-size:1000}") int tamanoLote,
+                               @Value("${konex.import.max-errors:1000}") int maxErrores) {
+        this.medicamentoRepository = medicamentoRepository;
+        this.laboratorioRepository = laboratorioRepository;
+        this.medicamentoSearchIndex = medicamentoSearchIndex;
+        this.medicamentoCache = medicamentoCache;
+        this.changeLog = changeLog;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.tamanoLote = tamanoLote;
+        this.maxErrores = maxErrores;
+    }
+
+    /**
+     * Importa el archivo completo.
+     *
+     * @param in      cuerpo de la petición (no se cierra aquí)
+     * @param formato formato del archivo
+     * @return conteos y filas rechazadas
+     * @throws com.konex.Konex.exception.BusinessException si el encabezado CSV es inválido
+     * @throws UncheckedIOException si falla la lectura del cuerpo
+     */
+    public ImportacionResponse importar(InputStream in, FormatoImportacion formato) {
+        Reporte reporte = new Reporte();
+        Map<Long, Boolean> laboratorios = new HashMap<>();
+        List<MedicamentoImportReader.Fila> lote = new ArrayList<>(tamanoLote);
+        MedicamentoImportReader lector = new MedicamentoImportReader(in, formato, objectMapper);
+        try {
+            MedicamentoImportReader.Fila fila;
+            while ((fila = lector.siguiente()) != null) {
+                reporte.leidas++;
+                String error = fila.error() != null ? fila.error() : validar(fila.request());
+                if (error != null) {
+                    reporte.rechazar(fila.linea(), error);
+                    continue;
+                }
+                lote.add(fila);
+                if (lote.size() == tamanoLote) {
+                    guardar(lote, laboratorios, reporte);
+                    lote.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!lote.isEmpty()) guardar(lote, laboratorios, reporte);
+
+        return ImportacionResponse.builder()
+                .filasLeidas(reporte.leidas)
+                .importadas(reporte.importadas)
+                .rechazadas(reporte.rechazadas)
+                .errores(reporte.errores)
+                .build();
+    }
+
+    /**
+     * Primer error de validación de la fila ({@code campo: mensaje}), o {@code null} si es válida.
+     */
+    private String validar(MedicamentoRequest req) {
+        Set<ConstraintViolation<MedicamentoRequest>> violaciones = validator.validate(req);
+        return violaciones.stream()
+                .min(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .orElse(null);
+    }
+
+    private void guardar(List<MedicamentoImportReader.Fila> lote, Map<Long, Boolean> laboratorios, Reporte reporte) {
+        List<Long> nuevos = lote.stream()
+                .map(f -> f.request().getLaboratorioId())
+                .filter(id -> !laboratorios.containsKey(id))
+                .distinct()
+                .toList();
+        if (!nuevos.isEmpty()) {
+            nuevos.forEach(id -> laboratorios.put(id, false));
+            for (Laboratorio lab : laboratorioRepository.findAllById(nuevos)) laboratorios.put(lab.getId(), true);
+        }
+
+        List<MedicamentoImportReader.Fila> validas = new ArrayList<>(lote.size());
+        for (MedicamentoImportReader.Fila f : lote) {
+            Long labId = f.request().getLaboratorioId();
+            if (laboratorios.get(labId)) validas.add(f);
+            else reporte.rechazar(f.linea(), "Laboratorio no encontrado: " + labId);
+        }
+        if (validas.isEmpty()) return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Medicamento> entidades = validas.stream()
+                        .map(f -> MedicamentoMapper.toEntity(f.request(),
+                                laboratorioRepository.getReferenceById(f.request().getLaboratorioId())))
+                        .toList();
+                medicamentoRepository.saveAll(entidades);
+                for (Medicamento m : entidades) medicamentoSearchIndex.indexar(m.getId(), m.getNombre());
+                List<Long> ids = entidades.stream().map(Medicamento::getId).toList();
+                changeLog.registrar(ids);
+                medicamentoCache.invalidar(ids);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            reporte.importadas += validas.size();
+        } catch (DataAccessException | TransactionException ex) {
+            String causa = "No se pudo guardar el lote: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+            for (MedicamentoImportReader.Fila f : validas) reporte.rechazar(f.linea(), causa);
+        }
+    }
+
+    /** Acumulador del resultado de una importación. */
+    private class Reporte {
+        long leidas;
+        long importadas;
+        long rechazadas;
+        final List<ImportacionErrorFila> errores = new ArrayList<>();
+
+        void rechazar(long linea, String error) {
+            rechazadas++;
+            if (errores.size() < maxErrores) errores.add(new ImportacionErrorFila(linea, error));
+        }
+    }
+}
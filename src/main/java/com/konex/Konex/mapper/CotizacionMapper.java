@@ -1,6 +1,7 @@
 package com.konex.Konex.mapper;
 
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.MedicamentoResponse;
 import com.konex.Konex.model.Medicamento;
 
 import java.math.BigDecimal;
@@ -30,6 +31,30 @@ public class CotizacionMapper {
      * @return DTO con los datos de la cotización (stock, precio, total y posibilidad de venta)
      */
     public static CotizacionResponse toResponse(Medicamento med, long cantidad) {
+        BigDecimal total = med.getValorUnitario().multiply(BigDecimal.valueOf(cantidad));
+        boolean puedeVender = cantidad <= med.stockTotal();
+
+        return CotizacionResponse.builder()
+                .medicamentoId(med.getId())
+                .medicamentoNombre(med.getNombre())
+                .cantidadSolicitada(cantidad)
+                .stockDisponible(med.stockTotal())
+                .valorUnitario(med.getValorUnitario())
+                .valorTotal(total)
+                .puedeVender(puedeVender)
+                .build();
+    }
+
+    /**
+     * Construye un {@link CotizacionResponse} a partir de un {@link MedicamentoResponse}
+     * (p. ej., servido desde caché) y la cantidad solicitada, con las mismas reglas que
+     * {@link #toResponse(Medicamento, long)}.
+     *
+     * @param med      medicamento a cotizar; no debe ser {@code null}
+     * @param cantidad cantidad solicitada; se asume {@code ≥ 0}
+     * @return DTO con los datos de la cotización (stock, precio, total y posibilidad de venta)
+     */
+    public static CotizacionResponse toResponse(MedicamentoResponse med, long cantidad) {
         BigDecimal total = med.getValorUnitario().multiply(BigDecimal.valueOf(cantidad));
         boolean puedeVender = cantidad <= med.getCantidadStock();
 
@@ -0,0 +1,29 @@
+package com.konex.Konex.mapper;
+
+import com.konex.Konex.dto.LoteResponse;
+import com.konex.Konex.model.Lote;
+
+/**
+ * Mapper utilitario de la entidad {@link Lote} a su DTO de salida {@link LoteResponse}.
+ * <p>
+ * Solo lee el id del medicamento, por lo que no inicializa la asociación perezosa.
+ * </p>
+ */
+public class LoteMapper {
+
+    /**
+     * Convierte una entidad {@link Lote} a {@link LoteResponse}.
+     *
+     * @param entity entidad del dominio; no debe ser {@code null}
+     * @return DTO con los datos del lote
+     */
+    public static LoteResponse toResponse(Lote entity) {
+        return LoteResponse.builder()
+                .id(entity.getId())
+                .medicamentoId(entity.getMedicamento().getId())
+                .codigo(entity.getCodigo())
+                .fechaVencimiento(entity.getFechaVencimiento())
+                .cantidad(entity.getCantidad())
+                .build();
+    }
+}
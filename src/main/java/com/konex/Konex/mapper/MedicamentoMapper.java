@@ -61,9 +61,12 @@ public class MedicamentoMapper {
                 .laboratorioNombre(entity.getLaboratorio().getNombre())
                 .fechaFabricacion(entity.getFechaFabricacion())
                 .fechaVencimiento(entity.getFechaVencimiento())
-                .cantidadStock(entity.getCantidadStock())
+                .cantidadStock(entity.stockTotal())
+                .stockMinimo(entity.getStockMinimo())
                 .valorUnitario(entity.getValorUnitario())
                 .activo(entity.getActivo())
+                .version(entity.getVersion())
+                .fechaModificacion(entity.getFechaModificacion())
                 .build();
     }
 }
@@ -0,0 +1,33 @@
+package com.konex.Konex.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * {@link StatementInspector} de Hibernate que cuenta las sentencias SQL preparadas en el hilo actual.
+ * <p>
+ * Hibernate lo instancia a partir de la propiedad
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}; el contador es
+ * por hilo para que {@link SentenciasPorPeticionFilter} pueda atribuir las sentencias a cada petición.
+ * No modifica el SQL.
+ * </p>
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    private static final ThreadLocal<int[]> CONTADOR = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        CONTADOR.get()[0]++;
+        return sql;
+    }
+
+    /** Pone a cero el contador del hilo actual. */
+    public static void reiniciar() {
+        CONTADOR.get()[0] = 0;
+    }
+
+    /** @return sentencias preparadas en el hilo actual desde el último {@link #reiniciar()} */
+    public static int actual() {
+        return CONTADOR.get()[0];
+    }
+}
@@ -0,0 +1,51 @@
+package com.konex.Konex.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Registra cuántas sentencias SQL ejecutó cada petición HTTP, por endpoint.
+ * <p>
+ * Publica el resumen de distribución {@value #METRICA} con las etiquetas {@code method} y
+ * {@code uri} (patrón del endpoint, p. ej. {@code /api/ventas/{id}}), a partir de
+ * {@link ContadorSentencias}. Un aumento en este valor delata consultas N+1.
+ * </p>
+ */
+public class SentenciasPorPeticionFilter extends OncePerRequestFilter {
+
+    /** Nombre de la métrica publicada. */
+    public static final String METRICA = "konex.http.server.sql.statements";
+
+    private final MeterRegistry registry;
+
+    public SentenciasPorPeticionFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContadorSentencias.reiniciar();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder(METRICA)
+                    .description("Sentencias SQL ejecutadas por petición")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", patron == null ? "UNKNOWN" : patron.toString())
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(ContadorSentencias.actual());
+        }
+    }
+}
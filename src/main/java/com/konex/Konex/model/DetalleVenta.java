@@ -8,6 +8,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Entidad JPA que representa una línea (detalle) dentro de una {@link Venta}.
@@ -17,10 +19,11 @@ import java.math.BigDecimal;
  * </p>
  * <p><b>Notas de mapeo:</b></p>
  * <ul>
- *   <li><strong>ID_DETALLE</strong>: clave primaria autogenerada.</li>
+ *   <li><strong>ID_DETALLE</strong>: clave primaria generada por la secuencia <code>SEQ_DETALLE_VENTA</code>.</li>
  *   <li>Relación muchos-a-uno con {@link Venta} (columna <strong>ID_VENTA</strong>, carga perezosa).</li>
  *   <li>Relación muchos-a-uno con {@link Medicamento} (columna <strong>ID_MEDICAMENTO</strong>, carga perezosa).</li>
  *   <li>Los importes monetarios usan {@link BigDecimal} con precisión 14 y escala 2.</li>
+ *   <li>Relación uno-a-muchos con {@link DetalleVentaLote}: de qué lotes salieron las unidades (FEFO).</li>
  * </ul>
  *
  * @see Venta
@@ -38,10 +41,16 @@ public class DetalleVenta {
 
     /**
      * Identificador único del detalle (PK).
-     * <p>Corresponde a la columna {@code ID_DETALLE} y se genera con {@link GenerationType#IDENTITY}.</p>
+     * <p>
+     * Corresponde a la columna {@code ID_DETALLE} y se genera con la secuencia
+     * {@code SEQ_DETALLE_VENTA} ({@link GenerationType#SEQUENCE}). A diferencia de
+     * {@link GenerationType#IDENTITY}, la secuencia con {@code allocationSize} permite a Hibernate
+     * agrupar los {@code INSERT} de todas las líneas de una venta en un único batch JDBC.
+     * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_DETALLE_VENTA")
+    @SequenceGenerator(name = "SEQ_DETALLE_VENTA", sequenceName = "SEQ_DETALLE_VENTA", allocationSize = 50)
     @Column(name = "ID_DETALLE", nullable = false)
     private Long id;
 
@@ -92,4 +101,26 @@ public class DetalleVenta {
 
     @Column(name = "VALOR_LINEA", nullable = false, precision = 14, scale = 2)
     private BigDecimal valorLinea;
+
+    /**
+     * Lotes de los que salieron las unidades de esta línea, en orden de vencimiento.
+     * <p>
+     * Relación uno-a-muchos con {@link DetalleVentaLote}, mapeada por el atributo {@code detalle};
+     * se persiste en cascada con la venta. Vacía si la línea se cubrió con stock sin lote.
+     * </p>
+     */
+    @OneToMany(mappedBy = "detalle", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonIgnore
+    @Builder.Default
+    private List<DetalleVentaLote> lotes = new ArrayList<>();
+
+    /**
+     * Registra que {@code cantidad} unidades de esta línea salieron del lote indicado.
+     *
+     * @param loteId   lote consumido
+     * @param cantidad unidades tomadas; {@code > 0}
+     */
+    public void addLote(Long loteId, long cantidad) {
+        lotes.add(DetalleVentaLote.builder().detalle(this).loteId(loteId).cantidad(cantidad).build());
+    }
 }
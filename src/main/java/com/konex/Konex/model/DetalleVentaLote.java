@@ -0,0 +1,71 @@
+package com.konex.Konex.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Entidad JPA que registra cuántas unidades de un {@link DetalleVenta} salieron de cada {@link Lote}.
+ * <p>
+ * Se mapea a la tabla <code>DETALLE_VENTA_LOTE</code>. Una línea puede repartirse entre varios
+ * lotes cuando el primero en vencer no alcanza; las líneas sin lotes (stock sin lote) no tienen filas.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li><strong>ID_DETALLE_LOTE</strong>: clave primaria generada por la secuencia
+ *       <code>SEQ_DETALLE_VENTA_LOTE</code>, para insertarse en el mismo batch JDBC que la venta.</li>
+ *   <li><strong>ID_LOTE</strong>: id del {@link Lote}, sin asociación (no se carga la entidad).</li>
+ * </ul>
+ *
+ * @see DetalleVenta
+ * @see Lote
+ */
+@Entity
+@Table(name = "DETALLE_VENTA_LOTE")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetalleVentaLote {
+
+    /**
+     * Identificador de la asignación (PK).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_DETALLE_VENTA_LOTE")
+    @SequenceGenerator(name = "SEQ_DETALLE_VENTA_LOTE", sequenceName = "SEQ_DETALLE_VENTA_LOTE", allocationSize = 50)
+    @Column(name = "ID_DETALLE_LOTE", nullable = false)
+    private Long id;
+
+    /**
+     * Línea de venta a la que pertenece la asignación.
+     * <p>Columna {@code ID_DETALLE} (no nula) con clave foránea {@code FK_DVL_DETALLE}.</p>
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ID_DETALLE",
+            nullable = false,
+            foreignKey = @ForeignKey(name = "FK_DVL_DETALLE"))
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private DetalleVenta detalle;
+
+    /**
+     * Lote del que salieron las unidades.
+     * <p>Columna {@code ID_LOTE}, no nula.</p>
+     */
+    @Column(name = "ID_LOTE", nullable = false)
+    private Long loteId;
+
+    /**
+     * Unidades tomadas del lote.
+     * <p>Columna {@code CANTIDAD}, no nula.</p>
+     */
+    @Column(name = "CANTIDAD", nullable = false)
+    private Long cantidad;
+}
@@ -0,0 +1,88 @@
+package com.konex.Konex.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA que representa un lote recibido de un {@link Medicamento}, con su propia fecha de
+ * vencimiento y las unidades que aún quedan de él.
+ * <p>
+ * Se mapea a la tabla <code>LOTE</code>. Las ventas consumen los lotes en orden de vencimiento
+ * (<i>FEFO</i>, primero en vencer, primero en salir).
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li><strong>ID_LOTE</strong>: clave primaria generada por la secuencia <code>SEQ_LOTE</code>.</li>
+ *   <li>Relación muchos-a-uno con {@link Medicamento} (columna <strong>ID_MEDICAMENTO</strong>, carga perezosa).</li>
+ *   <li>El índice {@code (ID_MEDICAMENTO, FECHA_VENCIMIENTO, ID_LOTE)} entrega los lotes abiertos
+ *       de un medicamento ya en orden FEFO, sin ordenar en memoria.</li>
+ *   <li>El stock total sigue en {@link Medicamento#getCantidadStock()} (lectura O(1)); la suma de
+ *       {@link #cantidad} de los lotes es a lo sumo ese total, y la diferencia es stock sin lote.</li>
+ * </ul>
+ *
+ * @see Medicamento
+ * @see DetalleVentaLote
+ */
+@Entity
+@Table(name = "LOTE")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Lote {
+
+    /**
+     * Identificador del lote (PK).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_LOTE")
+    @SequenceGenerator(name = "SEQ_LOTE", sequenceName = "SEQ_LOTE", allocationSize = 50)
+    @Column(name = "ID_LOTE", nullable = false)
+    private Long id;
+
+    /**
+     * Medicamento al que pertenece el lote.
+     * <p>Columna {@code ID_MEDICAMENTO} (no nula) con clave foránea {@code FK_LOTE_MEDICAMENTO}.</p>
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ID_MEDICAMENTO",
+            nullable = false,
+            foreignKey = @ForeignKey(name = "FK_LOTE_MEDICAMENTO"))
+    @JsonIgnore
+    private Medicamento medicamento;
+
+    /**
+     * Código del lote asignado por el fabricante.
+     * <p>Columna {@code CODIGO}, no nula, longitud máxima 40.</p>
+     */
+    @Column(name = "CODIGO", nullable = false, length = 40)
+    private String codigo;
+
+    /**
+     * Fecha de vencimiento del lote.
+     * <p>Columna {@code FECHA_VENCIMIENTO}, no nula.</p>
+     */
+    @Column(name = "FECHA_VENCIMIENTO", nullable = false)
+    private LocalDate fechaVencimiento;
+
+    /**
+     * Unidades que quedan del lote; {@code 0} = lote agotado.
+     * <p>Columna {@code CANTIDAD}, no nula. Solo se modifica con {@code UPDATE} condicionales.</p>
+     */
+    @Column(name = "CANTIDAD", nullable = false)
+    private Long cantidad;
+
+    /**
+     * Momento en que se registró el lote.
+     * <p>Columna {@code FECHA_INGRESO}, no nula.</p>
+     */
+    @Column(name = "FECHA_INGRESO", nullable = false)
+    private LocalDateTime fechaIngreso;
+}
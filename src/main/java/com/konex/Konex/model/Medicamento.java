@@ -1,13 +1,16 @@
 package com.konex.Konex.model;
 
+import com.konex.Konex.utils.TextoBusqueda;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 /**
  * Entidad JPA que representa un medicamento gestionado en el inventario.
@@ -18,10 +21,16 @@ import java.time.LocalDate;
  * </p>
  * <p><b>Notas de mapeo:</b></p>
  * <ul>
- *   <li><strong>ID_MEDICAMENTO</strong>: clave primaria autogenerada.</li>
+ *   <li><strong>ID_MEDICAMENTO</strong>: clave primaria generada con la secuencia <code>SEQ_MEDICAMENTO</code>.</li>
  *   <li>Relación muchos-a-uno con {@link Laboratorio} (columna <strong>ID_LABORATORIO</strong>, carga perezosa).</li>
  *   <li>Importes monetarios con {@link BigDecimal} (precisión 14, escala 2).</li>
  *   <li>Campo <code>ACTIVO</code> modelado como entero: 1 = activo, 0 = inactivo.</li>
+ *   <li><strong>NOMBRE_NORMALIZADO</strong>: derivado de <code>NOMBRE</code> para la búsqueda.</li>
+ *   <li><strong>STOCK_BUCKETS</strong>: con valor &gt; 0, el stock se reparte entre esta fila y
+ *       {@link MedicamentoStockBucket}; el disponible es {@link #stockTotal()}.</li>
+ *   <li><strong>VERSION</strong>: bloqueo optimista; los descuentos masivos de stock también la incrementan.</li>
+ *   <li><strong>FECHA_MODIFICACION</strong>: última modificación de la fila, para {@code Last-Modified}.</li>
+ *   <li><strong>STOCK_MINIMO</strong>: punto de reorden opcional para las alertas de stock bajo.</li>
  * </ul>
  *
  * @see Laboratorio
@@ -36,10 +45,13 @@ public class Medicamento {
 
     /**
      * Identificador único del medicamento (PK).
-     * <p>Columna {@code ID_MEDICAMENTO}. Se genera con {@link GenerationType#IDENTITY}.</p>
+     * <p>Columna {@code ID_MEDICAMENTO}. Se genera con la secuencia {@code SEQ_MEDICAMENTO}
+     * ({@link GenerationType#SEQUENCE}) para que la importación masiva del catálogo inserte en
+     * batches JDBC (con {@code IDENTITY} Hibernate inserta fila a fila).</p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_MEDICAMENTO")
+    @SequenceGenerator(name = "SEQ_MEDICAMENTO", sequenceName = "SEQ_MEDICAMENTO", allocationSize = 50)
     @Column(name = "ID_MEDICAMENTO", nullable = false)
     private Long id;
 
@@ -52,6 +64,16 @@ public class Medicamento {
     @Column(name = "NOMBRE", nullable = false, length = 160)
     private String nombre;
 
+    /**
+     * Nombre normalizado para búsqueda (mayúsculas, sin tildes, separadores colapsados).
+     * <p>Columna {@code NOMBRE_NORMALIZADO}, no nula. Se deriva de {@link #nombre} antes de
+     * insertar o actualizar; no debe asignarse manualmente.</p>
+     *
+     * @see TextoBusqueda#normalizar(String)
+     */
+    @Column(name = "NOMBRE_NORMALIZADO", nullable = false, length = 160)
+    private String nombreNormalizado;
+
     /**
      * Laboratorio fabricante del medicamento.
      * <p>
@@ -105,4 +127,95 @@ public class Medicamento {
     @Builder.Default
     @Column(name = "ACTIVO", nullable = false)
     private Integer activo = 1;
+
+    /**
+     * Versión de la fila para el bloqueo optimista.
+     * <p>
+     * Columna {@code VERSION}, no nula. Hibernate la incrementa y la verifica en cada
+     * {@code UPDATE} de la entidad; los {@code UPDATE} masivos de stock
+     * ({@code MedicamentoRepository#descontarStock}, {@code #fijarStock}) la incrementan de forma
+     * explícita, de modo que una edición basada en una lectura anterior a una venta falla en lugar
+     * de sobrescribir el stock descontado. {@code null} solo antes de persistir.
+     * </p>
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
+    /**
+     * Momento de la última modificación de la fila (alta, edición o cambio de stock).
+     * <p>
+     * Columna {@code FECHA_MODIFICACION}, no nula. La fija {@link #antesDeGuardar()} y también los
+     * {@code UPDATE} masivos de stock; junto con {@link #version} sirve de validador HTTP
+     * ({@code Last-Modified}/{@code ETag}) en las lecturas del catálogo. Los descuentos en buckets
+     * actualizan la fecha de su bucket ({@link MedicamentoStockBucket#getFechaModificacion()}).
+     * </p>
+     */
+    @Column(name = "FECHA_MODIFICACION", nullable = false)
+    private LocalDateTime fechaModificacion;
+
+    /**
+     * Punto de reorden del medicamento.
+     * <p>
+     * Columna {@code STOCK_MINIMO}, opcional. Cuando el stock total baja hasta este valor o por
+     * debajo se emite una alerta de stock bajo ({@code AlertasStockBajo}); {@code null} = sin alerta.
+     * </p>
+     */
+    @Column(name = "STOCK_MINIMO")
+    private Long stockMinimo;
+
+    /**
+     * Número de buckets adicionales en que se reparte el stock (modo para medicamentos muy vendidos).
+     * <p>
+     * Columna {@code STOCK_BUCKETS}, no nula. {@code 0} (por defecto) = todo el stock está en
+     * {@link #cantidadStock}; {@code N > 0} = {@link #cantidadStock} es solo el bucket 0 y el resto
+     * está en {@code N} filas de {@link MedicamentoStockBucket}.
+     * </p>
+     */
+    @Builder.Default
+    @Column(name = "STOCK_BUCKETS", nullable = false)
+    private Integer stockBuckets = 0;
+
+    /**
+     * Stock en los buckets adicionales (suma de {@link MedicamentoStockBucket}); {@code 0} si el modo
+     * no está activo. Calculado al cargar la entidad, solo lectura.
+     */
+    @Formula("""
+            (CASE WHEN STOCK_BUCKETS > 0
+                  THEN (SELECT COALESCE(SUM(b.CANTIDAD), 0)
+                          FROM MEDICAMENTO_STOCK_BUCKET b
+                         WHERE b.ID_MEDICAMENTO = ID_MEDICAMENTO)
+                  ELSE 0 END)
+            """)
+    private Long stockEnBuckets;
+
+    /**
+     * Indica si el stock está repartido en buckets.
+     *
+     * @return {@code true} si {@link #stockBuckets} &gt; 0
+     */
+    public boolean tieneBuckets() {
+        return stockBuckets != null && stockBuckets > 0;
+    }
+
+    /**
+     * Stock disponible total: {@link #cantidadStock} más lo repartido en buckets.
+     *
+     * @return unidades disponibles
+     */
+    public long stockTotal() {
+        long base = cantidadStock == null ? 0 : cantidadStock;
+        return base + (stockEnBuckets == null ? 0 : stockEnBuckets);
+    }
+
+    /**
+     * Mantiene {@link #nombreNormalizado} sincronizado con {@link #nombre} y registra la fecha de
+     * modificación.
+     */
+    @PrePersist
+    @PreUpdate
+    void antesDeGuardar() {
+        this.nombreNormalizado = TextoBusqueda.normalizar(nombre);
+        this.fechaModificacion = LocalDateTime.now();
+    }
 }
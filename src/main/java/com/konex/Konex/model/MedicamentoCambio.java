@@ -0,0 +1,56 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA del registro de cambios del catálogo: una fila por medicamento modificado en cada
+ * transacción (alta, edición, inactivación, venta, ajuste o lote).
+ * <p>
+ * Se mapea a la tabla <code>MEDICAMENTO_CAMBIO</code>; solo se inserta y se purga por antigüedad.
+ * La sincronización incremental ({@code GET /api/medicamentos/cambios}) la recorre en orden
+ * {@code (FECHA_HORA, ID_CAMBIO)}, por lo que conviene un índice sobre esas dos columnas.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li><strong>ID_CAMBIO</strong>: clave primaria generada por la secuencia <code>SEQ_MEDICAMENTO_CAMBIO</code>,
+ *       para insertar los cambios de una transacción en batches JDBC.</li>
+ *   <li><strong>ID_MEDICAMENTO</strong>: id del {@link Medicamento}, sin asociación (no se carga la entidad).</li>
+ * </ul>
+ */
+@Entity
+@Table(name = "MEDICAMENTO_CAMBIO")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MedicamentoCambio {
+
+    /**
+     * Identificador del cambio (PK).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_MEDICAMENTO_CAMBIO")
+    @SequenceGenerator(name = "SEQ_MEDICAMENTO_CAMBIO", sequenceName = "SEQ_MEDICAMENTO_CAMBIO", allocationSize = 50)
+    @Column(name = "ID_CAMBIO", nullable = false)
+    private Long id;
+
+    /**
+     * Medicamento modificado.
+     * <p>Columna {@code ID_MEDICAMENTO}, no nula.</p>
+     */
+    @Column(name = "ID_MEDICAMENTO", nullable = false)
+    private Long medicamentoId;
+
+    /**
+     * Momento del cambio.
+     * <p>Columna {@code FECHA_HORA}, no nula.</p>
+     */
+    @Column(name = "FECHA_HORA", nullable = false)
+    private LocalDateTime fechaHora;
+}
@@ -0,0 +1,66 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA de una porción (<i>bucket</i>) del stock de un medicamento muy vendido.
+ * <p>
+ * Se mapea a la tabla <code>MEDICAMENTO_STOCK_BUCKET</code>. Con el modo de buckets activo
+ * ({@link Medicamento#getStockBuckets()} &gt; 0), el stock se reparte entre la fila de
+ * <code>MEDICAMENTO</code> (bucket 0) y {@code STOCK_BUCKETS} filas de esta tabla, y cada venta
+ * descuenta de una sola de ellas: las ventas concurrentes del mismo medicamento dejan de
+ * serializarse sobre un único bloqueo de fila.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li>Clave compuesta {@link MedicamentoStockBucketId} {@code (ID_MEDICAMENTO, NUMERO)}.</li>
+ *   <li>Implementa {@link Persistable} y siempre se considera nueva: las filas se crean al activar el
+ *       modo y luego solo se modifican con {@code UPDATE} atómicos.</li>
+ * </ul>
+ *
+ * @see com.konex.Konex.stock.MedicamentoStockBuckets
+ */
+@Entity
+@Table(name = "MEDICAMENTO_STOCK_BUCKET")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicamentoStockBucket implements Persistable<MedicamentoStockBucketId> {
+
+    /**
+     * Clave compuesta (medicamento, número de bucket).
+     */
+    @EmbeddedId
+    private MedicamentoStockBucketId id;
+
+    /**
+     * Unidades disponibles en este bucket.
+     * <p>Columna {@code CANTIDAD}, no nula, no negativa.</p>
+     */
+    @Column(name = "CANTIDAD", nullable = false)
+    private Long cantidad;
+
+    /**
+     * Momento de la última modificación del bucket.
+     * <p>Columna {@code FECHA_MODIFICACION}, no nula. La actualizan los {@code UPDATE} atómicos de
+     * stock, ya que los descuentos en buckets no modifican la fila de <code>MEDICAMENTO</code>.</p>
+     */
+    @Column(name = "FECHA_MODIFICACION", nullable = false)
+    private LocalDateTime fechaModificacion;
+
+    /**
+     * Los buckets se insertan siempre como nuevos.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Clave primaria compuesta de {@link MedicamentoStockBucket}: {@code (ID_MEDICAMENTO, NUMERO)}.
+ *
+ * @see MedicamentoStockBucket
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicamentoStockBucketId implements Serializable {
+
+    /**
+     * Medicamento al que pertenece el bucket.
+     * <p>Columna {@code ID_MEDICAMENTO}, no nula.</p>
+     */
+    @Column(name = "ID_MEDICAMENTO", nullable = false)
+    private Long medicamentoId;
+
+    /**
+     * Número del bucket, de {@code 1} a {@code STOCK_BUCKETS}; el {@code 0} es la propia fila
+     * de <code>MEDICAMENTO</code>.
+     * <p>Columna {@code NUMERO}, no nula.</p>
+     */
+    @Column(name = "NUMERO", nullable = false)
+    private Integer numero;
+}
@@ -0,0 +1,49 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Entidad JPA del índice invertido de trigramas usado por la búsqueda del catálogo.
+ * <p>
+ * Se mapea a la tabla <code>MEDICAMENTO_TRIGRAMA</code>: una fila por cada trigrama distinto
+ * del nombre normalizado de un medicamento activo. Un índice sobre <code>TRIGRAMA</code> permite
+ * resolver búsquedas por subcadena sin recorrer <code>MEDICAMENTO</code>.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li>Clave compuesta {@link MedicamentoTrigramaId} {@code (ID_MEDICAMENTO, TRIGRAMA)}.</li>
+ *   <li>Implementa {@link Persistable} y siempre se considera nueva: las filas solo se insertan o
+ *       eliminan, nunca se actualizan, y así {@code saveAll} hace {@code persist} en batch sin un
+ *       {@code SELECT} previo por fila.</li>
+ * </ul>
+ *
+ * @see Medicamento
+ * @see com.konex.Konex.utils.TextoBusqueda
+ */
+@Entity
+@Table(name = "MEDICAMENTO_TRIGRAMA")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicamentoTrigrama implements Persistable<MedicamentoTrigramaId> {
+
+    /**
+     * Clave compuesta (medicamento, trigrama).
+     */
+    @EmbeddedId
+    private MedicamentoTrigramaId id;
+
+    /**
+     * Las filas de índice se insertan siempre como nuevas.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Clave primaria compuesta de {@link MedicamentoTrigrama}: {@code (ID_MEDICAMENTO, TRIGRAMA)}.
+ *
+ * @see MedicamentoTrigrama
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicamentoTrigramaId implements Serializable {
+
+    /**
+     * Identificador del medicamento indexado.
+     * <p>Columna {@code ID_MEDICAMENTO}, no nula.</p>
+     */
+    @Column(name = "ID_MEDICAMENTO", nullable = false)
+    private Long medicamentoId;
+
+    /**
+     * Trigrama del nombre normalizado.
+     * <p>Columna {@code TRIGRAMA}, no nula, longitud 3.</p>
+     */
+    @Column(name = "TRIGRAMA", nullable = false, length = 3)
+    private String trigrama;
+}
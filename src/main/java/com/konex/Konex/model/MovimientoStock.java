@@ -0,0 +1,68 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA que registra un movimiento de stock aplicado por un ajuste masivo
+ * (recepción de proveedor, conteo físico, merma).
+ * <p>
+ * Se mapea a la tabla <code>MOVIMIENTO_STOCK</code>; solo se inserta, nunca se actualiza.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li><strong>ID_MOVIMIENTO</strong>: clave primaria generada por la secuencia <code>SEQ_MOVIMIENTO_STOCK</code>,
+ *       para insertar los movimientos de un ajuste en batches JDBC.</li>
+ *   <li><strong>ID_MEDICAMENTO</strong>: id del {@link Medicamento}, sin asociación (no se carga la entidad).</li>
+ * </ul>
+ */
+@Entity
+@Table(name = "MOVIMIENTO_STOCK")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MovimientoStock {
+
+    /**
+     * Identificador del movimiento (PK).
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_MOVIMIENTO_STOCK")
+    @SequenceGenerator(name = "SEQ_MOVIMIENTO_STOCK", sequenceName = "SEQ_MOVIMIENTO_STOCK", allocationSize = 50)
+    @Column(name = "ID_MOVIMIENTO", nullable = false)
+    private Long id;
+
+    /**
+     * Medicamento afectado.
+     * <p>Columna {@code ID_MEDICAMENTO}, no nula.</p>
+     */
+    @Column(name = "ID_MEDICAMENTO", nullable = false)
+    private Long medicamentoId;
+
+    /**
+     * Unidades sumadas (positivo) o restadas (negativo).
+     * <p>Columna {@code DELTA}, no nula.</p>
+     */
+    @Column(name = "DELTA", nullable = false)
+    private Long delta;
+
+    /**
+     * Causa del movimiento.
+     * <p>Columna {@code MOTIVO}, longitud máxima 100.</p>
+     */
+    @Column(name = "MOTIVO", length = 100)
+    private String motivo;
+
+    /**
+     * Momento en que se aplicó.
+     * <p>Columna {@code FECHA_HORA}, no nula.</p>
+     */
+    @Column(name = "FECHA_HORA", nullable = false)
+    private LocalDateTime fechaHora;
+}
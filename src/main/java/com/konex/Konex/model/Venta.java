@@ -45,10 +45,15 @@ import java.util.List;
 public class Venta {
     /**
      * Identificador único de la venta (PK).
-     * <p>Columna {@code ID_VENTA}. Se genera con {@link GenerationType#IDENTITY}.</p>
+     * <p>
+     * Columna {@code ID_VENTA}. Se genera con la secuencia {@code SEQ_VENTA}
+     * ({@link GenerationType#SEQUENCE}) para que las ventas de un mismo lote (modo
+     * <i>group commit</i>) se inserten en un único batch JDBC, igual que sus detalles.
+     * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_VENTA")
+    @SequenceGenerator(name = "SEQ_VENTA", sequenceName = "SEQ_VENTA", allocationSize = 50)
     @Column(name = "ID_VENTA", nullable = false)
     private Long id;
     /**
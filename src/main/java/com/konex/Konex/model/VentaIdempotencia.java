@@ -0,0 +1,79 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad JPA que registra las claves de idempotencia ({@code Idempotency-Key}) de
+ * {@code POST /api/ventas}.
+ * <p>
+ * Se mapea a la tabla <code>VENTA_IDEMPOTENCIA</code>. La fila se inserta al inicio de la
+ * transacción de la venta (la PK bloquea a un duplicado concurrente hasta el commit) y se
+ * completa con el id de la venta creada; si la venta falla, la fila se revierte con ella.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li><strong>CLAVE</strong>: clave enviada por el cliente (PK).</li>
+ *   <li><strong>HUELLA</strong>: SHA-256 de las líneas de la venta; detecta la reutilización de
+ *       una clave con otra solicitud.</li>
+ *   <li>Implementa {@link Persistable} y siempre se considera nueva: {@code saveAndFlush} hace
+ *       {@code INSERT} y una clave repetida falla por la PK.</li>
+ * </ul>
+ */
+@Entity
+@Table(name = "VENTA_IDEMPOTENCIA")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaIdempotencia implements Persistable<String> {
+
+    /**
+     * Clave de idempotencia enviada por el cliente.
+     * <p>Columna {@code CLAVE}, PK, longitud máxima 100.</p>
+     */
+    @Id
+    @Column(name = "CLAVE", nullable = false, length = 100)
+    private String clave;
+
+    /**
+     * Huella (SHA-256 en hexadecimal) de la solicitud original.
+     * <p>Columna {@code HUELLA}, no nula, longitud 64.</p>
+     */
+    @Column(name = "HUELLA", nullable = false, length = 64)
+    private String huella;
+
+    /**
+     * Venta creada por la solicitud original.
+     * <p>Columna {@code ID_VENTA}; nula mientras la venta está en curso.</p>
+     */
+    @Column(name = "ID_VENTA")
+    private Long ventaId;
+
+    /**
+     * Momento de registro; determina la expiración de la clave.
+     * <p>Columna {@code FECHA_CREACION}, no nula.</p>
+     */
+    @Column(name = "FECHA_CREACION", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    /**
+     * Las claves se insertan siempre como nuevas.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    /** @return la clave (identificador de {@link Persistable}) */
+    @Override
+    public String getId() {
+        return clave;
+    }
+}
@@ -0,0 +1,83 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+
+/**
+ * Entidad JPA del resumen diario de ventas por medicamento (tabla de <i>rollup</i>).
+ * <p>
+ * Se mapea a la tabla <code>VENTA_RESUMEN_DIARIO</code>: una fila por día y medicamento con las
+ * unidades, el valor y el número de líneas vendidas. Se mantiene de forma incremental en la
+ * misma transacción que registra cada venta, de modo que los reportes por rango no necesitan
+ * recorrer <code>DETALLE_VENTA</code>.
+ * </p>
+ * <p><b>Notas de mapeo:</b></p>
+ * <ul>
+ *   <li>Clave compuesta {@link VentaResumenDiarioId} {@code (FECHA, ID_MEDICAMENTO)}.</li>
+ *   <li>Implementa {@link Persistable} y siempre se considera nueva: solo se inserta la primera venta
+ *       del día de cada medicamento; las siguientes acumulan con un {@code UPDATE} atómico.</li>
+ * </ul>
+ *
+ * @see com.konex.Konex.repository.VentaResumenDiarioRepository
+ */
+@Entity
+@Table(name = "VENTA_RESUMEN_DIARIO")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaResumenDiario implements Persistable<VentaResumenDiarioId> {
+
+    /**
+     * Clave compuesta (día, medicamento).
+     */
+    @EmbeddedId
+    private VentaResumenDiarioId id;
+
+    /**
+     * Unidades vendidas en el día.
+     * <p>Columna {@code UNIDADES}, no nula.</p>
+     */
+    @Column(name = "UNIDADES", nullable = false)
+    private Long unidades;
+
+    /**
+     * Valor vendido en el día.
+     * <p>Columna {@code VALOR_TOTAL}, no nula, con precisión 16 y escala 2.</p>
+     */
+    @Column(name = "VALOR_TOTAL", nullable = false, precision = 16, scale = 2)
+    private BigDecimal valorTotal;
+
+    /**
+     * Número de líneas de venta acumuladas.
+     * <p>Columna {@code LINEAS}, no nula.</p>
+     */
+    @Column(name = "LINEAS", nullable = false)
+    private Long lineas;
+
+    /**
+     * Suma una línea de venta al resumen.
+     *
+     * @param cantidad   unidades de la línea
+     * @param valorLinea importe de la línea
+     */
+    public void acumular(long cantidad, BigDecimal valorLinea) {
+        this.unidades += cantidad;
+        this.valorTotal = this.valorTotal.add(valorLinea);
+        this.lineas++;
+    }
+
+    /**
+     * Las filas de resumen se insertan siempre como nuevas.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.konex.Konex.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Clave primaria compuesta de {@link VentaResumenDiario}: {@code (FECHA, ID_MEDICAMENTO)}.
+ *
+ * @see VentaResumenDiario
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaResumenDiarioId implements Serializable {
+
+    /**
+     * Día calendario de las ventas acumuladas.
+     * <p>Columna {@code FECHA}, no nula.</p>
+     */
+    @Column(name = "FECHA", nullable = false)
+    private LocalDate fecha;
+
+    /**
+     * Identificador del medicamento vendido.
+     * <p>Columna {@code ID_MEDICAMENTO}, no nula.</p>
+     */
+    @Column(name = "ID_MEDICAMENTO", nullable = false)
+    private Long medicamentoId;
+}
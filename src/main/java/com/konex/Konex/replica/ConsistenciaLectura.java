@@ -0,0 +1,58 @@
+package com.konex.Konex.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Fuerza que las lecturas del hilo actual se hagan en el primario aunque su transacción sea de
+ * solo lectura (ver {@link EnrutadorLecturasDataSource}).
+ * <p>
+ * Lo usan {@link LecturaPropiaFilter} (el cliente acaba de escribir y debe ver su propio cambio) y
+ * las lecturas que pueblan cachés compartidas, que no deben guardar un estado anterior al último
+ * commit. La marca solo tiene efecto si se fija antes de la primera consulta de la transacción:
+ * la conexión se elige una vez, al ejecutar esa consulta. Sin réplicas configuradas no hace nada.
+ * </p>
+ */
+public final class ConsistenciaLectura {
+
+    private static final ThreadLocal<Boolean> PRIMARIO = new ThreadLocal<>();
+
+    private ConsistenciaLectura() {
+    }
+
+    /**
+     * Ejecuta {@code lectura} con las consultas dirigidas al primario.
+     *
+     * @param lectura lectura a ejecutar
+     * @param <T>     tipo del resultado
+     * @return el resultado de {@code lectura}
+     */
+    public static <T> T enPrimario(Supplier<T> lectura) {
+        Boolean previo = marcarPrimario();
+        try {
+            return lectura.get();
+        } finally {
+            restaurar(previo);
+        }
+    }
+
+    /** @return {@code true} si las lecturas del hilo actual deben ir al primario */
+    public static boolean requierePrimario() {
+        return Boolean.TRUE.equals(PRIMARIO.get());
+    }
+
+    /** Marca el hilo actual hasta {@link #restaurar(Boolean)}; devuelve la marca anterior. */
+    static Boolean marcarPrimario() {
+        Boolean previo = PRIMARIO.get();
+        PRIMARIO.set(Boolean.TRUE);
+        return previo;
+    }
+
+    /** Restaura la marca devuelta por {@link #marcarPrimario()}. */
+    static void restaurar(Boolean previo) {
+        if (previo == null) {
+            PRIMARIO.remove();
+        } else {
+            PRIMARIO.set(previo);
+        }
+    }
+}
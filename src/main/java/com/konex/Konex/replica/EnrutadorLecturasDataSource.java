@@ -0,0 +1,62 @@
+package com.konex.Konex.replica;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code DataSource} que envía las transacciones de solo lectura a las réplicas y todo lo demás al
+ * primario.
+ * <p>
+ * Una conexión va a una réplica apta ({@link MonitorReplicas#siguienteApta()}, en turno rotativo)
+ * solo si se cumplen todas estas condiciones:
+ * </p>
+ * <ul>
+ *   <li>la transacción en curso es {@code @Transactional(readOnly = true)};</li>
+ *   <li>la atiende un hilo de una petición HTTP. Los hilos internos (instantánea, SSE, alertas)
+ *       reaccionan a commits recién hechos y leen del primario;</li>
+ *   <li>el hilo no está marcado con {@link ConsistenciaLectura}, que se usa para leer las escrituras
+ *       propias y para poblar cachés.</li>
+ * </ul>
+ * <p>
+ * Si ninguna réplica es apta, la lectura va al primario. Debe usarse envuelto en un
+ * {@link LazyConnectionDataSourceProxy}: así la conexión se pide en la primera sentencia, cuando
+ * Spring ya registró que la transacción es de solo lectura, y no al comenzarla.
+ * </p>
+ */
+public class EnrutadorLecturasDataSource extends AbstractRoutingDataSource {
+
+    /** Clave del primario entre los destinos. */
+    static final String PRIMARIO = "primario";
+
+    private final MonitorReplicas monitor;
+
+    /**
+     * @param primario base primaria
+     * @param monitor  salud de las réplicas (y sus {@code DataSource})
+     */
+    public EnrutadorLecturasDataSource(DataSource primario, MonitorReplicas monitor) {
+        this.monitor = monitor;
+        Map<Object, Object> destinos = new HashMap<>(monitor.replicas());
+        destinos.put(PRIMARIO, primario);
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primario);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || RequestContextHolder.getRequestAttributes() == null
+                || ConsistenciaLectura.requierePrimario()) {
+            return PRIMARIO;
+        }
+        String replica = monitor.siguienteApta();
+        return replica != null ? replica : PRIMARIO;
+    }
+}
@@ -0,0 +1,80 @@
+package com.konex.Konex.replica;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Lectura de las escrituras propias (<i>read-your-writes</i>) con réplicas de lectura.
+ * <p>
+ * Cada escritura de un cliente ({@code POST}, {@code PUT}, {@code PATCH} o {@code DELETE}, p. ej.
+ * una venta) le deja la cookie {@value #COOKIE} con el momento en que empezó la escritura. Durante
+ * la ventana siguiente ({@code konex.replica.max-lag} más {@code konex.replica.check-interval}, el
+ * mayor atraso posible de una réplica apta), sus peticiones leen del primario
+ * ({@link ConsistenciaLectura}), porque una réplica apta podría no tener aún la venta. Pasada la
+ * ventana, cualquier réplica apta ya la tiene y el cliente vuelve a leer de ellas. Los demás
+ * clientes no se ven afectados.
+ * </p>
+ */
+public class LecturaPropiaFilter extends OncePerRequestFilter {
+
+    /** Cookie con el momento (epoch en milisegundos) de la última escritura del cliente. */
+    public static final String COOKIE = "KONEX_ESCRITURA";
+
+    private final long ventanaMillis;
+
+    /**
+     * @param ventana tiempo durante el que el cliente lee del primario tras escribir
+     */
+    public LecturaPropiaFilter(Duration ventana) {
+        this.ventanaMillis = ventana.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long ahora = System.currentTimeMillis();
+        boolean escritura = !HttpMethod.GET.matches(request.getMethod())
+                && !HttpMethod.HEAD.matches(request.getMethod())
+                && !HttpMethod.OPTIONS.matches(request.getMethod());
+        if (escritura) {
+            // Antes de la cadena: después la respuesta puede estar ya confirmada
+            Cookie cookie = new Cookie(COOKIE, Long.toString(ahora));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (ventanaMillis + 999) / 1000));
+            response.addCookie(cookie);
+        }
+        if (!escritura && !escribioHace(request, ahora)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Boolean previo = ConsistenciaLectura.marcarPrimario();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ConsistenciaLectura.restaurar(previo);
+        }
+    }
+
+    private boolean escribioHace(HttpServletRequest request, long ahora) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return false;
+        for (Cookie c : cookies) {
+            if (!COOKIE.equals(c.getName())) continue;
+            try {
+                return ahora - Long.parseLong(c.getValue()) <= ventanaMillis;
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
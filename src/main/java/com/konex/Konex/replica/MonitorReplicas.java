@@ -0,0 +1,142 @@
+package com.konex.Konex.replica;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Salud y retraso de las réplicas de lectura.
+ * <p>
+ * Cada {@code konex.replica.check-interval}, un hilo propio escribe la hora actual en la tabla
+ * {@code REPLICA_LATIDO} del primario y lee en cada réplica el último latido que le llegó. Una
+ * réplica es apta si responde y su latido tiene como mucho {@code konex.replica.max-lag} de
+ * antigüedad: sus datos no están más atrasados que eso. Las demás quedan fuera de
+ * {@link #siguienteApta()} hasta la siguiente verificación, y si ninguna es apta las lecturas van al
+ * primario. Antes de la primera verificación tampoco se usa ninguna réplica.
+ * </p>
+ * <p>
+ * {@code max-lag} debe superar {@code check-interval}: el latido más reciente de una réplica al día
+ * es el de la verificación anterior. Con varios nodos todos escriben el latido, así que la
+ * diferencia de reloj entre ellos se suma al retraso medido.
+ * </p>
+ */
+public class MonitorReplicas implements DisposableBean {
+
+    /** Réplicas aptas para lecturas. */
+    public static final String METRICA_APTAS = "konex.replica.healthy";
+
+    private static final String LEER_LATIDO = "SELECT FECHA_HORA FROM REPLICA_LATIDO WHERE ID_LATIDO = 1";
+    private static final String ACTUALIZAR_LATIDO = "UPDATE REPLICA_LATIDO SET FECHA_HORA = ? WHERE ID_LATIDO = 1";
+    private static final String INSERTAR_LATIDO = "INSERT INTO REPLICA_LATIDO (ID_LATIDO, FECHA_HORA) VALUES (1, ?)";
+
+    private final JdbcTemplate primario;
+    private final Map<String, DataSource> replicas;
+    private final Map<String, JdbcTemplate> consultas = new LinkedHashMap<>();
+    private final Duration maxRetraso;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final ScheduledExecutorService verificador;
+    private volatile List<String> aptas = List.of();
+
+    /**
+     * @param primario   base primaria (escritura del latido)
+     * @param replicas   réplicas por nombre, en orden de configuración
+     * @param maxRetraso retraso máximo tolerado de una réplica
+     * @param intervalo  cada cuánto se verifican las réplicas
+     * @param registry   registro de métricas
+     */
+    public MonitorReplicas(DataSource primario, Map<String, DataSource> replicas, Duration maxRetraso,
+                           Duration intervalo, MeterRegistry registry) {
+        this.primario = new JdbcTemplate(primario);
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        replicas.forEach((nombre, ds) -> {
+            JdbcTemplate jdbc = new JdbcTemplate(ds);
+            jdbc.setQueryTimeout((int) Math.max(1, intervalo.toSeconds()));
+            consultas.put(nombre, jdbc);
+        });
+        this.maxRetraso = maxRetraso;
+
+        Gauge.builder(METRICA_APTAS, this, m -> m.aptas.size())
+                .description("Réplicas de lectura que responden dentro del retraso tolerado")
+                .register(registry);
+
+        this.verificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "konex-replicas-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        verificador.scheduleWithFixedDelay(this::verificar, 0, intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lee el latido de cada réplica, recalcula las aptas y escribe un latido nuevo en el primario.
+     */
+    public void verificar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<String> nuevas = new ArrayList<>();
+        consultas.forEach((nombre, jdbc) -> {
+            try {
+                LocalDateTime latido = jdbc.queryForObject(LEER_LATIDO, LocalDateTime.class);
+                if (latido != null && !latido.plus(maxRetraso).isBefore(ahora)) nuevas.add(nombre);
+            } catch (DataAccessException ex) {
+                // Réplica caída o sin latido: queda fuera hasta la siguiente verificación
+            }
+        });
+        aptas = List.copyOf(nuevas);
+        try {
+            if (primario.update(ACTUALIZAR_LATIDO, ahora) == 0) primario.update(INSERTAR_LATIDO, ahora);
+        } catch (DataAccessException ex) {
+            // Sin latidos nuevos las réplicas superan el retraso y las lecturas vuelven al primario
+        }
+    }
+
+    /**
+     * Siguiente réplica apta, en turno rotativo.
+     *
+     * @return nombre de la réplica, o {@code null} si ninguna es apta
+     */
+    public String siguienteApta() {
+        List<String> actuales = aptas;
+        if (actuales.isEmpty()) return null;
+        return actuales.get(Math.floorMod(turno.getAndIncrement(), actuales.size()));
+    }
+
+    /**
+     * @return réplicas configuradas por nombre
+     */
+    public Map<String, DataSource> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return réplicas aptas según la última verificación
+     */
+    public List<String> aptas() {
+        return aptas;
+    }
+
+    /**
+     * Detiene la verificación y cierra los pools de las réplicas al cerrar el contexto.
+     */
+    @Override
+    public void destroy() throws Exception {
+        verificador.shutdownNow();
+        for (DataSource ds : replicas.values()) {
+            if (ds instanceof AutoCloseable pool) pool.close();
+        }
+    }
+}
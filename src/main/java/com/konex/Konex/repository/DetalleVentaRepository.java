@@ -1,30 +1,77 @@
 package com.konex.Konex.repository;
 
+import com.konex.Konex.dto.ReporteVentaFila;
 import com.konex.Konex.model.DetalleVenta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 /**
  * Repositorio Spring Data JPA para la entidad {@link DetalleVenta}.
  * <p>
  * Expone las operaciones CRUD básicas, así como paginación y ordenación,
- * heredadas de {@link JpaRepository}. Puede ampliarse con consultas derivadas
- * por nombre de método o con consultas JPQL nativas mediante {@code @Query}
- * para soportar reportes y agregaciones (por medicamento, por venta, por rango
- * de fechas, etc.).
+ * heredadas de {@link JpaRepository}, y agregaciones {@code GROUP BY} sobre las
+ * líneas de venta (por día, mes, medicamento y laboratorio) calculadas en la base de datos.
  * </p>
  *
- * <p><b>Ejemplos de extensiones futuras:</b></p>
- * <pre>{@code
- * // Listar detalles por venta
- * List<DetalleVenta> findByVentaId(Long ventaId);
- *
- * // Listar detalles por medicamento
- * List<DetalleVenta> findByMedicamentoId(Long medicamentoId);
- *
- * // Total vendido por medicamento (ejemplo JPQL)
- * @Query("select coalesce(sum(d.valorLinea), 0) from DetalleVenta d where d.medicamento.id = :id")
- * BigDecimal totalVendidoPorMedicamento(@Param("id") Long medicamentoId);
- * }</pre>
+ * <p><b>Uso:</b> los reportes se sirven normalmente desde
+ * {@link VentaResumenDiarioRepository}; estas consultas recorren las líneas del rango y
+ * sirven para conciliar el resumen con el detalle.</p>
  */
 public interface DetalleVentaRepository extends JpaRepository<DetalleVenta, Long> {
-    // Métodos adicionales si luego necesitas reportes por medicamento, etc.
+
+    /**
+     * Totales por día del rango, calculados sobre las líneas de venta.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      YEAR(v.fechaHora), MONTH(v.fechaHora), DAY(v.fechaHora),
+                      SUM(d.cantidad), SUM(d.valorLinea), COUNT(d))
+           FROM DetalleVenta d JOIN d.venta v
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+           GROUP BY YEAR(v.fechaHora), MONTH(v.fechaHora), DAY(v.fechaHora)
+           ORDER BY YEAR(v.fechaHora), MONTH(v.fechaHora), DAY(v.fechaHora)
+           """)
+    List<ReporteVentaFila> totalesPorDia(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Totales por mes del rango, calculados sobre las líneas de venta.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      YEAR(v.fechaHora), MONTH(v.fechaHora), SUM(d.cantidad), SUM(d.valorLinea), COUNT(d))
+           FROM DetalleVenta d JOIN d.venta v
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+           GROUP BY YEAR(v.fechaHora), MONTH(v.fechaHora)
+           ORDER BY YEAR(v.fechaHora), MONTH(v.fechaHora)
+           """)
+    List<ReporteVentaFila> totalesPorMes(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Totales por medicamento del rango, de mayor a menor valor.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      m.id, m.nombre, SUM(d.cantidad), SUM(d.valorLinea), COUNT(d))
+           FROM DetalleVenta d JOIN d.venta v JOIN d.medicamento m
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+           GROUP BY m.id, m.nombre
+           ORDER BY SUM(d.valorLinea) DESC, m.id
+           """)
+    List<ReporteVentaFila> totalesPorMedicamento(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Totales por laboratorio del rango, de mayor a menor valor.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      l.id, l.nombre, SUM(d.cantidad), SUM(d.valorLinea), COUNT(d))
+           FROM DetalleVenta d JOIN d.venta v JOIN d.medicamento m JOIN m.laboratorio l
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+           GROUP BY l.id, l.nombre
+           ORDER BY SUM(d.valorLinea) DESC, l.id
+           """)
+    List<ReporteVentaFila> totalesPorLaboratorio(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
 }
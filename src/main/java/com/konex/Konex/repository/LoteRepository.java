@@ -0,0 +1,69 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.Lote;
+import com.konex.Konex.stock.LoteDisponible;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repositorio de los lotes de medicamentos ({@link Lote}).
+ * <p>
+ * Las consultas de lotes abiertos recorren el índice {@code (ID_MEDICAMENTO, FECHA_VENCIMIENTO, ID_LOTE)}
+ * en orden FEFO y se cortan en el tamaño de página pedido, de modo que su costo no depende del
+ * número de lotes abiertos del medicamento.
+ * </p>
+ */
+public interface LoteRepository extends JpaRepository<Lote, Long> {
+
+    /**
+     * Lotes con unidades de un medicamento, del primero al último en vencer (empates por id).
+     *
+     * @param medicamentoId medicamento
+     * @param pageable      cuántos lotes leer (se usa siempre la primera página)
+     * @return proyecciones de los lotes abiertos, en orden FEFO
+     */
+    @Query("""
+           SELECT new com.konex.Konex.stock.LoteDisponible(l.id, l.cantidad)
+             FROM Lote l
+            WHERE l.medicamento.id = :medicamentoId
+              AND l.cantidad > 0
+            ORDER BY l.fechaVencimiento, l.id
+           """)
+    List<LoteDisponible> abiertosFefo(@Param("medicamentoId") Long medicamentoId, Pageable pageable);
+
+    /**
+     * Lotes con unidades de un medicamento en orden FEFO, como entidades (para consulta).
+     *
+     * @param medicamentoId medicamento
+     * @return lotes abiertos, del primero al último en vencer
+     */
+    @Query("""
+           SELECT l FROM Lote l
+            WHERE l.medicamento.id = :medicamentoId
+              AND l.cantidad > 0
+            ORDER BY l.fechaVencimiento, l.id
+           """)
+    List<Lote> listarAbiertos(@Param("medicamentoId") Long medicamentoId);
+
+    /**
+     * Descuenta unidades de un lote solo si le alcanzan, con la misma semántica que
+     * {@link MedicamentoRepository#descontarStock(Long, long)}.
+     *
+     * @param loteId   lote
+     * @param cantidad unidades a descontar; se asume {@code > 0}
+     * @return {@code 1} si se descontó, {@code 0} si el lote ya no tiene suficiente
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+           UPDATE Lote l
+              SET l.cantidad = l.cantidad - :cantidad
+            WHERE l.id = :loteId
+              AND l.cantidad >= :cantidad
+           """)
+    int descontar(@Param("loteId") Long loteId, @Param("cantidad") long cantidad);
+}
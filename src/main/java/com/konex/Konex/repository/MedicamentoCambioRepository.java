@@ -0,0 +1,49 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.MedicamentoCambio;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio Spring Data JPA del registro de cambios del catálogo ({@link MedicamentoCambio}).
+ * <p>Las lecturas y la purga recorren <code>(FECHA_HORA, ID_CAMBIO)</code>, que conviene indexar.</p>
+ */
+public interface MedicamentoCambioRepository extends JpaRepository<MedicamentoCambio, Long> {
+
+    /**
+     * Cambios posteriores a la posición {@code (fecha, id)} y no más recientes que {@code hasta},
+     * en orden {@code (fechaHora, id)} (<i>keyset</i>, sin {@code OFFSET}).
+     *
+     * @param fecha    fecha del último cambio entregado
+     * @param id       id del último cambio entregado
+     * @param hasta    fecha máxima a entregar
+     * @param pageable solo se usa el tamaño
+     * @return siguientes cambios
+     */
+    @Query("""
+           SELECT c FROM MedicamentoCambio c
+           WHERE (c.fechaHora > :fecha OR (c.fechaHora = :fecha AND c.id > :id))
+             AND c.fechaHora <= :hasta
+           ORDER BY c.fechaHora, c.id
+           """)
+    List<MedicamentoCambio> siguientes(@Param("fecha") LocalDateTime fecha,
+                                       @Param("id") Long id,
+                                       @Param("hasta") LocalDateTime hasta,
+                                       Pageable pageable);
+
+    /**
+     * Elimina los cambios anteriores a la fecha indicada.
+     *
+     * @param limite fecha de corte
+     * @return filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM MedicamentoCambio c WHERE c.fechaHora < :limite")
+    int purgar(@Param("limite") LocalDateTime limite);
+}
@@ -1,10 +1,19 @@
 package com.konex.Konex.repository;
 
+import com.konex.Konex.alerting.NivelStock;
 import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.stream.EstadoStock;
+import com.konex.Konex.utils.ValidadorMedicamento;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 /**
  * Repositorio Spring Data JPA para la entidad {@link Medicamento}.
  * <p>
@@ -19,7 +28,7 @@ import org.springframework.data.repository.query.Param;
  *   <li>Crear índice sobre <code>ACTIVO</code> si la mayoría de consultas filtran por este campo.</li>
  * </ul>
  */
-public interface MedicamentoRepository extends JpaRepository<Medicamento, Long> {
+public interface MedicamentoRepository extends JpaRepository<Medicamento, Long>, MedicamentoStockBatchRepository {
 
 
     /**
@@ -41,4 +50,354 @@ public interface MedicamentoRepository extends JpaRepository<Medicamento, Long>
                   UPPER(m.nombre) LIKE CONCAT('%', UPPER(:nombre), '%'))
            """)
     Page<Medicamento> buscar(@Param("nombre") String nombre, Pageable pageable);
+
+    /**
+     * Obtiene una página de medicamentos activos cuyo nombre normalizado empieza por el prefijo.
+     * <p>
+     * Se usa para consultas demasiado cortas para el índice de trigramas; al ser un
+     * {@code LIKE 'prefijo%'} sobre <code>NOMBRE_NORMALIZADO</code>, aprovecha su índice.
+     * El {@code ESCAPE} es explícito porque el que Hibernate agrega por defecto ({@code ''}) en H2 es
+     * {@code NULL} en modo Oracle y anula la comparación; el texto normalizado solo tiene letras,
+     * dígitos y espacios, así que nunca contiene el carácter de escape.
+     * </p>
+     *
+     * @param prefijo  texto ya normalizado (ver {@code TextoBusqueda#normalizar})
+     * @param pageable información de paginación y ordenamiento
+     * @return página con los medicamentos que cumplen el filtro
+     */
+    @Query("""
+           SELECT m
+           FROM Medicamento m
+           WHERE m.activo = 1
+             AND m.nombreNormalizado LIKE CONCAT(:prefijo, '%') ESCAPE '!'
+           """)
+    Page<Medicamento> buscarPorPrefijo(@Param("prefijo") String prefijo, Pageable pageable);
+
+    /**
+     * Obtiene varios medicamentos por id con su laboratorio en una sola consulta.
+     * No garantiza orden; el llamador reordena según sus ids.
+     *
+     * @param ids identificadores de los medicamentos
+     * @return medicamentos encontrados con {@code laboratorio} inicializado
+     */
+    @EntityGraph(attributePaths = "laboratorio")
+    List<Medicamento> findWithLaboratorioByIdIn(Collection<Long> ids);
+
+    /**
+     * Recorre el catálogo por <i>keyset</i> sobre el id (activos e inactivos).
+     * Útil para procesos por lotes como la reconstrucción del índice de búsqueda.
+     *
+     * @param id       último id procesado ({@code 0} para empezar)
+     * @param pageable solo se usa el tamaño del lote
+     * @return siguiente lote en orden ascendente de id
+     */
+    List<Medicamento> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Recorre los medicamentos activos por <i>keyset</i> sobre el id, con su laboratorio en la
+     * misma consulta. Lo usa la generación de la instantánea del catálogo.
+     *
+     * @param activo   {@code 1} para los activos
+     * @param id       último id procesado ({@code 0} para empezar)
+     * @param pageable solo se usa el tamaño del lote
+     * @return siguiente lote en orden ascendente de id
+     */
+    @EntityGraph(attributePaths = "laboratorio")
+    List<Medicamento> findByActivoAndIdGreaterThanOrderByIdAsc(Integer activo, Long id, Pageable pageable);
+
+    /**
+     * Paginación por <i>keyset</i>: primera página de medicamentos activos cuyo nombre normalizado
+     * empieza por el prefijo, en orden {@code (nombre, id)} y con el laboratorio cargado en la misma
+     * consulta. No ejecuta {@code COUNT}.
+     *
+     * @param prefijo  texto ya normalizado (ver {@code TextoBusqueda#normalizar});
+     *                 {@code null} o vacío para todos
+     * @param pageable solo se usa el tamaño (primera página, sin orden adicional)
+     * @return medicamentos de la primera página
+     */
+    @Query("""
+           SELECT m
+           FROM Medicamento m JOIN FETCH m.laboratorio
+           WHERE m.activo = 1
+             AND (:prefijo IS NULL OR :prefijo = '' OR
+                  m.nombreNormalizado LIKE CONCAT(:prefijo, '%') ESCAPE '!')
+           ORDER BY m.nombre, m.id
+           """)
+    List<Medicamento> buscarPrimeros(@Param("prefijo") String prefijo, Pageable pageable);
+
+    /**
+     * Paginación por <i>keyset</i>: medicamentos activos posteriores al cursor
+     * {@code (nombreCursor, idCursor)} en orden {@code (nombre, id)}, con el mismo filtro por prefijo
+     * que {@link #buscarPrimeros(String, Pageable)}.
+     * <p>
+     * El predicado {@code nombre >= :nombreCursor} permite un acceso por rango sobre el índice
+     * de {@code NOMBRE}, por lo que una página profunda cuesta lo mismo que la primera.
+     * </p>
+     *
+     * @param prefijo      texto ya normalizado; {@code null} o vacío para todos
+     * @param nombreCursor nombre del último medicamento entregado
+     * @param idCursor     id del último medicamento entregado
+     * @param pageable     solo se usa el tamaño (primera página, sin orden adicional)
+     * @return medicamentos de la página siguiente
+     */
+    @Query("""
+           SELECT m
+           FROM Medicamento m JOIN FETCH m.laboratorio
+           WHERE m.activo = 1
+             AND (:prefijo IS NULL OR :prefijo = '' OR
+                  m.nombreNormalizado LIKE CONCAT(:prefijo, '%') ESCAPE '!')
+             AND m.nombre >= :nombreCursor
+             AND (m.nombre > :nombreCursor OR m.id > :idCursor)
+           ORDER BY m.nombre, m.id
+           """)
+    List<Medicamento> buscarDespuesDe(@Param("prefijo") String prefijo,
+                                      @Param("nombreCursor") String nombreCursor,
+                                      @Param("idCursor") Long idCursor,
+                                      Pageable pageable);
+
+    /**
+     * Paginación por <i>keyset</i>: primera página de medicamentos activos que comparten al menos
+     * {@code minimo} trigramas con la consulta, en orden {@code (nombre, id)}.
+     * <p>
+     * Los candidatos salen del índice de trigramas (<code>IX_MT_TRIGRAMA</code>), igual que en
+     * {@link MedicamentoTrigramaRepository#buscarIds}; a diferencia de aquella, el orden es el del
+     * cursor y no el número de coincidencias.
+     * </p>
+     *
+     * @param trigramas trigramas distintos de la consulta normalizada
+     * @param minimo    coincidencias mínimas requeridas
+     * @param pageable  solo se usa el tamaño (primera página, sin orden adicional)
+     * @return medicamentos de la primera página
+     */
+    @Query("""
+           SELECT m
+           FROM Medicamento m JOIN FETCH m.laboratorio
+           WHERE m.activo = 1
+             AND m.id IN (SELECT t.id.medicamentoId
+                          FROM MedicamentoTrigrama t
+                          WHERE t.id.trigrama IN :trigramas
+                          GROUP BY t.id.medicamentoId
+                          HAVING COUNT(t) >= :minimo)
+           ORDER BY m.nombre, m.id
+           """)
+    List<Medicamento> buscarPrimerosPorTrigramas(@Param("trigramas") Collection<String> trigramas,
+                                                 @Param("minimo") long minimo,
+                                                 Pageable pageable);
+
+    /**
+     * Paginación por <i>keyset</i>: medicamentos activos posteriores al cursor
+     * {@code (nombreCursor, idCursor)}, con el mismo filtro por trigramas que
+     * {@link #buscarPrimerosPorTrigramas(Collection, long, Pageable)}.
+     *
+     * @param trigramas    trigramas distintos de la consulta normalizada
+     * @param minimo       coincidencias mínimas requeridas
+     * @param nombreCursor nombre del último medicamento entregado
+     * @param idCursor     id del último medicamento entregado
+     * @param pageable     solo se usa el tamaño (primera página, sin orden adicional)
+     * @return medicamentos de la página siguiente
+     */
+    @Query("""
+           SELECT m
+           FROM Medicamento m JOIN FETCH m.laboratorio
+           WHERE m.activo = 1
+             AND m.id IN (SELECT t.id.medicamentoId
+                          FROM MedicamentoTrigrama t
+                          WHERE t.id.trigrama IN :trigramas
+                          GROUP BY t.id.medicamentoId
+                          HAVING COUNT(t) >= :minimo)
+             AND m.nombre >= :nombreCursor
+             AND (m.nombre > :nombreCursor OR m.id > :idCursor)
+           ORDER BY m.nombre, m.id
+           """)
+    List<Medicamento> buscarPorTrigramasDespuesDe(@Param("trigramas") Collection<String> trigramas,
+                                                  @Param("minimo") long minimo,
+                                                  @Param("nombreCursor") String nombreCursor,
+                                                  @Param("idCursor") Long idCursor,
+                                                  Pageable pageable);
+
+    /**
+     * Obtiene un medicamento junto con su laboratorio en una sola consulta.
+     * <p>
+     * Útil para mapear a {@code MedicamentoResponse} fuera de una transacción
+     * (p. ej., al poblar la caché) sin provocar {@code LazyInitializationException}.
+     * </p>
+     *
+     * @param id identificador del medicamento
+     * @return el medicamento con {@code laboratorio} inicializado, si existe
+     */
+    @EntityGraph(attributePaths = "laboratorio")
+    Optional<Medicamento> findWithLaboratorioById(Long id);
+
+    /**
+     * Carga y bloquea ({@code SELECT ... FOR UPDATE}) varios medicamentos en orden ascendente de id.
+     * <p>
+     * Lo usa el modo <i>group commit</i> de ventas: con las filas bloqueadas, el stock leído es
+     * definitivo hasta el commit y el lote puede repartirlo entre sus solicitudes en memoria.
+     * El orden por id es el mismo de {@link #descontarStock(Long, long)} en las canastas, así que
+     * ambos caminos bloquean en el mismo orden y no se interbloquean.
+     * </p>
+     *
+     * @param ids identificadores de los medicamentos
+     * @return medicamentos encontrados, bloqueados hasta el fin de la transacción
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Medicamento m WHERE m.id IN :ids ORDER BY m.id")
+    List<Medicamento> bloquearPorIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Bloquea ({@code FOR UPDATE}) la fila de un medicamento y devuelve su {@code CANTIDAD_STOCK}
+     * leída de la base de datos, sin pasar por el contexto de persistencia (que puede tener un
+     * valor desactualizado tras los {@code UPDATE} masivos).
+     *
+     * @param id identificador del medicamento
+     * @return stock de la fila (bucket 0 en el modo de buckets), o {@code null} si no existe
+     */
+    @Query(value = """
+           SELECT CANTIDAD_STOCK
+             FROM MEDICAMENTO
+            WHERE ID_MEDICAMENTO = :id
+              FOR UPDATE
+           """, nativeQuery = true)
+    Long bloquearStock(@Param("id") Long id);
+
+    /**
+     * Fija el stock de la fila y el número de buckets (incrementando la versión); el llamador ya
+     * tiene la fila bloqueada.
+     *
+     * @param id       identificador del medicamento
+     * @param stock    nueva {@code CANTIDAD_STOCK}
+     * @param buckets  nuevo {@code STOCK_BUCKETS}
+     * @return filas afectadas
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+           UPDATE Medicamento m
+              SET m.cantidadStock = :stock,
+                  m.stockBuckets = :buckets,
+                  m.version = m.version + 1,
+                  m.fechaModificacion = LOCAL DATETIME
+            WHERE m.id = :id
+           """)
+    int fijarStock(@Param("id") Long id, @Param("stock") long stock, @Param("buckets") int buckets);
+
+    /**
+     * Filtra los medicamentos que tienen el stock repartido en buckets.
+     *
+     * @param ids identificadores a revisar
+     * @return los que tienen {@code STOCK_BUCKETS > 0}
+     */
+    @Query("SELECT m.id FROM Medicamento m WHERE m.id IN :ids AND m.stockBuckets > 0")
+    List<Long> conBuckets(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Todos los medicamentos con el stock repartido en buckets (para el rebalanceo periódico).
+     *
+     * @return ids con {@code STOCK_BUCKETS > 0}
+     */
+    @Query("SELECT m.id FROM Medicamento m WHERE m.stockBuckets > 0 ORDER BY m.id")
+    List<Long> idsConBuckets();
+
+    /**
+     * Descuenta stock de forma atómica con una única sentencia condicional.
+     * <p>
+     * Equivale a
+     * {@code UPDATE MEDICAMENTO SET CANTIDAD_STOCK = CANTIDAD_STOCK - :cantidad, VERSION = VERSION + 1, FECHA_MODIFICACION = LOCALTIMESTAMP
+     * WHERE ID_MEDICAMENTO = :id AND ACTIVO = 1 AND CANTIDAD_STOCK >= :cantidad}.
+     * La verificación y el descuento ocurren bajo el mismo bloqueo de fila, por lo que
+     * ventas concurrentes sobre el mismo medicamento nunca dejan el stock en negativo
+     * y no es necesario cargar la entidad ni pasar por el <i>dirty checking</i>.
+     * </p>
+     * <p>
+     * <b>Nota:</b> las entidades ya cargadas en el contexto de persistencia no se refrescan;
+     * si se necesita el stock resultante, léase después de invocar este método.
+     * </p>
+     *
+     * @param id       identificador del medicamento
+     * @param cantidad unidades a descontar; se asume {@code > 0}
+     * @return filas afectadas: {@code 1} si se descontó, {@code 0} si el medicamento no existe,
+     *         está inactivo o no tiene stock suficiente
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+           UPDATE Medicamento m
+              SET m.cantidadStock = m.cantidadStock - :cantidad,
+                  m.version = m.version + 1,
+                  m.fechaModificacion = LOCAL DATETIME
+            WHERE m.id = :id
+              AND m.activo = 1
+              AND m.cantidadStock >= :cantidad
+           """)
+    int descontarStock(@Param("id") Long id, @Param("cantidad") long cantidad);
+
+    /**
+     * Stock total, precio y estado de varios medicamentos (activos o no), sin cargar las entidades
+     * ni sus laboratorios. Lo usa la difusión de cambios por SSE.
+     *
+     * @param ids identificadores (como máximo 1000 por llamada, por el límite de {@code IN} en Oracle)
+     * @return el estado de los medicamentos encontrados, sin orden garantizado
+     */
+    @Query("""
+           SELECT new com.konex.Konex.stream.EstadoStock(
+                      m.id, m.laboratorio.id, m.cantidadStock + m.stockEnBuckets, m.valorUnitario, m.activo)
+             FROM Medicamento m
+            WHERE m.id IN :ids
+           """)
+    List<EstadoStock> estadosStock(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Stock total frente al punto de reorden de los medicamentos indicados que tienen uno, sin
+     * cargar las entidades. Lo usa la revisión de alertas de stock bajo tras ajustes y recepciones.
+     *
+     * @param ids identificadores (como máximo 1000 por llamada, por el límite de {@code IN} en Oracle)
+     * @return el nivel de los medicamentos con {@code STOCK_MINIMO}, sin orden garantizado
+     */
+    @Query("""
+           SELECT new com.konex.Konex.alerting.NivelStock(
+                      m.id, m.nombre, m.cantidadStock + m.stockEnBuckets, m.stockMinimo, m.activo)
+             FROM Medicamento m
+            WHERE m.id IN :ids
+              AND m.stockMinimo IS NOT NULL
+           """)
+    List<NivelStock> nivelesStock(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Medicamentos activos que ya están en su punto de reorden o por debajo. Solo se consulta al
+     * arrancar, para reconstruir las alertas activas; después se evalúan cambio a cambio.
+     *
+     * @return nivel de los medicamentos bajo su mínimo
+     */
+    @Query("""
+           SELECT new com.konex.Konex.alerting.NivelStock(
+                      m.id, m.nombre, m.cantidadStock + m.stockEnBuckets, m.stockMinimo, m.activo)
+             FROM Medicamento m
+            WHERE m.activo = 1
+              AND m.stockMinimo IS NOT NULL
+              AND m.cantidadStock + m.stockEnBuckets <= m.stockMinimo
+           """)
+    List<NivelStock> bajoMinimo();
+
+    /**
+     * Validador HTTP de un medicamento activo (versión, stock total y última modificación), sin
+     * cargar la entidad ni su laboratorio.
+     *
+     * @param id identificador del medicamento
+     * @return el validador, o vacío si no existe o está inactivo
+     */
+    @Query("""
+           SELECT new com.konex.Konex.utils.ValidadorMedicamento(
+                      m.version, m.cantidadStock + m.stockEnBuckets, m.fechaModificacion)
+             FROM Medicamento m
+            WHERE m.id = :id
+              AND m.activo = 1
+           """)
+    Optional<ValidadorMedicamento> validador(@Param("id") Long id);
+
+    /**
+     * Última modificación de cualquier medicamento (marca de agua del catálogo). Con el índice
+     * sobre {@code FECHA_MODIFICACION} se resuelve leyendo un solo extremo del índice.
+     *
+     * @return fecha más reciente, o {@code null} si el catálogo está vacío
+     */
+    @Query("SELECT MAX(m.fechaModificacion) FROM Medicamento m")
+    LocalDateTime ultimaModificacion();
 }
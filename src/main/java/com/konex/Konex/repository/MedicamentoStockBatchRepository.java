@@ -0,0 +1,27 @@
+package com.konex.Konex.repository;
+
+import java.util.List;
+
+/**
+ * Fragmento de {@link MedicamentoRepository} con operaciones de stock en batch JDBC.
+ * <p>
+ * Los {@code UPDATE} de JPQL ({@code @Modifying @Query}) se ejecutan de a uno por ida y vuelta a la
+ * base de datos; aquí se envían todos en un solo batch y se obtiene el resultado de cada uno.
+ * </p>
+ *
+ * @see MedicamentoStockBatchRepositoryImpl
+ */
+public interface MedicamentoStockBatchRepository {
+
+    /**
+     * Suma {@code deltas[i]} al stock del medicamento {@code ids[i]} con un {@code UPDATE}
+     * condicional por movimiento: el movimiento no se aplica si dejaría el stock en negativo.
+     * Incrementa {@code VERSION} en cada fila modificada.
+     *
+     * @param ids    medicamentos, en el orden de aplicación
+     * @param deltas unidades a sumar (negativas para restar), alineadas con {@code ids}
+     * @return filas afectadas por movimiento: {@code 1} aplicado, {@code 0} si el medicamento no
+     *         existe o no tiene stock suficiente
+     */
+    int[] ajustarStock(List<Long> ids, List<Long> deltas);
+}
@@ -0,0 +1,51 @@
+package com.konex.Konex.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Implementación de {@link MedicamentoStockBatchRepository} con {@link JdbcTemplate}.
+ * <p>
+ * Participa en la transacción JPA en curso (misma conexión). Como no pasa por el contexto de
+ * persistencia, las entidades {@code Medicamento} ya cargadas no ven el cambio.
+ * Requiere un driver que informe las filas afectadas por sentencia del batch (Oracle 12c+, H2).
+ * </p>
+ */
+public class MedicamentoStockBatchRepositoryImpl implements MedicamentoStockBatchRepository {
+
+    private static final String AJUSTAR = """
+            UPDATE MEDICAMENTO
+               SET CANTIDAD_STOCK = CANTIDAD_STOCK + ?,
+                   VERSION = VERSION + 1,
+                   FECHA_MODIFICACION = LOCALTIMESTAMP
+             WHERE ID_MEDICAMENTO = ?
+               AND CANTIDAD_STOCK + ? >= 0
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MedicamentoStockBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] ajustarStock(List<Long> ids, List<Long> deltas) {
+        return jdbcTemplate.batchUpdate(AJUSTAR, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, deltas.get(i));
+                ps.setLong(2, ids.get(i));
+                ps.setLong(3, deltas.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.MedicamentoStockBucket;
+import com.konex.Konex.model.MedicamentoStockBucketId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio de los buckets de stock de medicamentos ({@link MedicamentoStockBucket}).
+ * <p>
+ * Todas las modificaciones son {@code UPDATE} atómicos por fila, para que cada venta bloquee
+ * únicamente el bucket del que descuenta.
+ * </p>
+ */
+public interface MedicamentoStockBucketRepository
+        extends JpaRepository<MedicamentoStockBucket, MedicamentoStockBucketId> {
+
+    /**
+     * Descuenta unidades de un bucket solo si le alcanzan, con la misma semántica que
+     * {@link MedicamentoRepository#descontarStock(Long, long)}.
+     *
+     * @param medicamentoId medicamento
+     * @param numero        número de bucket ({@code >= 1})
+     * @param cantidad      unidades a descontar; se asume {@code > 0}
+     * @return {@code 1} si se descontó, {@code 0} si el bucket no existe o no tiene suficiente
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+           UPDATE MedicamentoStockBucket b
+              SET b.cantidad = b.cantidad - :cantidad,
+                  b.fechaModificacion = LOCAL DATETIME
+            WHERE b.id.medicamentoId = :medicamentoId
+              AND b.id.numero = :numero
+              AND b.cantidad >= :cantidad
+           """)
+    int descontar(@Param("medicamentoId") Long medicamentoId,
+                  @Param("numero") int numero,
+                  @Param("cantidad") long cantidad);
+
+    /**
+     * Fija la cantidad de un bucket (rebalanceo); el llamador ya tiene sus filas bloqueadas.
+     *
+     * @param medicamentoId medicamento
+     * @param numero        número de bucket
+     * @param cantidad      nueva cantidad
+     * @return filas afectadas
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+           UPDATE MedicamentoStockBucket b
+              SET b.cantidad = :cantidad,
+                  b.fechaModificacion = LOCAL DATETIME
+            WHERE b.id.medicamentoId = :medicamentoId
+              AND b.id.numero = :numero
+           """)
+    int fijar(@Param("medicamentoId") Long medicamentoId,
+              @Param("numero") int numero,
+              @Param("cantidad") long cantidad);
+
+    /**
+     * Bloquea ({@code FOR UPDATE}) los buckets de un medicamento y devuelve sus cantidades en
+     * orden de número: la posición {@code i} corresponde al bucket {@code i + 1}.
+     *
+     * @param medicamentoId medicamento
+     * @return cantidades de los buckets, vacía si el modo no está activo
+     */
+    @Query(value = """
+           SELECT CANTIDAD
+             FROM MEDICAMENTO_STOCK_BUCKET
+            WHERE ID_MEDICAMENTO = :medicamentoId
+            ORDER BY NUMERO
+              FOR UPDATE
+           """, nativeQuery = true)
+    List<Number> bloquearCantidades(@Param("medicamentoId") Long medicamentoId);
+
+    /**
+     * Elimina todos los buckets de un medicamento.
+     *
+     * @param medicamentoId medicamento
+     * @return filas eliminadas
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM MedicamentoStockBucket b WHERE b.id.medicamentoId = :medicamentoId")
+    int eliminarDe(@Param("medicamentoId") Long medicamentoId);
+
+    /**
+     * Última modificación de cualquier bucket (marca de agua del stock repartido).
+     *
+     * @return fecha más reciente, o {@code null} si no hay buckets
+     */
+    @Query("SELECT MAX(b.fechaModificacion) FROM MedicamentoStockBucket b")
+    LocalDateTime ultimaModificacion();
+}
@@ -0,0 +1,71 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.MedicamentoTrigrama;
+import com.konex.Konex.model.MedicamentoTrigramaId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+/**
+ * Repositorio Spring Data JPA del índice de trigramas del catálogo ({@link MedicamentoTrigrama}).
+ * <p>
+ * Resuelve búsquedas por subcadena y con tolerancia a errores leves agrupando por medicamento
+ * las filas cuyo trigrama está entre los de la consulta; solo se leen las entradas del índice
+ * de esos trigramas, nunca la tabla completa de medicamentos.
+ * </p>
+ *
+ * <p><b>Rendimiento:</b> requiere un índice sobre <code>TRIGRAMA</code> (la PK
+ * <code>(ID_MEDICAMENTO, TRIGRAMA)</code> cubre el borrado por medicamento).</p>
+ */
+public interface MedicamentoTrigramaRepository extends JpaRepository<MedicamentoTrigrama, MedicamentoTrigramaId> {
+
+    /**
+     * Ids de medicamentos que comparten al menos {@code minimo} trigramas con la consulta,
+     * ordenados por número de coincidencias (los exactos primero) y luego por id.
+     * <p>
+     * Consulta nativa: el {@code COUNT} de la paginación se calcula sobre una tabla derivada,
+     * construcción que JPQL no admite. Se devuelve {@link Number} porque el tipo numérico
+     * depende del motor (p. ej., {@code BigDecimal} en Oracle).
+     * </p>
+     *
+     * @param trigramas trigramas distintos de la consulta normalizada
+     * @param minimo    coincidencias mínimas requeridas
+     * @param pageable  paginación (el orden lo fija la consulta)
+     * @return página de ids de medicamentos
+     */
+    @Query(value = """
+           SELECT t.ID_MEDICAMENTO
+           FROM MEDICAMENTO_TRIGRAMA t
+           WHERE t.TRIGRAMA IN (:trigramas)
+           GROUP BY t.ID_MEDICAMENTO
+           HAVING COUNT(*) >= :minimo
+           ORDER BY COUNT(*) DESC, t.ID_MEDICAMENTO
+           """,
+           countQuery = """
+           SELECT COUNT(*) FROM (
+               SELECT t.ID_MEDICAMENTO
+               FROM MEDICAMENTO_TRIGRAMA t
+               WHERE t.TRIGRAMA IN (:trigramas)
+               GROUP BY t.ID_MEDICAMENTO
+               HAVING COUNT(*) >= :minimo
+           ) c
+           """,
+           nativeQuery = true)
+    Page<Number> buscarIds(@Param("trigramas") Collection<String> trigramas,
+                           @Param("minimo") long minimo,
+                           Pageable pageable);
+
+    /**
+     * Elimina todas las entradas del índice de un medicamento.
+     *
+     * @param medicamentoId identificador del medicamento
+     * @return filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM MedicamentoTrigrama t WHERE t.id.medicamentoId = :medicamentoId")
+    int deleteByMedicamentoId(@Param("medicamentoId") Long medicamentoId);
+}
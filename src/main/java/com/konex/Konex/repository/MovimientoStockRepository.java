@@ -0,0 +1,10 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.MovimientoStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+/**
+ * Repositorio Spring Data JPA del registro de movimientos de stock ({@link MovimientoStock}).
+ * <p>Las consultas por medicamento usan <code>ID_MEDICAMENTO</code>, que conviene indexar.</p>
+ */
+public interface MovimientoStockRepository extends JpaRepository<MovimientoStock, Long> {
+}
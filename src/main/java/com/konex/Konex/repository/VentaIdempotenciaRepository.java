@@ -0,0 +1,26 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.VentaIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+/**
+ * Repositorio Spring Data JPA de las claves de idempotencia de ventas ({@link VentaIdempotencia}).
+ * <p>Las búsquedas son por PK (<code>CLAVE</code>); la limpieza por antigüedad usa
+ * <code>FECHA_CREACION</code>, que conviene indexar.</p>
+ */
+public interface VentaIdempotenciaRepository extends JpaRepository<VentaIdempotencia, String> {
+
+    /**
+     * Elimina las claves registradas antes de {@code limite}.
+     *
+     * @param limite instante de corte
+     * @return filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM VentaIdempotencia i WHERE i.fechaCreacion < :limite")
+    int eliminarAnterioresA(@Param("limite") LocalDateTime limite);
+}
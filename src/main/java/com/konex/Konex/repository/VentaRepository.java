@@ -1,11 +1,22 @@
 package com.konex.Konex.repository;
 
+import com.konex.Konex.dto.VentaExportFila;
 import com.konex.Konex.model.Venta;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 /**
  * Repositorio Spring Data JPA para la entidad {@link Venta}.
  * <p>
@@ -43,12 +54,129 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
 
     List<Venta> findByFechaHoraBetween(LocalDateTime desde, LocalDateTime hasta);
     /**
-     * Versión paginada de {@link #findByFechaHoraBetween(LocalDateTime, LocalDateTime)}.
+     * Primera fase del listado paginado: obtiene solo los ids de las ventas de la página
+     * (más el {@code COUNT} para los metadatos), sin cargar detalles.
+     * <p>
+     * Paginar directamente una consulta con {@code JOIN FETCH} sobre una colección obliga
+     * a Hibernate a paginar en memoria; por eso el listado se resuelve en dos fases:
+     * ids paginados y luego {@link #findByIdIn(Collection)}.
+     * </p>
+     *
+     * @param pageable información de paginación y orden (propiedades de {@link Venta})
+     * @return página de ids de ventas
+     */
+    @Query(value = "SELECT v.id FROM Venta v",
+           countQuery = "SELECT COUNT(v) FROM Venta v")
+    Page<Long> findPageIds(Pageable pageable);
+
+    /**
+     * Primera fase del listado por rango: ids de las ventas cuyo {@code fechaHora}
+     * está entre {@code desde} y {@code hasta} (<b>inclusive</b>), paginados.
      *
      * @param desde    límite inferior (inclusive)
      * @param hasta    límite superior (inclusive)
      * @param pageable información de paginación y orden
-     * @return página de ventas en el rango
+     * @return página de ids de ventas en el rango
+     */
+    @Query(value = "SELECT v.id FROM Venta v WHERE v.fechaHora BETWEEN :desde AND :hasta",
+           countQuery = "SELECT COUNT(v) FROM Venta v WHERE v.fechaHora BETWEEN :desde AND :hasta")
+    Page<Long> findPageIdsByFechaHoraBetween(@Param("desde") LocalDateTime desde,
+                                             @Param("hasta") LocalDateTime hasta,
+                                             Pageable pageable);
+
+    /**
+     * Paginación por <i>keyset</i>: ids de las ventas anteriores al cursor {@code (fecha, id)}
+     * en orden {@code fechaHora DESC, id DESC}, sin {@code OFFSET} ni {@code COUNT}.
+     * <p>
+     * Con un índice sobre {@code (FECHA_HORA, ID_VENTA)} la base de datos se posiciona
+     * directamente en el cursor, por lo que una página profunda cuesta lo mismo que la primera.
+     * </p>
+     *
+     * @param fecha    {@code fechaHora} de la última venta entregada
+     * @param id       id de la última venta entregada
+     * @param pageable solo se usa el tamaño (primera página, sin orden adicional)
+     * @return ids de la página siguiente
+     */
+    @Query("""
+           SELECT v.id FROM Venta v
+           WHERE v.fechaHora < :fecha
+              OR (v.fechaHora = :fecha AND v.id < :id)
+           ORDER BY v.fechaHora DESC, v.id DESC
+           """)
+    List<Long> findIdsAntesDe(@Param("fecha") LocalDateTime fecha,
+                              @Param("id") Long id,
+                              Pageable pageable);
+
+    /**
+     * Variante de {@link #findIdsAntesDe(LocalDateTime, Long, Pageable)} restringida a un rango
+     * de {@code fechaHora} (inclusive en ambos extremos).
+     *
+     * @param desde    límite inferior (inclusive)
+     * @param hasta    límite superior (inclusive)
+     * @param fecha    {@code fechaHora} de la última venta entregada
+     * @param id       id de la última venta entregada
+     * @param pageable solo se usa el tamaño (primera página, sin orden adicional)
+     * @return ids de la página siguiente dentro del rango
+     */
+    @Query("""
+           SELECT v.id FROM Venta v
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+             AND (v.fechaHora < :fecha
+                  OR (v.fechaHora = :fecha AND v.id < :id))
+           ORDER BY v.fechaHora DESC, v.id DESC
+           """)
+    List<Long> findIdsEnRangoAntesDe(@Param("desde") LocalDateTime desde,
+                                     @Param("hasta") LocalDateTime hasta,
+                                     @Param("fecha") LocalDateTime fecha,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    /**
+     * Segunda fase del listado: carga las ventas indicadas junto con sus detalles y el
+     * medicamento de cada detalle en una sola sentencia (grafo de entidad), evitando
+     * el problema N+1 al mapear con {@code VentaMapper}.
+     * <p>El orden del resultado no está garantizado; reordénese según los ids de la página.</p>
+     *
+     * @param ids identificadores de las ventas a cargar
+     * @return ventas con {@code detalles} y {@code detalles.medicamento} inicializados
+     */
+    @EntityGraph(attributePaths = {"detalles", "detalles.medicamento"})
+    List<Venta> findByIdIn(Collection<Long> ids);
+
+    /**
+     * Obtiene una venta con sus detalles y medicamentos ya inicializados.
+     *
+     * @param id identificador de la venta
+     * @return la venta, si existe
+     */
+    @EntityGraph(attributePaths = {"detalles", "detalles.medicamento"})
+    Optional<Venta> findWithDetallesById(Long id);
+
+    /**
+     * Recorre las líneas de venta del rango con un cursor de solo avance, para exportación.
+     * <p>
+     * Proyecta cada línea a {@link VentaExportFila} (sin entidades administradas) y lee de la base
+     * de datos en bloques de 500 filas, por lo que la memoria no crece con el tamaño del rango.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar (try-with-resources).
+     * </p>
+     *
+     * @param desde inicio del rango (inclusive)
+     * @param hasta fin del rango (inclusive)
+     * @return flujo de filas ordenado por {@code (fechaHora, id de venta, id de detalle)}
      */
-    Page<Venta> findByFechaHoraBetween(LocalDateTime desde, LocalDateTime hasta, Pageable pageable);
-}
\ No newline at end of file
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+           SELECT new com.konex.Konex.dto.VentaExportFila(
+                      v.id, v.fechaHora, v.valorTotal, d.id, m.id, m.nombre,
+                      d.cantidad, d.valorUnitario, d.valorLinea)
+           FROM DetalleVenta d JOIN d.venta v JOIN d.medicamento m
+           WHERE v.fechaHora BETWEEN :desde AND :hasta
+           ORDER BY v.fechaHora, v.id, d.id
+           """)
+    Stream<VentaExportFila> streamExportacion(@Param("desde") LocalDateTime desde,
+                                              @Param("hasta") LocalDateTime hasta);
+}
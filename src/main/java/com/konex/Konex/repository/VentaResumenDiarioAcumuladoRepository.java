@@ -0,0 +1,29 @@
+package com.konex.Konex.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Fragmento de {@link VentaResumenDiarioRepository} que acumula ventas en el resumen diario con un
+ * {@code MERGE} JDBC.
+ * <p>
+ * Un {@code UPDATE} seguido de {@code INSERT} no basta: dos transacciones pueden no encontrar la
+ * fila del día y ambas insertarla (los medicamentos con stock repartido en buckets no bloquean la
+ * fila de {@code MEDICAMENTO}, que era lo que serializaba la primera venta del día).
+ * </p>
+ *
+ * @see VentaResumenDiarioAcumuladoRepositoryImpl
+ */
+public interface VentaResumenDiarioAcumuladoRepository {
+
+    /**
+     * Suma una venta a la fila del día y medicamento, creándola si no existe.
+     *
+     * @param fecha         día de la venta
+     * @param medicamentoId medicamento vendido
+     * @param unidades      unidades a sumar
+     * @param valor         valor a sumar
+     * @param lineas        líneas a sumar
+     */
+    void acumular(LocalDate fecha, Long medicamentoId, long unidades, BigDecimal valor, long lineas);
+}
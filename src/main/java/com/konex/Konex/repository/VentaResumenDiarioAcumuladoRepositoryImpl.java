@@ -0,0 +1,54 @@
+package com.konex.Konex.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Implementación de {@link VentaResumenDiarioAcumuladoRepository} con {@link JdbcTemplate}.
+ * <p>
+ * Participa en la transacción JPA en curso (misma conexión). El {@code MERGE} tampoco es atómico
+ * frente a otra transacción que inserta la misma fila: la segunda espera el commit de la primera y
+ * falla por la PK. Oracle y H2 revierten solo la sentencia fallida, así que se repite el
+ * {@code MERGE}, que ya encuentra la fila confirmada. Se ejecuta por JDBC y no por JPA porque
+ * Hibernate marcaría la transacción completa para rollback ante la violación de la PK.
+ * </p>
+ */
+public class VentaResumenDiarioAcumuladoRepositoryImpl implements VentaResumenDiarioAcumuladoRepository {
+
+    private static final String ACUMULAR = """
+            MERGE INTO VENTA_RESUMEN_DIARIO r
+            USING (SELECT CAST(? AS DATE) AS FECHA, CAST(? AS NUMBER(19)) AS ID_MEDICAMENTO,
+                          CAST(? AS NUMBER(19)) AS UNIDADES, CAST(? AS NUMBER(16, 2)) AS VALOR_TOTAL,
+                          CAST(? AS NUMBER(19)) AS LINEAS
+                     FROM DUAL) s
+               ON (r.FECHA = s.FECHA AND r.ID_MEDICAMENTO = s.ID_MEDICAMENTO)
+             WHEN MATCHED THEN UPDATE
+                  SET r.UNIDADES = r.UNIDADES + s.UNIDADES,
+                      r.VALOR_TOTAL = r.VALOR_TOTAL + s.VALOR_TOTAL,
+                      r.LINEAS = r.LINEAS + s.LINEAS
+             WHEN NOT MATCHED THEN
+                  INSERT (FECHA, ID_MEDICAMENTO, UNIDADES, VALOR_TOTAL, LINEAS)
+                  VALUES (s.FECHA, s.ID_MEDICAMENTO, s.UNIDADES, s.VALOR_TOTAL, s.LINEAS)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VentaResumenDiarioAcumuladoRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void acumular(LocalDate fecha, Long medicamentoId, long unidades, BigDecimal valor, long lineas) {
+        Object[] args = {Date.valueOf(fecha), medicamentoId, unidades, valor, lineas};
+        try {
+            jdbcTemplate.update(ACUMULAR, args);
+        } catch (DuplicateKeyException primeraDelDia) {
+            // Otra transacción insertó la fila del día entre la lectura y la inserción del MERGE
+            jdbcTemplate.update(ACUMULAR, args);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.dto.ReporteVentaFila;
+import com.konex.Konex.model.VentaResumenDiario;
+import com.konex.Konex.model.VentaResumenDiarioId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+/**
+ * Repositorio Spring Data JPA del resumen diario de ventas ({@link VentaResumenDiario}).
+ * <p>
+ * Responde los reportes agregados leyendo como máximo una fila por día y medicamento,
+ * independientemente del número de ventas. Las consultas filtran por <code>FECHA</code>,
+ * primera columna de la PK. Las ventas se suman con
+ * {@link VentaResumenDiarioAcumuladoRepository#acumular(LocalDate, Long, long, BigDecimal, long)}.
+ * </p>
+ */
+public interface VentaResumenDiarioRepository extends JpaRepository<VentaResumenDiario, VentaResumenDiarioId>,
+        VentaResumenDiarioAcumuladoRepository {
+
+    /**
+     * Totales por día del rango.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      r.id.fecha, SUM(r.unidades), SUM(r.valorTotal), SUM(r.lineas))
+           FROM VentaResumenDiario r
+           WHERE r.id.fecha BETWEEN :desde AND :hasta
+           GROUP BY r.id.fecha
+           ORDER BY r.id.fecha
+           """)
+    List<ReporteVentaFila> totalesPorDia(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Totales por mes del rango.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      YEAR(r.id.fecha), MONTH(r.id.fecha), SUM(r.unidades), SUM(r.valorTotal), SUM(r.lineas))
+           FROM VentaResumenDiario r
+           WHERE r.id.fecha BETWEEN :desde AND :hasta
+           GROUP BY YEAR(r.id.fecha), MONTH(r.id.fecha)
+           ORDER BY YEAR(r.id.fecha), MONTH(r.id.fecha)
+           """)
+    List<ReporteVentaFila> totalesPorMes(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Totales por medicamento del rango, de mayor a menor valor.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      m.id, m.nombre, SUM(r.unidades), SUM(r.valorTotal), SUM(r.lineas))
+           FROM VentaResumenDiario r JOIN Medicamento m ON m.id = r.id.medicamentoId
+           WHERE r.id.fecha BETWEEN :desde AND :hasta
+           GROUP BY m.id, m.nombre
+           ORDER BY SUM(r.valorTotal) DESC, m.id
+           """)
+    List<ReporteVentaFila> totalesPorMedicamento(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Totales por laboratorio del rango, de mayor a menor valor.
+     */
+    @Query("""
+           SELECT new com.konex.Konex.dto.ReporteVentaFila(
+                      l.id, l.nombre, SUM(r.unidades), SUM(r.valorTotal), SUM(r.lineas))
+           FROM VentaResumenDiario r JOIN Medicamento m ON m.id = r.id.medicamentoId JOIN m.laboratorio l
+           WHERE r.id.fecha BETWEEN :desde AND :hasta
+           GROUP BY l.id, l.nombre
+           ORDER BY SUM(r.valorTotal) DESC, l.id
+           """)
+    List<ReporteVentaFila> totalesPorLaboratorio(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Elimina el resumen de un rango de días (previo a reconstruirlo).
+     *
+     * @return filas eliminadas
+     */
+    @Modifying
+    @Query("DELETE FROM VentaResumenDiario r WHERE r.id.fecha BETWEEN :desde AND :hasta")
+    int eliminarRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Recalcula el resumen del rango a partir de las líneas de venta con un único
+     * {@code INSERT ... SELECT ... GROUP BY} ejecutado en la base de datos.
+     * <p>Debe invocarse tras {@link #eliminarRango(LocalDate, LocalDate)} del mismo rango.</p>
+     *
+     * @param desde inicio del rango (00:00 del primer día)
+     * @param hasta fin del rango (último instante del último día)
+     * @return filas insertadas
+     */
+    @Modifying
+    @Query(value = """
+           INSERT INTO VENTA_RESUMEN_DIARIO (FECHA, ID_MEDICAMENTO, UNIDADES, VALOR_TOTAL, LINEAS)
+           SELECT TRUNC(v.FECHA_HORA), d.ID_MEDICAMENTO, SUM(d.CANTIDAD), SUM(d.VALOR_LINEA), COUNT(*)
+           FROM DETALLE_VENTA d JOIN VENTA v ON v.ID_VENTA = d.ID_VENTA
+           WHERE v.FECHA_HORA BETWEEN :desde AND :hasta
+           GROUP BY TRUNC(v.FECHA_HORA), d.ID_MEDICAMENTO
+           """, nativeQuery = true)
+    int reconstruirRango(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
@@ -0,0 +1,174 @@
+package com.konex.Konex.retry;
+
+import com.konex.Konex.exception.ConflictoVersionException;
+import com.konex.Konex.model.Medicamento;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Reintentos acotados, con espera aleatoria (<i>full jitter</i>), de operaciones de venta y stock
+ * que fallan por un conflicto de concurrencia en base de datos.
+ * <p>
+ * Se reintenta ante {@link ConcurrencyFailureException}: bloqueo optimista fallido
+ * ({@code @Version}), interbloqueo o espera de bloqueo agotada. Cada intento debe ser una
+ * transacción completa, por lo que la acción se invoca <b>fuera</b> de cualquier transacción
+ * (desde el controlador o el trabajador del <i>group commit</i>), nunca desde un método
+ * {@code @Transactional}. La espera antes del intento {@code n} es aleatoria entre {@code 0} y
+ * {@code min(konex.retry.max-backoff, konex.retry.initial-backoff * 2^(n-1))}, para que las
+ * operaciones que chocaron no vuelvan a chocar al mismo tiempo.
+ * </p>
+ *
+ * <p><b>Observabilidad:</b></p>
+ * <ul>
+ *   <li>{@value #METRICA_CONFLICTOS}: conflictos detectados, por {@code operation}.</li>
+ *   <li>{@value #METRICA_REINTENTOS}: reintentos realizados, por {@code operation}.</li>
+ *   <li>{@value #METRICA_AGOTADOS}: operaciones que fallaron tras agotar los intentos.</li>
+ *   <li>{@link #conflictosPorMedicamento(int)}: medicamentos con más conflictos, para ver la
+ *       contención por SKU sin publicar una serie de métricas por medicamento.</li>
+ * </ul>
+ */
+@Component
+public class ReintentosConcurrencia {
+
+    /** Conflictos de concurrencia detectados. */
+    public static final String METRICA_CONFLICTOS = "konex.concurrency.conflicts";
+    /** Reintentos tras un conflicto. */
+    public static final String METRICA_REINTENTOS = "konex.concurrency.retries";
+    /** Operaciones fallidas tras agotar los reintentos. */
+    public static final String METRICA_AGOTADOS = "konex.concurrency.retries.exhausted";
+
+    private final int maxIntentos;
+    private final long esperaInicialNanos;
+    private final long esperaMaximaNanos;
+    private final MeterRegistry registry;
+    private final ConcurrentMap<Long, LongAdder> conflictos = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxIntentos    intentos totales por operación (1 = sin reintentos)
+     * @param esperaInicial  tope de la espera antes del primer reintento
+     * @param esperaMaxima   tope de la espera entre reintentos
+     * @param registry       registro de métricas (opcional)
+     */
+    public ReintentosConcurrencia(@Value("${konex.retry.max-attempts:3}") int maxIntentos,
+                                  @Value("${konex.retry.initial-backoff:PT0.01S}") Duration esperaInicial,
+                                  @Value("${konex.retry.max-backoff:PT0.2S}") Duration esperaMaxima,
+                                  ObjectProvider<MeterRegistry> registry) {
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaInicialNanos = esperaInicial.toNanos();
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+        this.registry = registry.getIfAvailable(SimpleMeterRegistry::new);
+    }
+
+    /**
+     * Ejecuta la acción reintentándola ante conflictos de concurrencia.
+     *
+     * @param operacion      nombre de la operación para las métricas (p. ej. {@code venta})
+     * @param medicamentoIds medicamentos involucrados, para el conteo por SKU
+     * @param accion         acción transaccional completa
+     * @return el resultado de la acción
+     * @throws ConcurrencyFailureException el último conflicto, si se agotan los intentos
+     */
+    public <T> T ejecutar(String operacion, Collection<Long> medicamentoIds, Supplier<T> accion) {
+        return ejecutar(operacion, medicamentoIds, maxIntentos, accion);
+    }
+
+    /**
+     * Ejecuta la acción una sola vez, contabilizando el conflicto si lo hay. Para ediciones que
+     * deben fallar en lugar de reintentarse (p. ej. {@code PUT} con {@code If-Match}).
+     *
+     * @param operacion     nombre de la operación para las métricas
+     * @param medicamentoId medicamento involucrado
+     * @param accion        acción transaccional completa
+     * @return el resultado de la acción
+     */
+    public <T> T sinReintentos(String operacion, Long medicamentoId, Supplier<T> accion) {
+        return ejecutar(operacion, List.of(medicamentoId), 1, accion);
+    }
+
+    /**
+     * Medicamentos con más conflictos desde el arranque.
+     *
+     * @param limite número máximo de medicamentos
+     * @return id del medicamento → conflictos, de mayor a menor
+     */
+    public Map<Long, Long> conflictosPorMedicamento(int limite) {
+        Map<Long, Long> top = new LinkedHashMap<>();
+        conflictos.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limite)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+
+    private <T> T ejecutar(String operacion, Collection<Long> medicamentoIds, int intentos, Supplier<T> accion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return accion.get();
+            } catch (ConflictoVersionException ex) {
+                registrarConflicto(operacion, medicamentoIds, ex);
+                throw ex;
+            } catch (ConcurrencyFailureException ex) {
+                registrarConflicto(operacion, medicamentoIds, ex);
+                if (intento >= intentos) {
+                    if (intentos > 1) contador(METRICA_AGOTADOS, operacion).increment();
+                    throw ex;
+                }
+                contador(METRICA_REINTENTOS, operacion).increment();
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Cuenta el conflicto; si Hibernate identifica el medicamento en conflicto, solo a ese.
+     */
+    private void registrarConflicto(String operacion, Collection<Long> medicamentoIds, RuntimeException ex) {
+        contador(METRICA_CONFLICTOS, operacion).increment();
+        if (ex instanceof ObjectOptimisticLockingFailureException ol
+                && Medicamento.class.getName().equals(ol.getPersistentClassName())
+                && ol.getIdentifier() instanceof Long enConflicto) {
+            medicamentoIds = List.of(enConflicto);
+        }
+        for (Long id : medicamentoIds) {
+            if (id != null) conflictos.computeIfAbsent(id, k -> new LongAdder()).increment();
+        }
+    }
+
+    private void esperar(int intento) {
+        long tope = Math.min(esperaMaximaNanos, esperaInicialNanos << Math.min(intento - 1, 20));
+        if (tope <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reintento interrumpido", ie);
+        }
+    }
+
+    private Counter contador(String nombre, String operacion) {
+        return Counter.builder(nombre)
+                .description("Conflictos de concurrencia y reintentos en operaciones de venta y stock")
+                .tag("operation", operacion)
+                .register(registry);
+    }
+}
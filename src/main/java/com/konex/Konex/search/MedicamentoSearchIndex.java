@@ -0,0 +1,125 @@
+package com.konex.Konex.search;
+
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.MedicamentoTrigrama;
+import com.konex.Konex.model.MedicamentoTrigramaId;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.MedicamentoTrigramaRepository;
+import com.konex.Konex.utils.TextoBusqueda;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Motor de búsqueda del catálogo basado en un índice invertido de trigramas persistido
+ * en <code>MEDICAMENTO_TRIGRAMA</code>.
+ * <p>
+ * Reemplaza el {@code UPPER(NOMBRE) LIKE '%texto%'} (que obliga a recorrer toda la tabla en cada
+ * pulsación del buscador del POS) por una consulta indexada sobre los trigramas del texto
+ * normalizado con {@link TextoBusqueda}: sin tildes, en mayúsculas y tolerante a errores leves.
+ * </p>
+ *
+ * <p><b>Sincronización:</b> la capa de servicio debe invocar {@link #indexar(Long, String)} al crear,
+ * {@link #reindexar(Long, String)} al cambiar el nombre y {@link #quitar(Long)} al inactivar,
+ * dentro de la misma transacción que la escritura del medicamento. El índice solo contiene
+ * medicamentos activos. {@link #reconstruir()} regenera el índice completo (p. ej., tras cargar
+ * datos existentes).</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class MedicamentoSearchIndex {
+
+    /** Medicamentos procesados por transacción al reconstruir el índice. */
+    private static final int LOTE_RECONSTRUCCION = 1000;
+
+    private final MedicamentoTrigramaRepository trigramaRepository;
+    private final MedicamentoRepository medicamentoRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Indexa un medicamento nuevo.
+     *
+     * @param medicamentoId identificador del medicamento
+     * @param nombre        nombre original (se normaliza aquí)
+     */
+    public void indexar(Long medicamentoId, String nombre) {
+        Set<String> trigramas = TextoBusqueda.trigramas(TextoBusqueda.normalizar(nombre));
+        List<MedicamentoTrigrama> filas = trigramas.stream()
+                .map(t -> new MedicamentoTrigrama(new MedicamentoTrigramaId(medicamentoId, t)))
+                .toList();
+        trigramaRepository.saveAll(filas);
+    }
+
+    /**
+     * Reemplaza las entradas de un medicamento existente (p. ej., tras cambiar su nombre).
+     *
+     * @param medicamentoId identificador del medicamento
+     * @param nombre        nombre vigente
+     */
+    public void reindexar(Long medicamentoId, String nombre) {
+        quitar(medicamentoId);
+        indexar(medicamentoId, nombre);
+    }
+
+    /**
+     * Elimina un medicamento del índice (p. ej., al inactivarlo).
+     *
+     * @param medicamentoId identificador del medicamento
+     */
+    public void quitar(Long medicamentoId) {
+        trigramaRepository.deleteByMedicamentoId(medicamentoId);
+    }
+
+    /**
+     * Busca ids de medicamentos activos cuyo nombre contiene el texto (o se le parece).
+     * <p>
+     * Exige que coincida al menos el {@code 70 %} de los trigramas de la consulta; los nombres
+     * que contienen la subcadena exacta tienen todas las coincidencias y se ordenan primero.
+     * </p>
+     *
+     * @param normalizado texto ya normalizado, de al menos {@value TextoBusqueda#LONGITUD_NGRAMA} caracteres
+     * @param pageable    paginación solicitada
+     * @return página de ids de medicamentos en orden de relevancia
+     */
+    public Page<Long> buscarIds(String normalizado, Pageable pageable) {
+        Set<String> trigramas = TextoBusqueda.trigramas(normalizado);
+        return trigramaRepository
+                .buscarIds(trigramas, TextoBusqueda.minimoCoincidencias(trigramas.size()), pageable)
+                .map(Number::longValue);
+    }
+
+    /**
+     * Reconstruye el índice y el nombre normalizado de todo el catálogo, por lotes de
+     * {@value #LOTE_RECONSTRUCCION} medicamentos en transacciones independientes.
+     *
+     * @return número de medicamentos procesados
+     */
+    public int reconstruir() {
+        int total = 0;
+        long ultimoId = 0;
+        while (true) {
+            final long desde = ultimoId;
+            List<Long> lote = transactionTemplate.execute(status -> reconstruirLote(desde));
+            if (lote == null || lote.isEmpty()) return total;
+            total += lote.size();
+            ultimoId = lote.get(lote.size() - 1);
+        }
+    }
+
+    private List<Long> reconstruirLote(long desdeId) {
+        List<Medicamento> lote = medicamentoRepository.findByIdGreaterThanOrderByIdAsc(
+                desdeId, PageRequest.of(0, LOTE_RECONSTRUCCION));
+        for (Medicamento m : lote) {
+            m.setNombreNormalizado(TextoBusqueda.normalizar(m.getNombre()));
+            quitar(m.getId());
+            if (m.getActivo() == 1) indexar(m.getId(), m.getNombre());
+        }
+        return lote.stream().map(Medicamento::getId).toList();
+    }
+}
@@ -1,10 +1,24 @@
 package com.konex.Konex.service;
 
+import com.konex.Konex.dto.AjusteStockRequest;
+import com.konex.Konex.dto.AjusteStockResponse;
+import com.konex.Konex.dto.CacheEstadisticasResponse;
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.CambiosResponse;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.ImportacionResponse;
+import com.konex.Konex.dto.LoteRequest;
+import com.konex.Konex.dto.LoteResponse;
 import com.konex.Konex.dto.MedicamentoRequest;
 import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.importer.FormatoImportacion;
+import com.konex.Konex.utils.ValidadorMedicamento;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 /**
  * Contrato de la capa de servicio para operaciones sobre medicamentos.
  * <p>
@@ -44,6 +58,78 @@ public interface MedicamentoService {
      */
     MedicamentoResponse actualizar(Long id, MedicamentoRequest req);
 
+    /**
+     * Actualiza un medicamento existente solo si conserva la versión que leyó el cliente
+     * (encabezado {@code If-Match}) y, si tiene stock repartido en buckets, también el stock total.
+     *
+     * @param id              identificador del medicamento a actualizar; no {@code null}
+     * @param req             datos a aplicar; no {@code null}
+     * @param versionEsperada versión leída por el cliente ({@code null} = sin verificación previa)
+     * @param stockEsperado   stock total leído por el cliente (parte de stock del {@code ETag});
+     *                        obligatorio con {@code versionEsperada} si el medicamento tiene buckets
+     * @return DTO con la información del medicamento actualizado
+     * @throws com.konex.Konex.exception.ConflictoVersionException si la versión o el stock ya cambiaron
+     * @throws org.springframework.dao.OptimisticLockingFailureException si otra operación modifica
+     *         el medicamento durante la actualización
+     */
+    MedicamentoResponse actualizar(Long id, MedicamentoRequest req, Long versionEsperada, Long stockEsperado);
+
+    /**
+     * Importa medicamentos en bloque desde un archivo CSV o NDJSON leído en streaming.
+     *
+     * @param in      contenido del archivo
+     * @param formato formato del archivo
+     * @return filas leídas, importadas y rechazadas (con su línea y causa)
+     * @throws com.konex.Konex.exception.BusinessException si el encabezado CSV es inválido
+     */
+    ImportacionResponse importar(InputStream in, FormatoImportacion formato);
+
+    /**
+     * Aplica varios movimientos de stock {@code (medicamentoId, delta, motivo)} en una sola transacción.
+     *
+     * @param req movimientos y modo (todo o nada por defecto, o parcial)
+     * @return movimientos aplicados y rechazados
+     * @throws com.konex.Konex.exception.AjusteStockRechazadoException en modo todo o nada, si algún
+     *         movimiento no se puede aplicar (no se aplica ninguno)
+     */
+    AjusteStockResponse ajustarStock(AjusteStockRequest req);
+
+    /**
+     * Registra la recepción de un lote y suma sus unidades al stock del medicamento.
+     *
+     * @param medicamentoId medicamento recibido
+     * @param req           código, vencimiento y cantidad del lote
+     * @return el lote registrado
+     * @throws com.konex.Konex.exception.NotFoundException si el medicamento no existe
+     */
+    LoteResponse registrarLote(Long medicamentoId, LoteRequest req);
+
+    /**
+     * Lista los lotes con unidades de un medicamento, del primero al último en vencer.
+     *
+     * @param medicamentoId medicamento
+     * @return lotes abiertos en orden FEFO
+     */
+    List<LoteResponse> listarLotes(Long medicamentoId);
+
+    /**
+     * Validadores HTTP ({@code ETag}/{@code Last-Modified}) de un medicamento activo, sin cargar
+     * la entidad completa.
+     *
+     * @param id identificador del medicamento
+     * @return versión, stock total y última modificación
+     * @throws com.konex.Konex.exception.NotFoundException si no existe o está inactivo
+     */
+    ValidadorMedicamento validador(Long id);
+
+    /**
+     * Marca de agua del catálogo: la modificación más reciente de cualquier medicamento o bucket
+     * de stock. Cambia con cualquier escritura que pueda alterar un listado.
+     *
+     * @return fecha más reciente, o {@code null} si el catálogo está vacío
+     */
+    LocalDateTime ultimaModificacionCatalogo();
+
     /**
      * Elimina un medicamento.
      * <p>
@@ -67,13 +153,41 @@ public interface MedicamentoService {
     MedicamentoResponse obtener(Long id);
 
     /**
-     * Lista medicamentos con filtro opcional por nombre (case-insensitive) y paginación.
+     * Lista medicamentos con filtro opcional por nombre y paginación.
+     * <p>El filtro ignora mayúsculas y tildes, encuentra subcadenas y tolera errores
+     * tipográficos leves; con filtro, los resultados se ordenan por relevancia.</p>
      *
      * @param nombre   texto a buscar en el nombre (opcional; {@code null} o vacío = sin filtro)
      * @param pageable configuración de paginación y ordenamiento
      * @return página de medicamentos que cumplen el filtro
      */
     Page<MedicamentoResponse> listar(String nombre, Pageable pageable);
+
+    /**
+     * Lista medicamentos activos paginando por cursor (<i>keyset</i>) en orden {@code (nombre, id)}.
+     * <p>No calcula totales; el costo de cada página es constante sin importar su profundidad.
+     * El filtro por nombre es el mismo de {@link #listar(String, Pageable)}, pero el orden sigue
+     * siendo {@code (nombre, id)} y no la relevancia.</p>
+     *
+     * @param nombre texto a buscar en el nombre (opcional; {@code null} o vacío = sin filtro)
+     * @param after  token de la página anterior ({@code null} o vacío = primera página)
+     * @param size   tamaño de página
+     * @return página de medicamentos con el token de la siguiente
+     */
+    CursorPageResponse<MedicamentoResponse> listarCursor(String nombre, String after, int size);
+
+    /**
+     * Medicamentos modificados desde un token de sincronización, cada uno una sola vez y con su
+     * estado actual (incluidos los inactivados). El costo depende del número de cambios, no del
+     * tamaño del catálogo.
+     *
+     * @param desde token de la sincronización anterior ({@code null} o vacío = solo la posición actual)
+     * @param size  máximo de cambios leídos por llamada
+     * @return medicamentos modificados y el token de la siguiente sincronización
+     * @throws com.konex.Konex.exception.BusinessException si el token o el tamaño no son válidos
+     * @throws com.konex.Konex.exception.TokenExpiradoException si el token es anterior a la retención
+     */
+    CambiosResponse cambios(String desde, int size);
     /**
      * Genera una cotización para un medicamento y una cantidad solicitada.
      * <p>
@@ -100,4 +214,42 @@ public interface MedicamentoService {
      * @throws IllegalStateException si no hay stock suficiente
      */
     void descontarStock(Long medicamentoId, long cantidad);
+
+    /**
+     * Devuelve las estadísticas de la caché de lecturas de medicamentos.
+     *
+     * @return aciertos, fallos, desalojos, tasa de aciertos y tamaño de la caché
+     */
+    CacheEstadisticasResponse estadisticasCache();
+
+    /**
+     * Activa, cambia o desactiva el reparto del stock de un medicamento en buckets (modo para
+     * medicamentos muy vendidos), conservando el stock total.
+     *
+     * @param medicamentoId identificador del medicamento; no {@code null}
+     * @param buckets       buckets adicionales ({@code 0} = desactivar)
+     * @return DTO del medicamento con el stock total
+     * @throws com.konex.Konex.exception.NotFoundException si el medicamento no existe
+     * @throws com.konex.Konex.exception.BusinessException si el número de buckets es inválido
+     */
+    MedicamentoResponse configurarBucketsStock(Long medicamentoId, int buckets);
+
+    /**
+     * Fija o quita el punto de reorden de un medicamento para las alertas de stock bajo.
+     *
+     * @param medicamentoId identificador del medicamento; no {@code null}
+     * @param stockMinimo   punto de reorden ({@code null} = sin alerta)
+     * @return DTO del medicamento actualizado
+     * @throws com.konex.Konex.exception.NotFoundException si el medicamento no existe
+     * @throws com.konex.Konex.exception.BusinessException si el punto de reorden es negativo
+     */
+    MedicamentoResponse configurarStockMinimo(Long medicamentoId, Long stockMinimo);
+
+    /**
+     * Reconstruye el índice de búsqueda por nombre de todo el catálogo
+     * (p. ej., tras cargar datos directamente en la base de datos).
+     *
+     * @return número de medicamentos procesados
+     */
+    int reconstruirIndiceBusqueda();
 }
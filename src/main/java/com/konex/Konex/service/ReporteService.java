@@ -0,0 +1,39 @@
+package com.konex.Konex.service;
+
+import com.konex.Konex.dto.AgrupacionReporte;
+import com.konex.Konex.dto.ReporteVentasResponse;
+
+import java.time.LocalDate;
+
+/**
+ * Contrato de la capa de servicio para reportes agregados de ventas.
+ * <p>
+ * Las agregaciones se calculan en la base de datos ({@code GROUP BY}); por defecto se leen
+ * del resumen diario que {@link VentaService#crearVenta} mantiene en cada venta.
+ * </p>
+ */
+public interface ReporteService {
+
+    /**
+     * Unidades y valor vendidos en un rango de días, agrupados según {@code agrupacion}.
+     *
+     * @param desde      día inicial (inclusive), no {@code null}
+     * @param hasta      día final (inclusive), no {@code null} y ≥ {@code desde}
+     * @param agrupacion criterio de agrupación
+     * @param detalle    {@code true} para calcular sobre las líneas de venta en lugar del resumen diario
+     * @return totales por grupo y del rango completo
+     * @throws com.konex.Konex.exception.BusinessException si el rango es inválido
+     */
+    ReporteVentasResponse ventas(LocalDate desde, LocalDate hasta, AgrupacionReporte agrupacion, boolean detalle);
+
+    /**
+     * Recalcula el resumen diario de un rango a partir de las líneas de venta
+     * (p. ej., para poblarlo con ventas anteriores a su introducción).
+     *
+     * @param desde día inicial (inclusive), no {@code null}
+     * @param hasta día final (inclusive), no {@code null} y ≥ {@code desde}
+     * @return filas de resumen generadas
+     * @throws com.konex.Konex.exception.BusinessException si el rango es inválido
+     */
+    int reconstruirResumen(LocalDate desde, LocalDate hasta);
+}
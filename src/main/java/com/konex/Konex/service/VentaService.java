@@ -1,10 +1,15 @@
 package com.konex.Konex.service;
 
+import com.konex.Konex.dto.CursorPageResponse;
 import com.konex.Konex.dto.VentaCreateRequest;
 import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.export.FormatoExportacion;
+import com.konex.Konex.groupcommit.ResultadoLote;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -25,22 +30,48 @@ import java.util.List;
  */
 public interface VentaService {
     /**
-     * Crea una venta a partir de una solicitud con medicamento y cantidad.
+     * Crea una venta a partir de una solicitud con una o varias líneas (medicamento y cantidad).
      * <p>
      * La implementación debe:
      * </p>
      * <ul>
-     *   <li>Validar existencia del medicamento y el stock disponible.</li>
-     *   <li>Descontar la cantidad del inventario.</li>
+     *   <li>Validar existencia de los medicamentos y el stock disponible.</li>
+     *   <li>Descontar las cantidades del inventario (todas o ninguna).</li>
      *   <li>Calcular el valor total y persistir la venta con sus detalles.</li>
      * </ul>
      *
-     * @param req datos de creación (medicamento y cantidad), no {@code null}
+     * @param req datos de creación (líneas, o medicamento y cantidad), no {@code null}
      * @return representación de la venta creada
      * @throws IllegalArgumentException si los datos son inválidos
      #* @throws javax.persistence.EntityNotFoundException si el medicamento no existe
      */
     VentaResponse crearVenta(VentaCreateRequest req);
+
+    /**
+     * Crea una venta de forma idempotente según la clave del cliente ({@code Idempotency-Key}).
+     * <p>
+     * La primera solicitud con una clave registra la venta; los reintentos con la misma clave
+     * (incluso concurrentes) devuelven esa misma respuesta sin descontar stock de nuevo.
+     * </p>
+     *
+     * @param clave clave de idempotencia (1 a 100 caracteres)
+     * @param req   datos de creación, no {@code null}
+     * @return la venta creada o la registrada previamente con la clave
+     * @throws com.konex.Konex.exception.BusinessException si la clave se reutiliza con otra solicitud
+     */
+    VentaResponse crearVentaIdempotente(String clave, VentaCreateRequest req);
+
+    /**
+     * Crea un lote de ventas independientes en una sola transacción (modo <i>group commit</i>).
+     * <p>
+     * Cada solicitud se valida y se atiende por separado: si una no tiene stock o es inválida,
+     * recibe su propio error y las demás del lote se confirman igual.
+     * </p>
+     *
+     * @param lote solicitudes de venta, en orden de llegada
+     * @return un resultado por solicitud, en el mismo orden
+     */
+    List<ResultadoLote<VentaResponse>> crearVentasEnLote(List<VentaCreateRequest> lote);
     /**
      * Obtiene una venta por su identificador.
      *
@@ -69,4 +100,40 @@ public interface VentaService {
      * @return lista completa de ventas
      */
     Page<VentaResponse> listarTodas(Pageable pageable);
+
+    /**
+     * Lista todas las ventas paginando por cursor (<i>keyset</i>), de la más reciente a la más antigua.
+     * <p>No calcula totales; el costo de cada página es constante sin importar su profundidad.</p>
+     *
+     * @param after token de la página anterior ({@code null} o vacío = primera página)
+     * @param size  tamaño de página
+     * @return página de ventas con el token de la siguiente
+     */
+    CursorPageResponse<VentaResponse> listarTodasCursor(String after, int size);
+
+    /**
+     * Lista ventas dentro de un rango de fechas (por día calendario) paginando por cursor
+     * (<i>keyset</i>), de la más reciente a la más antigua.
+     *
+     * @param desde día inicial (inclusive), no {@code null}
+     * @param hasta día final (inclusive), no {@code null}
+     * @param after token de la página anterior ({@code null} o vacío = primera página)
+     * @param size  tamaño de página
+     * @return página de ventas en el rango con el token de la siguiente
+     */
+    CursorPageResponse<VentaResponse> listarPorRangoCursor(LocalDate desde, LocalDate hasta, String after, int size);
+
+    /**
+     * Exporta las líneas de venta de un rango de fechas (por día calendario) directamente
+     * sobre {@code out}, sin materializar el resultado en memoria.
+     *
+     * @param desde   día inicial (inclusive), no {@code null}
+     * @param hasta   día final (inclusive), no {@code null}
+     * @param formato formato de salida
+     * @param out     flujo de destino; no se cierra
+     * @return número de líneas exportadas
+     * @throws IOException si falla la escritura
+     */
+    long exportarPorRango(LocalDate desde, LocalDate hasta, FormatoExportacion formato, OutputStream out)
+            throws IOException;
 }
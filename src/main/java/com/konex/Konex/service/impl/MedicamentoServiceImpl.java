@@ -1,23 +1,71 @@
 package com.konex.Konex.service.impl;
 
 
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.alerting.NivelStock;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.dto.AjusteStockErrorLinea;
+import com.konex.Konex.dto.AjusteStockRequest;
+import com.konex.Konex.dto.AjusteStockResponse;
+import com.konex.Konex.dto.CacheEstadisticasResponse;
+import com.konex.Konex.dto.CambiosResponse;
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.ImportacionResponse;
+import com.konex.Konex.dto.LoteRequest;
+import com.konex.Konex.dto.LoteResponse;
 import com.konex.Konex.dto.MedicamentoRequest;
 import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.dto.MovimientoStockRequest;
+import com.konex.Konex.exception.AjusteStockRechazadoException;
+import com.konex.Konex.exception.BusinessException;
+import com.konex.Konex.exception.ConflictoVersionException;
 import com.konex.Konex.exception.NotFoundException;
+import com.konex.Konex.exception.StockInsuficienteException;
+import com.konex.Konex.importer.FormatoImportacion;
+import com.konex.Konex.importer.MedicamentoImporter;
 import com.konex.Konex.mapper.CotizacionMapper;
+import com.konex.Konex.mapper.LoteMapper;
 import com.konex.Konex.mapper.MedicamentoMapper;
 import com.konex.Konex.model.Laboratorio;
+import com.konex.Konex.model.Lote;
 import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.MovimientoStock;
+import com.konex.Konex.replica.ConsistenciaLectura;
 import com.konex.Konex.repository.LaboratorioRepository;
+import com.konex.Konex.repository.LoteRepository;
 import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.MedicamentoStockBucketRepository;
+import com.konex.Konex.repository.MovimientoStockRepository;
+import com.konex.Konex.search.MedicamentoSearchIndex;
 import com.konex.Konex.service.MedicamentoService;
+import com.konex.Konex.stock.MedicamentoStockBuckets;
+import com.konex.Konex.utils.CursorMedicamento;
+import com.konex.Konex.utils.TextoBusqueda;
+import com.konex.Konex.utils.TokenCambios;
+import com.konex.Konex.utils.ValidadorMedicamento;
 import com.konex.Konex.utils.Validators;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 /**
  * Implementación de {@link MedicamentoService} que gestiona el ciclo de vida
  * de los medicamentos y operaciones de negocio asociadas (cotización y
@@ -37,9 +85,20 @@ import org.springframework.transaction.annotation.Transactional;
  *   <li>Métodos de consulta marcados con {@code readOnly = true} para optimizar rendimiento.</li>
  * </ul>
  *
- * <p><b>Concurrencia:</b> En escenarios de alta concurrencia, considera control
- * de versiones optimista (campo {@code @Version}) o bloqueos pesimistas para
- * evitar inconsistencias al descontar stock.</p>
+ * <p><b>Caché:</b> {@link #obtener(Long)} y {@link #cotizar(Long, long)} leen a través de
+ * {@link MedicamentoCache}; toda escritura (crear, actualizar, eliminar, descontar) invalida la
+ * entrada tras el commit y queda en el registro de cambios ({@link MedicamentoChangeLog}) en la
+ * misma transacción.</p>
+ *
+ * <p><b>Búsqueda:</b> {@link #listar(String, Pageable)} resuelve el filtro por nombre con el índice
+ * de trigramas de {@link MedicamentoSearchIndex}, que se mantiene en la misma transacción que
+ * cada alta, cambio de nombre o baja.</p>
+ *
+ * <p><b>Concurrencia:</b> El descuento de stock se resuelve con un {@code UPDATE} condicional
+ * atómico en base de datos, por lo que ventas concurrentes no pueden sobrevender. Los medicamentos
+ * muy vendidos pueden repartir su stock en buckets ({@link MedicamentoStockBuckets}) para que esas
+ * ventas no se serialicen sobre una sola fila. {@link Medicamento} tiene bloqueo optimista
+ * ({@code VERSION}): las ediciones completas fallan si el medicamento cambió desde que se leyó.</p>
  */
 @Service
 @RequiredArgsConstructor
@@ -47,6 +106,18 @@ public class MedicamentoServiceImpl implements MedicamentoService {
 
     private final MedicamentoRepository medicamentoRepository;
     private final LaboratorioRepository laboratorioRepository;
+    private final MedicamentoCache medicamentoCache;
+    private final MedicamentoSearchIndex medicamentoSearchIndex;
+    private final MedicamentoStockBuckets stockBuckets;
+    private final MedicamentoImporter medicamentoImporter;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final LoteRepository loteRepository;
+    private final MedicamentoStockBucketRepository bucketRepository;
+    private final MedicamentoChangeLog changeLog;
+    private final AlertasStockBajo alertasStock;
+
+    /** Tamaño máximo de página en los listados por cursor. */
+    static final int MAX_TAMANO_CURSOR = 1000;
     /**
      * Crea un nuevo medicamento.
      * <p>Valida que el laboratorio indicado exista y luego persiste el medicamento.</p>
@@ -63,6 +134,8 @@ public class MedicamentoServiceImpl implements MedicamentoService {
 
         Medicamento entity = MedicamentoMapper.toEntity(req, lab);
         entity = medicamentoRepository.save(entity);
+        medicamentoSearchIndex.indexar(entity.getId(), entity.getNombre());
+        registrarCambio(List.of(entity.getId()));
         return MedicamentoMapper.toResponse(entity);
     }
     /**
@@ -77,23 +150,93 @@ public class MedicamentoServiceImpl implements MedicamentoService {
     @Transactional
     @Override
     public MedicamentoResponse actualizar(Long id, MedicamentoRequest req) {
+        return actualizar(id, req, null, null);
+    }
+
+    /**
+     * Actualiza un medicamento existente si su versión coincide con la esperada.
+     * <p>
+     * La verificación previa rechaza de inmediato las ediciones basadas en una lectura
+     * desactualizada (p. ej., anterior a una venta); además, el {@code UPDATE} de la entidad
+     * verifica {@code VERSION}, por lo que una venta confirmada entre la lectura y la escritura de
+     * este método también hace fallar la edición en lugar de perder su descuento de stock.
+     * </p>
+     * <p>
+     * Los descuentos en buckets no incrementan {@code VERSION}: con stock repartido se bloquean la
+     * fila y sus buckets y se compara además el stock total con el que leyó el cliente, antes de
+     * fijar el nuevo total.
+     * </p>
+     *
+     * @param id              identificador del medicamento a actualizar, no {@code null}
+     * @param req             datos a aplicar, no {@code null}
+     * @param versionEsperada versión leída por el cliente ({@code null} = sin verificación previa)
+     * @param stockEsperado   stock total leído por el cliente ({@code null} = solo versión)
+     * @return DTO del medicamento actualizado
+     * @throws NotFoundException si el medicamento no existe o si se indica un laboratorio inexistente
+     * @throws ConflictoVersionException si la versión actual no es la esperada o, con buckets, si el
+     *                                   stock total cambió o no se indicó
+     */
+    @Transactional
+    @Override
+    public MedicamentoResponse actualizar(Long id, MedicamentoRequest req, Long versionEsperada, Long stockEsperado) {
         Medicamento entity = medicamentoRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        if (versionEsperada != null && !versionEsperada.equals(entity.getVersion())) {
+            throw new ConflictoVersionException("El medicamento fue modificado (versión actual "
+                    + entity.getVersion() + "); vuelva a consultarlo antes de editar");
+        }
+        if (versionEsperada != null && entity.tieneBuckets()) {
+            // Stock estable hasta el commit: ninguna venta descuenta de los buckets bloqueados
+            long total = stockBuckets.bloquearTotal(id);
+            if (stockEsperado == null || stockEsperado != total) {
+                throw new ConflictoVersionException("El stock del medicamento cambió (stock actual " + total
+                        + "); vuelva a consultarlo y envíe su ETag en If-Match antes de editar");
+            }
+        }
 
         if (req.getLaboratorioId() != null) {
             Laboratorio lab = laboratorioRepository.findById(req.getLaboratorioId())
                     .orElseThrow(() -> new NotFoundException("Laboratorio no encontrado"));
             entity.setLaboratorio(lab);
         }
+        boolean renombrado = !Objects.equals(entity.getNombre(), req.getNombre());
         entity.setNombre(req.getNombre());
         entity.setFechaFabricacion(req.getFechaFabricacion());
         entity.setFechaVencimiento(req.getFechaVencimiento());
-        entity.setCantidadStock(req.getCantidadStock());
+        if (entity.tieneBuckets()) {
+            // Stock repartido: el total solicitado se reparte entre la fila y sus buckets
+            long total = req.getCantidadStock();
+            long principal = stockBuckets.fijarTotal(id, entity.getStockBuckets(), total);
+            entity.setCantidadStock(principal);
+            entity.setStockEnBuckets(total - principal);
+        } else {
+            entity.setCantidadStock(req.getCantidadStock());
+        }
         entity.setValorUnitario(req.getValorUnitario());
 
         entity = medicamentoRepository.save(entity);
+        if (renombrado && entity.getActivo() == 1) medicamentoSearchIndex.reindexar(id, entity.getNombre());
+        registrarCambio(List.of(id));
+        alertasStock.evaluar(List.of(NivelStock.de(entity)));
         return MedicamentoMapper.toResponse(entity);
     }
+    /**
+     * Importa medicamentos en bloque (ver {@link MedicamentoImporter}).
+     * <p>
+     * Sin transacción propia: cada lote del archivo se confirma en la suya, para que una
+     * importación de decenas de miles de filas no mantenga una transacción abierta de principio
+     * a fin. Los medicamentos nuevos no tienen entradas en caché que invalidar.
+     * </p>
+     *
+     * @param in      contenido del archivo
+     * @param formato formato del archivo
+     * @return filas leídas, importadas y rechazadas
+     */
+    @Override
+    public ImportacionResponse importar(InputStream in, FormatoImportacion formato) {
+        return medicamentoImporter.importar(in, formato);
+    }
+
     /**
      * Elimina lógicamente un medicamento (marca {@code activo = 0}).
      *
@@ -108,11 +251,23 @@ public class MedicamentoServiceImpl implements MedicamentoService {
 
         med.setActivo(0);
         medicamentoRepository.save(med);
+        medicamentoSearchIndex.quitar(id);
+        registrarCambio(List.of(id));
+        alertasStock.evaluar(List.of(NivelStock.de(med)));
     }
 
     /**
      * Lista medicamentos activos con filtro opcional por nombre (paginado).
-     * <p>Delegado al repositorio {@link MedicamentoRepository#buscar(String, Pageable)}.</p>
+     * <p>
+     * El filtro es insensible a mayúsculas y tildes y admite subcadenas y errores leves:
+     * </p>
+     * <ul>
+     *   <li>Sin texto: delega en {@link MedicamentoRepository#buscar(String, Pageable)}.</li>
+     *   <li>Menos de {@value TextoBusqueda#LONGITUD_NGRAMA} caracteres: búsqueda por prefijo
+     *       sobre el nombre normalizado indexado.</li>
+     *   <li>En otro caso: índice de trigramas; los resultados se ordenan por relevancia y el
+     *       orden de {@code pageable} se ignora.</li>
+     * </ul>
      *
      * @param nombre   texto a buscar en el nombre (opcional; {@code null} o vacío = sin filtro)
      * @param pageable configuración de paginación y ordenamiento
@@ -121,11 +276,136 @@ public class MedicamentoServiceImpl implements MedicamentoService {
     @Transactional(readOnly = true)
     @Override
     public Page<MedicamentoResponse> listar(String nombre, Pageable pageable) {
-        return medicamentoRepository.buscar(nombre, pageable).map(MedicamentoMapper::toResponse);
+        String normalizado = TextoBusqueda.normalizar(nombre);
+        if (normalizado.isEmpty()) {
+            return medicamentoRepository.buscar(null, pageable).map(MedicamentoMapper::toResponse);
+        }
+        if (normalizado.length() < TextoBusqueda.LONGITUD_NGRAMA) {
+            return medicamentoRepository.buscarPorPrefijo(normalizado, pageable).map(MedicamentoMapper::toResponse);
+        }
+
+        Page<Long> ids = medicamentoSearchIndex.buscarIds(normalizado,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+        if (ids.isEmpty()) return new PageImpl<>(List.of(), pageable, ids.getTotalElements());
+
+        Map<Long, Medicamento> porId = medicamentoRepository.findWithLaboratorioByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(Medicamento::getId, Function.identity()));
+        List<MedicamentoResponse> content = ids.getContent().stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .map(MedicamentoMapper::toResponse)
+                .toList();
+        return new PageImpl<>(content, pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Reconstruye el índice de búsqueda de todo el catálogo.
+     *
+     * @return número de medicamentos procesados
+     */
+    @Override
+    public int reconstruirIndiceBusqueda() {
+        return medicamentoSearchIndex.reconstruir();
+    }
+
+    /**
+     * Lista medicamentos activos paginando por cursor {@code (nombre, id)} ascendente.
+     * <p>
+     * Lee {@code size + 1} filas (con su laboratorio en la misma consulta): la fila extra solo
+     * indica si existe una página siguiente. No ejecuta {@code COUNT} ni {@code OFFSET}.
+     * </p>
+     *
+     * @param nombre texto a buscar en el nombre (opcional; {@code null} o vacío = sin filtro)
+     * @param after  token de la página anterior ({@code null} o vacío = primera página)
+     * @param size   tamaño de página (1..{@value #MAX_TAMANO_CURSOR})
+     * @return página de medicamentos con el token de la siguiente
+     * @throws BusinessException si el token o el tamaño no son válidos
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageResponse<MedicamentoResponse> listarCursor(String nombre, String after, int size) {
+        Validators.check(size > 0 && size <= MAX_TAMANO_CURSOR,
+                "El tamaño de página debe estar entre 1 y " + MAX_TAMANO_CURSOR);
+        CursorMedicamento cursor = CursorMedicamento.decode(after);
+        Pageable limite = PageRequest.of(0, size + 1);
+        // Mismo criterio que listar: prefijo indexado para consultas cortas, trigramas para el resto
+        String normalizado = TextoBusqueda.normalizar(nombre);
+        List<Medicamento> filas;
+        if (normalizado.length() < TextoBusqueda.LONGITUD_NGRAMA) {
+            filas = cursor == null
+                    ? medicamentoRepository.buscarPrimeros(normalizado, limite)
+                    : medicamentoRepository.buscarDespuesDe(normalizado, cursor.nombre(), cursor.id(), limite);
+        } else {
+            Set<String> trigramas = TextoBusqueda.trigramas(normalizado);
+            long minimo = TextoBusqueda.minimoCoincidencias(trigramas.size());
+            filas = cursor == null
+                    ? medicamentoRepository.buscarPrimerosPorTrigramas(trigramas, minimo, limite)
+                    : medicamentoRepository.buscarPorTrigramasDespuesDe(trigramas, minimo,
+                            cursor.nombre(), cursor.id(), limite);
+        }
+
+        boolean hasNext = filas.size() > size;
+        List<Medicamento> pagina = hasNext ? filas.subList(0, size) : filas;
+        String next = null;
+        if (hasNext) {
+            Medicamento ultimo = pagina.get(pagina.size() - 1);
+            next = new CursorMedicamento(ultimo.getNombre(), ultimo.getId()).encode();
+        }
+        return CursorPageResponse.<MedicamentoResponse>builder()
+                .content(pagina.stream().map(MedicamentoMapper::toResponse).toList())
+                .size(size)
+                .next(next)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Sincronización incremental del catálogo a partir de {@link MedicamentoChangeLog}.
+     * <p>
+     * Lee hasta {@code size} cambios posteriores al token, los compacta por medicamento y carga
+     * esos medicamentos (con su laboratorio) en una sola consulta. Sin token solo devuelve la
+     * posición actual, para empezar a sincronizar tras descargar el catálogo completo.
+     * </p>
+     *
+     * @param desde token de la sincronización anterior (opcional)
+     * @param size  máximo de cambios leídos (1..{@value #MAX_TAMANO_CURSOR})
+     * @return medicamentos modificados y el nuevo token
+     * @throws BusinessException si el token o el tamaño no son válidos
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CambiosResponse cambios(String desde, int size) {
+        Validators.check(size > 0 && size <= MAX_TAMANO_CURSOR,
+                "El tamaño debe estar entre 1 y " + MAX_TAMANO_CURSOR);
+        TokenCambios token = TokenCambios.decode(desde);
+        if (token == null) {
+            return CambiosResponse.builder()
+                    .medicamentos(List.of())
+                    .token(changeLog.posicionActual().encode())
+                    .build();
+        }
+
+        MedicamentoChangeLog.Lectura lectura = changeLog.leer(token, size);
+        List<MedicamentoResponse> medicamentos = List.of();
+        if (!lectura.medicamentoIds().isEmpty()) {
+            Map<Long, Medicamento> porId = medicamentoRepository.findWithLaboratorioByIdIn(lectura.medicamentoIds()).stream()
+                    .collect(Collectors.toMap(Medicamento::getId, Function.identity()));
+            medicamentos = lectura.medicamentoIds().stream()
+                    .map(porId::get)
+                    .filter(Objects::nonNull)
+                    .map(MedicamentoMapper::toResponse)
+                    .toList();
+        }
+        return CambiosResponse.builder()
+                .medicamentos(medicamentos)
+                .token(lectura.token().encode())
+                .hasMore(lectura.hayMas())
+                .build();
     }
 
     /**
      * Obtiene un medicamento por su id, solo si está activo.
+     * <p>Lectura servida desde {@link MedicamentoCache}; solo consulta la BD ante un fallo de caché.</p>
      *
      * @param id identificador del medicamento, no {@code null}
      * @return DTO del medicamento
@@ -134,15 +414,54 @@ public class MedicamentoServiceImpl implements MedicamentoService {
     @Transactional(readOnly = true)
     @Override
     public MedicamentoResponse obtener(Long id) {
-        Medicamento med = medicamentoRepository.findById(id)
+        MedicamentoResponse med = medicamentoCache.obtener(id, this::cargar);
+        if (med == null || med.getActivo() != 1) throw new NotFoundException("Medicamento no encontrado");
+        return med;
+    }
+
+    /**
+     * Validadores HTTP de un medicamento activo.
+     * <p>
+     * Si está en {@link MedicamentoCache} se toman de ahí (sin consultar la base); si no, se leen
+     * con una proyección de solo versión, stock y fecha
+     * ({@link MedicamentoRepository#validador(Long)}), sin cargar la entidad ni su laboratorio.
+     * </p>
+     *
+     * @param id identificador del medicamento
+     * @return versión, stock total y última modificación
+     * @throws NotFoundException si no existe o está inactivo
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public ValidadorMedicamento validador(Long id) {
+        MedicamentoResponse enCache = medicamentoCache.enCache(id);
+        if (enCache != null) {
+            if (enCache.getActivo() != 1) throw new NotFoundException("Medicamento no encontrado");
+            return ValidadorMedicamento.de(enCache);
+        }
+        return medicamentoRepository.validador(id)
                 .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
-        if (med.getActivo() != 1) throw new NotFoundException("Medicamento no encontrado");
-        return MedicamentoMapper.toResponse(med);
+    }
+
+    /**
+     * Marca de agua del catálogo: la mayor {@code FECHA_MODIFICACION} de medicamentos y buckets,
+     * cada una leída del extremo de su índice.
+     *
+     * @return fecha más reciente, o {@code null} si el catálogo está vacío
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public LocalDateTime ultimaModificacionCatalogo() {
+        LocalDateTime medicamentos = medicamentoRepository.ultimaModificacion();
+        LocalDateTime buckets = bucketRepository.ultimaModificacion();
+        if (medicamentos == null) return buckets;
+        return buckets == null || medicamentos.isAfter(buckets) ? medicamentos : buckets;
     }
 
     /**
      * Genera una cotización para un medicamento y una cantidad dada.
-     * <p>Bloquea la operación si el medicamento está inactivo o la cantidad es inválida.</p>
+     * <p>Bloquea la operación si el medicamento está inactivo o la cantidad es inválida.
+     * Lectura servida desde {@link MedicamentoCache}, invalidada en cada cambio de stock.</p>
      *
      * @param medicamentoId identificador del medicamento, no {@code null}
      * @param cantidad      unidades solicitadas; debe ser &gt; 0
@@ -154,8 +473,8 @@ public class MedicamentoServiceImpl implements MedicamentoService {
     @Transactional(readOnly = true)
     @Override
     public CotizacionResponse cotizar(Long medicamentoId, long cantidad) {
-        Medicamento m = medicamentoRepository.findById(medicamentoId)
-                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        MedicamentoResponse m = medicamentoCache.obtener(medicamentoId, this::cargar);
+        if (m == null) throw new NotFoundException("Medicamento no encontrado");
         Validators.check(m.getActivo() == 1, "El medicamento está inactivo");
         Validators.check(cantidad > 0, "La cantidad debe ser mayor que cero");
         return CotizacionMapper.toResponse(m, cantidad);
@@ -164,7 +483,12 @@ public class MedicamentoServiceImpl implements MedicamentoService {
 
     /**
      * Descuenta unidades del stock de un medicamento.
-     * <p>Valida que esté activo y que exista stock suficiente.</p>
+     * <p>
+     * Valida que esté activo y que exista stock suficiente mediante un único
+     * {@code UPDATE} condicional ({@link MedicamentoRepository#descontarStock(Long, long)});
+     * la entidad solo se consulta cuando no se afectó ninguna fila, para reportar la causa o,
+     * si el medicamento tiene el stock repartido en buckets, descontar de ellos.
+     * </p>
      *
      * @param medicamentoId identificador del medicamento, no {@code null}
      * @param cantidad      unidades a descontar; debe ser &gt; 0
@@ -176,12 +500,246 @@ public class MedicamentoServiceImpl implements MedicamentoService {
     @Override
     public void descontarStock(Long medicamentoId, long cantidad) {
         Validators.check(cantidad > 0, "La cantidad debe ser mayor que cero");
+        if (medicamentoRepository.descontarStock(medicamentoId, cantidad) == 1) {
+            registrarCambio(List.of(medicamentoId));
+            alertasStock.revisar(List.of(medicamentoId));
+            return;
+        }
+
+        // Ninguna fila afectada: se consulta la entidad para informar la causa o, si el stock
+        // está repartido en buckets, descontar de ellos
+        Medicamento m = medicamentoRepository.findById(medicamentoId)
+                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        Validators.check(m.getActivo() == 1, "El medicamento está inactivo");
+        if (m.tieneBuckets() && stockBuckets.descontarEnBuckets(medicamentoId, m.getStockBuckets(), cantidad)) {
+            registrarCambio(List.of(medicamentoId));
+            alertasStock.evaluar(List.of(NivelStock.de(m, m.stockTotal() - cantidad)));
+            return;
+        }
+        throw new StockInsuficienteException("Stock insuficiente para la venta");
+    }
+
+    /**
+     * Aplica varios movimientos de stock (recepción, conteo físico) en una sola transacción.
+     * <p>
+     * Todos los movimientos se envían en un único batch JDBC de {@code UPDATE} condicionales
+     * ({@link MedicamentoRepository#ajustarStock(List, List)}), ordenados por medicamento, que es el
+     * mismo orden en que bloquean las ventas; dentro de un medicamento se respeta el orden de la
+     * solicitud. Solo se consultan las entidades de los movimientos que no afectaron ninguna fila,
+     * para informar la causa o, si el stock está repartido en buckets, descontar de ellos. Los
+     * movimientos aplicados quedan registrados en {@link MovimientoStock} y la caché se invalida
+     * una sola vez para todos los medicamentos afectados.
+     * </p>
+     *
+     * @param req movimientos y modo (todo o nada por defecto, o parcial)
+     * @return movimientos aplicados y rechazados (solo hay rechazados en modo parcial)
+     * @throws AjusteStockRechazadoException en modo todo o nada, si algún movimiento falla
+     */
+    @Transactional
+    @Override
+    public AjusteStockResponse ajustarStock(AjusteStockRequest req) {
+        List<MovimientoStockRequest> movimientos = req.getMovimientos();
+        List<AjusteStockErrorLinea> errores = new ArrayList<>();
+        List<Integer> orden = new ArrayList<>(movimientos.size());
+        for (int i = 0; i < movimientos.size(); i++) {
+            MovimientoStockRequest m = movimientos.get(i);
+            if (m.getDelta() == 0) {
+                errores.add(new AjusteStockErrorLinea(i + 1, m.getMedicamentoId(), "El movimiento debe ser distinto de cero"));
+            } else {
+                orden.add(i);
+            }
+        }
+        orden.sort(Comparator.comparing(i -> movimientos.get(i).getMedicamentoId()));
+
+        List<Long> ids = orden.stream().map(i -> movimientos.get(i).getMedicamentoId()).toList();
+        List<Long> deltas = orden.stream().map(i -> movimientos.get(i).getDelta()).toList();
+        int[] filas = ids.isEmpty() ? new int[0] : medicamentoRepository.ajustarStock(ids, deltas);
+
+        boolean[] aplicado = new boolean[orden.size()];
+        Set<Long> sinAplicar = new LinkedHashSet<>();
+        for (int k = 0; k < filas.length; k++) {
+            aplicado[k] = filas[k] == 1;
+            if (!aplicado[k]) sinAplicar.add(ids.get(k));
+        }
+        if (!sinAplicar.isEmpty()) {
+            // Solo los que fallaron: se consulta la entidad para informar la causa o usar sus buckets
+            Map<Long, Medicamento> porId = medicamentoRepository.findAllById(sinAplicar).stream()
+                    .collect(Collectors.toMap(Medicamento::getId, Function.identity()));
+            for (int k = 0; k < filas.length; k++) {
+                if (aplicado[k]) continue;
+                Medicamento med = porId.get(ids.get(k));
+                long delta = deltas.get(k);
+                if (med != null && delta < 0 && med.tieneBuckets()
+                        && stockBuckets.descontarEnBuckets(med.getId(), med.getStockBuckets(), -delta)) {
+                    aplicado[k] = true;
+                    continue;
+                }
+                errores.add(new AjusteStockErrorLinea(orden.get(k) + 1, ids.get(k), med == null
+                        ? "Medicamento no encontrado"
+                        : "Stock insuficiente: el movimiento dejaría el stock en negativo"));
+            }
+        }
+        errores.sort(Comparator.comparingInt(AjusteStockErrorLinea::getLinea));
+        if (!errores.isEmpty() && !req.isParcial()) throw new AjusteStockRechazadoException(errores);
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<MovimientoStock> registro = new ArrayList<>();
+        Set<Long> afectados = new LinkedHashSet<>();
+        for (int k = 0; k < aplicado.length; k++) {
+            if (!aplicado[k]) continue;
+            MovimientoStockRequest m = movimientos.get(orden.get(k));
+            registro.add(MovimientoStock.builder()
+                    .medicamentoId(m.getMedicamentoId())
+                    .delta(m.getDelta())
+                    .motivo(m.getMotivo())
+                    .fechaHora(ahora)
+                    .build());
+            afectados.add(m.getMedicamentoId());
+        }
+        movimientoStockRepository.saveAll(registro);
+        registrarCambio(afectados);
+        alertasStock.revisar(afectados);
+
+        return AjusteStockResponse.builder()
+                .aplicados(registro.size())
+                .rechazados(errores.size())
+                .errores(errores)
+                .build();
+    }
+
+    /**
+     * Registra la recepción de un lote.
+     * <p>
+     * Inserta el {@link Lote} y suma sus unidades al stock total del medicamento con un
+     * {@code UPDATE} atómico, de modo que la lectura del disponible sigue siendo una sola columna;
+     * la recepción queda también en {@link MovimientoStock}. Las ventas consumen los lotes en orden
+     * de vencimiento.
+     * </p>
+     *
+     * @param medicamentoId medicamento recibido
+     * @param req           código, vencimiento y cantidad del lote
+     * @return el lote registrado
+     * @throws NotFoundException si el medicamento no existe
+     * @throws BusinessException si el medicamento está inactivo
+     */
+    @Transactional
+    @Override
+    public LoteResponse registrarLote(Long medicamentoId, LoteRequest req) {
         Medicamento m = medicamentoRepository.findById(medicamentoId)
                 .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
         Validators.check(m.getActivo() == 1, "El medicamento está inactivo");
-        Validators.check(m.getCantidadStock() >= cantidad, "Stock insuficiente para la venta");
-        m.setCantidadStock(m.getCantidadStock() - cantidad);
-        medicamentoRepository.save(m);
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Lote lote = loteRepository.save(Lote.builder()
+                .medicamento(m)
+                .codigo(req.getCodigo().trim())
+                .fechaVencimiento(req.getFechaVencimiento())
+                .cantidad(req.getCantidad())
+                .fechaIngreso(ahora)
+                .build());
+        medicamentoRepository.ajustarStock(List.of(medicamentoId), List.of(req.getCantidad()));
+        movimientoStockRepository.save(MovimientoStock.builder()
+                .medicamentoId(medicamentoId)
+                .delta(req.getCantidad())
+                .motivo("Recepción lote " + lote.getCodigo())
+                .fechaHora(ahora)
+                .build());
+        registrarCambio(List.of(medicamentoId));
+        alertasStock.evaluar(List.of(NivelStock.de(m, m.stockTotal() + req.getCantidad())));
+        return LoteMapper.toResponse(lote);
+    }
+
+    /**
+     * Lista los lotes con unidades de un medicamento en orden FEFO.
+     *
+     * @param medicamentoId medicamento
+     * @return lotes abiertos, del primero al último en vencer
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public List<LoteResponse> listarLotes(Long medicamentoId) {
+        return loteRepository.listarAbiertos(medicamentoId).stream()
+                .map(LoteMapper::toResponse)
+                .toList();
+    }
+
+    /**
+     * Activa, cambia o desactiva el reparto del stock en buckets (ver {@link MedicamentoStockBuckets}).
+     *
+     * @param medicamentoId identificador del medicamento, no {@code null}
+     * @param buckets       buckets adicionales ({@code 0} = desactivar)
+     * @return DTO del medicamento con el stock total
+     * @throws NotFoundException si el medicamento no existe
+     * @throws BusinessException si el número de buckets es inválido
+     */
+    @Transactional
+    @Override
+    public MedicamentoResponse configurarBucketsStock(Long medicamentoId, int buckets) {
+        stockBuckets.configurar(medicamentoId, buckets);
+        registrarCambio(List.of(medicamentoId));
+        return medicamentoRepository.findWithLaboratorioById(medicamentoId)
+                .map(MedicamentoMapper::toResponse)
+                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+    }
+
+    /**
+     * Fija o quita el punto de reorden de un medicamento y evalúa de inmediato su alerta de stock
+     * bajo ({@link AlertasStockBajo}).
+     *
+     * @param medicamentoId identificador del medicamento, no {@code null}
+     * @param stockMinimo   punto de reorden ({@code null} = sin alerta)
+     * @return DTO del medicamento actualizado
+     * @throws NotFoundException si el medicamento no existe
+     * @throws BusinessException si el punto de reorden es negativo
+     */
+    @Transactional
+    @Override
+    public MedicamentoResponse configurarStockMinimo(Long medicamentoId, Long stockMinimo) {
+        Validators.check(stockMinimo == null || stockMinimo >= 0, "El stock mínimo no puede ser negativo");
+        Medicamento entity = medicamentoRepository.findWithLaboratorioById(medicamentoId)
+                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        entity.setStockMinimo(stockMinimo);
+        entity = medicamentoRepository.save(entity);
+        registrarCambio(List.of(medicamentoId));
+        alertasStock.evaluar(List.of(NivelStock.de(entity)));
+        return MedicamentoMapper.toResponse(entity);
+    }
+
+    /**
+     * Devuelve las estadísticas de {@link MedicamentoCache}.
+     *
+     * @return aciertos, fallos, desalojos, tasa de aciertos y tamaño de la caché
+     */
+    @Override
+    public CacheEstadisticasResponse estadisticasCache() {
+        return medicamentoCache.estadisticas();
+    }
+
+    /**
+     * Registra el cambio en la transacción en curso e invalida la caché tras el commit.
+     *
+     * @param ids medicamentos modificados
+     */
+    private void registrarCambio(Collection<Long> ids) {
+        changeLog.registrar(ids);
+        medicamentoCache.invalidar(ids);
+    }
+
+    /**
+     * Carga un medicamento (con su laboratorio, en una sola consulta) para poblar la caché.
+     * <p>
+     * Se lee del primario aunque haya réplicas ({@link ConsistenciaLectura}): la caché se invalida
+     * al confirmar cada cambio y una réplica atrasada la volvería a poblar con el estado anterior
+     * hasta que expire.
+     * </p>
+     *
+     * @param id identificador del medicamento
+     * @return DTO del medicamento, o {@code null} si no existe (no se almacena en caché)
+     */
+    private MedicamentoResponse cargar(Long id) {
+        return ConsistenciaLectura.enPrimario(() -> medicamentoRepository.findWithLaboratorioById(id)
+                .map(MedicamentoMapper::toResponse)
+                .orElse(null));
     }
 
 }
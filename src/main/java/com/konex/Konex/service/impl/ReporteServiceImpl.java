@@ -0,0 +1,104 @@
+package com.konex.Konex.service.impl;
+
+import com.konex.Konex.dto.AgrupacionReporte;
+import com.konex.Konex.dto.ReporteVentaFila;
+import com.konex.Konex.dto.ReporteVentasResponse;
+import com.konex.Konex.repository.DetalleVentaRepository;
+import com.konex.Konex.repository.VentaResumenDiarioRepository;
+import com.konex.Konex.service.ReporteService;
+import com.konex.Konex.utils.DateRange;
+import com.konex.Konex.utils.Validators;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+/**
+ * Implementación de {@link ReporteService}.
+ * <p>
+ * Con el resumen diario, un reporte de un año lee como máximo 365 filas por medicamento,
+ * sin importar cuántas ventas hubo; la consulta sobre las líneas de venta queda para
+ * conciliación ({@code detalle = true}) y para reconstruir el resumen.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+public class ReporteServiceImpl implements ReporteService {
+
+    private final VentaResumenDiarioRepository resumenRepository;
+    private final DetalleVentaRepository detalleVentaRepository;
+
+    /**
+     * Calcula el reporte agregado del rango.
+     *
+     * @param desde      día inicial (inclusive)
+     * @param hasta      día final (inclusive)
+     * @param agrupacion criterio de agrupación
+     * @param detalle    {@code true} para agregar las líneas de venta en lugar del resumen
+     * @return totales por grupo y del rango completo
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public ReporteVentasResponse ventas(LocalDate desde, LocalDate hasta, AgrupacionReporte agrupacion, boolean detalle) {
+        validarRango(desde, hasta);
+        List<ReporteVentaFila> filas = detalle
+                ? desdeDetalle(DateRange.ofLocalDates(desde, hasta), agrupacion)
+                : desdeResumen(desde, hasta, agrupacion);
+
+        long unidades = 0;
+        BigDecimal valor = BigDecimal.ZERO;
+        for (ReporteVentaFila f : filas) {
+            unidades += f.getUnidades();
+            valor = valor.add(f.getValorTotal());
+        }
+        return ReporteVentasResponse.builder()
+                .desde(desde)
+                .hasta(hasta)
+                .agrupacion(agrupacion)
+                .filas(filas)
+                .totalUnidades(unidades)
+                .totalValor(valor)
+                .build();
+    }
+
+    /**
+     * Borra y recalcula el resumen del rango en una sola transacción.
+     *
+     * @param desde día inicial (inclusive)
+     * @param hasta día final (inclusive)
+     * @return filas de resumen generadas
+     */
+    @Transactional
+    @Override
+    public int reconstruirResumen(LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        DateRange rango = DateRange.ofLocalDates(desde, hasta);
+        resumenRepository.eliminarRango(desde, hasta);
+        return resumenRepository.reconstruirRango(rango.desde(), rango.hasta());
+    }
+
+    private List<ReporteVentaFila> desdeResumen(LocalDate desde, LocalDate hasta, AgrupacionReporte agrupacion) {
+        return switch (agrupacion) {
+            case DIA -> resumenRepository.totalesPorDia(desde, hasta);
+            case MES -> resumenRepository.totalesPorMes(desde, hasta);
+            case MEDICAMENTO -> resumenRepository.totalesPorMedicamento(desde, hasta);
+            case LABORATORIO -> resumenRepository.totalesPorLaboratorio(desde, hasta);
+        };
+    }
+
+    private List<ReporteVentaFila> desdeDetalle(DateRange rango, AgrupacionReporte agrupacion) {
+        return switch (agrupacion) {
+            case DIA -> detalleVentaRepository.totalesPorDia(rango.desde(), rango.hasta());
+            case MES -> detalleVentaRepository.totalesPorMes(rango.desde(), rango.hasta());
+            case MEDICAMENTO -> detalleVentaRepository.totalesPorMedicamento(rango.desde(), rango.hasta());
+            case LABORATORIO -> detalleVentaRepository.totalesPorLaboratorio(rango.desde(), rango.hasta());
+        };
+    }
+
+    private static void validarRango(LocalDate desde, LocalDate hasta) {
+        Validators.check(desde != null && hasta != null, "El rango de fechas es obligatorio");
+        Validators.check(!hasta.isBefore(desde), "La fecha final no puede ser anterior a la inicial");
+    }
+}
@@ -1,50 +1,96 @@
 package com.konex.Konex.service.impl;
 
 import org.springframework.data.domain.Pageable; // ✅
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.alerting.NivelStock;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.dto.CursorPageResponse;
 import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaExportFila;
+import com.konex.Konex.dto.VentaItemRequest;
 import com.konex.Konex.dto.VentaResponse;
 import com.konex.Konex.exception.BusinessException;
 import com.konex.Konex.exception.NotFoundException;
+import com.konex.Konex.exception.StockInsuficienteException;
+import com.konex.Konex.export.FormatoExportacion;
+import com.konex.Konex.export.VentaExportWriter;
+import com.konex.Konex.groupcommit.ResultadoLote;
+import com.konex.Konex.idempotency.VentaIdempotenciaStore;
 import com.konex.Konex.mapper.VentaMapper;
 import com.konex.Konex.model.DetalleVenta;
 import com.konex.Konex.model.Medicamento;
 import com.konex.Konex.model.Venta;
+import com.konex.Konex.model.VentaResumenDiario;
+import com.konex.Konex.model.VentaResumenDiarioId;
 import com.konex.Konex.repository.MedicamentoRepository;
 import com.konex.Konex.repository.VentaRepository;
+import com.konex.Konex.repository.VentaResumenDiarioRepository;
 import com.konex.Konex.service.VentaService;
+import com.konex.Konex.stock.AsignadorLotesFefo;
+import com.konex.Konex.stock.MedicamentoStockBuckets;
+import com.konex.Konex.utils.CursorVenta;
 import com.konex.Konex.utils.DateRange;
 import com.konex.Konex.utils.Validators;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 /**
  * Implementación de {@link VentaService} que orquesta el ciclo de vida de una venta.
  * <p>
  * Responsabilidades principales:
  * </p>
  * <ul>
- *   <li>Validar la solicitud de creación de venta (cantidad &gt; 0).</li>
- *   <li>Verificar existencia del medicamento y disponibilidad de stock.</li>
+ *   <li>Validar la solicitud de creación de venta (una o varias líneas, cantidad &gt; 0).</li>
+ *   <li>Verificar existencia de los medicamentos y disponibilidad de stock.</li>
  *   <li>Descontar inventario de manera atómica dentro de la transacción.</li>
- *   <li>Construir entidad {@link Venta} y su único {@link DetalleVenta} asociado, calcular totales y persistir.</li>
+ *   <li>Construir entidad {@link Venta} con un {@link DetalleVenta} por línea, calcular totales y persistir.</li>
+ *   <li>Asignar las unidades vendidas a los lotes del medicamento en orden de vencimiento
+ *       ({@link AsignadorLotesFefo}).</li>
+ *   <li>Acumular la venta en el resumen diario ({@link VentaResumenDiario}) usado por los reportes.</li>
+ *   <li>Anotar los medicamentos vendidos en el registro de cambios del catálogo
+ *       ({@link MedicamentoChangeLog}).</li>
  *   <li>Exponer resultados como DTO mediante {@link VentaMapper}.</li>
  * </ul>
  *
  * <p><b>Transaccionalidad:</b></p>
  * <ul>
  *   <li>{@link #crearVenta(VentaCreateRequest)}: transacción de escritura.</li>
+ *   <li>{@link #crearVentasEnLote(List)}: una transacción de escritura para todo un lote
+ *       (modo <i>group commit</i>), con resultado individual por solicitud.</li>
  *   <li>{@link #listarTodas()}, {@link #obtenerVenta(Long)} y {@link #listarPorRango(LocalDate, LocalDate, Pageable)}: solo lectura.</li>
  * </ul>
  *
- * <p><b>Concurrencia / Integridad:</b> El descuento de stock se hace con una lectura y escritura simples.
- * En escenarios de alta concurrencia considera emplear bloqueo pesimista/optimista o una columna
- * de versión para evitar sobreventa.</p>
+ * <p><b>Listados:</b> se resuelven en dos fases (ids paginados y carga con grafo de entidad
+ * de ventas, detalles y medicamentos) para evitar consultas N+1 al mapear.</p>
+ *
+ * <p><b>Concurrencia / Integridad:</b> El descuento de stock se hace con un único {@code UPDATE}
+ * condicional ({@code CANTIDAD_STOCK >= :cantidad}); la fila afectada determina si hay stock,
+ * de modo que ventas concurrentes sobre el mismo medicamento nunca sobrevenden.</p>
  */
 @Service
 @RequiredArgsConstructor
@@ -52,61 +98,356 @@ public class VentaServiceImpl implements VentaService {
 
     private final VentaRepository ventaRepository;
     private final MedicamentoRepository medicamentoRepository;
+    private final MedicamentoCache medicamentoCache;
+    private final VentaResumenDiarioRepository resumenRepository;
+    private final VentaIdempotenciaStore idempotenciaStore;
+    private final MedicamentoStockBuckets stockBuckets;
+    private final AsignadorLotesFefo asignadorLotes;
+    private final MedicamentoChangeLog changeLog;
+    private final AlertasStockBajo alertasStock;
+
+    /** Tamaño máximo de página en los listados por cursor. */
+    static final int MAX_TAMANO_CURSOR = 1000;
     /**
-     * Crea una venta para un medicamento y cantidad indicados.
+     * Crea una venta a partir de una canasta de líneas (o de un ítem único).
      * <p>
-     * Flujo:
+     * Flujo (una sola transacción por canasta):
      * </p>
      * <ol>
-     *   <li>Valida que la cantidad sea &gt; 0.</li>
-     *   <li>Obtiene el medicamento; si no existe, lanza {@link NotFoundException}.</li>
-     *   <li>Valida stock suficiente; si no hay, lanza excepción de negocio.</li>
-     *   <li>Descuenta stock y persiste el medicamento.</li>
-     *   <li>Crea la venta con un detalle, calcula el total y la persiste.</li>
+     *   <li>Valida cada línea (medicamento obligatorio y cantidad &gt; 0) y consolida las cantidades
+     *       por medicamento.</li>
+     *   <li>Carga todos los medicamentos con una única consulta {@code IN}
+     *       ({@code findAllById}); si falta alguno lanza {@link NotFoundException}.</li>
+     *   <li>Descuenta stock con {@code UPDATE} condicionales
+     *       ({@link MedicamentoRepository#descontarStock(Long, long)}) en orden ascendente de id,
+     *       de modo que canastas solapadas bloquean las filas en el mismo orden y no se interbloquean.
+     *       Los medicamentos con stock repartido descuentan de un solo bucket
+     *       ({@link MedicamentoStockBuckets}). El stock en {@link MedicamentoCache} se invalida tras el commit.
+     *       Los medicamentos con punto de reorden se revisan tras el commit en el hilo de
+     *       {@link AlertasStockBajo}, sin otra consulta en la venta.</li>
+     *   <li>Crea la venta con un detalle por línea y calcula el total.</li>
+     *   <li>Asigna cada línea a los lotes del medicamento en orden de vencimiento (FEFO), partiéndola
+     *       entre lotes si hace falta ({@link AsignadorLotesFefo}).</li>
+     *   <li>Persiste la venta; los {@code INSERT} de {@code DETALLE_VENTA} y {@code DETALLE_VENTA_LOTE}
+     *       se envían en batch JDBC.</li>
      *   <li>Devuelve la venta mapeada a {@link VentaResponse}.</li>
      * </ol>
      *
-     * @param req datos de creación (medicamentoId y cantidad), no {@code null}
+     * @param req datos de creación (líneas o medicamentoId y cantidad), no {@code null}
      * @return representación de la venta creada
-     * @throws NotFoundException   si el medicamento no existe
-     * @throws BusinessException   o {@link IllegalArgumentException} si la cantidad es inválida o no hay stock suficiente
+     * @throws NotFoundException   si algún medicamento no existe
+     * @throws BusinessException   si alguna cantidad es inválida, un medicamento está inactivo
+     *                             o no hay stock suficiente (se revierte toda la canasta)
      */
     @Transactional
     @Override
     public VentaResponse crearVenta(VentaCreateRequest req) {
-        Validators.check(req.getCantidad() != null && req.getCantidad() > 0, "La cantidad debe ser mayor que cero");
+        List<VentaItemRequest> lineas = req.lineas();
 
-        // 1) Obtener medicamento y validar stock
-        Medicamento med = medicamentoRepository.findById(req.getMedicamentoId())
-                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        // 1) Validar líneas y consolidar cantidades por medicamento (TreeMap = orden por id)
+        Map<Long, Long> cantidades = consolidar(lineas);
 
-        Validators.check(med.getCantidadStock() >= req.getCantidad(), "Stock insuficiente para la venta");
+        // 2) Cargar todos los medicamentos en una sola consulta
+        Map<Long, Medicamento> medicamentos = new HashMap<>();
+        for (Medicamento m : medicamentoRepository.findAllById(cantidades.keySet())) {
+            medicamentos.put(m.getId(), m);
+        }
+        verificarVendibles(cantidades, medicamentos);
 
-        // 2) Descontar stock
-        med.setCantidadStock(med.getCantidadStock() - req.getCantidad());
-        medicamentoRepository.save(med);
+        // 3) Reservar stock en orden determinístico de id
+        for (Map.Entry<Long, Long> e : cantidades.entrySet()) {
+            if (!stockBuckets.descontar(medicamentos.get(e.getKey()), e.getValue())) {
+                throw new StockInsuficienteException(
+                        "Stock insuficiente para la venta: " + medicamentos.get(e.getKey()).getNombre());
+            }
+        }
+        changeLog.registrar(cantidades.keySet());
+        medicamentoCache.invalidar(cantidades.keySet());
+        revisarAlertas(cantidades, medicamentos);
 
-        // 3) Crear venta y detalle
-        Venta venta = new Venta();
-        venta.setFechaHora(LocalDateTime.now());
-        venta.setValorTotal(BigDecimal.ZERO);
+        // 4) Crear venta y sus detalles, asignados a lotes en orden de vencimiento
+        Venta venta = construirVenta(lineas, medicamentos, LocalDateTime.now());
+        asignadorLotes.asignar(venta.getDetalles());
 
-        DetalleVenta det = new DetalleVenta();
-        det.setVenta(venta);
-        det.setMedicamento(med);
-        det.setCantidad(req.getCantidad());
-        det.setValorUnitario(med.getValorUnitario());
-        det.setValorLinea(med.getValorUnitario().multiply(BigDecimal.valueOf(req.getCantidad())));
+        // 5) Guardar (cascada a detalles), acumular en el resumen diario y responder
+        venta = ventaRepository.save(venta);
+        acumularResumen(List.of(venta));
+        return VentaMapper.toResponse(venta);
+    }
 
-        venta.setDetalles(List.of(det));
+    /**
+     * Crea un lote de ventas independientes en una sola transacción (modo <i>group commit</i>).
+     * <p>
+     * Flujo:
+     * </p>
+     * <ol>
+     *   <li>Valida y consolida cada solicitud; una solicitud inválida recibe su error y sale del lote.</li>
+     *   <li>Bloquea de una vez todos los medicamentos del lote
+     *       ({@link MedicamentoRepository#bloquearPorIds}, en orden de id) y reparte su stock entre
+     *       las solicitudes en orden de llegada. Una canasta se acepta completa o se rechaza con
+     *       {@link StockInsuficienteException} sin consumir stock.</li>
+     *   <li>Descuenta el total aceptado con un {@code UPDATE} condicional por medicamento
+     *       (no uno por venta) y evalúa las alertas de stock bajo con el disponible que quedó
+     *       ({@link AlertasStockBajo}).</li>
+     *   <li>Asigna las líneas aceptadas a lotes en orden de vencimiento, en orden de llegada
+     *       ({@link AsignadorLotesFefo}).</li>
+     *   <li>Inserta todas las ventas y sus detalles con {@code saveAll} (batch JDBC gracias a las
+     *       secuencias) y acumula el resumen diario una vez por medicamento.</li>
+     * </ol>
+     * <p>
+     * Los errores individuales no revierten el lote; un error de infraestructura (p. ej. el commit)
+     * sí, y lo reciben todas las solicitudes.
+     * </p>
+     *
+     * @param lote solicitudes de venta, en orden de llegada
+     * @return un resultado por solicitud, en el mismo orden
+     */
+    @Transactional
+    @Override
+    public List<ResultadoLote<VentaResponse>> crearVentasEnLote(List<VentaCreateRequest> lote) {
+        List<ResultadoLote<VentaResponse>> resultados = new ArrayList<>(Collections.nCopies(lote.size(), null));
+
+        // 1) Validar y consolidar cada solicitud por separado
+        List<Map<Long, Long>> cantidadesPorSolicitud = new ArrayList<>(lote.size());
+        Set<Long> ids = new TreeSet<>();
+        for (int i = 0; i < lote.size(); i++) {
+            try {
+                Map<Long, Long> cantidades = consolidar(lote.get(i).lineas());
+                cantidadesPorSolicitud.add(cantidades);
+                ids.addAll(cantidades.keySet());
+            } catch (BusinessException ex) {
+                cantidadesPorSolicitud.add(null);
+                resultados.set(i, ResultadoLote.fallo(ex));
+            }
+        }
+
+        // 2) Bloquear los medicamentos del lote y repartir su stock en orden de llegada
+        Map<Long, Medicamento> medicamentos = new HashMap<>();
+        Map<Long, Long> disponible = new HashMap<>();
+        bloquearLote(ids, medicamentos, disponible);
+        Map<Long, Long> aDescontar = new TreeMap<>();
+        List<Venta> ventas = new ArrayList<>();
+        List<Integer> posiciones = new ArrayList<>();
+        LocalDateTime fechaHora = LocalDateTime.now();
+        for (int i = 0; i < lote.size(); i++) {
+            Map<Long, Long> cantidades = cantidadesPorSolicitud.get(i);
+            if (cantidades == null) continue;
+            try {
+                verificarVendibles(cantidades, medicamentos);
+                for (Map.Entry<Long, Long> e : cantidades.entrySet()) {
+                    if (disponible.get(e.getKey()) < e.getValue()) {
+                        throw new StockInsuficienteException(
+                                "Stock insuficiente para la venta: " + medicamentos.get(e.getKey()).getNombre());
+                    }
+                }
+                cantidades.forEach((id, cantidad) -> {
+                    disponible.merge(id, -cantidad, Long::sum);
+                    aDescontar.merge(id, cantidad, Long::sum);
+                });
+                ventas.add(construirVenta(lote.get(i).lineas(), medicamentos, fechaHora));
+                posiciones.add(i);
+            } catch (BusinessException | NotFoundException ex) {
+                resultados.set(i, ResultadoLote.fallo(ex));
+            }
+        }
+
+        // 3) Un UPDATE condicional por medicamento con el total del lote (filas ya bloqueadas)
+        for (Map.Entry<Long, Long> e : aDescontar.entrySet()) {
+            if (!stockBuckets.descontar(medicamentos.get(e.getKey()), e.getValue())) {
+                throw new IllegalStateException("El stock del medicamento " + e.getKey() + " cambió durante el lote");
+            }
+        }
+        changeLog.registrar(aDescontar.keySet());
+        medicamentoCache.invalidar(aDescontar.keySet());
+        alertasStock.evaluar(aDescontar.keySet().stream()
+                .map(id -> NivelStock.de(medicamentos.get(id), disponible.get(id)))
+                .toList());
+        asignadorLotes.asignar(ventas.stream().flatMap(v -> v.getDetalles().stream()).toList());
 
-        // 4) Calcular y setear total
-        BigDecimal total = det.getValorLinea();
+        // 4) Insertar todas las ventas (cascada a detalles) y acumular el resumen diario
+        List<Venta> guardadas = ventaRepository.saveAll(ventas);
+        acumularResumen(guardadas);
+        for (int k = 0; k < guardadas.size(); k++) {
+            resultados.set(posiciones.get(k), ResultadoLote.ok(VentaMapper.toResponse(guardadas.get(k))));
+        }
+        return resultados;
+    }
+
+    /**
+     * Informa a {@link AlertasStockBajo} del stock que dejó una venta, sin consultas en la venta.
+     * <p>
+     * El stock de los medicamentos cargados es anterior al descuento, y otra venta pudo confirmarse
+     * entre esa lectura y el {@code UPDATE} (los descuentos en buckets ni siquiera bloquean la fila
+     * principal). Los medicamentos con punto de reorden se revisan tras el commit, fuera de la
+     * petición ({@link AlertasStockBajo#revisar(Collection)}); los demás no generan alertas y se
+     * informan con el stock calculado, para resolver una alerta previa.
+     * </p>
+     *
+     * @param cantidades   unidades descontadas por medicamento
+     * @param medicamentos medicamentos cargados por la venta
+     */
+    private void revisarAlertas(Map<Long, Long> cantidades, Map<Long, Medicamento> medicamentos) {
+        List<NivelStock> niveles = new ArrayList<>();
+        List<Long> conMinimo = new ArrayList<>();
+        for (Map.Entry<Long, Long> e : cantidades.entrySet()) {
+            Medicamento m = medicamentos.get(e.getKey());
+            if (m.getStockMinimo() != null) {
+                conMinimo.add(m.getId());
+            } else {
+                niveles.add(NivelStock.de(m, m.stockTotal() - e.getValue()));
+            }
+        }
+        alertasStock.evaluar(niveles);
+        alertasStock.revisar(conMinimo);
+    }
+
+    /**
+     * Bloquea los medicamentos del lote y registra su stock disponible.
+     * <p>
+     * Sin medicamentos con buckets basta un único {@code SELECT ... FOR UPDATE} en orden de id. Si
+     * alguno tiene el stock repartido, se bloquea medicamento por medicamento (fila principal y
+     * luego sus buckets) para respetar el mismo orden que las ventas individuales.
+     * </p>
+     */
+    private void bloquearLote(Set<Long> ids, Map<Long, Medicamento> medicamentos, Map<Long, Long> disponible) {
+        if (ids.isEmpty()) return;
+        if (medicamentoRepository.conBuckets(ids).isEmpty()) {
+            for (Medicamento m : medicamentoRepository.bloquearPorIds(ids)) {
+                medicamentos.put(m.getId(), m);
+                disponible.put(m.getId(), m.getCantidadStock());
+            }
+            return;
+        }
+        for (Long id : ids) {
+            for (Medicamento m : medicamentoRepository.bloquearPorIds(List.of(id))) {
+                medicamentos.put(m.getId(), m);
+                disponible.put(m.getId(), m.tieneBuckets() ? stockBuckets.bloquearTotal(id) : m.getCantidadStock());
+            }
+        }
+    }
+
+    /**
+     * Valida las líneas (medicamento obligatorio y cantidad &gt; 0) y consolida las cantidades
+     * por medicamento.
+     *
+     * @param lineas líneas de la solicitud
+     * @return cantidades por id de medicamento, en orden ascendente de id
+     * @throws BusinessException si alguna línea es inválida
+     */
+    private static Map<Long, Long> consolidar(List<VentaItemRequest> lineas) {
+        Map<Long, Long> cantidades = new TreeMap<>();
+        for (VentaItemRequest linea : lineas) {
+            Validators.check(linea.getCantidad() != null && linea.getCantidad() > 0, "La cantidad debe ser mayor que cero");
+            Validators.check(linea.getMedicamentoId() != null, "El medicamento es obligatorio");
+            cantidades.merge(linea.getMedicamentoId(), linea.getCantidad(), Long::sum);
+        }
+        return cantidades;
+    }
+
+    /**
+     * Verifica que todos los medicamentos de la solicitud existan y estén activos.
+     *
+     * @throws NotFoundException si falta alguno
+     * @throws BusinessException si alguno está inactivo
+     */
+    private static void verificarVendibles(Map<Long, Long> cantidades, Map<Long, Medicamento> medicamentos) {
+        for (Long id : cantidades.keySet()) {
+            Medicamento med = medicamentos.get(id);
+            if (med == null) throw new NotFoundException("Medicamento no encontrado");
+            Validators.check(med.getActivo() == 1, "El medicamento está inactivo");
+        }
+    }
+
+    /**
+     * Construye la venta con un detalle por línea (al precio vigente) y su total.
+     */
+    private static Venta construirVenta(List<VentaItemRequest> lineas, Map<Long, Medicamento> medicamentos,
+                                        LocalDateTime fechaHora) {
+        Venta venta = new Venta();
+        venta.setFechaHora(fechaHora);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (VentaItemRequest linea : lineas) {
+            Medicamento med = medicamentos.get(linea.getMedicamentoId());
+            DetalleVenta det = new DetalleVenta();
+            det.setMedicamento(med);
+            det.setCantidad(linea.getCantidad());
+            det.setValorUnitario(med.getValorUnitario());
+            det.setValorLinea(med.getValorUnitario().multiply(BigDecimal.valueOf(linea.getCantidad())));
+            venta.addDetalle(det);
+            total = total.add(det.getValorLinea());
+        }
         venta.setValorTotal(total);
+        return venta;
+    }
 
-        // 5) Guardar y responder
-        venta = ventaRepository.save(venta);
-        return VentaMapper.toResponse(venta);
+    /**
+     * Crea una venta de forma idempotente: la misma {@code clave} registra una sola venta y sus
+     * reintentos reciben la respuesta original sin volver a descontar stock.
+     * <p>
+     * La transacción la abre {@link VentaIdempotenciaStore}, que registra la clave en ella antes de
+     * ejecutar {@link #crearVenta(VentaCreateRequest)}; por eso este método no lleva
+     * {@link Transactional}.
+     * </p>
+     *
+     * @param clave valor del encabezado {@code Idempotency-Key}
+     * @param req   datos de la venta
+     * @return la venta creada, o la registrada previamente con la misma clave
+     * @throws BusinessException si la clave es inválida o se reutiliza con una solicitud diferente
+     */
+    @Override
+    public VentaResponse crearVentaIdempotente(String clave, VentaCreateRequest req) {
+        return idempotenciaStore.ejecutar(clave, huella(req), () -> crearVenta(req), this::obtenerVenta);
+    }
+
+    /**
+     * Huella SHA-256 de las líneas de la solicitud, en el orden recibido.
+     *
+     * @param req solicitud de venta
+     * @return huella en hexadecimal (64 caracteres)
+     */
+    private static String huella(VentaCreateRequest req) {
+        StringBuilder sb = new StringBuilder();
+        for (VentaItemRequest linea : req.lineas()) {
+            sb.append(linea.getMedicamentoId()).append(':').append(linea.getCantidad()).append(';');
+        }
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Suma las ventas al resumen diario por medicamento, en la misma transacción.
+     * <p>
+     * Un {@code MERGE} por día y medicamento (aunque varias ventas del lote lo incluyan) que
+     * inserta la fila en la primera venta del día. Con stock repartido en buckets el medicamento no
+     * queda bloqueado, así que dos primeras ventas del día pueden competir por la inserción;
+     * {@link VentaResumenDiarioRepository#acumular(LocalDate, Long, long, BigDecimal, long)} lo resuelve.
+     * Se recorre en orden de id, igual que el descuento de stock.
+     * </p>
+     *
+     * @param ventas ventas recién registradas con sus detalles
+     */
+    private void acumularResumen(List<Venta> ventas) {
+        Map<LocalDate, Map<Long, VentaResumenDiario>> porDia = new TreeMap<>();
+        for (Venta venta : ventas) {
+            LocalDate dia = venta.getFechaHora().toLocalDate();
+            Map<Long, VentaResumenDiario> porMedicamento = porDia.computeIfAbsent(dia, d -> new TreeMap<>());
+            for (DetalleVenta d : venta.getDetalles()) {
+                porMedicamento.computeIfAbsent(d.getMedicamento().getId(),
+                        id -> new VentaResumenDiario(new VentaResumenDiarioId(dia, id), 0L, BigDecimal.ZERO, 0L))
+                        .acumular(d.getCantidad(), d.getValorLinea());
+            }
+        }
+        for (Map<Long, VentaResumenDiario> porMedicamento : porDia.values()) {
+            for (VentaResumenDiario r : porMedicamento.values()) {
+                resumenRepository.acumular(r.getId().getFecha(), r.getId().getMedicamentoId(),
+                        r.getUnidades(), r.getValorTotal(), r.getLineas());
+            }
+        }
     }
     /**
      * Lista todas las ventas  paginación.
@@ -116,8 +457,7 @@ public class VentaServiceImpl implements VentaService {
     @Transactional(readOnly = true)
     @Override
     public Page<VentaResponse> listarTodas(Pageable pageable) {
-        return ventaRepository.findAll(pageable)
-                .map(VentaMapper::toResponse);
+        return cargarPagina(ventaRepository.findPageIds(pageable));
     }
 
     /**
@@ -130,7 +470,7 @@ public class VentaServiceImpl implements VentaService {
     @Transactional(readOnly = true)
     @Override
     public VentaResponse obtenerVenta(Long id) {
-        Venta venta = ventaRepository.findById(id)
+        Venta venta = ventaRepository.findWithDetallesById(id)
                 .orElseThrow(() -> new NotFoundException("Venta no encontrada"));
         return VentaMapper.toResponse(venta);
     }
@@ -143,7 +483,7 @@ public class VentaServiceImpl implements VentaService {
      * start = desde.atStartOfDay()
      * end   = hasta.plusDays(1).atStartOfDay().minusNanos(1)
      * </pre>
-     * y se delega a {@code findByFechaHoraBetween(start, end, pageable)}.
+     * y se delega a {@code findPageIdsByFechaHoraBetween(start, end, pageable)}.
      * </p>
      *
      * @param desde    día inicial (inclusive), no {@code null}
@@ -156,8 +496,142 @@ public class VentaServiceImpl implements VentaService {
     public Page<VentaResponse> listarPorRango(LocalDate desde, LocalDate hasta, Pageable pageable) {
         var start = desde.atStartOfDay();
         var end   = hasta.plusDays(1).atStartOfDay().minusNanos(1);
-        return ventaRepository.findByFechaHoraBetween(start, end, pageable)
-                .map(VentaMapper::toResponse);
+        return cargarPagina(ventaRepository.findPageIdsByFechaHoraBetween(start, end, pageable));
+    }
+
+    /**
+     * Segunda fase del listado paginado: carga en una sola consulta las ventas de la página
+     * con sus detalles y medicamentos, y las mapea respetando el orden de {@code ids}.
+     * <p>
+     * Con la primera fase (ids + {@code COUNT}) el listado usa siempre tres sentencias,
+     * independientemente del tamaño de página y del número de líneas por venta.
+     * </p>
+     *
+     * @param ids página de ids de ventas (ya ordenada y con total de elementos)
+     * @return página de ventas mapeadas a {@link VentaResponse}
+     */
+    private Page<VentaResponse> cargarPagina(Page<Long> ids) {
+        List<VentaResponse> content = cargarOrdenadas(ids.getContent()).stream()
+                .map(VentaMapper::toResponse)
+                .toList();
+        return new PageImpl<>(content, ids.getPageable(), ids.getTotalElements());
+    }
+
+    /**
+     * Lista todas las ventas paginando por cursor {@code (fechaHora, id)} descendente.
+     *
+     * @param after token de la página anterior ({@code null} o vacío = primera página)
+     * @param size  tamaño de página (1..{@value #MAX_TAMANO_CURSOR})
+     * @return página de ventas con el token de la siguiente
+     * @throws BusinessException si el token o el tamaño no son válidos
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageResponse<VentaResponse> listarTodasCursor(String after, int size) {
+        validarTamanoCursor(size);
+        CursorVenta cursor = CursorVenta.decode(after);
+        return paginaCursor(ventaRepository.findIdsAntesDe(cursor.fechaHora(), cursor.id(),
+                PageRequest.of(0, size + 1)), size);
+    }
+
+    /**
+     * Lista ventas de un rango de días paginando por cursor {@code (fechaHora, id)} descendente.
+     *
+     * @param desde día inicial (inclusive), no {@code null}
+     * @param hasta día final (inclusive), no {@code null}
+     * @param after token de la página anterior ({@code null} o vacío = primera página)
+     * @param size  tamaño de página (1..{@value #MAX_TAMANO_CURSOR})
+     * @return página de ventas en el rango con el token de la siguiente
+     * @throws BusinessException si el token o el tamaño no son válidos
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageResponse<VentaResponse> listarPorRangoCursor(LocalDate desde, LocalDate hasta, String after, int size) {
+        validarTamanoCursor(size);
+        DateRange rango = DateRange.ofLocalDates(desde, hasta);
+        CursorVenta cursor = CursorVenta.decode(after);
+        return paginaCursor(ventaRepository.findIdsEnRangoAntesDe(rango.desde(), rango.hasta(),
+                cursor.fechaHora(), cursor.id(), PageRequest.of(0, size + 1)), size);
+    }
+
+    /**
+     * Exporta las líneas de venta del rango recorriendo un cursor de solo avance.
+     * <p>
+     * Cada fila se escribe en cuanto se lee: la consulta proyecta a DTO (sin entidades en el
+     * contexto de persistencia) y el JDBC trae bloques de tamaño fijo, de modo que la memoria
+     * se mantiene constante para cualquier tamaño de rango. La transacción de solo lectura
+     * permanece abierta mientras dura la descarga.
+     * </p>
+     *
+     * @param desde   día inicial (inclusive)
+     * @param hasta   día final (inclusive)
+     * @param formato formato de salida
+     * @param out     flujo de destino; no se cierra
+     * @return número de líneas exportadas
+     * @throws IOException si falla la escritura
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public long exportarPorRango(LocalDate desde, LocalDate hasta, FormatoExportacion formato, OutputStream out)
+            throws IOException {
+        DateRange rango = DateRange.ofLocalDates(desde, hasta);
+        VentaExportWriter writer = new VentaExportWriter(out, formato);
+        try (Stream<VentaExportFila> filas = ventaRepository.streamExportacion(rango.desde(), rango.hasta())) {
+            filas.forEach(writer::escribir);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        return writer.getFilas();
+    }
+
+    /**
+     * Construye una página por cursor a partir de {@code size + 1} ids: el elemento extra solo
+     * indica si existe una página siguiente y no se carga.
+     *
+     * @param ids  ids leídos (hasta {@code size + 1}), en el orden del listado
+     * @param size tamaño de página solicitado
+     * @return página con las ventas mapeadas y el token de la siguiente
+     */
+    private CursorPageResponse<VentaResponse> paginaCursor(List<Long> ids, int size) {
+        boolean hasNext = ids.size() > size;
+        List<Venta> ventas = cargarOrdenadas(hasNext ? ids.subList(0, size) : ids);
+        String next = null;
+        if (hasNext) {
+            Venta ultima = ventas.get(ventas.size() - 1);
+            next = new CursorVenta(ultima.getFechaHora(), ultima.getId()).encode();
+        }
+        return CursorPageResponse.<VentaResponse>builder()
+                .content(ventas.stream().map(VentaMapper::toResponse).toList())
+                .size(size)
+                .next(next)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Carga en una sola consulta (grafo de ventas, detalles y medicamentos) las ventas indicadas,
+     * respetando el orden de {@code ids}.
+     *
+     * @param ids ids de las ventas a cargar, en el orden deseado
+     * @return ventas en el mismo orden que {@code ids}
+     */
+    private List<Venta> cargarOrdenadas(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Venta> porId = new HashMap<>();
+        for (Venta v : ventaRepository.findByIdIn(ids)) {
+            porId.put(v.getId(), v);
+        }
+        List<Venta> ordenadas = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ordenadas.add(porId.get(id));
+        }
+        return ordenadas;
+    }
+
+    private static void validarTamanoCursor(int size) {
+        Validators.check(size > 0 && size <= MAX_TAMANO_CURSOR,
+                "El tamaño de página debe estar entre 1 y " + MAX_TAMANO_CURSOR);
     }
 
 }
@@ -0,0 +1,268 @@
+package com.konex.Konex.snapshot;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.cache.MedicamentosModificadosEvent;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.mapper.MedicamentoMapper;
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.service.MedicamentoService;
+import com.konex.Konex.utils.VersionEtag;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Instantánea precalculada del catálogo activo para {@code GET /api/medicamentos/snapshot}.
+ * <p>
+ * El catálogo completo se serializa a JSON y se comprime con gzip una sola vez; cada descarga
+ * escribe esos bytes tal cual en la respuesta, sin consultar la base ni serializar por petición.
+ * La instantánea se reconstruye en un hilo propio:
+ * </p>
+ * <ul>
+ *   <li>al arrancar la aplicación;</li>
+ *   <li>tras un cambio confirmado en cualquier medicamento ({@link MedicamentosModificadosEvent}),
+ *       esperando {@code konex.snapshot.debounce}: los cambios que llegan en esa ventana se
+ *       agrupan en una sola reconstrucción, y ninguno espera más que la ventana más lo que tarde
+ *       la reconstrucción;</li>
+ *   <li>cada {@code konex.snapshot.check-interval}, si la marca de agua del catálogo ya no
+ *       coincide con la de la instantánea (cambios hechos por otros nodos o directamente en la base)
+ *       o si la instantánea supera {@code konex.snapshot.max-age}, para que su {@code token} nunca
+ *       se acerque a la retención del registro de cambios.</li>
+ * </ul>
+ * <p>
+ * La versión de la instantánea es la marca de agua del catálogo ({@link VersionEtag#catalogo}),
+ * leída <i>antes</i> que los medicamentos: un cambio concurrente puede quedar incluido con la
+ * versión anterior, pero nunca omitido con la nueva. El cliente la reenvía en
+ * {@code If-None-Match} y recibe {@code 304} si no cambió.
+ * </p>
+ * <p>
+ * Formato (sin comprimir):
+ * {@code {"version":"c…","generado":"…","token":"…","medicamentos":[…],"total":n}}, con cada
+ * medicamento como en {@code GET /api/medicamentos/{id}}; {@code token} es la posición del
+ * registro de cambios ({@link MedicamentoChangeLog}) tomada antes de leer, desde la que el
+ * cliente sigue con {@code GET /api/medicamentos/cambios}.
+ * </p>
+ */
+@Component
+public class CatalogoSnapshot implements DisposableBean {
+
+    /** Tamaño del búfer de compresión, en bytes. */
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    private final MedicamentoRepository medicamentoRepository;
+    private final MedicamentoService medicamentoService;
+    private final MedicamentoChangeLog changeLog;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final long debounceMillis;
+    private final Duration edadMaxima;
+    private final int tamanoLote;
+    private final ScheduledExecutorService ejecutor;
+    private final AtomicBoolean programada = new AtomicBoolean();
+    private volatile Instantanea actual;
+
+    /**
+     * Instantánea generada.
+     *
+     * @param version  marca de agua del catálogo como texto, p. ej. {@code c1735689600123456}
+     * @param etag     {@code version} entre comillas, para {@code ETag}
+     * @param marca    marca de agua del catálogo ({@code null} si está vacío)
+     * @param generado momento de la generación
+     * @param total    medicamentos incluidos
+     * @param gzip     JSON comprimido con gzip (no se modifica)
+     */
+    public record Instantanea(String version, String etag, LocalDateTime marca, Instant generado,
+                              int total, byte[] gzip) {
+
+        /**
+         * Flujo con el JSON sin comprimir, para clientes que no aceptan gzip.
+         *
+         * @return flujo que descomprime {@link #gzip()} a medida que se lee
+         */
+        public InputStream descomprimido() {
+            try {
+                return new GZIPInputStream(new ByteArrayInputStream(gzip), TAMANO_BUFER);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @param medicamentoRepository repositorio de medicamentos (lectura por keyset)
+     * @param medicamentoService    servicio, para la marca de agua del catálogo
+     * @param changeLog             registro de cambios, para el token de sincronización
+     * @param transactionTemplate   transacción de cada lote de lectura
+     * @param objectMapper          mapper de Jackson de la aplicación (mismo formato que la API)
+     * @param debounce              espera desde el primer cambio hasta la reconstrucción
+     * @param edadMaxima            antigüedad a partir de la cual se regenera aunque no haya cambios
+     * @param tamanoLote            medicamentos leídos por consulta
+     */
+    public CatalogoSnapshot(MedicamentoRepository medicamentoRepository,
+                            MedicamentoService medicamentoService,
+                            MedicamentoChangeLog changeLog,
+                            TransactionTemplate transactionTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${konex.snapshot.debounce:PT2S}") Duration debounce,
+                            @Value("${konex.snapshot.max-age:PT1H}") Duration edadMaxima,
+                            @Value("${konex.snapshot.batch-size:1000}") int tamanoLote) {
+        this.medicamentoRepository = medicamentoRepository;
+        this.medicamentoService = medicamentoService;
+        this.changeLog = changeLog;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.debounceMillis = debounce.toMillis();
+        this.edadMaxima = edadMaxima;
+        this.tamanoLote = tamanoLote;
+        ScheduledThreadPoolExecutor ejecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "konex-catalogo-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        ejecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.ejecutor = ejecutor;
+    }
+
+    /**
+     * Instantánea vigente. Si aún no se generó ninguna (primer arranque), la genera en este hilo.
+     *
+     * @return la instantánea más reciente
+     */
+    public Instantanea actual() {
+        Instantanea s = actual;
+        if (s != null) return s;
+        synchronized (this) {
+            return actual != null ? actual : reconstruir();
+        }
+    }
+
+    /** Genera la primera instantánea al terminar el arranque. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        programar(0);
+    }
+
+    /**
+     * Programa la reconstrucción tras un cambio confirmado. Solo encola una tarea; no bloquea al
+     * hilo que confirmó la transacción.
+     *
+     * @param evento medicamentos modificados
+     */
+    @EventListener
+    public void alModificar(MedicamentosModificadosEvent evento) {
+        programar(debounceMillis);
+    }
+
+    /**
+     * Reconstruye si la marca de agua del catálogo cambió sin pasar por {@link MedicamentoCache}
+     * en este nodo, o si la instantánea ya es demasiado antigua.
+     */
+    @Scheduled(fixedDelayString = "${konex.snapshot.check-interval:PT30S}",
+               initialDelayString = "${konex.snapshot.check-interval:PT30S}")
+    public void verificar() {
+        Instantanea s = actual;
+        if (s == null
+                || s.generado().isBefore(Instant.now().minus(edadMaxima))
+                || !Objects.equals(s.marca(), medicamentoService.ultimaModificacionCatalogo())) {
+            programar(0);
+        }
+    }
+
+    /**
+     * Genera una instantánea nueva y la publica. Las reconstrucciones nunca se solapan.
+     *
+     * @return la instantánea generada
+     */
+    public synchronized Instantanea reconstruir() {
+        LocalDateTime marca = medicamentoService.ultimaModificacionCatalogo();
+        String etag = VersionEtag.catalogo(marca);
+        String version = etag.substring(1, etag.length() - 1);
+        String token = changeLog.posicionActual().encode();
+        Instant generado = Instant.now();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(TAMANO_BUFER);
+        int total;
+        try (OutputStream gzip = new GZIPOutputStream(bytes, TAMANO_BUFER);
+             JsonGenerator json = objectMapper.createGenerator(gzip)) {
+            json.writeStartObject();
+            json.writeStringField("version", version);
+            json.writeStringField("generado", generado.toString());
+            json.writeStringField("token", token);
+            json.writeArrayFieldStart("medicamentos");
+            total = escribirMedicamentos(json);
+            json.writeEndArray();
+            json.writeNumberField("total", total);
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Instantanea nueva = new Instantanea(version, etag, marca, generado, total, bytes.toByteArray());
+        actual = nueva;
+        return nueva;
+    }
+
+    /**
+     * Recorre los medicamentos activos por keyset sobre el id, un lote por transacción.
+     */
+    private int escribirMedicamentos(JsonGenerator json) throws IOException {
+        int total = 0;
+        long ultimoId = 0;
+        while (true) {
+            final long desde = ultimoId;
+            List<Medicamento> lote = transactionTemplate.execute(status ->
+                    medicamentoRepository.findByActivoAndIdGreaterThanOrderByIdAsc(1, desde, PageRequest.of(0, tamanoLote)));
+            if (lote == null || lote.isEmpty()) return total;
+            for (Medicamento m : lote) json.writeObject(MedicamentoMapper.toResponse(m));
+            total += lote.size();
+            ultimoId = lote.get(lote.size() - 1).getId();
+        }
+    }
+
+    private void programar(long retrasoMillis) {
+        if (!programada.compareAndSet(false, true)) return;
+        ejecutor.schedule(() -> {
+            // Se libera antes de leer: un cambio que llegue durante la reconstrucción programa otra
+            programada.set(false);
+            try {
+                reconstruir();
+            } catch (RuntimeException ex) {
+                // Se conserva la instantánea anterior; verificar() vuelve a intentarlo
+            }
+        }, retrasoMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el hilo de reconstrucción al cerrar el contexto.
+     */
+    @Override
+    public void destroy() {
+        ejecutor.shutdownNow();
+    }
+}
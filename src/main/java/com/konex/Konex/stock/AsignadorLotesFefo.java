@@ -0,0 +1,103 @@
+package com.konex.Konex.stock;
+
+import com.konex.Konex.model.DetalleVenta;
+import com.konex.Konex.repository.LoteRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Asigna las unidades vendidas a los lotes del medicamento en orden de vencimiento
+ * (<i>FEFO</i>, primero en vencer, primero en salir).
+ * <p>
+ * Se invoca dentro de la transacción de la venta, <b>después</b> de descontar el stock total del
+ * medicamento, que es quien garantiza la disponibilidad; la asignación solo reparte esas unidades
+ * entre los lotes:
+ * </p>
+ * <ul>
+ *   <li>Por medicamento, en orden de id (el mismo en que se bloquea su stock), se suman las
+ *       líneas y se leen los primeros {@code konex.stock.lotes.page-size} lotes abiertos por
+ *       índice, ya ordenados por vencimiento. Casi siempre basta esa primera lectura, aunque el
+ *       medicamento tenga cientos de lotes abiertos.</li>
+ *   <li>Cada lote se descuenta con un único {@code UPDATE} condicional por medicamento y lote
+ *       (no uno por línea); si falla porque otra venta lo consumió, se relee la página.</li>
+ *   <li>Lo tomado se reparte en memoria entre las líneas en su orden, partiendo una línea entre
+ *       varios lotes cuando hace falta ({@code DETALLE_VENTA_LOTE}).</li>
+ *   <li>Si los lotes no alcanzan, el resto sale del stock sin lote.</li>
+ * </ul>
+ */
+@Component
+public class AsignadorLotesFefo {
+
+    private final LoteRepository loteRepository;
+    private final int tamanoPagina;
+
+    /**
+     * @param loteRepository repositorio de lotes
+     * @param tamanoPagina   lotes leídos por consulta
+     */
+    public AsignadorLotesFefo(LoteRepository loteRepository,
+                              @Value("${konex.stock.lotes.page-size:32}") int tamanoPagina) {
+        this.loteRepository = loteRepository;
+        this.tamanoPagina = Math.max(1, tamanoPagina);
+    }
+
+    /**
+     * Asigna a lotes las líneas de una o varias ventas, en la transacción en curso.
+     *
+     * @param detalles líneas ya validadas y con su stock descontado
+     */
+    public void asignar(List<DetalleVenta> detalles) {
+        Map<Long, List<DetalleVenta>> porMedicamento = new TreeMap<>();
+        for (DetalleVenta d : detalles) {
+            porMedicamento.computeIfAbsent(d.getMedicamento().getId(), id -> new ArrayList<>()).add(d);
+        }
+        porMedicamento.forEach(this::asignarMedicamento);
+    }
+
+    private void asignarMedicamento(Long medicamentoId, List<DetalleVenta> lineas) {
+        long pendiente = lineas.stream().mapToLong(DetalleVenta::getCantidad).sum();
+        List<LoteDisponible> tomados = new ArrayList<>();
+        while (pendiente > 0) {
+            List<LoteDisponible> abiertos = loteRepository.abiertosFefo(medicamentoId, PageRequest.of(0, tamanoPagina));
+            if (abiertos.isEmpty()) break;
+            for (LoteDisponible lote : abiertos) {
+                long tomar = Math.min(pendiente, lote.cantidad());
+                // Si otra venta consumió el lote, se relee para no saltarse el orden FEFO
+                if (loteRepository.descontar(lote.id(), tomar) == 0) break;
+                tomados.add(new LoteDisponible(lote.id(), tomar));
+                pendiente -= tomar;
+                if (pendiente == 0) break;
+            }
+        }
+        repartir(tomados, lineas);
+    }
+
+    /**
+     * Reparte lo tomado de cada lote entre las líneas, en orden.
+     */
+    private static void repartir(List<LoteDisponible> tomados, List<DetalleVenta> lineas) {
+        Iterator<DetalleVenta> it = lineas.iterator();
+        DetalleVenta linea = it.next();
+        long faltan = linea.getCantidad();
+        for (LoteDisponible lote : tomados) {
+            long quedan = lote.cantidad();
+            while (quedan > 0) {
+                if (faltan == 0) {
+                    linea = it.next();
+                    faltan = linea.getCantidad();
+                }
+                long parte = Math.min(quedan, faltan);
+                linea.addLote(lote.id(), parte);
+                quedan -= parte;
+                faltan -= parte;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.konex.Konex.stock;
+
+/**
+ * Proyección de un lote abierto para la asignación FEFO: solo lo necesario para descontar, leído
+ * sin cargar la entidad {@link com.konex.Konex.model.Lote} en el contexto de persistencia (de modo
+ * que una relectura tras un {@code UPDATE} masivo no devuelve cantidades obsoletas).
+ *
+ * @param id       identificador del lote
+ * @param cantidad unidades que quedan
+ */
+public record LoteDisponible(Long id, long cantidad) {
+}
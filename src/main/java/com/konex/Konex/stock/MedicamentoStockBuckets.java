@@ -0,0 +1,291 @@
+package com.konex.Konex.stock;
+
+import com.konex.Konex.exception.NotFoundException;
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.MedicamentoStockBucket;
+import com.konex.Konex.model.MedicamentoStockBucketId;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.MedicamentoStockBucketRepository;
+import com.konex.Konex.utils.Validators;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Descuento de stock con reparto en <i>buckets</i> para medicamentos muy vendidos.
+ * <p>
+ * Sin buckets, todas las ventas de un medicamento se serializan sobre el bloqueo de su fila en
+ * <code>MEDICAMENTO</code>. Con {@code STOCK_BUCKETS = N}, el stock se reparte entre esa fila
+ * (bucket 0) y {@code N} filas de <code>MEDICAMENTO_STOCK_BUCKET</code>:
+ * </p>
+ * <ul>
+ *   <li><b>Venta:</b> un {@code UPDATE} condicional sobre un bucket elegido al azar; si no le
+ *       alcanza, prueba los demás. Solo cuando ningún bucket cubre la cantidad por sí solo se
+ *       bloquean todos (fila principal primero, luego buckets por número) y se descuenta repartido.</li>
+ *   <li><b>Lectura:</b> {@link Medicamento#stockTotal()} suma la fila y los buckets.</li>
+ *   <li><b>Rebalanceo:</b> una tarea periódica redistribuye el stock de los medicamentos cuyos
+ *       buckets se desequilibraron, para que el descuento repartido siga siendo la excepción.</li>
+ *   <li><b>Activación:</b> manual por medicamento ({@link #configurar(Long, int)}) o automática
+ *       cuando el {@code UPDATE} de stock de un medicamento espera por bloqueo más de
+ *       {@code konex.stock.buckets.auto.lock-wait-threshold} al menos
+ *       {@code konex.stock.buckets.auto.min-waits} veces en un ciclo.</li>
+ * </ul>
+ * <p>
+ * Los bloqueos siguen el mismo orden que el resto de la aplicación (medicamentos por id y, dentro
+ * de uno, fila principal antes que buckets), por lo que canastas, lotes y rebalanceo no se
+ * interbloquean.
+ * </p>
+ */
+@Component
+public class MedicamentoStockBuckets {
+
+    private final MedicamentoRepository medicamentoRepository;
+    private final MedicamentoStockBucketRepository bucketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int bucketsPorDefecto;
+    private final int maxBuckets;
+    private final boolean automatico;
+    private final long umbralEsperaNanos;
+    private final int minEsperas;
+    private final ConcurrentMap<Long, LongAdder> esperas = new ConcurrentHashMap<>();
+
+    /**
+     * @param medicamentoRepository repositorio de medicamentos (bucket 0)
+     * @param bucketRepository      repositorio de buckets
+     * @param transactionTemplate   transacciones de las tareas periódicas
+     * @param bucketsPorDefecto     buckets al activar el modo automáticamente
+     * @param maxBuckets            máximo de buckets por medicamento
+     * @param automatico            activa el modo al detectar esperas por bloqueo
+     * @param umbralEspera          duración del descuento a partir de la cual se considera espera
+     * @param minEsperas            esperas por ciclo que activan el modo
+     */
+    public MedicamentoStockBuckets(MedicamentoRepository medicamentoRepository,
+                                   MedicamentoStockBucketRepository bucketRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${konex.stock.buckets.default:8}") int bucketsPorDefecto,
+                                   @Value("${konex.stock.buckets.max:64}") int maxBuckets,
+                                   @Value("${konex.stock.buckets.auto.enabled:false}") boolean automatico,
+                                   @Value("${konex.stock.buckets.auto.lock-wait-threshold:PT0.05S}") Duration umbralEspera,
+                                   @Value("${konex.stock.buckets.auto.min-waits:20}") int minEsperas) {
+        this.medicamentoRepository = medicamentoRepository;
+        this.bucketRepository = bucketRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.bucketsPorDefecto = bucketsPorDefecto;
+        this.maxBuckets = maxBuckets;
+        this.automatico = automatico;
+        this.umbralEsperaNanos = umbralEspera.toNanos();
+        this.minEsperas = minEsperas;
+    }
+
+    /**
+     * Descuenta stock de un medicamento ya validado (existe y está activo), dentro de la
+     * transacción en curso.
+     *
+     * @param med      medicamento cargado en la transacción
+     * @param cantidad unidades a descontar; se asume {@code > 0}
+     * @return {@code true} si se descontó; {@code false} si no hay stock suficiente
+     */
+    public boolean descontar(Medicamento med, long cantidad) {
+        if (med.tieneBuckets()) return descontarEnBuckets(med.getId(), med.getStockBuckets(), cantidad);
+
+        long inicio = System.nanoTime();
+        boolean ok = medicamentoRepository.descontarStock(med.getId(), cantidad) == 1;
+        if (automatico && System.nanoTime() - inicio >= umbralEsperaNanos) {
+            esperas.computeIfAbsent(med.getId(), id -> new LongAdder()).increment();
+        }
+        return ok;
+    }
+
+    /**
+     * Descuenta stock de un medicamento con buckets: primero de un solo bucket (al azar, luego sus
+     * vecinos) y, si ninguno alcanza, repartido entre todos.
+     *
+     * @param medicamentoId medicamento
+     * @param buckets       buckets adicionales configurados
+     * @param cantidad      unidades a descontar
+     * @return {@code true} si se descontó; {@code false} si el total no alcanza
+     */
+    public boolean descontarEnBuckets(Long medicamentoId, int buckets, long cantidad) {
+        int total = buckets + 1;
+        int inicio = ThreadLocalRandom.current().nextInt(total);
+        for (int k = 0; k < total; k++) {
+            int numero = (inicio + k) % total;
+            int filas = numero == 0
+                    ? medicamentoRepository.descontarStock(medicamentoId, cantidad)
+                    : bucketRepository.descontar(medicamentoId, numero, cantidad);
+            if (filas == 1) return true;
+        }
+        return descontarRepartido(medicamentoId, cantidad);
+    }
+
+    /**
+     * Bloquea la fila principal y los buckets de un medicamento y devuelve el stock total.
+     * Lo usa el modo <i>group commit</i>, que reparte el stock del lote en memoria.
+     *
+     * @param medicamentoId medicamento
+     * @return stock total, estable hasta el fin de la transacción
+     */
+    public long bloquearTotal(Long medicamentoId) {
+        long total = 0;
+        for (long c : bloquear(medicamentoId)) total += c;
+        return total;
+    }
+
+    /**
+     * Activa, cambia o desactiva ({@code buckets = 0}) el reparto en buckets de un medicamento,
+     * conservando su stock total. Se une a la transacción en curso si la hay.
+     *
+     * @param medicamentoId medicamento
+     * @param buckets       buckets adicionales, de {@code 0} a {@code konex.stock.buckets.max}
+     * @return stock total del medicamento
+     * @throws NotFoundException si el medicamento no existe
+     * @throws com.konex.Konex.exception.BusinessException si el número de buckets es inválido
+     */
+    public long configurar(Long medicamentoId, int buckets) {
+        Validators.check(buckets >= 0 && buckets <= maxBuckets,
+                "Número de buckets inválido (0 a " + maxBuckets + ")");
+        Long resultado = transactionTemplate.execute(status -> {
+            long total = bloquearTotal(medicamentoId);
+            bucketRepository.eliminarDe(medicamentoId);
+            long[] partes = partes(total, buckets);
+            List<MedicamentoStockBucket> filas = new ArrayList<>(buckets);
+            LocalDateTime ahora = LocalDateTime.now();
+            for (int n = 1; n <= buckets; n++) {
+                filas.add(new MedicamentoStockBucket(new MedicamentoStockBucketId(medicamentoId, n), partes[n], ahora));
+            }
+            bucketRepository.saveAll(filas);
+            medicamentoRepository.fijarStock(medicamentoId, partes[0], buckets);
+            return total;
+        });
+        esperas.remove(medicamentoId);
+        return resultado;
+    }
+
+    /**
+     * Fija el stock total de un medicamento con buckets (p. ej., al actualizarlo), repartido en
+     * partes iguales. Debe llamarse dentro de la transacción que actualiza la entidad.
+     *
+     * @param medicamentoId medicamento
+     * @param buckets       buckets adicionales configurados
+     * @param total         nuevo stock total
+     * @return la parte que corresponde a la fila principal (bucket 0), que fija el llamador
+     */
+    public long fijarTotal(Long medicamentoId, int buckets, long total) {
+        bloquear(medicamentoId);
+        long[] partes = partes(total, buckets);
+        for (int n = 1; n <= buckets; n++) bucketRepository.fijar(medicamentoId, n, partes[n]);
+        return partes[0];
+    }
+
+    /**
+     * Tarea periódica: activa el modo en los medicamentos con esperas por bloqueo (si
+     * {@code konex.stock.buckets.auto.enabled}) y rebalancea los buckets desequilibrados, cada
+     * medicamento en su propia transacción corta.
+     */
+    @Scheduled(fixedDelayString = "${konex.stock.buckets.rebalance-interval:PT30S}")
+    public void mantener() {
+        Map<Long, Long> detectadas = new HashMap<>();
+        esperas.forEach((id, contador) -> detectadas.put(id, contador.sumThenReset()));
+        detectadas.forEach((id, veces) -> {
+            if (veces < minEsperas) return;
+            try {
+                configurar(id, bucketsPorDefecto);
+            } catch (RuntimeException ex) {
+                // Medicamento eliminado o error transitorio: si la contención sigue, se reintenta
+            }
+        });
+
+        for (Long id : medicamentoRepository.idsConBuckets()) {
+            transactionTemplate.executeWithoutResult(status -> rebalancear(id));
+        }
+    }
+
+    /**
+     * Redistribuye el stock del medicamento si algún bucket quedó por debajo de la mitad de su
+     * parte justa.
+     *
+     * @param medicamentoId medicamento con buckets
+     * @return {@code true} si se redistribuyó
+     */
+    boolean rebalancear(Long medicamentoId) {
+        long[] actual = bloquear(medicamentoId);
+        int buckets = actual.length - 1;
+        if (buckets == 0) return false;
+        long total = 0;
+        for (long c : actual) total += c;
+        long justa = total / actual.length;
+        boolean desequilibrado = false;
+        for (long c : actual) desequilibrado |= c < justa / 2;
+        if (!desequilibrado) return false;
+
+        long[] partes = partes(total, buckets);
+        for (int n = 1; n <= buckets; n++) {
+            if (partes[n] != actual[n]) bucketRepository.fijar(medicamentoId, n, partes[n]);
+        }
+        medicamentoRepository.fijarStock(medicamentoId, partes[0], buckets);
+        return true;
+    }
+
+    /**
+     * Descuenta una cantidad que ningún bucket cubre por sí solo: bloquea todos y toma de la
+     * fila principal y luego de los buckets en orden.
+     */
+    private boolean descontarRepartido(Long medicamentoId, long cantidad) {
+        long[] actual = bloquear(medicamentoId);
+        long total = 0;
+        for (long c : actual) total += c;
+        if (total < cantidad) return false;
+
+        long resta = cantidad;
+        for (int n = 0; n < actual.length && resta > 0; n++) {
+            long tomar = Math.min(actual[n], resta);
+            if (tomar == 0) continue;
+            int filas = n == 0
+                    ? medicamentoRepository.descontarStock(medicamentoId, tomar)
+                    : bucketRepository.descontar(medicamentoId, n, tomar);
+            if (filas != 1) throw new IllegalStateException("El bucket " + n + " del medicamento "
+                    + medicamentoId + " cambió con sus filas bloqueadas");
+            resta -= tomar;
+        }
+        return true;
+    }
+
+    /**
+     * Bloquea la fila principal y luego los buckets del medicamento, en ese orden.
+     *
+     * @return cantidades: posición 0 = fila principal, posición {@code n} = bucket {@code n}
+     */
+    private long[] bloquear(Long medicamentoId) {
+        Long principal = medicamentoRepository.bloquearStock(medicamentoId);
+        if (principal == null) throw new NotFoundException("Medicamento no encontrado");
+        List<Number> buckets = bucketRepository.bloquearCantidades(medicamentoId);
+        long[] cantidades = new long[buckets.size() + 1];
+        cantidades[0] = principal;
+        for (int i = 0; i < buckets.size(); i++) cantidades[i + 1] = buckets.get(i).longValue();
+        return cantidades;
+    }
+
+    /**
+     * Reparte {@code total} en {@code buckets + 1} partes iguales; el resto va a la fila principal.
+     */
+    private static long[] partes(long total, int buckets) {
+        long[] partes = new long[buckets + 1];
+        long parte = total / (buckets + 1);
+        Arrays.fill(partes, parte);
+        partes[0] += total % (buckets + 1);
+        return partes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.konex.Konex.stream;
+
+import java.math.BigDecimal;
+
+/**
+ * Estado publicado de un medicamento en {@code GET /api/medicamentos/stream}: solo los campos que
+ * muestran las pantallas de stock (existencias, precio y si sigue activo).
+ *
+ * @param id            identificador del medicamento
+ * @param laboratorioId laboratorio del medicamento (para el filtro por laboratorio)
+ * @param cantidadStock stock total (fila principal más buckets)
+ * @param valorUnitario precio unitario
+ * @param activo        1 = activo, 0 = inactivo
+ */
+public record EstadoStock(Long id, Long laboratorioId, Long cantidadStock, BigDecimal valorUnitario, Integer activo) {
+}
@@ -0,0 +1,477 @@
+package com.konex.Konex.stream;
+
+import com.konex.Konex.cache.MedicamentosModificadosEvent;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.utils.Validators;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Difusión por <i>Server-Sent Events</i> de los cambios de stock, precio y estado de los
+ * medicamentos ({@code GET /api/medicamentos/stream}).
+ * <p>
+ * Un único publicador por nodo, alimentado por {@link MedicamentosModificadosEvent} (publicado tras
+ * el commit de cada escritura del servicio):
+ * </p>
+ * <ol>
+ *   <li>El evento solo anota los ids modificados; el hilo que confirmó la transacción no consulta
+ *       ni escribe a ningún cliente.</li>
+ *   <li>Cada {@code konex.sse.flush-interval}, un hilo despachador lee el estado de los ids
+ *       anotados en una consulta ({@link MedicamentoRepository#estadosStock(Collection)}), descarta
+ *       los que no cambiaron stock, precio ni estado y reparte el resto entre los suscriptores
+ *       cuyo filtro (ids y/o laboratorio) los acepta.</li>
+ *   <li>Cada suscriptor tiene un búfer acotado ({@code konex.sse.buffer-size} medicamentos) que
+ *       conserva solo el último estado de cada id: las actualizaciones rápidas de un mismo
+ *       medicamento se fusionan. Si el búfer se llena, el cliente no está leyendo al ritmo de los
+ *       cambios y se desconecta ({@value #METRICA_DESALOJOS}); al reconectar recibe el estado
+ *       actual de sus ids.</li>
+ *   <li>La escritura en los sockets la hace un pool de {@code konex.sse.senders} hilos, con
+ *       a lo sumo un envío en curso por suscriptor. Las conexiones abiertas no ocupan hilos: la
+ *       respuesta es asíncrona y solo se escribe cuando hay datos.</li>
+ *   <li>{@link SseEmitter#send} bloquea mientras el cliente no lee (socket lleno). Un envío que
+ *       supera {@code konex.sse.send-timeout} desconecta al suscriptor ({@value #METRICA_DESALOJOS})
+ *       y el pool suma un hilo mientras el bloqueado siga ocupado, de modo que los clientes lentos
+ *       no detienen la difusión a los demás. Se suman a lo sumo {@code konex.sse.max-extra-senders}
+ *       hilos: con más envíos bloqueados a la vez, el resto espera en los hilos libres del pool en
+ *       lugar de crear uno por cliente lento. El hilo bloqueado se libera cuando el contenedor
+ *       agota su tiempo de escritura o el cliente cierra la conexión.</li>
+ * </ol>
+ * <p>
+ * Cada {@code konex.sse.heartbeat} se envía un comentario a todos los suscriptores para detectar
+ * conexiones cerradas. Los cambios hechos en otros nodos no se difunden desde este.
+ * </p>
+ */
+@Component
+public class MedicamentoStreamPublisher implements DisposableBean {
+
+    /** Suscriptores conectados. */
+    public static final String METRICA_SUSCRIPTORES = "konex.sse.subscribers";
+    /** Suscriptores desconectados por no leer al ritmo de los cambios. */
+    public static final String METRICA_DESALOJOS = "konex.sse.evictions";
+
+    /** Máximo de ids por consulta y por filtro de suscripción (límite de {@code IN} en Oracle). */
+    public static final int MAX_IDS = 1000;
+
+    private final MedicamentoRepository medicamentoRepository;
+    private final long timeoutMillis;
+    private final int capacidad;
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Suscriptor> nuevos = new ConcurrentLinkedQueue<>();
+    /** Último estado difundido por id; solo lo usa el hilo despachador. */
+    private final Map<Long, EstadoStock> publicados = new HashMap<>();
+    private final long limiteEnvioNanos;
+    private final int maxHilosExtra;
+    /** Hilos sumados al pool por envíos bloqueados; protegido por el monitor del publicador. */
+    private int hilosExtra;
+    private final ScheduledExecutorService despachador;
+    private final ThreadPoolExecutor envios;
+    private final Counter desalojos;
+
+    /**
+     * @param medicamentoRepository repositorio de medicamentos (estado de los ids modificados)
+     * @param intervalo             cada cuánto se difunden los cambios acumulados
+     * @param latido                cada cuánto se envía un comentario de vida
+     * @param timeout               duración máxima de una conexión (el cliente reconecta)
+     * @param capacidad             medicamentos pendientes por suscriptor antes de desconectarlo
+     * @param hilosEnvio            hilos que escriben en las conexiones
+     * @param limiteEnvio           duración máxima de un envío antes de desconectar al suscriptor
+     * @param maxHilosExtra         hilos que se pueden sumar al pool por envíos bloqueados
+     * @param registry              registro de métricas (opcional)
+     */
+    public MedicamentoStreamPublisher(MedicamentoRepository medicamentoRepository,
+                                      @Value("${konex.sse.flush-interval:PT0.2S}") Duration intervalo,
+                                      @Value("${konex.sse.heartbeat:PT15S}") Duration latido,
+                                      @Value("${konex.sse.timeout:PT30M}") Duration timeout,
+                                      @Value("${konex.sse.buffer-size:256}") int capacidad,
+                                      @Value("${konex.sse.senders:8}") int hilosEnvio,
+                                      @Value("${konex.sse.send-timeout:PT5S}") Duration limiteEnvio,
+                                      @Value("${konex.sse.max-extra-senders:8}") int maxHilosExtra,
+                                      ObjectProvider<MeterRegistry> registry) {
+        this.medicamentoRepository = medicamentoRepository;
+        this.timeoutMillis = timeout.toMillis();
+        this.capacidad = capacidad;
+        this.limiteEnvioNanos = limiteEnvio.toNanos();
+        this.maxHilosExtra = Math.max(0, maxHilosExtra);
+
+        MeterRegistry metricas = registry.getIfAvailable(SimpleMeterRegistry::new);
+        Gauge.builder(METRICA_SUSCRIPTORES, suscriptores, Set::size)
+                .description("Suscriptores conectados a GET /api/medicamentos/stream")
+                .register(metricas);
+        this.desalojos = Counter.builder(METRICA_DESALOJOS)
+                .description("Suscriptores SSE desconectados por consumir más lento que los cambios")
+                .register(metricas);
+
+        this.despachador = Executors.newSingleThreadScheduledExecutor(hilos("konex-sse-despacho"));
+        int n = Math.max(1, hilosEnvio);
+        this.envios = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                hilos("konex-sse-envio"));
+        long vigilancia = Math.max(1, limiteEnvio.toMillis() / 2);
+        despachador.scheduleWithFixedDelay(this::despachar, intervalo.toMillis(), intervalo.toMillis(), TimeUnit.MILLISECONDS);
+        despachador.scheduleWithFixedDelay(this::latir, latido.toMillis(), latido.toMillis(), TimeUnit.MILLISECONDS);
+        despachador.scheduleWithFixedDelay(this::vigilarEnvios, vigilancia, vigilancia, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registra un suscriptor. Si filtra por ids, recibe primero el estado actual de esos
+     * medicamentos y luego sus cambios.
+     *
+     * @param ids           medicamentos a seguir ({@code null} o vacío = todos)
+     * @param laboratorioId laboratorio a seguir ({@code null} = todos)
+     * @return emisor SSE de la respuesta
+     * @throws com.konex.Konex.exception.BusinessException si se piden más de {@value #MAX_IDS} ids
+     */
+    public SseEmitter suscribir(Collection<Long> ids, Long laboratorioId) {
+        Validators.check(ids == null || ids.size() <= MAX_IDS,
+                "Se pueden seguir como máximo " + MAX_IDS + " medicamentos por conexión");
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Suscriptor s = new Suscriptor(emitter, ids == null || ids.isEmpty() ? null : Set.copyOf(ids), laboratorioId);
+        emitter.onCompletion(() -> suscriptores.remove(s));
+        emitter.onTimeout(() -> suscriptores.remove(s));
+        emitter.onError(e -> suscriptores.remove(s));
+        suscriptores.add(s);
+        // El estado inicial lo lee el despachador, en orden con los cambios que difunde
+        if (s.ids != null) nuevos.add(s);
+        return emitter;
+    }
+
+    /**
+     * Anota los medicamentos modificados para el siguiente despacho.
+     *
+     * @param evento medicamentos modificados (ya confirmados)
+     */
+    @EventListener
+    public void alModificar(MedicamentosModificadosEvent evento) {
+        if (!suscriptores.isEmpty()) pendientes.addAll(evento.ids());
+    }
+
+    /**
+     * Número de suscriptores conectados.
+     *
+     * @return suscriptores activos
+     */
+    public int suscriptores() {
+        return suscriptores.size();
+    }
+
+    private void despachar() {
+        List<Suscriptor> recienLlegados = new ArrayList<>();
+        for (Suscriptor s; (s = nuevos.poll()) != null; ) recienLlegados.add(s);
+        Set<Long> cambiados = new HashSet<>();
+        for (Iterator<Long> it = pendientes.iterator(); it.hasNext(); ) {
+            cambiados.add(it.next());
+            it.remove();
+        }
+        if (suscriptores.isEmpty()) {
+            publicados.clear();
+            return;
+        }
+
+        Set<Long> consulta = new HashSet<>(cambiados);
+        for (Suscriptor s : recienLlegados) consulta.addAll(s.ids);
+        if (consulta.isEmpty()) return;
+
+        Map<Long, EstadoStock> estados;
+        try {
+            estados = cargar(consulta);
+        } catch (RuntimeException ex) {
+            // Base de datos no disponible: se reintenta en el siguiente despacho
+            pendientes.addAll(cambiados);
+            nuevos.addAll(recienLlegados);
+            return;
+        }
+
+        List<EstadoStock> difundir = new ArrayList<>();
+        for (Long id : cambiados) {
+            EstadoStock e = estados.get(id);
+            if (e != null && !e.equals(publicados.put(id, e))) difundir.add(e);
+        }
+        for (Suscriptor s : suscriptores) {
+            boolean encolado = false;
+            for (EstadoStock e : difundir) {
+                if (s.acepta(e)) encolado |= s.encolar(e);
+            }
+            if (encolado) programar(s);
+        }
+        for (Suscriptor s : recienLlegados) {
+            for (Long id : s.ids) {
+                EstadoStock e = estados.get(id);
+                if (e != null && s.acepta(e)) s.encolar(e);
+            }
+            programar(s);
+        }
+    }
+
+    private Map<Long, EstadoStock> cargar(Set<Long> ids) {
+        Map<Long, EstadoStock> estados = new HashMap<>(ids.size() * 2);
+        List<Long> lista = new ArrayList<>(ids);
+        for (int i = 0; i < lista.size(); i += MAX_IDS) {
+            for (EstadoStock e : medicamentoRepository.estadosStock(lista.subList(i, Math.min(lista.size(), i + MAX_IDS)))) {
+                estados.put(e.id(), e);
+            }
+        }
+        return estados;
+    }
+
+    private void latir() {
+        for (Suscriptor s : suscriptores) {
+            s.marcarLatido();
+            programar(s);
+        }
+    }
+
+    /**
+     * Desconecta a los suscriptores con un envío bloqueado más de {@code konex.sse.send-timeout} y
+     * suma un hilo al pool por cada uno, hasta que su envío termine y sin pasar de
+     * {@code konex.sse.max-extra-senders}.
+     */
+    private void vigilarEnvios() {
+        long ahora = System.nanoTime();
+        for (Suscriptor s : suscriptores) {
+            if (s.atascar(ahora, limiteEnvioNanos)) {
+                suscriptores.remove(s);
+                desalojos.increment();
+            }
+        }
+    }
+
+    /**
+     * Suma un hilo de envío en reemplazo de uno bloqueado, si no se alcanzó el máximo.
+     *
+     * @return {@code true} si se sumó; el envío bloqueado debe devolverlo con {@link #quitarHilo()}
+     */
+    private synchronized boolean sumarHilo() {
+        if (hilosExtra >= maxHilosExtra) return false;
+        hilosExtra++;
+        redimensionar(1);
+        return true;
+    }
+
+    /** Devuelve el hilo sumado por {@link #sumarHilo()} cuando el envío bloqueado termina. */
+    private synchronized void quitarHilo() {
+        hilosExtra--;
+        redimensionar(-1);
+    }
+
+    /** Cambia el número de hilos de envío (el máximo antes del núcleo al crecer, después al decrecer). */
+    private synchronized void redimensionar(int delta) {
+        int n = envios.getCorePoolSize() + delta;
+        if (delta > 0) {
+            envios.setMaximumPoolSize(n);
+            envios.setCorePoolSize(n);
+        } else {
+            envios.setCorePoolSize(n);
+            envios.setMaximumPoolSize(n);
+        }
+    }
+
+    /** Agenda el vaciado del búfer del suscriptor si no hay otro envío en curso. */
+    private void programar(Suscriptor s) {
+        if (s.enviando.compareAndSet(false, true)) envios.execute(() -> vaciar(s));
+    }
+
+    private void vaciar(Suscriptor s) {
+        try {
+            while (true) {
+                Suscriptor.Lote lote = s.tomar();
+                if (lote.cerrado()) {
+                    s.emitter.complete();
+                    return;
+                }
+                if (lote.vacio()) break;
+                if (lote.latido()) enviar(s, SseEmitter.event().comment("ping"));
+                for (EstadoStock e : lote.estados()) {
+                    enviar(s, SseEmitter.event()
+                            .name("stock")
+                            .id(String.valueOf(e.id()))
+                            .data(e, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // Conexión cerrada por el cliente o emisor ya completado
+            suscriptores.remove(s);
+            s.cerrar();
+            return;
+        } finally {
+            s.enviando.set(false);
+        }
+        // Lo encolado (o el desalojo) entre el último tomar() y la liberación del envío
+        if (s.tienePendientes()) programar(s);
+    }
+
+    /** Escribe un evento anotando su inicio para {@link #vigilarEnvios()}. */
+    private void enviar(Suscriptor s, SseEmitter.SseEventBuilder evento) throws IOException {
+        s.iniciarEnvio();
+        try {
+            s.emitter.send(evento);
+        } finally {
+            // El hilo sumado mientras este estaba bloqueado sobra
+            if (s.terminarEnvio()) quitarHilo();
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones y detiene los hilos al cerrar el contexto.
+     */
+    @Override
+    public void destroy() {
+        despachador.shutdownNow();
+        envios.shutdownNow();
+        for (Suscriptor s : suscriptores) {
+            try {
+                s.emitter.complete();
+            } catch (RuntimeException ex) {
+                // Conexión ya cerrada
+            }
+        }
+        suscriptores.clear();
+    }
+
+    private static ThreadFactory hilos(String nombre) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, nombre + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Conexión SSE con su filtro y su búfer de estados pendientes. */
+    private final class Suscriptor {
+
+        /** Contenido tomado del búfer para un envío. */
+        record Lote(List<EstadoStock> estados, boolean latido, boolean cerrado) {
+            boolean vacio() {
+                return estados.isEmpty() && !latido;
+            }
+        }
+
+        final SseEmitter emitter;
+        final Set<Long> ids;
+        final Long laboratorioId;
+        final AtomicBoolean enviando = new AtomicBoolean();
+        private final LinkedHashMap<Long, EstadoStock> bufer = new LinkedHashMap<>();
+        private boolean latido;
+        private boolean cerrado;
+        /** Inicio ({@link System#nanoTime()}) del envío en curso; {@code 0} sin envío. */
+        private long envioDesde;
+        private boolean atascado;
+        /** Si se sumó un hilo al pool por el envío bloqueado en curso. */
+        private boolean hiloSumado;
+
+        Suscriptor(SseEmitter emitter, Set<Long> ids, Long laboratorioId) {
+            this.emitter = emitter;
+            this.ids = ids;
+            this.laboratorioId = laboratorioId;
+        }
+
+        boolean acepta(EstadoStock e) {
+            return (ids == null || ids.contains(e.id()))
+                    && (laboratorioId == null || laboratorioId.equals(e.laboratorioId()));
+        }
+
+        /**
+         * Encola el estado reemplazando el pendiente del mismo id. Si el búfer se llena, marca
+         * al suscriptor para desconectarlo en su próximo envío.
+         *
+         * @return {@code true} si hay algo que enviar
+         */
+        synchronized boolean encolar(EstadoStock e) {
+            if (cerrado) return false;
+            bufer.remove(e.id());
+            bufer.put(e.id(), e);
+            if (bufer.size() > capacidad) {
+                // No se completa aquí: el emisor puede estar bloqueado en un envío lento
+                cerrado = true;
+                bufer.clear();
+                suscriptores.remove(this);
+                desalojos.increment();
+            }
+            return true;
+        }
+
+        synchronized void iniciarEnvio() {
+            envioDesde = System.nanoTime();
+        }
+
+        /**
+         * @return {@code true} si se sumó un hilo al pool mientras este envío estaba bloqueado
+         */
+        synchronized boolean terminarEnvio() {
+            envioDesde = 0;
+            atascado = false;
+            boolean sumado = hiloSumado;
+            hiloSumado = false;
+            return sumado;
+        }
+
+        /**
+         * Marca para desconexión al suscriptor si su envío en curso supera el límite y, si cabe,
+         * suma un hilo al pool en su reemplazo. No se completa el emisor: lo haría el propio hilo
+         * bloqueado al terminar el envío.
+         *
+         * @return {@code true} si se acaba de marcar
+         */
+        synchronized boolean atascar(long ahora, long limiteNanos) {
+            if (envioDesde == 0 || atascado || ahora - envioDesde < limiteNanos) return false;
+            atascado = true;
+            cerrado = true;
+            bufer.clear();
+            // Bajo este monitor: terminarEnvio() no puede perder el hilo sumado
+            hiloSumado = sumarHilo();
+            return true;
+        }
+
+        synchronized void marcarLatido() {
+            latido = true;
+        }
+
+        synchronized void cerrar() {
+            cerrado = true;
+            bufer.clear();
+        }
+
+        synchronized boolean tienePendientes() {
+            return cerrado || latido || !bufer.isEmpty();
+        }
+
+        synchronized Lote tomar() {
+            if (cerrado) return new Lote(List.of(), false, true);
+            Lote lote = new Lote(List.copyOf(bufer.values()), latido, false);
+            bufer.clear();
+            latido = false;
+            return lote;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.konex.Konex.utils;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición de un listado del catálogo paginado por <i>keyset</i> (seek).
+ * <p>
+ * Identifica el último medicamento entregado mediante la tupla {@code (nombre, id)}; la siguiente
+ * página se obtiene con {@code nombre > :nombre OR (nombre = :nombre AND id > :id)} en orden
+ * ascendente, sin {@code OFFSET} ni {@code COUNT}.
+ * </p>
+ * <p>El token expuesto al cliente es opaco (Base64 URL-safe) y no debe interpretarse.</p>
+ */
+public record CursorMedicamento(String nombre, Long id) {
+
+    /**
+     * Decodifica un token opaco recibido del cliente.
+     *
+     * @param token token devuelto en una página anterior; {@code null} o vacío = primera página
+     * @return cursor decodificado, o {@code null} para la primera página
+     * @throws BusinessException si el token no es válido
+     */
+    public static CursorMedicamento decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // El id va primero: el nombre puede contener el separador
+            int sep = raw.indexOf('|');
+            return new CursorMedicamento(raw.substring(sep + 1), Long.parseLong(raw.substring(0, sep)));
+        } catch (RuntimeException ex) {
+            throw new BusinessException("Cursor inválido");
+        }
+    }
+
+    /**
+     * Codifica el cursor como token opaco para el cliente.
+     *
+     * @return token Base64 URL-safe sin relleno
+     */
+    public String encode() {
+        String raw = id + "|" + nombre;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.konex.Konex.utils;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición de un listado de ventas paginado por <i>keyset</i> (seek).
+ * <p>
+ * Identifica la última venta entregada mediante la tupla {@code (fechaHora, id)}; la siguiente
+ * página se obtiene con {@code fechaHora < :fecha OR (fechaHora = :fecha AND id < :id)} en orden
+ * descendente, lo que permite al índice sobre {@code (FECHA_HORA, ID_VENTA)} posicionarse
+ * directamente sin recorrer ni contar las filas anteriores.
+ * </p>
+ *
+ * <p><b>Convenciones:</b></p>
+ * <ul>
+ *   <li>El token expuesto al cliente es opaco (Base64 URL-safe) y no debe interpretarse.</li>
+ *   <li>{@link #INICIO} representa la primera página: es posterior a cualquier venta real.</li>
+ * </ul>
+ */
+public record CursorVenta(LocalDateTime fechaHora, Long id) {
+
+    /**
+     * Cursor de la primera página (anterior a cualquier venta en orden descendente).
+     */
+    public static final CursorVenta INICIO =
+            new CursorVenta(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    /**
+     * Decodifica un token opaco recibido del cliente.
+     *
+     * @param token token devuelto en una página anterior; {@code null} o vacío = primera página
+     * @return cursor decodificado, o {@link #INICIO} si no se envió token
+     * @throws BusinessException si el token no es válido
+     */
+    public static CursorVenta decode(String token) {
+        if (token == null || token.isBlank()) return INICIO;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new CursorVenta(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException ex) {
+            throw new BusinessException("Cursor inválido");
+        }
+    }
+
+    /**
+     * Codifica el cursor como token opaco para el cliente.
+     *
+     * @return token Base64 URL-safe sin relleno
+     */
+    public String encode() {
+        String raw = fechaHora + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
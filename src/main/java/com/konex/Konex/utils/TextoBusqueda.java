@@ -0,0 +1,68 @@
+package com.konex.Konex.utils;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Utilidades de normalización de texto para la búsqueda del catálogo.
+ * <p>
+ * La búsqueda por nombre compara siempre textos normalizados: en mayúsculas, sin tildes ni
+ * diacríticos y con cualquier separador reducido a un único espacio. Así
+ * {@code "acetaminofén"} y {@code "ACETAMINOFEN"} producen la misma clave.
+ * </p>
+ *
+ * <p><b>Trigramas:</b> el nombre normalizado se descompone en todas sus subcadenas de
+ * {@value #LONGITUD_NGRAMA} caracteres. Una subcadena buscada contiene solo trigramas presentes
+ * en el nombre, y un error tipográfico leve altera a lo sumo tres de ellos; por eso basta exigir
+ * una fracción mínima de coincidencias ({@link #minimoCoincidencias(int)}).</p>
+ */
+public class TextoBusqueda {
+
+    /** Longitud de los n-gramas indexados. */
+    public static final int LONGITUD_NGRAMA = 3;
+
+    /** Fracción mínima de trigramas de la consulta que deben coincidir (tolerancia a errores). */
+    private static final double FRACCION_MINIMA = 0.7;
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^A-Z0-9]+");
+
+    /**
+     * Normaliza un texto para indexarlo o buscarlo.
+     *
+     * @param texto texto original (puede ser {@code null})
+     * @return texto en mayúsculas, sin diacríticos y con separadores colapsados; vacío si {@code null}
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+        String sinDiacriticos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(sinDiacriticos.toUpperCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Obtiene los trigramas distintos de un texto ya normalizado, en orden de aparición.
+     *
+     * @param normalizado texto producido por {@link #normalizar(String)}
+     * @return conjunto de trigramas; vacío si el texto tiene menos de {@value #LONGITUD_NGRAMA} caracteres
+     */
+    public static Set<String> trigramas(String normalizado) {
+        Set<String> out = new LinkedHashSet<>();
+        for (int i = 0; i + LONGITUD_NGRAMA <= normalizado.length(); i++) {
+            out.add(normalizado.substring(i, i + LONGITUD_NGRAMA));
+        }
+        return out;
+    }
+
+    /**
+     * Número mínimo de trigramas coincidentes para considerar un nombre como resultado.
+     *
+     * @param trigramasConsulta cantidad de trigramas distintos de la consulta
+     * @return mínimo de coincidencias requerido (al menos 1)
+     */
+    public static long minimoCoincidencias(int trigramasConsulta) {
+        return Math.max(1, (long) Math.ceil(trigramasConsulta * FRACCION_MINIMA));
+    }
+}
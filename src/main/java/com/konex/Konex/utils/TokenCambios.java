@@ -0,0 +1,54 @@
+package com.konex.Konex.utils;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición en el registro de cambios del catálogo: el último cambio entregado, identificado por
+ * la tupla {@code (fechaHora, id)}.
+ * <p>El token expuesto al cliente es opaco (Base64 URL-safe) y no debe interpretarse.</p>
+ */
+public record TokenCambios(LocalDateTime fecha, Long id) {
+
+    /**
+     * Decodifica un token opaco recibido del cliente.
+     *
+     * @param token token devuelto por una sincronización anterior; {@code null} o vacío = sin token
+     * @return posición decodificada, o {@code null} si no hay token
+     * @throws BusinessException si el token no es válido
+     */
+    public static TokenCambios decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new TokenCambios(LocalDateTime.parse(raw.substring(sep + 1)), Long.parseLong(raw.substring(0, sep)));
+        } catch (RuntimeException ex) {
+            throw new BusinessException("Token de cambios inválido");
+        }
+    }
+
+    /**
+     * Codifica la posición como token opaco para el cliente.
+     *
+     * @return token Base64 URL-safe sin relleno
+     */
+    public String encode() {
+        String raw = id + "|" + fecha;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Indica si esta posición es posterior a otra.
+     *
+     * @param otra posición a comparar
+     * @return {@code true} si {@code (fecha, id)} es mayor que la de {@code otra}
+     */
+    public boolean esPosteriorA(TokenCambios otra) {
+        int c = fecha.compareTo(otra.fecha);
+        return c > 0 || (c == 0 && id > otra.id);
+    }
+}
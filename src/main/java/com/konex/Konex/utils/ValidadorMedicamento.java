@@ -0,0 +1,44 @@
+package com.konex.Konex.utils;
+
+import com.konex.Konex.dto.MedicamentoResponse;
+
+import java.time.LocalDateTime;
+
+/**
+ * Validadores HTTP de la representación de un medicamento ({@code ETag} y {@code Last-Modified}).
+ * <p>
+ * Se obtienen de la caché o de una consulta de solo versión, de modo que una petición condicional
+ * que termina en {@code 304} no carga la entidad ni su laboratorio.
+ * </p>
+ *
+ * @param version           versión de la entidad
+ * @param stock             stock total (fila principal más buckets)
+ * @param fechaModificacion última modificación de la fila
+ */
+public record ValidadorMedicamento(Long version, Long stock, LocalDateTime fechaModificacion) {
+
+    /**
+     * Validadores de una respuesta ya construida.
+     *
+     * @param med medicamento
+     * @return sus validadores
+     */
+    public static ValidadorMedicamento de(MedicamentoResponse med) {
+        return new ValidadorMedicamento(med.getVersion(), med.getCantidadStock(), med.getFechaModificacion());
+    }
+
+    /**
+     * @return etiqueta fuerte, p. ej. {@code "7-120"}
+     * @see VersionEtag#etag(Long, Long)
+     */
+    public String etag() {
+        return VersionEtag.etag(version, stock);
+    }
+
+    /**
+     * @return {@code Last-Modified} en milisegundos, o {@code -1} si no se conoce
+     */
+    public long ultimaModificacion() {
+        return VersionEtag.milisegundos(fechaModificacion);
+    }
+}
@@ -0,0 +1,122 @@
+package com.konex.Konex.utils;
+
+import com.konex.Konex.exception.BusinessException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Conversión entre la versión de una entidad y su <i>entity tag</i> HTTP ({@code "7"}).
+ * <p>
+ * Se usa con {@code ETag} en las respuestas, con {@code If-Match} en las ediciones (el cliente
+ * devuelve la etiqueta que leyó y el servicio rechaza la edición si la versión ya cambió) y con
+ * {@code If-None-Match} en las lecturas ({@code 304 Not Modified}).
+ * </p>
+ */
+public final class VersionEtag {
+
+    private static final LocalDateTime EPOCA = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private VersionEtag() {
+    }
+
+    /**
+     * Etiqueta fuerte para una versión.
+     *
+     * @param version versión de la entidad, no {@code null}
+     * @return etiqueta entre comillas, p. ej. {@code "7"}
+     */
+    public static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Etiqueta fuerte de la representación de un medicamento: versión y stock total.
+     * <p>
+     * El stock se incluye porque los descuentos en buckets no incrementan la versión de la fila
+     * principal. La etiqueta leída en un {@code GET} sirve también como {@code If-Match}:
+     * {@link #version(String)} y {@link #stock(String)} recuperan sus dos partes.
+     * </p>
+     *
+     * @param version versión de la entidad, no {@code null}
+     * @param stock   stock total ({@code null} = solo versión)
+     * @return etiqueta entre comillas, p. ej. {@code "7-120"}
+     */
+    public static String etag(Long version, Long stock) {
+        return stock == null ? etag(version) : "\"" + version + "-" + stock + "\"";
+    }
+
+    /**
+     * Etiqueta de las lecturas del catálogo completo a partir de su marca de agua (la modificación
+     * más reciente de cualquier medicamento o bucket).
+     *
+     * @param marca marca de agua ({@code null} = catálogo vacío)
+     * @return etiqueta entre comillas, p. ej. {@code "c1735689600123456"}
+     */
+    public static String catalogo(LocalDateTime marca) {
+        long micros = marca == null ? 0 : ChronoUnit.MICROS.between(EPOCA, marca);
+        return "\"c" + micros + "\"";
+    }
+
+    /**
+     * Convierte una fecha de modificación (zona del servidor) a milisegundos para {@code Last-Modified}.
+     *
+     * @param fecha fecha de modificación (opcional)
+     * @return milisegundos desde la época, o {@code -1} si no hay fecha
+     */
+    public static long milisegundos(LocalDateTime fecha) {
+        return fecha == null ? -1 : fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Extrae la versión esperada de un encabezado {@code If-Match}.
+     * <p>
+     * Acepta etiquetas fuertes ({@code "7"}, {@code "7-120"}), débiles ({@code W/"7"}) o el número
+     * sin comillas; de {@code "7-120"} se toma la versión ({@code 7}).
+     * </p>
+     *
+     * @param ifMatch valor del encabezado (opcional)
+     * @return versión esperada, o {@code null} si no hay encabezado o es {@code *} (cualquier versión)
+     * @throws BusinessException si el valor no corresponde a una versión
+     */
+    public static Long version(String ifMatch) {
+        String v = valor(ifMatch);
+        if (v == null) return null;
+        int guion = v.indexOf('-');
+        return numero(guion > 0 ? v.substring(0, guion) : v, ifMatch);
+    }
+
+    /**
+     * Extrae el stock total esperado de un encabezado {@code If-Match} con la etiqueta de
+     * {@link #etag(Long, Long)}; de {@code "7-120"} se toma {@code 120}.
+     *
+     * @param ifMatch valor del encabezado (opcional)
+     * @return stock esperado, o {@code null} si la etiqueta solo trae la versión
+     * @throws BusinessException si el valor no corresponde a una versión y un stock
+     */
+    public static Long stock(String ifMatch) {
+        String v = valor(ifMatch);
+        if (v == null) return null;
+        int guion = v.indexOf('-');
+        return guion > 0 ? numero(v.substring(guion + 1), ifMatch) : null;
+    }
+
+    /** Valor de la etiqueta sin {@code W/} ni comillas; {@code null} si no hay o es {@code *}. */
+    private static String valor(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) return null;
+        String v = ifMatch.trim();
+        if (v.equals("*")) return null;
+        if (v.startsWith("W/")) v = v.substring(2);
+        if (v.length() >= 2 && v.startsWith("\"") && v.endsWith("\"")) v = v.substring(1, v.length() - 1);
+        return v;
+    }
+
+    private static Long numero(String v, String ifMatch) {
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException ex) {
+            throw new BusinessException("If-Match inválido: " + ifMatch);
+        }
+    }
+}
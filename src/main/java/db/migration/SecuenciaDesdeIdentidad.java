@@ -0,0 +1,61 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Pasa el id de una tabla del esquema inicial de {@code IDENTITY} a una secuencia.
+ * <p>
+ * La secuencia avanza de a {@code 50}, el {@code allocationSize} de las entidades, y empieza por
+ * encima del mayor id existente. En SQL común a Oracle y H2 no se puede calcular ese inicio, por eso
+ * es una migración Java. Flyway no instancia esta clase abstracta; cada versión la extiende.
+ * </p>
+ */
+abstract class SecuenciaDesdeIdentidad extends BaseJavaMigration {
+
+    /** Tamaño de bloque de la secuencia y del optimizador pooled de Hibernate. */
+    static final int INCREMENTO = 50;
+
+    private final String tabla;
+    private final String columna;
+    private final String secuencia;
+
+    SecuenciaDesdeIdentidad(String tabla, String columna, String secuencia) {
+        this.tabla = tabla;
+        this.columna = columna;
+        this.secuencia = secuencia;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        boolean oracle = context.getConnection().getMetaData().getDatabaseProductName().startsWith("Oracle");
+        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        if (oracle) {
+            Integer identidad = jdbc.queryForObject("""
+                    SELECT COUNT(*) FROM ALL_TAB_IDENTITY_COLUMNS
+                     WHERE OWNER = SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA')
+                       AND TABLE_NAME = ? AND COLUMN_NAME = ?
+                    """, Integer.class, tabla, columna);
+            if (identidad != null && identidad > 0) {
+                jdbc.execute("ALTER TABLE " + tabla + " MODIFY " + columna + " DROP IDENTITY");
+            }
+        } else {
+            Integer identidad = jdbc.queryForObject("""
+                    SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+                     WHERE TABLE_SCHEMA = CURRENT_SCHEMA
+                       AND TABLE_NAME = ? AND COLUMN_NAME = ? AND IS_IDENTITY = 'YES'
+                    """, Integer.class, tabla, columna);
+            if (identidad != null && identidad > 0) {
+                jdbc.execute("ALTER TABLE " + tabla + " ALTER COLUMN " + columna + " DROP IDENTITY");
+            }
+        }
+        Long maximo = jdbc.queryForObject("SELECT COALESCE(MAX(" + columna + "), 0) FROM " + tabla, Long.class);
+        // El optimizador pooled toma cada valor como el extremo superior de su bloque de ids:
+        // el primero, MAX + 50, entrega MAX + 1 .. MAX + 50
+        long inicio = maximo == null || maximo == 0 ? 1 : maximo + INCREMENTO;
+        jdbc.execute("CREATE SEQUENCE " + secuencia + " START WITH " + inicio + " INCREMENT BY " + INCREMENTO);
+    }
+}
@@ -0,0 +1,12 @@
+package db.migration;
+
+/**
+ * {@code MEDICAMENTO.ID_MEDICAMENTO} pasa a la secuencia {@code SEQ_MEDICAMENTO}, para que la
+ * importación masiva del catálogo inserte los medicamentos en lotes JDBC.
+ */
+public class V10__SecuenciaMedicamento extends SecuenciaDesdeIdentidad {
+
+    public V10__SecuenciaMedicamento() {
+        super("MEDICAMENTO", "ID_MEDICAMENTO", "SEQ_MEDICAMENTO");
+    }
+}
@@ -0,0 +1,12 @@
+package db.migration;
+
+/**
+ * {@code DETALLE_VENTA.ID_DETALLE} pasa a la secuencia {@code SEQ_DETALLE_VENTA}, para que los
+ * detalles de una canasta se inserten en un solo lote JDBC.
+ */
+public class V2__SecuenciaDetalleVenta extends SecuenciaDesdeIdentidad {
+
+    public V2__SecuenciaDetalleVenta() {
+        super("DETALLE_VENTA", "ID_DETALLE", "SEQ_DETALLE_VENTA");
+    }
+}
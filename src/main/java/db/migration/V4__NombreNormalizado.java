@@ -0,0 +1,83 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Completa {@code NOMBRE_NORMALIZADO} y {@code MEDICAMENTO_TRIGRAMA} para los medicamentos
+ * existentes, igual que {@code POST /api/medicamentos/indice/reconstruir}, y vuelve obligatoria
+ * la columna.
+ * <p>
+ * La normalización y los trigramas son una copia congelada de {@code TextoBusqueda} a la fecha de
+ * esta versión: una migración aplicada no debe cambiar de resultado si la aplicación cambia después.
+ * Si la normalización evoluciona, una migración nueva (o la reconstrucción del índice) recalcula
+ * las filas.
+ * </p>
+ */
+public class V4__NombreNormalizado extends BaseJavaMigration {
+
+    /** Medicamentos procesados por lote. */
+    private static final int LOTE = 1000;
+
+    private static final int LONGITUD_NGRAMA = 3;
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^A-Z0-9]+");
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        long ultimoId = 0;
+        while (true) {
+            List<Object[]> lote = jdbc.query("""
+                    SELECT ID_MEDICAMENTO, NOMBRE, ACTIVO FROM MEDICAMENTO
+                     WHERE ID_MEDICAMENTO > ?
+                     ORDER BY ID_MEDICAMENTO
+                     FETCH FIRST %d ROWS ONLY
+                    """.formatted(LOTE),
+                    (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getInt(3)}, ultimoId);
+            if (lote.isEmpty()) break;
+
+            List<Object[]> nombres = new ArrayList<>();
+            List<Object[]> trigramas = new ArrayList<>();
+            for (Object[] fila : lote) {
+                String normalizado = normalizar((String) fila[1]);
+                // Oracle guarda '' como NULL
+                nombres.add(new Object[]{normalizado.isEmpty() ? " " : normalizado, fila[0]});
+                if ((Integer) fila[2] == 1) {
+                    trigramas(normalizado).forEach(t -> trigramas.add(new Object[]{fila[0], t}));
+                }
+            }
+            jdbc.batchUpdate("UPDATE MEDICAMENTO SET NOMBRE_NORMALIZADO = ? WHERE ID_MEDICAMENTO = ?", nombres);
+            jdbc.batchUpdate("INSERT INTO MEDICAMENTO_TRIGRAMA (ID_MEDICAMENTO, TRIGRAMA) VALUES (?, ?)", trigramas);
+            ultimoId = (Long) lote.get(lote.size() - 1)[0];
+        }
+        jdbc.execute("ALTER TABLE MEDICAMENTO MODIFY NOMBRE_NORMALIZADO NOT NULL");
+    }
+
+    /** Mayúsculas, sin diacríticos y con separadores colapsados; vacío si {@code null}. */
+    static String normalizar(String texto) {
+        if (texto == null) return "";
+        String sinDiacriticos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(sinDiacriticos.toUpperCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /** Trigramas distintos de un texto ya normalizado, en orden de aparición. */
+    static Set<String> trigramas(String normalizado) {
+        Set<String> out = new LinkedHashSet<>();
+        for (int i = 0; i + LONGITUD_NGRAMA <= normalizado.length(); i++) {
+            out.add(normalizado.substring(i, i + LONGITUD_NGRAMA));
+        }
+        return out;
+    }
+}
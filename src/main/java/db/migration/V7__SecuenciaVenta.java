@@ -0,0 +1,12 @@
+package db.migration;
+
+/**
+ * {@code VENTA.ID_VENTA} pasa a la secuencia {@code SEQ_VENTA}, para que las ventas de un lote
+ * del <i>group commit</i> se inserten en un solo lote JDBC.
+ */
+public class V7__SecuenciaVenta extends SecuenciaDesdeIdentidad {
+
+    public V7__SecuenciaVenta() {
+        super("VENTA", "ID_VENTA", "SEQ_VENTA");
+    }
+}
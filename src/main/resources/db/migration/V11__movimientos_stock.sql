@@ -0,0 +1,13 @@
+-- Movimientos aplicados por el ajuste masivo de stock (MovimientoStock). SQL válido en Oracle 12c+ y en H2.
+
+CREATE TABLE MOVIMIENTO_STOCK (
+    ID_MOVIMIENTO       NUMBER(19) NOT NULL,
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    DELTA               NUMBER(19) NOT NULL,
+    MOTIVO              VARCHAR2(100 CHAR),
+    FECHA_HORA          TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MOVIMIENTO_STOCK PRIMARY KEY (ID_MOVIMIENTO)
+);
+
+-- INCREMENT BY = allocationSize (50) del optimizador pooled de Hibernate
+CREATE SEQUENCE SEQ_MOVIMIENTO_STOCK START WITH 1 INCREMENT BY 50;
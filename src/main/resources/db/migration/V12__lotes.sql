@@ -0,0 +1,32 @@
+-- Stock por lote con asignación FEFO en la venta (Lote, DetalleVentaLote). SQL válido en Oracle 12c+ y en H2.
+
+CREATE TABLE LOTE (
+    ID_LOTE             NUMBER(19) NOT NULL,
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    CODIGO              VARCHAR2(40 CHAR) NOT NULL,
+    FECHA_VENCIMIENTO   DATE NOT NULL,
+    CANTIDAD            NUMBER(19) NOT NULL,
+    FECHA_INGRESO       TIMESTAMP NOT NULL,
+    CONSTRAINT PK_LOTE PRIMARY KEY (ID_LOTE)
+);
+-- Lotes abiertos de un medicamento en orden FEFO (vencimiento, id); también indexa la clave foránea
+CREATE INDEX IX_LOTE_MED_VENCIMIENTO ON LOTE (ID_MEDICAMENTO, FECHA_VENCIMIENTO, ID_LOTE);
+ALTER TABLE LOTE ADD CONSTRAINT FK_LOTE_MEDICAMENTO
+    FOREIGN KEY (ID_MEDICAMENTO) REFERENCES MEDICAMENTO (ID_MEDICAMENTO);
+
+-- Unidades de cada línea de venta por lote (asignación FEFO)
+CREATE TABLE DETALLE_VENTA_LOTE (
+    ID_DETALLE_LOTE     NUMBER(19) NOT NULL,
+    ID_DETALLE          NUMBER(19) NOT NULL,
+    ID_LOTE             NUMBER(19) NOT NULL,
+    CANTIDAD            NUMBER(19) NOT NULL,
+    CONSTRAINT PK_DETALLE_VENTA_LOTE PRIMARY KEY (ID_DETALLE_LOTE)
+);
+-- Lotes de una línea de venta (clave foránea)
+CREATE INDEX IX_DVL_DETALLE ON DETALLE_VENTA_LOTE (ID_DETALLE);
+ALTER TABLE DETALLE_VENTA_LOTE ADD CONSTRAINT FK_DVL_DETALLE
+    FOREIGN KEY (ID_DETALLE) REFERENCES DETALLE_VENTA (ID_DETALLE);
+
+-- INCREMENT BY = allocationSize (50) del optimizador pooled de Hibernate
+CREATE SEQUENCE SEQ_LOTE START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE SEQ_DETALLE_VENTA_LOTE START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,9 @@
+-- Fecha de última modificación para Last-Modified y la marca del catálogo. SQL válido en Oracle 12c+ y en H2.
+
+-- Las filas existentes toman la hora de la migración; las escrituras de la aplicación la fijan siempre
+ALTER TABLE MEDICAMENTO ADD FECHA_MODIFICACION TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL;
+ALTER TABLE MEDICAMENTO_STOCK_BUCKET ADD FECHA_MODIFICACION TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL;
+
+-- MAX(FECHA_MODIFICACION) se lee desde un extremo del índice, sin recorrer la tabla
+CREATE INDEX IX_MED_FECHA_MODIFICACION ON MEDICAMENTO (FECHA_MODIFICACION);
+CREATE INDEX IX_MSB_FECHA_MODIFICACION ON MEDICAMENTO_STOCK_BUCKET (FECHA_MODIFICACION);
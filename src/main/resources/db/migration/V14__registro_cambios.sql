@@ -0,0 +1,14 @@
+-- Registro de cambios del catálogo para la sincronización incremental. SQL válido en Oracle 12c+ y en H2.
+
+-- Solo se inserta y se purga por antigüedad; sin clave foránea para no frenar las escrituras
+CREATE TABLE MEDICAMENTO_CAMBIO (
+    ID_CAMBIO           NUMBER(19) NOT NULL,
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    FECHA_HORA          TIMESTAMP NOT NULL,
+    CONSTRAINT PK_MEDICAMENTO_CAMBIO PRIMARY KEY (ID_CAMBIO)
+);
+-- Recorrido por keyset en orden (FECHA_HORA, ID_CAMBIO) y purga por FECHA_HORA
+CREATE INDEX IX_MC_FECHA_HORA ON MEDICAMENTO_CAMBIO (FECHA_HORA, ID_CAMBIO);
+
+-- INCREMENT BY = allocationSize (50) del optimizador pooled de Hibernate
+CREATE SEQUENCE SEQ_MEDICAMENTO_CAMBIO START WITH 1 INCREMENT BY 50;
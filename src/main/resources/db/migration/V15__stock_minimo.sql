@@ -0,0 +1,7 @@
+-- Punto de reorden opcional por medicamento para las alertas de stock bajo. SQL válido en Oracle 12c+ y en H2.
+
+ALTER TABLE MEDICAMENTO ADD STOCK_MINIMO NUMBER(19);
+
+-- Las filas con STOCK_MINIMO nulo no entran al índice en Oracle: la carga inicial de alertas
+-- (bajoMinimo) recorre solo los medicamentos que tienen punto de reorden
+CREATE INDEX IX_MED_STOCK_MINIMO ON MEDICAMENTO (STOCK_MINIMO);
@@ -0,0 +1,8 @@
+-- Latido del primario para medir el retraso de las réplicas de lectura. SQL válido en Oracle 12c+ y en H2.
+
+-- Una sola fila (ID_LATIDO = 1); MonitorReplicas la crea en su primera verificación
+CREATE TABLE REPLICA_LATIDO (
+    ID_LATIDO           NUMBER(10) NOT NULL,
+    FECHA_HORA          TIMESTAMP NOT NULL,
+    CONSTRAINT PK_REPLICA_LATIDO PRIMARY KEY (ID_LATIDO)
+);
@@ -0,0 +1,26 @@
+-- Índices de las consultas de los repositorios sobre las tablas del esquema inicial (V1).
+-- SQL válido en Oracle 12c+ y en H2.
+-- Las claves foráneas se vuelven a crear después de su índice: Oracle no indexa las claves
+-- foráneas y H2 crea uno propio si no encuentra un índice utilizable, que quedaría duplicado.
+
+-- VENTA: rangos por fecha (listarPorRango, reportes, exportación) y keyset (fechaHora, id) DESC
+CREATE INDEX IX_VENTA_FECHA_HORA ON VENTA (FECHA_HORA, ID_VENTA);
+
+-- DETALLE_VENTA: claves foráneas (detalles de una venta, joins de reportes y exportación)
+ALTER TABLE DETALLE_VENTA DROP CONSTRAINT FK_DV_VENTA;
+ALTER TABLE DETALLE_VENTA DROP CONSTRAINT FK_DV_MEDICAMENTO;
+CREATE INDEX IX_DV_VENTA ON DETALLE_VENTA (ID_VENTA);
+CREATE INDEX IX_DV_MEDICAMENTO ON DETALLE_VENTA (ID_MEDICAMENTO);
+ALTER TABLE DETALLE_VENTA ADD CONSTRAINT FK_DV_VENTA
+    FOREIGN KEY (ID_VENTA) REFERENCES VENTA (ID_VENTA);
+ALTER TABLE DETALLE_VENTA ADD CONSTRAINT FK_DV_MEDICAMENTO
+    FOREIGN KEY (ID_MEDICAMENTO) REFERENCES MEDICAMENTO (ID_MEDICAMENTO);
+
+-- MEDICAMENTO: clave foránea al laboratorio (reporte por laboratorio)
+ALTER TABLE MEDICAMENTO DROP CONSTRAINT FK_MED_LAB;
+CREATE INDEX IX_MED_LABORATORIO ON MEDICAMENTO (ID_LABORATORIO);
+ALTER TABLE MEDICAMENTO ADD CONSTRAINT FK_MED_LAB
+    FOREIGN KEY (ID_LABORATORIO) REFERENCES LABORATORIO (ID_LABORATORIO);
+
+-- MEDICAMENTO: listado de activos en orden (nombre, id), también por keyset desde el cursor
+CREATE INDEX IX_MED_ACTIVO_NOMBRE ON MEDICAMENTO (ACTIVO, NOMBRE, ID_MEDICAMENTO);
@@ -0,0 +1,42 @@
+-- Esquema inicial de Konex: laboratorios, medicamentos y ventas con ids IDENTITY.
+-- Es la versión de referencia (baseline-version=1): una base existente sin historial de Flyway ya
+-- tiene estas tablas y continúa desde V2. SQL válido en Oracle 12c+ y en H2 (perfil "h2").
+
+CREATE TABLE LABORATORIO (
+    ID_LABORATORIO      NUMBER(19) GENERATED BY DEFAULT AS IDENTITY,
+    NOMBRE              VARCHAR2(160 CHAR) NOT NULL,
+    NIT                 VARCHAR2(30 CHAR) NOT NULL,
+    CONSTRAINT PK_LABORATORIO PRIMARY KEY (ID_LABORATORIO)
+);
+
+CREATE TABLE MEDICAMENTO (
+    ID_MEDICAMENTO      NUMBER(19) GENERATED BY DEFAULT AS IDENTITY,
+    NOMBRE              VARCHAR2(160 CHAR) NOT NULL,
+    ID_LABORATORIO      NUMBER(19) NOT NULL,
+    FECHA_FABRICACION   DATE NOT NULL,
+    FECHA_VENCIMIENTO   DATE NOT NULL,
+    CANTIDAD_STOCK      NUMBER(19) NOT NULL,
+    VALOR_UNITARIO      NUMBER(14, 2) NOT NULL,
+    ACTIVO              NUMBER(1) DEFAULT 1 NOT NULL,
+    CONSTRAINT PK_MEDICAMENTO PRIMARY KEY (ID_MEDICAMENTO),
+    CONSTRAINT FK_MED_LAB FOREIGN KEY (ID_LABORATORIO) REFERENCES LABORATORIO (ID_LABORATORIO)
+);
+
+CREATE TABLE VENTA (
+    ID_VENTA            NUMBER(19) GENERATED BY DEFAULT AS IDENTITY,
+    FECHA_HORA          TIMESTAMP NOT NULL,
+    VALOR_TOTAL         NUMBER(14, 2) NOT NULL,
+    CONSTRAINT PK_VENTA PRIMARY KEY (ID_VENTA)
+);
+
+CREATE TABLE DETALLE_VENTA (
+    ID_DETALLE          NUMBER(19) GENERATED BY DEFAULT AS IDENTITY,
+    ID_VENTA            NUMBER(19) NOT NULL,
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    CANTIDAD            NUMBER(19) NOT NULL,
+    VALOR_UNITARIO      NUMBER(14, 2) NOT NULL,
+    VALOR_LINEA         NUMBER(14, 2) NOT NULL,
+    CONSTRAINT PK_DETALLE_VENTA PRIMARY KEY (ID_DETALLE),
+    CONSTRAINT FK_DV_VENTA FOREIGN KEY (ID_VENTA) REFERENCES VENTA (ID_VENTA),
+    CONSTRAINT FK_DV_MEDICAMENTO FOREIGN KEY (ID_MEDICAMENTO) REFERENCES MEDICAMENTO (ID_MEDICAMENTO)
+);
@@ -0,0 +1,17 @@
+-- Búsqueda del catálogo por nombre normalizado (sin tildes, en mayúsculas) e índice de trigramas.
+-- V4 completa NOMBRE_NORMALIZADO y MEDICAMENTO_TRIGRAMA para los medicamentos existentes y
+-- vuelve obligatoria la columna. SQL válido en Oracle 12c+ y en H2.
+
+ALTER TABLE MEDICAMENTO ADD NOMBRE_NORMALIZADO VARCHAR2(160 CHAR);
+
+-- Búsqueda por prefijo: LIKE 'prefijo%' sobre el nombre normalizado de los activos
+CREATE INDEX IX_MED_ACTIVO_NOMBRE_NORM ON MEDICAMENTO (ACTIVO, NOMBRE_NORMALIZADO);
+
+-- Índice invertido de trigramas de NOMBRE_NORMALIZADO para la búsqueda por nombre
+CREATE TABLE MEDICAMENTO_TRIGRAMA (
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    TRIGRAMA            VARCHAR2(3 CHAR) NOT NULL,
+    CONSTRAINT PK_MEDICAMENTO_TRIGRAMA PRIMARY KEY (ID_MEDICAMENTO, TRIGRAMA)
+);
+-- Búsqueda por trigramas (la PK empieza por ID_MEDICAMENTO)
+CREATE INDEX IX_MT_TRIGRAMA ON MEDICAMENTO_TRIGRAMA (TRIGRAMA, ID_MEDICAMENTO);
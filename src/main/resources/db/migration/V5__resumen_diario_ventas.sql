@@ -0,0 +1,12 @@
+-- Totales diarios por medicamento para los reportes (VentaResumenDiario), acumulados en cada venta.
+-- SQL válido en Oracle 12c+ y en H2.
+
+-- La PK empieza por FECHA: los reportes leen rangos de días
+CREATE TABLE VENTA_RESUMEN_DIARIO (
+    FECHA               DATE NOT NULL,
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    UNIDADES            NUMBER(19) NOT NULL,
+    VALOR_TOTAL         NUMBER(16, 2) NOT NULL,
+    LINEAS              NUMBER(19) NOT NULL,
+    CONSTRAINT PK_VENTA_RESUMEN_DIARIO PRIMARY KEY (FECHA, ID_MEDICAMENTO)
+);
@@ -0,0 +1,11 @@
+-- Claves de idempotencia de POST /api/ventas (VentaIdempotencia). SQL válido en Oracle 12c+ y en H2.
+
+CREATE TABLE VENTA_IDEMPOTENCIA (
+    CLAVE               VARCHAR2(100 CHAR) NOT NULL,
+    HUELLA              VARCHAR2(64 CHAR) NOT NULL,
+    ID_VENTA            NUMBER(19),
+    FECHA_CREACION      TIMESTAMP NOT NULL,
+    CONSTRAINT PK_VENTA_IDEMPOTENCIA PRIMARY KEY (CLAVE)
+);
+-- Purga de claves vencidas
+CREATE INDEX IX_VI_FECHA_CREACION ON VENTA_IDEMPOTENCIA (FECHA_CREACION);
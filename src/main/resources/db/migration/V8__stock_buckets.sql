@@ -0,0 +1,12 @@
+-- Stock repartido en buckets para medicamentos de alta concurrencia. SQL válido en Oracle 12c+ y en H2.
+
+-- 0 (por defecto) = todo el stock está en MEDICAMENTO.CANTIDAD_STOCK
+ALTER TABLE MEDICAMENTO ADD STOCK_BUCKETS NUMBER(10) DEFAULT 0 NOT NULL;
+
+-- Buckets 1..N (MedicamentoStockBucket); el bucket 0 es MEDICAMENTO.CANTIDAD_STOCK
+CREATE TABLE MEDICAMENTO_STOCK_BUCKET (
+    ID_MEDICAMENTO      NUMBER(19) NOT NULL,
+    NUMERO              NUMBER(10) NOT NULL,
+    CANTIDAD            NUMBER(19) NOT NULL,
+    CONSTRAINT PK_MEDICAMENTO_STOCK_BUCKET PRIMARY KEY (ID_MEDICAMENTO, NUMERO)
+);
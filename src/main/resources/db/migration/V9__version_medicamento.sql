@@ -0,0 +1,4 @@
+-- Bloqueo optimista de MEDICAMENTO (@Version); las filas existentes empiezan en 0.
+-- SQL válido en Oracle 12c+ y en H2.
+
+ALTER TABLE MEDICAMENTO ADD VERSION NUMBER(19) DEFAULT 0 NOT NULL;
@@ -1,13 +1,90 @@
 package com.konex.Konex;
 
+import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Arranque completo sobre el perfil {@code h2}: Flyway aplica las migraciones de
+ * {@code db/migration} y las consultas de los repositorios se resuelven por índice.
+ */
+@SpringBootTest(properties = "konex.h2.database=konex-test")
+@ActiveProfiles("h2")
 class KonexApplicationTests {
 
+	@Autowired
+	Flyway flyway;
+
+	@Autowired
+	JdbcTemplate jdbc;
+
 	@Test
 	void contextLoads() {
+		assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("17");
+	}
+
+	@Test
+	void consultasDeRepositorios_usanIndices() {
+		assertThat(plan("SELECT ID_VENTA FROM VENTA"
+				+ " WHERE FECHA_HORA BETWEEN TIMESTAMP '2025-01-01 00:00:00' AND TIMESTAMP '2025-02-01 00:00:00'"))
+				.contains("IX_VENTA_FECHA_HORA");
+		assertThat(plan("SELECT ID_DETALLE FROM DETALLE_VENTA WHERE ID_VENTA = 1"))
+				.contains("IX_DV_VENTA");
+		assertThat(plan("SELECT ID_DETALLE FROM DETALLE_VENTA WHERE ID_MEDICAMENTO = 1"))
+				.contains("IX_DV_MEDICAMENTO");
+		assertThat(plan("SELECT ID_MEDICAMENTO FROM MEDICAMENTO"
+				+ " WHERE ACTIVO = 1 AND NOMBRE >= 'ACETAMINOFEN' ORDER BY NOMBRE, ID_MEDICAMENTO"))
+				.contains("IX_MED_ACTIVO_NOMBRE:");
+		assertThat(plan("SELECT ID_MEDICAMENTO FROM MEDICAMENTO"
+				+ " WHERE ACTIVO = 1 AND NOMBRE_NORMALIZADO LIKE 'ACE%'"))
+				.contains("IX_MED_ACTIVO_NOMBRE_NORM");
+		assertThat(plan("SELECT ID_MEDICAMENTO FROM MEDICAMENTO_TRIGRAMA WHERE TRIGRAMA IN ('ACE', 'CET')"))
+				.contains("IX_MT_TRIGRAMA");
+		// H2 indexa por su cuenta la clave foránea de LOTE (no reutiliza el índice compuesto, que es
+		// el que usa Oracle); basta con que no recorra la tabla
+		assertThat(plan("SELECT ID_LOTE FROM LOTE WHERE ID_MEDICAMENTO = 1 AND CANTIDAD > 0"
+				+ " ORDER BY FECHA_VENCIMIENTO, ID_LOTE"))
+				.contains("ID_MEDICAMENTO = ")
+				.doesNotContain("tableScan");
+	}
+
+	@Test
+	void baseExistente_migraDesdeElEsquemaInicial() {
+		DataSource db = new DriverManagerDataSource(
+				"jdbc:h2:mem:konex-baseline;MODE=Oracle;DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate base = new JdbcTemplate(db);
+		try {
+			Flyway.configure().dataSource(db).target("1").load().migrate();
+			base.update("INSERT INTO LABORATORIO (NOMBRE, NIT) VALUES ('Acme', '900123')");
+			base.update("INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, ID_LABORATORIO, FECHA_FABRICACION,"
+					+ " FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO) VALUES (7, 'Acetaminofén 500', 1,"
+					+ " DATE '2025-01-01', DATE '2030-01-01', 10, 2500)");
+
+			// Base existente sin historial: se toma como V1 y recibe el resto
+			base.execute("DROP TABLE \"flyway_schema_history\"");
+			Flyway.configure().dataSource(db).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+			assertThat(base.queryForObject("SELECT NOMBRE_NORMALIZADO FROM MEDICAMENTO", String.class))
+					.isEqualTo("ACETAMINOFEN 500");
+			assertThat(base.queryForObject("SELECT COUNT(*) FROM MEDICAMENTO_TRIGRAMA WHERE ID_MEDICAMENTO = 7",
+					Integer.class)).isPositive();
+			// Primer bloque del optimizador pooled: ids 8..57
+			assertThat(base.queryForObject("SELECT NEXT VALUE FOR SEQ_MEDICAMENTO", Long.class)).isEqualTo(57L);
+		} finally {
+			base.execute("SHUTDOWN");
+		}
+	}
+
+	private String plan(String sql) {
+		return jdbc.queryForObject("EXPLAIN " + sql, String.class);
 	}
 
 }
@@ -1,24 +1,49 @@
 package com.konex.Konex.controller;
 
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.dto.AjusteStockErrorLinea;
+import com.konex.Konex.dto.AlertaStockResponse;
+import com.konex.Konex.dto.CambiosResponse;
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.ImportacionErrorFila;
+import com.konex.Konex.dto.ImportacionResponse;
 import com.konex.Konex.dto.MedicamentoRequest;
 import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.exception.AjusteStockRechazadoException;
+import com.konex.Konex.exception.ConflictoVersionException;
+import com.konex.Konex.exception.TokenExpiradoException;
+import com.konex.Konex.importer.FormatoImportacion;
+import com.konex.Konex.retry.ReintentosConcurrencia;
 import com.konex.Konex.service.MedicamentoService;
+import com.konex.Konex.snapshot.CatalogoSnapshot;
+import com.konex.Konex.stream.MedicamentoStreamPublisher;
+import com.konex.Konex.utils.ValidadorMedicamento;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +62,26 @@ class MedicamentoControllerTest {
         public MedicamentoService medicamentoService() {
             return Mockito.mock(MedicamentoService.class);
         }
+
+        @Bean
+        public ReintentosConcurrencia reintentosConcurrencia(ObjectProvider<MeterRegistry> registry) {
+            return new ReintentosConcurrencia(3, Duration.ZERO, Duration.ZERO, registry);
+        }
+
+        @Bean
+        public CatalogoSnapshot catalogoSnapshot() {
+            return Mockito.mock(CatalogoSnapshot.class);
+        }
+
+        @Bean
+        public MedicamentoStreamPublisher medicamentoStreamPublisher() {
+            return Mockito.mock(MedicamentoStreamPublisher.class);
+        }
+
+        @Bean
+        public AlertasStockBajo alertasStockBajo() {
+            return Mockito.mock(AlertasStockBajo.class);
+        }
     }
 
     @Autowired
@@ -45,6 +90,15 @@ class MedicamentoControllerTest {
     @Autowired
     MedicamentoService service;
 
+    @Autowired
+    CatalogoSnapshot catalogoSnapshot;
+
+    @Autowired
+    MedicamentoStreamPublisher streamPublisher;
+
+    @Autowired
+    AlertasStockBajo alertasStock;
+
     @Test
     void crear_ok() throws Exception {
         MedicamentoResponse resp = MedicamentoResponse.builder()
@@ -87,6 +141,160 @@ class MedicamentoControllerTest {
                 .andExpect(jsonPath("$.content[0].id").value(1));
     }
 
+    @Test
+    void obtener_devuelveEtagYLastModified_y304SiNoCambio() throws Exception {
+        LocalDateTime modificado = LocalDateTime.of(2025, 8, 1, 10, 0);
+        MedicamentoResponse resp = MedicamentoResponse.builder()
+                .id(6L).nombre("Ibu").cantidadStock(120L).activo(1).version(7L).fechaModificacion(modificado)
+                .build();
+        Mockito.when(service.obtener(6L)).thenReturn(resp);
+        Mockito.when(service.validador(6L)).thenReturn(new ValidadorMedicamento(7L, 120L, modificado));
+
+        mvc.perform(get("/api/medicamentos/6"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-120\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(jsonPath("$.version").value(7));
+
+        mvc.perform(get("/api/medicamentos/6").header("If-None-Match", "\"7-120\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Solo la primera lectura cargó el medicamento; la condicional usó el validador
+        Mockito.verify(service, Mockito.times(1)).obtener(6L);
+    }
+
+    @Test
+    void obtener_stockCambiado_200() throws Exception {
+        MedicamentoResponse resp = MedicamentoResponse.builder()
+                .id(8L).nombre("Ibu").cantidadStock(119L).activo(1).version(7L)
+                .build();
+        Mockito.when(service.validador(8L)).thenReturn(new ValidadorMedicamento(7L, 119L, null));
+        Mockito.when(service.obtener(8L)).thenReturn(resp);
+
+        mvc.perform(get("/api/medicamentos/8").header("If-None-Match", "\"7-120\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-119\""));
+    }
+
+    @Test
+    void listar_catalogoSinCambios_304() throws Exception {
+        LocalDateTime marca = LocalDateTime.of(2025, 8, 1, 10, 0, 0, 123_456_000);
+        Mockito.when(service.ultimaModificacionCatalogo()).thenReturn(marca);
+        Mockito.when(service.listar(eq("amox"), any()))
+                .thenReturn(new PageImpl<>(List.of(), PageRequest.of(0, 10), 0));
+
+        String etag = mvc.perform(get("/api/medicamentos?nombre=amox"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/api/medicamentos?nombre=amox").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        Mockito.verify(service, Mockito.times(1)).listar(eq("amox"), any());
+    }
+
+    @Test
+    void snapshot_gzipYVersionVigente_304() throws Exception {
+        byte[] gzip = gzip("{\"version\":\"c42\",\"medicamentos\":[],\"total\":0}");
+        Mockito.when(catalogoSnapshot.actual()).thenReturn(new CatalogoSnapshot.Instantanea(
+                "c42", "\"c42\"", LocalDateTime.of(2025, 8, 1, 10, 0), Instant.now(), 0, gzip));
+
+        mvc.perform(get("/api/medicamentos/snapshot").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"c42\""))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().bytes(gzip));
+
+        mvc.perform(get("/api/medicamentos/snapshot").header("If-None-Match", "\"c42\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void snapshot_sinGzip_descomprime() throws Exception {
+        Mockito.when(catalogoSnapshot.actual()).thenReturn(new CatalogoSnapshot.Instantanea(
+                "c7", "\"c7\"", null, Instant.now(), 1, gzip("{\"version\":\"c7\",\"total\":1}")));
+
+        mvc.perform(get("/api/medicamentos/snapshot"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.version").value("c7"))
+                .andExpect(jsonPath("$.total").value(1));
+    }
+
+    @Test
+    void cambios_ok() throws Exception {
+        Mockito.when(service.cambios(eq("tok1"), eq(500))).thenReturn(CambiosResponse.builder()
+                .medicamentos(List.of(MedicamentoResponse.builder().id(9L).activo(0).build()))
+                .token("tok2")
+                .hasMore(false)
+                .build());
+
+        mvc.perform(get("/api/medicamentos/cambios?desde=tok1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.medicamentos[0].id").value(9))
+                .andExpect(jsonPath("$.token").value("tok2"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void cambios_tokenExpirado_410() throws Exception {
+        Mockito.when(service.cambios(eq("viejo"), anyInt())).thenThrow(new TokenExpiradoException("expirado"));
+
+        mvc.perform(get("/api/medicamentos/cambios?desde=viejo"))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    void stream_suscribeConFiltro() throws Exception {
+        Mockito.when(streamPublisher.suscribir(List.of(1L, 2L), 3L)).thenReturn(new SseEmitter());
+
+        mvc.perform(get("/api/medicamentos/stream?ids=1,2&laboratorioId=3").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+        Mockito.verify(streamPublisher).suscribir(List.of(1L, 2L), 3L);
+    }
+
+    @Test
+    void alertasStock_ok() throws Exception {
+        Mockito.when(alertasStock.activas()).thenReturn(List.of(AlertaStockResponse.builder()
+                .medicamentoId(5L).nombre("Ibu").stockActual(2L).stockMinimo(10L)
+                .fechaAlerta(LocalDateTime.of(2026, 1, 1, 8, 0)).build()));
+
+        mvc.perform(get("/api/medicamentos/alertas-stock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicamentoId").value(5))
+                .andExpect(jsonPath("$[0].stockActual").value(2))
+                .andExpect(jsonPath("$[0].stockMinimo").value(10));
+    }
+
+    @Test
+    void configurarStockMinimo_ok() throws Exception {
+        Mockito.when(service.configurarStockMinimo(6L, 15L))
+                .thenReturn(MedicamentoResponse.builder().id(6L).stockMinimo(15L).build());
+
+        mvc.perform(put("/api/medicamentos/6/stock-minimo?stockMinimo=15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stockMinimo").value(15));
+    }
+
+    @Test
+    void listarCursor_ok() throws Exception {
+        var pagina = CursorPageResponse.<MedicamentoResponse>builder()
+                .content(List.of(MedicamentoResponse.builder().id(1L).nombre("Ibu").build()))
+                .size(10)
+                .next("abc")
+                .hasNext(true)
+                .build();
+
+        Mockito.when(service.listarCursor(eq("ibu"), eq("xyz"), eq(10))).thenReturn(pagina);
+
+        mvc.perform(get("/api/medicamentos/cursor?nombre=ibu&after=xyz&size=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.next").value("abc"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
     @Test
     void cotizar_ok() throws Exception {
         CotizacionResponse c = CotizacionResponse.builder()
@@ -105,4 +313,139 @@ class MedicamentoControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.valorTotal").value(6000));
     }
+
+    @Test
+    void configurarBucketsStock_ok() throws Exception {
+        MedicamentoResponse resp = MedicamentoResponse.builder()
+                .id(1L).nombre("Acetaminofén").cantidadStock(900L).activo(1)
+                .build();
+        Mockito.when(service.configurarBucketsStock(1L, 8)).thenReturn(resp);
+
+        mvc.perform(put("/api/medicamentos/1/stock-buckets?buckets=8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cantidadStock").value(900));
+
+        Mockito.verify(service).configurarBucketsStock(1L, 8);
+    }
+
+    @Test
+    void actualizar_conIfMatch_pasaLaVersionYDevuelveEtag() throws Exception {
+        MedicamentoResponse resp = MedicamentoResponse.builder()
+                .id(2L).nombre("Ibu").cantidadStock(50L).activo(1).version(5L)
+                .build();
+        Mockito.when(service.actualizar(eq(2L), any(MedicamentoRequest.class), eq(4L), eq(60L))).thenReturn(resp);
+
+        mvc.perform(put("/api/medicamentos/2")
+                        .header("If-Match", "\"4-60\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(MEDICAMENTO_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5-50\""))
+                .andExpect(jsonPath("$.version").value(5));
+    }
+
+    @Test
+    void actualizar_versionDesactualizada_412() throws Exception {
+        Mockito.when(service.actualizar(eq(3L), any(MedicamentoRequest.class), eq(4L), isNull()))
+                .thenThrow(new ConflictoVersionException("El medicamento fue modificado"));
+
+        mvc.perform(put("/api/medicamentos/3")
+                        .header("If-Match", "W/\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(MEDICAMENTO_JSON))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.status").value(412));
+
+        mvc.perform(get("/api/medicamentos/conflictos"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['3']").value(1));
+    }
+
+    @Test
+    void descontar_conflictoTransitorio_seReintenta() throws Exception {
+        Mockito.doThrow(new CannotAcquireLockException("ORA-00054"))
+                .doNothing()
+                .when(service).descontarStock(4L, 2L);
+
+        mvc.perform(patch("/api/medicamentos/4/descontar?cantidad=2"))
+                .andExpect(status().isOk());
+
+        Mockito.verify(service, Mockito.times(2)).descontarStock(4L, 2L);
+    }
+
+    @Test
+    void descontar_conflictoPersistente_409() throws Exception {
+        Mockito.doThrow(new CannotAcquireLockException("ORA-00054"))
+                .when(service).descontarStock(6L, 2L);
+
+        mvc.perform(patch("/api/medicamentos/6/descontar?cantidad=2"))
+                .andExpect(status().isConflict());
+
+        Mockito.verify(service, Mockito.times(3)).descontarStock(6L, 2L);
+    }
+
+    @Test
+    void importar_csv_devuelveReporte() throws Exception {
+        ImportacionResponse resp = ImportacionResponse.builder()
+                .filasLeidas(2).importadas(1).rechazadas(1)
+                .errores(List.of(new ImportacionErrorFila(3L, "Laboratorio no encontrado: 9")))
+                .build();
+        Mockito.when(service.importar(any(), eq(FormatoImportacion.CSV))).thenReturn(resp);
+
+        mvc.perform(post("/api/medicamentos/importar")
+                        .contentType("text/csv;charset=UTF-8")
+                        .content("""
+                            nombre,laboratorio_id,fecha_fabricacion,fecha_vencimiento,cantidad_stock,valor_unitario
+                            Ibu,1,2024-01-01,2026-01-01,10,2500
+                            Otro,9,2024-01-01,2026-01-01,10,2500
+                            """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importadas").value(1))
+                .andExpect(jsonPath("$.errores[0].linea").value(3));
+    }
+
+    @Test
+    void ajustarStock_rechazado_400ConLineasFallidas() throws Exception {
+        Mockito.when(service.ajustarStock(any())).thenThrow(new AjusteStockRechazadoException(
+                List.of(new AjusteStockErrorLinea(2, 7L, "Medicamento no encontrado"))));
+
+        mvc.perform(post("/api/medicamentos/stock/ajustes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            {"movimientos":[
+                              {"medicamentoId":1,"delta":120,"motivo":"Recepción OC-77"},
+                              {"medicamentoId":7,"delta":-3}
+                            ]}
+                            """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errores[0].linea").value(2))
+                .andExpect(jsonPath("$.errores[0].medicamentoId").value(7));
+    }
+
+    @Test
+    void ajustarStock_sinMovimientos_400() throws Exception {
+        mvc.perform(post("/api/medicamentos/stock/ajustes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"movimientos\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static byte[] gzip(String json) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final String MEDICAMENTO_JSON = """
+            {
+              "nombre":"Ibu",
+              "laboratorioId":1,
+              "fechaFabricacion":"2024-01-01",
+              "fechaVencimiento":"2026-01-01",
+              "cantidadStock":50,
+              "valorUnitario":2500.00
+            }
+            """;
 }
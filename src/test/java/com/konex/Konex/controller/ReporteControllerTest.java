@@ -0,0 +1,72 @@
+package com.konex.Konex.controller;
+
+import com.konex.Konex.dto.AgrupacionReporte;
+import com.konex.Konex.dto.ReporteVentaFila;
+import com.konex.Konex.dto.ReporteVentasResponse;
+import com.konex.Konex.service.ReporteService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReporteController.class)
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+class ReporteControllerTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        public ReporteService reporteService() {
+            return Mockito.mock(ReporteService.class);
+        }
+    }
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ReporteService service;
+
+    @Test
+    void ventas_porMedicamento_ok() throws Exception {
+        LocalDate desde = LocalDate.parse("2025-01-01");
+        LocalDate hasta = LocalDate.parse("2025-12-31");
+        Mockito.when(service.ventas(eq(desde), eq(hasta), eq(AgrupacionReporte.MEDICAMENTO), eq(false)))
+                .thenReturn(ReporteVentasResponse.builder()
+                        .desde(desde).hasta(hasta)
+                        .agrupacion(AgrupacionReporte.MEDICAMENTO)
+                        .filas(List.of(new ReporteVentaFila(5L, "Ibu", 12L, new BigDecimal("24000"), 4L)))
+                        .totalUnidades(12L)
+                        .totalValor(new BigDecimal("24000"))
+                        .build());
+
+        mvc.perform(get("/api/reportes/ventas?desde=2025-01-01&hasta=2025-12-31&agrupar=Medicamento"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.agrupacion").value("MEDICAMENTO"))
+                .andExpect(jsonPath("$.filas[0].clave").value("5"))
+                .andExpect(jsonPath("$.filas[0].nombre").value("Ibu"))
+                .andExpect(jsonPath("$.totalUnidades").value(12));
+    }
+
+    @Test
+    void ventas_agrupacionInvalida_400() throws Exception {
+        mvc.perform(get("/api/reportes/ventas?desde=2025-01-01&hasta=2025-12-31&agrupar=semana"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Agrupación no soportada: semana"));
+    }
+}
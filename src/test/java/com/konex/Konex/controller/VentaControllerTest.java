@@ -3,13 +3,18 @@ package com.konex.Konex.controller;
 import com.konex.Konex.dto.VentaCreateRequest;
 import com.konex.Konex.dto.VentaItemResponse;
 import com.konex.Konex.dto.VentaResponse;
+import com.konex.Konex.export.FormatoExportacion;
+import com.konex.Konex.retry.ReintentosConcurrencia;
 import com.konex.Konex.service.VentaService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -17,14 +22,20 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,6 +53,11 @@ class VentaControllerTest {
         public VentaService ventaService() {
             return Mockito.mock(VentaService.class);
         }
+
+        @Bean
+        public ReintentosConcurrencia reintentosConcurrencia(ObjectProvider<MeterRegistry> registry) {
+            return new ReintentosConcurrencia(3, Duration.ZERO, Duration.ZERO, registry);
+        }
     }
 
     @Autowired
@@ -81,6 +97,66 @@ class VentaControllerTest {
                 .andExpect(jsonPath("$.valorTotal").value(7500));
     }
 
+    @Test
+    void crear_canasta_ok() throws Exception {
+        VentaResponse resp = VentaResponse.builder()
+                .id(11L)
+                .fechaHora(LocalDateTime.now())
+                .valorTotal(new BigDecimal("3500"))
+                .items(List.of())
+                .build();
+
+        Mockito.when(service.crearVenta(any(VentaCreateRequest.class))).thenReturn(resp);
+
+        String body = """
+            { "items": [ { "medicamentoId": 3, "cantidad": 3 }, { "medicamentoId": 1, "cantidad": 1 } ] }
+            """;
+
+        mvc.perform(post("/api/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(11));
+
+        Mockito.verify(service).crearVenta(Mockito.argThat(r -> r.lineas().size() == 2));
+    }
+
+    @Test
+    void crear_canasta_cantidadInvalida_400() throws Exception {
+        String body = """
+            { "items": [ { "medicamentoId": 3, "cantidad": 0 } ] }
+            """;
+
+        mvc.perform(post("/api/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void crear_conIdempotencyKey_usaCreacionIdempotente() throws Exception {
+        VentaResponse resp = VentaResponse.builder()
+                .id(12L)
+                .fechaHora(LocalDateTime.now())
+                .valorTotal(new BigDecimal("2500"))
+                .items(List.of())
+                .build();
+
+        Mockito.when(service.crearVentaIdempotente(eq("pos-1-0001"), any(VentaCreateRequest.class)))
+                .thenReturn(resp);
+
+        mvc.perform(post("/api/ventas")
+                        .header("Idempotency-Key", "pos-1-0001")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            { "medicamentoId": 1, "cantidad": 1 }
+                            """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(12));
+
+        Mockito.verify(service).crearVentaIdempotente(eq("pos-1-0001"), any(VentaCreateRequest.class));
+    }
+
     @Test
     void listarPorRango_paginado_ok() throws Exception {
         // Página 2 (index=1), tamaño 5, total 12
@@ -144,4 +220,52 @@ class VentaControllerTest {
                 .andExpect(jsonPath("$.first").value(true))
                 .andExpect(jsonPath("$.last").value(false));
     }
+
+    @Test
+    void exportar_csv_streaming() throws Exception {
+        Mockito.when(service.exportarPorRango(any(), any(), eq(FormatoExportacion.CSV), any()))
+                .thenAnswer(inv -> {
+                    OutputStream out = inv.getArgument(3);
+                    out.write("id_venta\n1\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        MvcResult result = mvc.perform(get("/api/ventas/export?desde=2025-08-01&hasta=2025-08-31&format=csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ventas_2025-08-01_2025-08-31.csv\""))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id_venta\n1\n"));
+    }
+
+    @Test
+    void exportar_formatoNoSoportado_400() throws Exception {
+        mvc.perform(get("/api/ventas/export?desde=2025-08-01&hasta=2025-08-31&format=xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Formato de exportación no soportado: xml"));
+    }
+
+    @Test
+    void crear_conflictoTransitorio_reintentaLaVenta() throws Exception {
+        VentaResponse resp = VentaResponse.builder()
+                .id(11L).fechaHora(LocalDateTime.now()).valorTotal(new BigDecimal("2500")).items(List.of())
+                .build();
+        Mockito.when(service.crearVenta(argThat(r -> r != null && Long.valueOf(99L).equals(r.getMedicamentoId()))))
+                .thenThrow(new CannotAcquireLockException("ORA-00060"))
+                .thenReturn(resp);
+
+        mvc.perform(post("/api/ventas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                            { "medicamentoId": 99, "cantidad": 1 }
+                            """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(11));
+
+        Mockito.verify(service, Mockito.times(2))
+                .crearVenta(argThat(r -> r != null && Long.valueOf(99L).equals(r.getMedicamentoId())));
+    }
 }
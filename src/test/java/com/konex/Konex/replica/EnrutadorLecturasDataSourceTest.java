@@ -0,0 +1,171 @@
+package com.konex.Konex.replica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Enrutamiento a réplicas con dos bases H2 embebidas: cada una responde con su propio nombre.
+ */
+class EnrutadorLecturasDataSourceTest {
+
+    EmbeddedDatabase primario;
+    EmbeddedDatabase replica;
+    MonitorReplicas monitor;
+    JdbcTemplate jdbc;
+    TransactionTemplate lectura;
+    TransactionTemplate escritura;
+
+    @BeforeEach
+    void setUp() {
+        primario = base("primario");
+        replica = base("replica");
+        monitor = new MonitorReplicas(primario, Map.of("replica-1", replica),
+                Duration.ofSeconds(5), Duration.ofHours(1), new SimpleMeterRegistry());
+        DataSource ds = new LazyConnectionDataSourceProxy(new EnrutadorLecturasDataSource(primario, monitor));
+        jdbc = new JdbcTemplate(ds);
+        PlatformTransactionManager tm = new DataSourceTransactionManager(ds);
+        lectura = new TransactionTemplate(tm);
+        lectura.setReadOnly(true);
+        escritura = new TransactionTemplate(tm);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        RequestContextHolder.resetRequestAttributes();
+        monitor.destroy();
+        primario.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void soloLectura_vaALaReplicaApta_yEscrituraAlPrimario() {
+        latido(replica, LocalDateTime.now());
+        monitor.verificar();
+
+        assertThat(monitor.aptas()).containsExactly("replica-1");
+        assertThat(leer()).isEqualTo("replica");
+        assertThat(escribir()).isEqualTo("primario");
+        // El monitor deja su latido en el primario para que lo replique
+        assertThat(new JdbcTemplate(primario).queryForObject(
+                "SELECT COUNT(*) FROM REPLICA_LATIDO WHERE ID_LATIDO = 1", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void replicaAtrasada_vaAlPrimario() {
+        latido(replica, LocalDateTime.now().minusMinutes(1));
+        monitor.verificar();
+
+        assertThat(monitor.aptas()).isEmpty();
+        assertThat(leer()).isEqualTo("primario");
+    }
+
+    @Test
+    void replicaCaida_vaAlPrimario() {
+        latido(replica, LocalDateTime.now());
+        monitor.verificar();
+        assertThat(leer()).isEqualTo("replica");
+
+        replica.shutdown();
+        monitor.verificar();
+
+        assertThat(leer()).isEqualTo("primario");
+    }
+
+    @Test
+    void sinPeticionHttp_vaAlPrimario() {
+        latido(replica, LocalDateTime.now());
+        monitor.verificar();
+        RequestContextHolder.resetRequestAttributes();
+
+        assertThat(leer()).isEqualTo("primario");
+    }
+
+    @Test
+    void lecturaPropia_trasEscribirLeeDelPrimarioDuranteLaVentana() throws Exception {
+        latido(replica, LocalDateTime.now());
+        monitor.verificar();
+        LecturaPropiaFilter filtro = new LecturaPropiaFilter(Duration.ofSeconds(6));
+        AtomicReference<String> origen = new AtomicReference<>();
+        FilterChain cadena = (req, res) -> origen.set(leer());
+
+        // La venta deja la cookie con el momento de la escritura
+        MockHttpServletResponse respuestaVenta = new MockHttpServletResponse();
+        filtro.doFilter(new MockHttpServletRequest("POST", "/api/ventas"), respuestaVenta, cadena);
+        Cookie cookie = respuestaVenta.getCookie(LecturaPropiaFilter.COOKIE);
+        assertThat(cookie).isNotNull();
+
+        MockHttpServletRequest propia = new MockHttpServletRequest("GET", "/api/ventas/1");
+        propia.setCookies(cookie);
+        filtro.doFilter(propia, new MockHttpServletResponse(), cadena);
+        assertThat(origen.get()).isEqualTo("primario");
+
+        MockHttpServletRequest antigua = new MockHttpServletRequest("GET", "/api/ventas/1");
+        antigua.setCookies(new Cookie(LecturaPropiaFilter.COOKIE,
+                Long.toString(System.currentTimeMillis() - 60_000)));
+        filtro.doFilter(antigua, new MockHttpServletResponse(), cadena);
+        assertThat(origen.get()).isEqualTo("replica");
+
+        filtro.doFilter(new MockHttpServletRequest("GET", "/api/ventas/1"), new MockHttpServletResponse(), cadena);
+        assertThat(origen.get()).isEqualTo("replica");
+    }
+
+    @Test
+    void enPrimario_fuerzaElPrimarioEnSoloLectura() {
+        latido(replica, LocalDateTime.now());
+        monitor.verificar();
+
+        assertThat(ConsistenciaLectura.enPrimario(this::leer)).isEqualTo("primario");
+        assertThat(leer()).isEqualTo("replica");
+    }
+
+    private String leer() {
+        return lectura.execute(s -> jdbc.queryForObject("SELECT NOMBRE FROM ORIGEN", String.class));
+    }
+
+    private String escribir() {
+        return escritura.execute(s -> jdbc.queryForObject("SELECT NOMBRE FROM ORIGEN", String.class));
+    }
+
+    private static EmbeddedDatabase base(String nombre) {
+        EmbeddedDatabase db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE ORIGEN (NOMBRE VARCHAR(20))");
+        jdbc.update("INSERT INTO ORIGEN (NOMBRE) VALUES (?)", nombre);
+        jdbc.execute("CREATE TABLE REPLICA_LATIDO (ID_LATIDO INT PRIMARY KEY, FECHA_HORA TIMESTAMP NOT NULL)");
+        return db;
+    }
+
+    private static void latido(DataSource db, LocalDateTime fecha) {
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.update("DELETE FROM REPLICA_LATIDO");
+        jdbc.update("INSERT INTO REPLICA_LATIDO (ID_LATIDO, FECHA_HORA) VALUES (1, ?)", fecha);
+    }
+}
@@ -0,0 +1,188 @@
+package com.konex.Konex.repository;
+
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.utils.TextoBusqueda;
+import com.konex.Konex.utils.ValidadorMedicamento;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Consultas de {@link MedicamentoRepository} contra la base H2 del perfil {@code h2}, con el
+ * esquema de las migraciones de Flyway. Cada operación confirma su propia transacción.
+ */
+@DataJpaTest(properties = "konex.h2.database=konex-repositorio")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MedicamentoRepositoryTest {
+
+    static final long ID = 1L;
+
+    @Autowired
+    MedicamentoRepository repository;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM MEDICAMENTO_TRIGRAMA");
+        jdbc.update("DELETE FROM MEDICAMENTO");
+        jdbc.update("DELETE FROM LABORATORIO");
+        // Las esperas por el bloqueo de fila superan con holgura el segundo por defecto de H2
+        jdbc.execute("SET DEFAULT_LOCK_TIMEOUT 30000");
+        jdbc.update("INSERT INTO LABORATORIO (ID_LABORATORIO, NOMBRE, NIT) VALUES (1, 'Genfar', '900')");
+    }
+
+    @Test
+    void descontarStock_concurrente_nuncaQuedaNegativo() throws Exception {
+        long inicial = 500;
+        insertarMedicamento(inicial);
+
+        int hilos = 8;
+        int intentos = 1_000;
+        AtomicInteger exitosas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        AtomicInteger unidadesVendidas = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+        for (int i = 0; i < intentos; i++) {
+            long cantidad = 1 + i % 3;
+            futuros.add(pool.submit(() -> {
+                inicio.await();
+                if (descontar(cantidad) == 1) {
+                    exitosas.incrementAndGet();
+                    unidadesVendidas.addAndGet((int) cantidad);
+                } else {
+                    rechazadas.incrementAndGet();
+                }
+                assertThat(stock()).isNotNegative();
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> f : futuros) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(exitosas.get() + rechazadas.get()).isEqualTo(intentos);
+        assertThat(rechazadas.get()).isPositive();
+        assertThat(stock()).isNotNegative()
+                .isEqualTo(inicial - unidadesVendidas.get())
+                .isLessThan(3);
+        // Cada descuento exitoso incrementa la versión: una edición basada en una lectura previa falla
+        assertThat(jdbc.queryForObject("SELECT VERSION FROM MEDICAMENTO WHERE ID_MEDICAMENTO = ?", Long.class, ID))
+                .isEqualTo(exitosas.get());
+    }
+
+    @Test
+    void descontarStock_sinStockSuficienteOInactivo_noModifica() {
+        insertarMedicamento(2);
+
+        assertThat(descontar(3L)).isZero();
+        jdbc.update("UPDATE MEDICAMENTO SET ACTIVO = 0 WHERE ID_MEDICAMENTO = ?", ID);
+        assertThat(descontar(1L)).isZero();
+        assertThat(stock()).isEqualTo(2L);
+    }
+
+    @Test
+    void descontarStock_avanzaLaFechaDeModificacionYElValidador() {
+        insertarMedicamento(10);
+        jdbc.update("UPDATE MEDICAMENTO SET FECHA_MODIFICACION = TIMESTAMP '2025-01-01 00:00:00'");
+
+        assertThat(descontar(3L)).isEqualTo(1);
+
+        ValidadorMedicamento validador = repository.validador(ID).orElseThrow();
+        assertThat(validador.stock()).isEqualTo(7L);
+        assertThat(validador.fechaModificacion()).isAfter(LocalDateTime.of(2025, 1, 1, 0, 0));
+        assertThat(repository.ultimaModificacion()).isEqualTo(validador.fechaModificacion());
+    }
+
+    @Test
+    void buscarPorTrigramas_cursor_recorreLasCoincidenciasEnOrdenDeNombre() {
+        insertarMedicamento(10L, "Ibuprofeno 800", 1);
+        insertarMedicamento(11L, "Ibuprofeno 400", 1);
+        insertarMedicamento(12L, "Ibuprofemo 200", 1);
+        insertarMedicamento(13L, "Ibuprofeno 600", 0);
+        insertarMedicamento(14L, "Loratadina", 1);
+        Set<String> trigramas = TextoBusqueda.trigramas(TextoBusqueda.normalizar("ibuprofeno"));
+        long minimo = TextoBusqueda.minimoCoincidencias(trigramas.size());
+
+        List<Medicamento> p1 = repository.buscarPrimerosPorTrigramas(trigramas, minimo, PageRequest.of(0, 2));
+        List<Medicamento> p2 = repository.buscarPorTrigramasDespuesDe(trigramas, minimo,
+                "Ibuprofeno 400", 11L, PageRequest.of(0, 2));
+
+        // El error tipográfico también coincide; el inactivo y los demás nombres no
+        assertThat(p1).extracting(Medicamento::getId).containsExactly(12L, 11L);
+        assertThat(p2).extracting(Medicamento::getId).containsExactly(10L);
+    }
+
+    @Test
+    void buscarPorPrefijo_cursor_ignoraTildesYMayusculas() {
+        insertarMedicamento(20L, "Ácido fólico", 1);
+        insertarMedicamento(21L, "acetaminofén", 1);
+        insertarMedicamento(22L, "Aspirina", 1);
+
+        List<Medicamento> p1 = repository.buscarPrimeros("AC", PageRequest.of(0, 1));
+        List<Medicamento> p2 = repository.buscarDespuesDe("AC", "acetaminofén", 21L, PageRequest.of(0, 1));
+
+        assertThat(p1).extracting(Medicamento::getId).containsExactly(21L);
+        assertThat(p2).extracting(Medicamento::getId).containsExactly(20L);
+        assertThat(repository.buscarPrimeros("", PageRequest.of(0, 5))).hasSize(3);
+    }
+
+    /** Descuenta en una transacción propia, como lo hace cada venta. */
+    private int descontar(long cantidad) {
+        Integer filas = new TransactionTemplate(transactionManager)
+                .execute(s -> repository.descontarStock(ID, cantidad));
+        return filas == null ? 0 : filas;
+    }
+
+    private void insertarMedicamento(long stock) {
+        jdbc.update("""
+                INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, NOMBRE_NORMALIZADO, ID_LABORATORIO,
+                                         FECHA_FABRICACION, FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO, ACTIVO)
+                VALUES (?, 'Ibuprofeno 400', 'IBUPROFENO 400', 1, DATE '2025-01-01', DATE '2027-01-01', ?, 1000, 1)
+                """, ID, stock);
+    }
+
+    /** Inserta un medicamento con su nombre normalizado y, si está activo, sus trigramas. */
+    private void insertarMedicamento(long id, String nombre, int activo) {
+        String normalizado = TextoBusqueda.normalizar(nombre);
+        jdbc.update("""
+                INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, NOMBRE_NORMALIZADO, ID_LABORATORIO,
+                                         FECHA_FABRICACION, FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO, ACTIVO)
+                VALUES (?, ?, ?, 1, DATE '2025-01-01', DATE '2027-01-01', 10, 1000, ?)
+                """, id, nombre, normalizado, activo);
+        if (activo == 1) {
+            TextoBusqueda.trigramas(normalizado).forEach(t ->
+                    jdbc.update("INSERT INTO MEDICAMENTO_TRIGRAMA (ID_MEDICAMENTO, TRIGRAMA) VALUES (?, ?)", id, t));
+        }
+    }
+
+    private long stock() {
+        return jdbc.queryForObject("SELECT CANTIDAD_STOCK FROM MEDICAMENTO WHERE ID_MEDICAMENTO = ?", Long.class, ID);
+    }
+}
@@ -1,22 +1,78 @@
 package com.konex.Konex.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.alerting.NivelStock;
+import com.konex.Konex.alerting.StockBajoEvent;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.cache.MedicamentosModificadosEvent;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.dto.CambiosResponse;
+import com.konex.Konex.dto.AjusteStockRequest;
+import com.konex.Konex.dto.AjusteStockResponse;
 import com.konex.Konex.dto.CotizacionResponse;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.ImportacionErrorFila;
+import com.konex.Konex.dto.ImportacionResponse;
+import com.konex.Konex.dto.LoteRequest;
+import com.konex.Konex.dto.LoteResponse;
 import com.konex.Konex.dto.MedicamentoRequest;
 import com.konex.Konex.dto.MedicamentoResponse;
+import com.konex.Konex.dto.MovimientoStockRequest;
+import com.konex.Konex.exception.AjusteStockRechazadoException;
 import com.konex.Konex.exception.BusinessException;
+import com.konex.Konex.exception.ConflictoVersionException;
 import com.konex.Konex.exception.NotFoundException;
+import com.konex.Konex.exception.StockInsuficienteException;
+import com.konex.Konex.exception.TokenExpiradoException;
+import com.konex.Konex.importer.FormatoImportacion;
+import com.konex.Konex.importer.MedicamentoImporter;
 import com.konex.Konex.model.Laboratorio;
+import com.konex.Konex.model.Lote;
 import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.MedicamentoCambio;
+import com.konex.Konex.model.MedicamentoStockBucket;
+import com.konex.Konex.model.MovimientoStock;
 import com.konex.Konex.repository.LaboratorioRepository;
+import com.konex.Konex.repository.LoteRepository;
+import com.konex.Konex.repository.MedicamentoCambioRepository;
 import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.MedicamentoStockBucketRepository;
+import com.konex.Konex.repository.MovimientoStockRepository;
+import com.konex.Konex.search.MedicamentoSearchIndex;
 import com.konex.Konex.service.impl.MedicamentoServiceImpl;
+import com.konex.Konex.stock.MedicamentoStockBuckets;
+import com.konex.Konex.utils.CursorMedicamento;
+import com.konex.Konex.utils.TextoBusqueda;
+import com.konex.Konex.utils.TokenCambios;
+import com.konex.Konex.utils.ValidadorMedicamento;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,13 +81,43 @@ class MedicamentoServiceImplTest {
 
     MedicamentoRepository medicamentoRepository;
     LaboratorioRepository laboratorioRepository;
+    ApplicationEventPublisher eventos;
+    MedicamentoCache cache;
+    MedicamentoSearchIndex searchIndex;
+    MedicamentoStockBucketRepository bucketRepository;
+    MedicamentoStockBuckets stockBuckets;
+    MedicamentoImporter importer;
+    MovimientoStockRepository movimientoStockRepository;
+    LoteRepository loteRepository;
+    MedicamentoCambioRepository cambioRepository;
+    MedicamentoChangeLog changeLog;
+    AlertasStockBajo alertasStock;
     MedicamentoServiceImpl service;
 
     @BeforeEach
     void setUp() {
         medicamentoRepository = mock(MedicamentoRepository.class);
         laboratorioRepository = mock(LaboratorioRepository.class);
-        service = new MedicamentoServiceImpl(medicamentoRepository, laboratorioRepository);
+        eventos = mock(ApplicationEventPublisher.class);
+        cache = new MedicamentoCache(100, Duration.ofMinutes(5), eventos);
+        searchIndex = mock(MedicamentoSearchIndex.class);
+        bucketRepository = mock(MedicamentoStockBucketRepository.class);
+        stockBuckets = new MedicamentoStockBuckets(medicamentoRepository, bucketRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                8, 64, true, Duration.ZERO, 3);
+        cambioRepository = mock(MedicamentoCambioRepository.class);
+        changeLog = new MedicamentoChangeLog(cambioRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), Duration.ofSeconds(5), Duration.ofDays(7));
+        importer = new MedicamentoImporter(medicamentoRepository, laboratorioRepository, searchIndex, cache, changeLog,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(EntityManager.class),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules(),
+                2, 10);
+        movimientoStockRepository = mock(MovimientoStockRepository.class);
+        loteRepository = mock(LoteRepository.class);
+        alertasStock = new AlertasStockBajo(medicamentoRepository, eventos);
+        service = new MedicamentoServiceImpl(medicamentoRepository, laboratorioRepository, cache, searchIndex,
+                stockBuckets, importer, movimientoStockRepository, loteRepository, bucketRepository, changeLog,
+                alertasStock);
     }
 
     @Test
@@ -67,6 +153,7 @@ class MedicamentoServiceImplTest {
         ArgumentCaptor<Medicamento> captor = ArgumentCaptor.forClass(Medicamento.class);
         verify(medicamentoRepository).save(captor.capture());
         assertThat(captor.getValue().getCantidadStock()).isEqualTo(100L);
+        verify(searchIndex).indexar(10L, "Ibuprofeno 400mg");
     }
 
     @Test
@@ -85,8 +172,9 @@ class MedicamentoServiceImplTest {
                 .id(5L).nombre("Ibu")
                 .cantidadStock(10L)
                 .valorUnitario(new BigDecimal("2000"))
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
                 .build();
-        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.findWithLaboratorioById(5L)).thenReturn(Optional.of(med));
 
         CotizacionResponse c = service.cotizar(5L, 3);
 
@@ -94,6 +182,129 @@ class MedicamentoServiceImplTest {
         assertThat(c.getValorTotal()).isEqualByComparingTo("6000");
     }
 
+    @Test
+    void cotizar_y_obtener_usanCache() {
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Ibu")
+                .cantidadStock(10L)
+                .valorUnitario(new BigDecimal("2000"))
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(5L)).thenReturn(Optional.of(med));
+
+        service.cotizar(5L, 1);
+        service.cotizar(5L, 2);
+        service.obtener(5L);
+
+        verify(medicamentoRepository, times(1)).findWithLaboratorioById(5L);
+        assertThat(service.estadisticasCache().getAciertos()).isEqualTo(2);
+        assertThat(service.estadisticasCache().getFallos()).isEqualTo(1);
+    }
+
+    @Test
+    void descontarStock_invalidaCache_sinStockViejo() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento antes = Medicamento.builder()
+                .id(5L).nombre("Ibu").cantidadStock(3L)
+                .valorUnitario(new BigDecimal("2000")).laboratorio(lab)
+                .build();
+        Medicamento despues = Medicamento.builder()
+                .id(5L).nombre("Ibu").cantidadStock(0L)
+                .valorUnitario(new BigDecimal("2000")).laboratorio(lab)
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(5L))
+                .thenReturn(Optional.of(antes), Optional.of(despues));
+        when(medicamentoRepository.descontarStock(5L, 3L)).thenReturn(1);
+
+        assertThat(service.cotizar(5L, 3).isPuedeVender()).isTrue();
+        service.descontarStock(5L, 3);
+
+        CotizacionResponse c = service.cotizar(5L, 3);
+        assertThat(c.getStockDisponible()).isZero();
+        assertThat(c.isPuedeVender()).isFalse();
+    }
+
+    @Test
+    void obtener_inactivo_noEncontrado() {
+        Medicamento med = Medicamento.builder()
+                .id(6L).nombre("Old").cantidadStock(1L)
+                .valorUnitario(BigDecimal.ONE).activo(0)
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(6L)).thenReturn(Optional.of(med));
+
+        assertThatThrownBy(() -> service.obtener(6L)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> service.obtener(99L)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void listarCursor_primeraPaginaYSiguiente() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento a = Medicamento.builder().id(4L).nombre("Acetaminofén").laboratorio(lab).build();
+        Medicamento b = Medicamento.builder().id(2L).nombre("Ibuprofeno").laboratorio(lab).build();
+        Medicamento c = Medicamento.builder().id(9L).nombre("Loratadina").laboratorio(lab).build();
+        when(medicamentoRepository.buscarPrimeros(eq("A"), any())).thenReturn(List.of(a, b, c));
+
+        CursorPageResponse<MedicamentoResponse> p1 = service.listarCursor("a", null, 2);
+
+        assertThat(p1.getContent()).extracting(MedicamentoResponse::getId).containsExactly(4L, 2L);
+        assertThat(p1.isHasNext()).isTrue();
+
+        when(medicamentoRepository.buscarDespuesDe(eq("A"), eq("Ibuprofeno"), eq(2L), any())).thenReturn(List.of(c));
+
+        CursorPageResponse<MedicamentoResponse> p2 = service.listarCursor("a", p1.getNext(), 2);
+
+        assertThat(p2.getContent()).extracting(MedicamentoResponse::getId).containsExactly(9L);
+        assertThat(p2.isHasNext()).isFalse();
+        verify(medicamentoRepository, never()).buscar(any(), any());
+    }
+
+    @Test
+    void listarCursor_conTrigramas_usaElIndice() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento b = Medicamento.builder().id(2L).nombre("Ibuprofeno").laboratorio(lab).build();
+        Set<String> trigramas = TextoBusqueda.trigramas("IBUPROFEN");
+        when(medicamentoRepository.buscarPrimerosPorTrigramas(eq(trigramas), eq(5L), any())).thenReturn(List.of(b));
+
+        CursorPageResponse<MedicamentoResponse> p1 = service.listarCursor("ibuprofén", null, 2);
+
+        assertThat(p1.getContent()).extracting(MedicamentoResponse::getId).containsExactly(2L);
+        assertThat(p1.isHasNext()).isFalse();
+
+        String after = new CursorMedicamento("Ibuprofeno", 2L).encode();
+        when(medicamentoRepository.buscarPorTrigramasDespuesDe(eq(trigramas), eq(5L), eq("Ibuprofeno"), eq(2L), any()))
+                .thenReturn(List.of());
+
+        assertThat(service.listarCursor("ibuprofén", after, 2).getContent()).isEmpty();
+        verify(medicamentoRepository, never()).buscarPrimeros(any(), any());
+        verify(medicamentoRepository, never()).buscar(any(), any());
+    }
+
+    @Test
+    void listarCursor_tamanoInvalido() {
+        assertThatThrownBy(() -> service.listarCursor(null, null, 0))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    void descontarStock_ok_updateCondicional() {
+        when(medicamentoRepository.descontarStock(5L, 3L)).thenReturn(1);
+
+        service.descontarStock(5L, 3);
+
+        verify(medicamentoRepository).descontarStock(5L, 3L);
+        verify(medicamentoRepository, never()).findById(any());
+        verify(medicamentoRepository, never()).save(any(Medicamento.class));
+    }
+
+    @Test
+    void descontarStock_noExiste() {
+        when(medicamentoRepository.findById(7L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.descontarStock(7L, 1))
+                .isInstanceOf(NotFoundException.class);
+    }
+
     @Test
     void descontarStock_insuficiente() {
         Medicamento med = Medicamento.builder()
@@ -104,7 +315,597 @@ class MedicamentoServiceImplTest {
         when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
 
         assertThatThrownBy(() -> service.descontarStock(5L, 3))
-                .isInstanceOf(BusinessException.class)
+                .isInstanceOf(StockInsuficienteException.class)
                 .hasMessageContaining("Stock insuficiente");
     }
+
+    @Test
+    void listar_conTexto_usaIndiceYConservaRelevancia() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento exacto = Medicamento.builder().id(7L).nombre("Acetaminofén 500mg").laboratorio(lab).build();
+        Medicamento parecido = Medicamento.builder().id(3L).nombre("Acetaminofen jarabe").laboratorio(lab).build();
+        Pageable pageable = PageRequest.of(0, 10);
+        when(searchIndex.buscarIds(eq("ACETAMINOFEN"), any()))
+                .thenReturn(new PageImpl<>(List.of(7L, 3L), pageable, 2));
+        when(medicamentoRepository.findWithLaboratorioByIdIn(List.of(7L, 3L)))
+                .thenReturn(List.of(parecido, exacto));
+
+        Page<MedicamentoResponse> page = service.listar("  acetaminofén ", pageable);
+
+        assertThat(page.getContent()).extracting(MedicamentoResponse::getId).containsExactly(7L, 3L);
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        verify(medicamentoRepository, never()).buscar(any(), any());
+    }
+
+    @Test
+    void listar_textoCorto_usaPrefijoNormalizado() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(medicamentoRepository.buscarPorPrefijo("IB", pageable)).thenReturn(Page.empty(pageable));
+
+        service.listar("ib", pageable);
+
+        verify(medicamentoRepository).buscarPorPrefijo("IB", pageable);
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    void listar_sinTexto_listaTodos() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(medicamentoRepository.buscar(null, pageable)).thenReturn(Page.empty(pageable));
+
+        service.listar("  ", pageable);
+
+        verify(medicamentoRepository).buscar(null, pageable);
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    void eliminar_quitaDelIndice() {
+        Medicamento med = Medicamento.builder().id(4L).nombre("Ibu").build();
+        when(medicamentoRepository.findById(4L)).thenReturn(Optional.of(med));
+
+        service.eliminar(4L);
+
+        assertThat(med.getActivo()).isZero();
+        verify(searchIndex).quitar(4L);
+    }
+
+    @Test
+    void obtener_conBuckets_reportaStockTotal() {
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Acetaminofén").cantidadStock(100L).stockBuckets(8).stockEnBuckets(800L)
+                .valorUnitario(new BigDecimal("2000"))
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(5L)).thenReturn(Optional.of(med));
+
+        assertThat(service.obtener(5L).getCantidadStock()).isEqualTo(900L);
+        CotizacionResponse c = service.cotizar(5L, 850);
+        assertThat(c.getStockDisponible()).isEqualTo(900L);
+        assertThat(c.isPuedeVender()).isTrue();
+    }
+
+    @Test
+    void descontarStock_conBuckets_descuentaDeUnBucket() {
+        Medicamento med = Medicamento.builder().id(5L).nombre("Acetaminofén").cantidadStock(0L).stockBuckets(4).build();
+        when(medicamentoRepository.descontarStock(5L, 3L)).thenReturn(0);
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(bucketRepository.descontar(eq(5L), anyInt(), eq(3L))).thenReturn(1);
+
+        service.descontarStock(5L, 3);
+
+        verify(bucketRepository, times(1)).descontar(eq(5L), anyInt(), eq(3L));
+        verify(bucketRepository, never()).bloquearCantidades(any());
+    }
+
+    @Test
+    void descontarStock_conBuckets_ningunoAlcanza_descuentaRepartido() {
+        Medicamento med = Medicamento.builder().id(5L).nombre("Acetaminofén").cantidadStock(2L).stockBuckets(2).build();
+        when(medicamentoRepository.descontarStock(5L, 6L)).thenReturn(0);
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(2L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of(3L, 4L));
+        when(medicamentoRepository.descontarStock(5L, 2L)).thenReturn(1);
+        when(bucketRepository.descontar(5L, 1, 3L)).thenReturn(1);
+        when(bucketRepository.descontar(5L, 2, 1L)).thenReturn(1);
+
+        service.descontarStock(5L, 6);
+
+        verify(medicamentoRepository).descontarStock(5L, 2L);
+        verify(bucketRepository).descontar(5L, 1, 3L);
+        verify(bucketRepository).descontar(5L, 2, 1L);
+    }
+
+    @Test
+    void descontarStock_conBuckets_totalInsuficiente() {
+        Medicamento med = Medicamento.builder().id(5L).nombre("Acetaminofén").cantidadStock(2L).stockBuckets(2).build();
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(2L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of(3L, 4L));
+
+        assertThatThrownBy(() -> service.descontarStock(5L, 10))
+                .isInstanceOf(StockInsuficienteException.class);
+    }
+
+    @Test
+    void configurarBucketsStock_reparteElTotal() {
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(103L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of());
+        Medicamento med = Medicamento.builder().id(5L).nombre("Acetaminofén").cantidadStock(28L)
+                .stockBuckets(3).stockEnBuckets(75L)
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(5L)).thenReturn(Optional.of(med));
+
+        MedicamentoResponse res = service.configurarBucketsStock(5L, 3);
+
+        assertThat(res.getCantidadStock()).isEqualTo(103L);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MedicamentoStockBucket>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bucketRepository).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(MedicamentoStockBucket::getCantidad).containsExactly(25L, 25L, 25L);
+        verify(medicamentoRepository).fijarStock(5L, 28L, 3);
+        assertThatThrownBy(() -> service.configurarBucketsStock(5L, 65))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    void mantenerBuckets_activaPorEsperasYRebalancea() {
+        // Con umbral 0 toda venta cuenta como espera; a las 3 se activa el modo
+        Medicamento med = Medicamento.builder().id(5L).nombre("Acetaminofén").cantidadStock(50L).build();
+        when(medicamentoRepository.descontarStock(5L, 1L)).thenReturn(1);
+        for (int i = 0; i < 3; i++) stockBuckets.descontar(med, 1);
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(47L, 2L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of(), List.of(30L, 15L));
+        when(medicamentoRepository.idsConBuckets()).thenReturn(List.of(5L));
+
+        stockBuckets.mantener();
+
+        // Activación: 47 unidades en 1 + 8 partes -> 7 en la fila principal y 5 por bucket
+        verify(medicamentoRepository).fijarStock(5L, 7L, 8);
+        // Rebalanceo (estado simulado con 2 buckets): 2 + 30 + 15 = 47 -> 17, 15, 15
+        verify(bucketRepository).fijar(5L, 1, 15L);
+        verify(bucketRepository, never()).fijar(5L, 2, 15L);
+        verify(medicamentoRepository).fijarStock(5L, 17L, 2);
+    }
+
+    @Test
+    void actualizar_conVersionEsperada_aplicaSiCoincide() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Ibu").laboratorio(lab).cantidadStock(10L)
+                .valorUnitario(new BigDecimal("2000")).version(3L)
+                .build();
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.save(any(Medicamento.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MedicamentoResponse resp = service.actualizar(5L, solicitud("Ibu", 40L), 3L, null);
+
+        assertThat(resp.getCantidadStock()).isEqualTo(40L);
+        assertThat(resp.getVersion()).isEqualTo(3L);
+        verify(medicamentoRepository).save(med);
+    }
+
+    @Test
+    void actualizar_versionDesactualizada_noSobrescribeElStock() {
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Ibu").cantidadStock(7L)
+                .valorUnitario(new BigDecimal("2000")).version(4L)
+                .build();
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+
+        // El cliente leyó la versión 3; una venta posterior la llevó a 4
+        assertThatThrownBy(() -> service.actualizar(5L, solicitud("Ibu", 40L), 3L, null))
+                .isInstanceOf(ConflictoVersionException.class);
+        assertThat(med.getCantidadStock()).isEqualTo(7L);
+        verify(medicamentoRepository, never()).save(any());
+    }
+
+    @Test
+    void actualizar_conBuckets_stockVendidoDesdeLaLectura_noSobrescribe() {
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Ibu").cantidadStock(10L).stockBuckets(2).stockEnBuckets(20L)
+                .valorUnitario(new BigDecimal("2000")).version(3L)
+                .build();
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        // Una venta descontó 1 de un bucket sin cambiar la versión: 10 + 10 + 9
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(10L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of(10L, 9L));
+
+        // El cliente leyó "3-30"; con solo la versión tampoco se puede verificar el stock
+        assertThatThrownBy(() -> service.actualizar(5L, solicitud("Ibu", 40L), 3L, 30L))
+                .isInstanceOf(ConflictoVersionException.class)
+                .hasMessageContaining("29");
+        assertThatThrownBy(() -> service.actualizar(5L, solicitud("Ibu", 40L), 3L, null))
+                .isInstanceOf(ConflictoVersionException.class);
+        verify(bucketRepository, never()).fijar(anyLong(), anyInt(), anyLong());
+        verify(medicamentoRepository, never()).save(any());
+    }
+
+    @Test
+    void actualizar_conBuckets_stockSinCambios_reparteElNuevoTotal() {
+        Medicamento med = Medicamento.builder()
+                .id(5L).nombre("Ibu").cantidadStock(10L).stockBuckets(2).stockEnBuckets(19L)
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .valorUnitario(new BigDecimal("2000")).version(3L)
+                .build();
+        when(medicamentoRepository.findById(5L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.bloquearStock(5L)).thenReturn(10L);
+        when(bucketRepository.bloquearCantidades(5L)).thenReturn(List.of(10L, 9L));
+        when(medicamentoRepository.save(any(Medicamento.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MedicamentoResponse resp = service.actualizar(5L, solicitud("Ibu", 45L), 3L, 29L);
+
+        assertThat(resp.getCantidadStock()).isEqualTo(45L);
+        verify(bucketRepository).fijar(5L, 1, 15L);
+        verify(bucketRepository).fijar(5L, 2, 15L);
+    }
+
+    private static MedicamentoRequest solicitud(String nombre, long stock) {
+        MedicamentoRequest req = new MedicamentoRequest();
+        req.setNombre(nombre);
+        req.setFechaFabricacion(LocalDate.of(2024, 1, 1));
+        req.setFechaVencimiento(LocalDate.of(2026, 1, 1));
+        req.setCantidadStock(stock);
+        req.setValorUnitario(new BigDecimal("2000"));
+        return req;
+    }
+
+    @Test
+    void importar_csv_guardaPorLotesYReportaFilasRechazadas() {
+        String csv = """
+                nombre,laboratorio_id,fecha_fabricacion,fecha_vencimiento,cantidad_stock,valor_unitario
+                Ibuprofeno 400mg,1,2024-01-01,2026-01-01,100,2500
+                "Acetaminofén, jarabe",1,2024-02-01,2026-02-01,50,1800.50
+                Sin precio,1,2024-01-01,2026-01-01,10,
+                Laboratorio inexistente,9,2024-01-01,2026-01-01,10,1000
+                Fecha mala,1,2024-13-01,2026-01-01,10,1000
+                """;
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        when(laboratorioRepository.findAllById(List.of(1L))).thenReturn(List.of(lab));
+        when(laboratorioRepository.findAllById(List.of(9L))).thenReturn(List.of());
+        when(laboratorioRepository.getReferenceById(1L)).thenReturn(lab);
+        AtomicLong ids = new AtomicLong(100);
+        when(medicamentoRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Medicamento> meds = inv.getArgument(0);
+            meds.forEach(m -> m.setId(ids.incrementAndGet()));
+            return meds;
+        });
+
+        ImportacionResponse r = service.importar(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), FormatoImportacion.CSV);
+
+        assertThat(r.getFilasLeidas()).isEqualTo(5);
+        assertThat(r.getImportadas()).isEqualTo(2);
+        assertThat(r.getRechazadas()).isEqualTo(3);
+        assertThat(r.getErrores()).extracting(ImportacionErrorFila::getLinea).containsExactly(4L, 6L, 5L);
+        assertThat(r.getErrores().get(0).getError()).startsWith("valorUnitario");
+        assertThat(r.getErrores().get(1).getError()).isEqualTo("Valor inválido en fecha_fabricacion: 2024-13-01");
+        assertThat(r.getErrores().get(2).getError()).isEqualTo("Laboratorio no encontrado: 9");
+
+        // Un solo SELECT por laboratorio nuevo y un saveAll por lote
+        verify(laboratorioRepository, never()).findById(any());
+        verify(medicamentoRepository, times(1)).saveAll(anyList());
+        verify(searchIndex).indexar(101L, "Ibuprofeno 400mg");
+        verify(searchIndex).indexar(102L, "Acetaminofén, jarabe");
+    }
+
+    @Test
+    void importar_publicaUnEventoDeModificacionPorLote() {
+        String csv = """
+                nombre,laboratorio_id,fecha_fabricacion,fecha_vencimiento,cantidad_stock,valor_unitario
+                Ibuprofeno 400mg,1,2024-01-01,2026-01-01,100,2500
+                Loratadina,1,2024-01-01,2026-01-01,20,900
+                Aspirina,1,2024-01-01,2026-01-01,30,700
+                """;
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        when(laboratorioRepository.findAllById(List.of(1L))).thenReturn(List.of(lab));
+        when(laboratorioRepository.getReferenceById(1L)).thenReturn(lab);
+        AtomicLong ids = new AtomicLong(100);
+        when(medicamentoRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Medicamento> meds = inv.getArgument(0);
+            meds.forEach(m -> m.setId(ids.incrementAndGet()));
+            return meds;
+        });
+
+        service.importar(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), FormatoImportacion.CSV);
+
+        // Lotes de 2 filas: la instantánea del catálogo se entera de cada lote confirmado
+        verify(eventos).publishEvent(new MedicamentosModificadosEvent(List.of(101L, 102L)));
+        verify(eventos).publishEvent(new MedicamentosModificadosEvent(List.of(103L)));
+        verifyNoMoreInteractions(eventos);
+    }
+
+    @Test
+    void importar_ndjson_reportaLineasMalFormadas() {
+        String ndjson = """
+                {"nombre":"Loratadina","laboratorioId":1,"fechaFabricacion":"2024-01-01","fechaVencimiento":"2026-01-01","cantidadStock":5,"valorUnitario":900}
+                {"nombre":"Roto",
+                """;
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        when(laboratorioRepository.findAllById(List.of(1L))).thenReturn(List.of(lab));
+        when(laboratorioRepository.getReferenceById(1L)).thenReturn(lab);
+        when(medicamentoRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Medicamento> meds = inv.getArgument(0);
+            meds.forEach(m -> m.setId(101L));
+            return meds;
+        });
+
+        ImportacionResponse r = service.importar(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), FormatoImportacion.NDJSON);
+
+        assertThat(r.getImportadas()).isEqualTo(1);
+        assertThat(r.getErrores()).singleElement()
+                .satisfies(e -> {
+                    assertThat(e.getLinea()).isEqualTo(2L);
+                    assertThat(e.getError()).startsWith("JSON inválido");
+                });
+    }
+
+    @Test
+    void importar_csvSinColumnas_rechazaElArchivo() {
+        String csv = "nombre,laboratorio_id\nIbu,1\n";
+        assertThatThrownBy(() -> service.importar(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), FormatoImportacion.CSV))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("fecha_fabricacion");
+    }
+
+    @Test
+    void ajustarStock_enviaUnSoloBatchOrdenadoPorMedicamento() {
+        AjusteStockRequest req = new AjusteStockRequest(List.of(
+                new MovimientoStockRequest(7L, -3L, "Conteo físico"),
+                new MovimientoStockRequest(1L, 120L, "Recepción OC-77"),
+                new MovimientoStockRequest(7L, 10L, "Recepción OC-77")), false);
+        when(medicamentoRepository.ajustarStock(anyList(), anyList())).thenReturn(new int[]{1, 1, 1});
+
+        AjusteStockResponse r = service.ajustarStock(req);
+
+        assertThat(r.getAplicados()).isEqualTo(3);
+        assertThat(r.getRechazados()).isZero();
+        // Orden de bloqueo por id; dentro de un medicamento, el de la solicitud
+        verify(medicamentoRepository).ajustarStock(List.of(1L, 7L, 7L), List.of(120L, -3L, 10L));
+        verify(medicamentoRepository, never()).findAllById(any());
+        ArgumentCaptor<List<MovimientoStock>> captor = ArgumentCaptor.forClass(List.class);
+        verify(movimientoStockRepository).saveAll(captor.capture());
+        assertThat(captor.getValue()).extracting(MovimientoStock::getMotivo)
+                .containsExactly("Recepción OC-77", "Conteo físico", "Recepción OC-77");
+    }
+
+    @Test
+    void ajustarStock_todoONada_rechazaConLasLineasFallidas() {
+        AjusteStockRequest req = new AjusteStockRequest(List.of(
+                new MovimientoStockRequest(1L, 5L, null),
+                new MovimientoStockRequest(2L, -50L, null),
+                new MovimientoStockRequest(9L, 1L, null),
+                new MovimientoStockRequest(3L, 0L, null)), false);
+        when(medicamentoRepository.ajustarStock(anyList(), anyList())).thenReturn(new int[]{1, 0, 0});
+        Medicamento m2 = Medicamento.builder().id(2L).cantidadStock(10L).stockBuckets(0).build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(m2));
+
+        assertThatThrownBy(() -> service.ajustarStock(req))
+                .isInstanceOfSatisfying(AjusteStockRechazadoException.class, ex ->
+                        assertThat(ex.getErrores()).extracting(e -> e.getLinea() + ":" + e.getError())
+                                .containsExactly(
+                                        "2:Stock insuficiente: el movimiento dejaría el stock en negativo",
+                                        "3:Medicamento no encontrado",
+                                        "4:El movimiento debe ser distinto de cero"));
+        verify(movimientoStockRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void ajustarStock_parcial_aplicaLosValidosYReportaElResto() {
+        AjusteStockRequest req = new AjusteStockRequest(List.of(
+                new MovimientoStockRequest(1L, 5L, null),
+                new MovimientoStockRequest(9L, -1L, null)), true);
+        when(medicamentoRepository.ajustarStock(anyList(), anyList())).thenReturn(new int[]{1, 0});
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of());
+
+        AjusteStockResponse r = service.ajustarStock(req);
+
+        assertThat(r.getAplicados()).isEqualTo(1);
+        assertThat(r.getRechazados()).isEqualTo(1);
+        assertThat(r.getErrores()).singleElement()
+                .satisfies(e -> assertThat(e.getMedicamentoId()).isEqualTo(9L));
+        verify(movimientoStockRepository).saveAll(argThat(l -> ((List<?>) l).size() == 1));
+    }
+
+    @Test
+    void ajustarStock_conBuckets_descuentaDeLosBuckets() {
+        AjusteStockRequest req = new AjusteStockRequest(List.of(new MovimientoStockRequest(5L, -4L, null)), false);
+        when(medicamentoRepository.ajustarStock(anyList(), anyList())).thenReturn(new int[]{0});
+        Medicamento m = Medicamento.builder().id(5L).cantidadStock(0L).stockBuckets(2).build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(m));
+        when(bucketRepository.descontar(eq(5L), anyInt(), eq(4L))).thenReturn(1);
+
+        AjusteStockResponse r = service.ajustarStock(req);
+
+        assertThat(r.getAplicados()).isEqualTo(1);
+        assertThat(r.getRechazados()).isZero();
+    }
+
+    @Test
+    void registrarLote_sumaAlStockTotal() {
+        Medicamento m = Medicamento.builder().id(4L).nombre("Ibu").cantidadStock(10L).build();
+        when(medicamentoRepository.findById(4L)).thenReturn(Optional.of(m));
+        when(loteRepository.save(any(Lote.class))).thenAnswer(inv -> {
+            Lote l = inv.getArgument(0);
+            l.setId(70L);
+            return l;
+        });
+
+        LoteResponse r = service.registrarLote(4L, new LoteRequest(" L-2026-03 ", LocalDate.of(2026, 3, 31), 40L));
+
+        assertThat(r.getId()).isEqualTo(70L);
+        assertThat(r.getMedicamentoId()).isEqualTo(4L);
+        assertThat(r.getCodigo()).isEqualTo("L-2026-03");
+        assertThat(r.getCantidad()).isEqualTo(40L);
+        verify(medicamentoRepository).ajustarStock(List.of(4L), List.of(40L));
+        verify(movimientoStockRepository).save(argThat(mov -> mov.getDelta() == 40L));
+    }
+
+    @Test
+    void registrarLote_inactivo() {
+        Medicamento m = Medicamento.builder().id(4L).nombre("Ibu").activo(0).build();
+        when(medicamentoRepository.findById(4L)).thenReturn(Optional.of(m));
+
+        assertThatThrownBy(() -> service.registrarLote(4L, new LoteRequest("L1", LocalDate.of(2026, 3, 31), 1L)))
+                .isInstanceOf(BusinessException.class);
+        verify(loteRepository, never()).save(any());
+        verify(medicamentoRepository, never()).ajustarStock(anyList(), anyList());
+    }
+
+    @Test
+    void validador_usaLaCacheSinConsultar() {
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        Medicamento m = Medicamento.builder().id(5L).nombre("Ibu").laboratorio(lab)
+                .cantidadStock(30L).valorUnitario(BigDecimal.TEN).version(3L).build();
+        when(medicamentoRepository.findWithLaboratorioById(5L)).thenReturn(Optional.of(m));
+        service.obtener(5L);
+        clearInvocations(medicamentoRepository);
+
+        ValidadorMedicamento v = service.validador(5L);
+
+        assertThat(v.etag()).isEqualTo("\"3-30\"");
+        verifyNoInteractions(medicamentoRepository);
+    }
+
+    @Test
+    void validador_sinCache_consultaSoloLaVersion() {
+        LocalDateTime t = LocalDateTime.of(2025, 8, 1, 10, 0);
+        when(medicamentoRepository.validador(9L)).thenReturn(Optional.of(new ValidadorMedicamento(4L, 12L, t)));
+
+        assertThat(service.validador(9L).etag()).isEqualTo("\"4-12\"");
+        verify(medicamentoRepository, never()).findById(any());
+
+        when(medicamentoRepository.validador(10L)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> service.validador(10L)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void ultimaModificacionCatalogo_tomaLaMasRecienteEntreMedicamentosYBuckets() {
+        LocalDateTime t = LocalDateTime.of(2025, 8, 1, 10, 0);
+        when(medicamentoRepository.ultimaModificacion()).thenReturn(t);
+        when(bucketRepository.ultimaModificacion()).thenReturn(t.plusSeconds(1));
+        assertThat(service.ultimaModificacionCatalogo()).isEqualTo(t.plusSeconds(1));
+
+        when(bucketRepository.ultimaModificacion()).thenReturn(null);
+        assertThat(service.ultimaModificacionCatalogo()).isEqualTo(t);
+    }
+
+    @Test
+    void cambios_compactaPorMedicamentoYDevuelveNuevoToken() {
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        Laboratorio lab = Laboratorio.builder().id(1L).nombre("Acme").build();
+        when(cambioRepository.siguientes(any(), anyLong(), any(), any())).thenReturn(List.of(
+                new MedicamentoCambio(11L, 5L, t),
+                new MedicamentoCambio(12L, 7L, t),
+                new MedicamentoCambio(13L, 5L, t.plusSeconds(1))));
+        when(medicamentoRepository.findWithLaboratorioByIdIn(List.of(7L, 5L))).thenReturn(List.of(
+                Medicamento.builder().id(5L).nombre("A").laboratorio(lab).cantidadStock(1L).activo(0).build(),
+                Medicamento.builder().id(7L).nombre("B").laboratorio(lab).cantidadStock(9L).build()));
+
+        CambiosResponse resp = service.cambios(new TokenCambios(t.minusMinutes(5), 3L).encode(), 3);
+
+        assertThat(resp.getMedicamentos()).extracting(MedicamentoResponse::getId).containsExactly(7L, 5L);
+        assertThat(resp.getMedicamentos().get(1).getActivo()).isZero();
+        assertThat(resp.isHasMore()).isTrue();
+        assertThat(TokenCambios.decode(resp.getToken())).isEqualTo(new TokenCambios(t.plusSeconds(1), 13L));
+    }
+
+    @Test
+    void cambios_sinToken_soloPosicionActual() {
+        CambiosResponse resp = service.cambios(null, 100);
+
+        assertThat(resp.getMedicamentos()).isEmpty();
+        assertThat(TokenCambios.decode(resp.getToken()).fecha()).isBefore(LocalDateTime.now());
+        verifyNoInteractions(cambioRepository);
+    }
+
+    @Test
+    void cambios_tokenAnteriorALaRetencion_expira() {
+        String viejo = new TokenCambios(LocalDateTime.now().minusDays(8), 1L).encode();
+
+        assertThatThrownBy(() -> service.cambios(viejo, 100)).isInstanceOf(TokenExpiradoException.class);
+    }
+
+    @Test
+    void cambios_enTransaccion_seFechanAlConfirmar() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changeLog.registrar(List.of(5L, 7L));
+            changeLog.registrar(List.of(5L));
+            verify(cambioRepository, never()).saveAll(any());
+
+            LocalDateTime antesDelCommit = LocalDateTime.now();
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+            var orden = inOrder(cambioRepository);
+            orden.verify(cambioRepository).flush();
+            orden.verify(cambioRepository).saveAll(argThat((Iterable<MedicamentoCambio> cambios) -> {
+                List<MedicamentoCambio> lista = new ArrayList<>();
+                cambios.forEach(lista::add);
+                return lista.size() == 2 && lista.stream().noneMatch(c -> c.getFechaHora().isBefore(antesDelCommit));
+            }));
+            assertThat(TransactionSynchronizationManager.getResource(changeLog)).isNull();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void eliminar_registraCambio() {
+        Medicamento med = Medicamento.builder().id(4L).nombre("X").activo(1).build();
+        when(medicamentoRepository.findById(4L)).thenReturn(Optional.of(med));
+
+        service.eliminar(4L);
+
+        verify(cambioRepository).saveAll(argThat((Iterable<MedicamentoCambio> cambios) ->
+                cambios.iterator().next().getMedicamentoId().equals(4L)));
+    }
+
+    @Test
+    void configurarStockMinimo_alertaDeInmediatoYSeResuelveAlInactivar() {
+        Medicamento med = Medicamento.builder().id(8L).nombre("Amoxicilina").activo(1)
+                .cantidadStock(3L).stockBuckets(0)
+                .laboratorio(Laboratorio.builder().id(1L).nombre("Acme").build())
+                .build();
+        when(medicamentoRepository.findWithLaboratorioById(8L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.findById(8L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.save(any(Medicamento.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        MedicamentoResponse r = service.configurarStockMinimo(8L, 5L);
+
+        assertThat(r.getStockMinimo()).isEqualTo(5L);
+        assertThat(alertasStock.activas()).extracting(a -> a.getMedicamentoId() + ":" + a.getStockActual())
+                .containsExactly("8:3");
+        verify(eventos).publishEvent(any(StockBajoEvent.class));
+
+        service.eliminar(8L);
+        assertThat(alertasStock.activas()).isEmpty();
+    }
+
+    @Test
+    void configurarStockMinimo_negativo_lanza() {
+        assertThatThrownBy(() -> service.configurarStockMinimo(8L, -1L))
+                .isInstanceOf(BusinessException.class);
+        verify(medicamentoRepository, never()).save(any(Medicamento.class));
+    }
+
+    @Test
+    void ajustarStock_revisaAlertasFueraDeLaPeticion() throws InterruptedException {
+        alertasStock.evaluar(List.of(new NivelStock(1L, "Ibu", 2L, 5L, 1)));
+        assertThat(alertasStock.activas()).hasSize(1);
+        when(medicamentoRepository.ajustarStock(anyList(), anyList())).thenReturn(new int[]{1});
+        when(medicamentoRepository.nivelesStock(anyCollection()))
+                .thenReturn(List.of(new NivelStock(1L, "Ibu", 122L, 5L, 1)));
+
+        service.ajustarStock(new AjusteStockRequest(List.of(
+                new MovimientoStockRequest(1L, 120L, "Recepción OC-78")), false));
+
+        verify(medicamentoRepository, timeout(2000)).nivelesStock(List.of(1L));
+        for (int i = 0; i < 200 && !alertasStock.activas().isEmpty(); i++) Thread.sleep(10);
+        assertThat(alertasStock.activas()).isEmpty();
+    }
 }
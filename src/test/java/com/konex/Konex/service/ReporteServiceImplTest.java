@@ -0,0 +1,97 @@
+package com.konex.Konex.service;
+
+import com.konex.Konex.dto.AgrupacionReporte;
+import com.konex.Konex.dto.ReporteVentaFila;
+import com.konex.Konex.dto.ReporteVentasResponse;
+import com.konex.Konex.exception.BusinessException;
+import com.konex.Konex.repository.DetalleVentaRepository;
+import com.konex.Konex.repository.VentaResumenDiarioRepository;
+import com.konex.Konex.service.impl.ReporteServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReporteServiceImplTest {
+
+    VentaResumenDiarioRepository resumenRepository;
+    DetalleVentaRepository detalleVentaRepository;
+    ReporteServiceImpl service;
+
+    final LocalDate desde = LocalDate.of(2025, 1, 1);
+    final LocalDate hasta = LocalDate.of(2025, 12, 31);
+
+    @BeforeEach
+    void setUp() {
+        resumenRepository = mock(VentaResumenDiarioRepository.class);
+        detalleVentaRepository = mock(DetalleVentaRepository.class);
+        service = new ReporteServiceImpl(resumenRepository, detalleVentaRepository);
+    }
+
+    @Test
+    void ventas_porMes_usaResumenYSumaTotales() {
+        when(resumenRepository.totalesPorMes(desde, hasta)).thenReturn(List.of(
+                new ReporteVentaFila(2025, 1, 10L, new BigDecimal("1000.00"), 4L),
+                new ReporteVentaFila(2025, 2, 5L, new BigDecimal("250.50"), 2L)));
+
+        ReporteVentasResponse r = service.ventas(desde, hasta, AgrupacionReporte.MES, false);
+
+        assertThat(r.getFilas()).extracting(ReporteVentaFila::getClave).containsExactly("2025-01", "2025-02");
+        assertThat(r.getTotalUnidades()).isEqualTo(15L);
+        assertThat(r.getTotalValor()).isEqualByComparingTo("1250.50");
+        verifyNoInteractions(detalleVentaRepository);
+    }
+
+    @Test
+    void ventas_porLaboratorio_detalle_usaLineasDeVenta() {
+        when(detalleVentaRepository.totalesPorLaboratorio(any(), any())).thenReturn(List.of(
+                new ReporteVentaFila(7L, "Acme", 3L, new BigDecimal("300"), 1L)));
+
+        ReporteVentasResponse r = service.ventas(desde, hasta, AgrupacionReporte.LABORATORIO, true);
+
+        assertThat(r.getFilas().get(0).getClave()).isEqualTo("7");
+        assertThat(r.getFilas().get(0).getNombre()).isEqualTo("Acme");
+        verify(detalleVentaRepository).totalesPorLaboratorio(
+                LocalDateTime.of(2025, 1, 1, 0, 0),
+                LocalDateTime.of(2025, 12, 31, 23, 59, 59, 999_999_999));
+        verifyNoInteractions(resumenRepository);
+    }
+
+    @Test
+    void ventas_porDia_detalle_claveIso() {
+        when(detalleVentaRepository.totalesPorDia(any(), any())).thenReturn(List.of(
+                new ReporteVentaFila(2025, 3, 7, 2L, new BigDecimal("20"), 1L)));
+
+        ReporteVentasResponse r = service.ventas(desde, hasta, AgrupacionReporte.DIA, true);
+
+        assertThat(r.getFilas().get(0).getClave()).isEqualTo("2025-03-07");
+    }
+
+    @Test
+    void ventas_rangoInvertido_falla() {
+        assertThatThrownBy(() -> service.ventas(hasta, desde, AgrupacionReporte.DIA, false))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("anterior");
+    }
+
+    @Test
+    void reconstruirResumen_eliminaYRecalculaElRango() {
+        when(resumenRepository.reconstruirRango(any(), any())).thenReturn(42);
+
+        int filas = service.reconstruirResumen(desde, hasta);
+
+        assertThat(filas).isEqualTo(42);
+        var orden = inOrder(resumenRepository);
+        orden.verify(resumenRepository).eliminarRango(desde, hasta);
+        orden.verify(resumenRepository).reconstruirRango(
+                LocalDateTime.of(2025, 1, 1, 0, 0),
+                LocalDateTime.of(2025, 12, 31, 23, 59, 59, 999_999_999));
+    }
+}
@@ -0,0 +1,123 @@
+package com.konex.Konex.service;
+
+import com.konex.Konex.export.FormatoExportacion;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exportación de más de un millón de líneas de venta reales desde H2, con el heap acotado de la
+ * ejecución {@code memoria-acotada} de Surefire (-Xmx256m).
+ * <p>
+ * La base vive en un archivo temporal para que las filas no ocupen el heap: lo único que puede
+ * crecer en memoria es la propia exportación. La salida es mayor que todo el heap y materializar
+ * las filas también lo superaría, así que terminar prueba que el cursor de solo avance, el
+ * {@code fetch size} y la proyección a DTO mantienen la memoria constante.
+ * </p>
+ */
+@Tag("memoria-acotada")
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+class VentaExportacionMemoriaTest {
+
+    static final int MEDICAMENTOS = 500;
+    static final int VENTAS = 340_000;
+    static final int LINEAS_POR_VENTA = 3;
+
+    @Autowired
+    VentaService ventaService;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @DynamicPropertySource
+    static void baseEnArchivo(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("konex-exportacion");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + dir.resolve("konex").toAbsolutePath()
+                + ";MODE=Oracle;CACHE_SIZE=65536;INIT=CREATE SCHEMA IF NOT EXISTS KONEX\\;SET SCHEMA KONEX");
+    }
+
+    @AfterEach
+    void borrarBase() {
+        // Cierra la base y borra su archivo (cientos de MB)
+        jdbc.execute("DROP ALL OBJECTS DELETE FILES");
+    }
+
+    @Test
+    void exportarPorRango_masDeUnMillonDeLineasReales_memoriaConstante() throws Exception {
+        long total = poblar();
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        AtomicLong lineas = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        OutputStream contador = new OutputStream() {
+            @Override public void write(int b) {
+                bytes.incrementAndGet();
+                if (b == '\n') lineas.incrementAndGet();
+            }
+            @Override public void write(byte[] b, int off, int len) {
+                bytes.addAndGet(len);
+                for (int i = off; i < off + len; i++) if (b[i] == '\n') lineas.incrementAndGet();
+            }
+        };
+
+        long filas = ventaService.exportarPorRango(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                FormatoExportacion.NDJSON, contador);
+
+        assertThat(filas).isEqualTo(total);
+        assertThat(lineas.get()).isEqualTo(total);
+        assertThat(bytes.get()).isGreaterThan(Runtime.getRuntime().maxMemory());
+        // Una sola consulta y ninguna entidad cargada en el contexto de persistencia
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estadisticas.getEntityLoadCount()).isZero();
+    }
+
+    /** Genera las ventas en la base con {@code INSERT ... SELECT}, sin pasar filas por el heap. */
+    private long poblar() {
+        jdbc.update("INSERT INTO LABORATORIO (ID_LABORATORIO, NOMBRE, NIT) VALUES (1, 'Genfar', '900')");
+        jdbc.update("""
+                INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, NOMBRE_NORMALIZADO, ID_LABORATORIO,
+                                         FECHA_FABRICACION, FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO, ACTIVO)
+                SELECT X, RPAD('Medicamento de prueba ' || X, 150, ' forte'),
+                       UPPER(RPAD('Medicamento de prueba ' || X, 150, ' forte')), 1,
+                       DATE '2025-01-01', DATE '2099-01-01', 0, 2500, 1
+                FROM SYSTEM_RANGE(1, ?)
+                """, MEDICAMENTOS);
+        // Una venta por segundo desde el 1 de enero: todas caen en el rango exportado
+        jdbc.update("""
+                INSERT INTO VENTA (ID_VENTA, FECHA_HORA, VALOR_TOTAL)
+                SELECT X, DATEADD('SECOND', X, TIMESTAMP '2025-01-01 00:00:00'), 37500
+                FROM SYSTEM_RANGE(1, ?)
+                """, VENTAS);
+        long lineas = (long) VENTAS * LINEAS_POR_VENTA;
+        for (long desde = 1; desde <= lineas; desde += VENTAS) {
+            jdbc.update("""
+                    INSERT INTO DETALLE_VENTA (ID_DETALLE, ID_VENTA, ID_MEDICAMENTO, CANTIDAD, VALOR_UNITARIO, VALOR_LINEA)
+                    SELECT X, (X - 1) / ? + 1, MOD(X, ?) + 1, 5, 2500, 12500
+                    FROM SYSTEM_RANGE(?, ?)
+                    """, LINEAS_POR_VENTA, MEDICAMENTOS, desde, desde + VENTAS - 1);
+        }
+        return lineas;
+    }
+}
@@ -0,0 +1,279 @@
+package com.konex.Konex.service;
+
+import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.exception.BusinessException;
+import com.konex.Konex.model.DetalleVenta;
+import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.Venta;
+import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.VentaRepository;
+import com.konex.Konex.retry.ReintentosConcurrencia;
+import com.konex.Konex.stock.MedicamentoStockBuckets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ventas concurrentes con el contexto completo sobre la base H2 del perfil {@code h2}: cada venta
+ * confirma su propia transacción, como en producción.
+ */
+@SpringBootTest(properties = "konex.h2.database=konex-test")
+@ActiveProfiles("h2")
+class VentaServiceConcurrenciaTest {
+
+    static final long LABORATORIO = 910_000L;
+    static final int HILOS = 16;
+
+    @Autowired
+    VentaService ventaService;
+
+    @Autowired
+    MedicamentoRepository medicamentoRepository;
+
+    @Autowired
+    VentaRepository ventaRepository;
+
+    @Autowired
+    MedicamentoStockBuckets stockBuckets;
+
+    @Autowired
+    ReintentosConcurrencia reintentos;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        // Las esperas por el bloqueo de fila superan con holgura el segundo por defecto de H2
+        jdbc.execute("SET DEFAULT_LOCK_TIMEOUT 30000");
+        jdbc.update("MERGE INTO LABORATORIO (ID_LABORATORIO, NOMBRE, NIT) KEY (ID_LABORATORIO) VALUES (?, 'Genfar', '900')",
+                LABORATORIO);
+    }
+
+    @Test
+    void crearVenta_milesConcurrentes_sinSobreventa() throws Exception {
+        long stockInicial = 1_000;
+        int ventas = 3_000;
+        long id = insertarMedicamento(910_001L, stockInicial);
+
+        Resultado r = vender(ventas, () -> vender(id));
+
+        // Se vende exactamente el stock inicial y el resto se rechaza por stock insuficiente
+        assertThat(r.exitosas()).isEqualTo(stockInicial);
+        assertThat(r.rechazadas()).isEqualTo(ventas - stockInicial);
+        assertThat(stock(id)).isZero();
+        assertThat(unidadesVendidas(id)).isEqualTo(stockInicial);
+    }
+
+    @Test
+    void crearVenta_concurrente_completaMasVentasQueLeerModificarGuardar() throws Exception {
+        int ventas = 2_000;
+        long condicional = insertarMedicamento(910_002L, ventas);
+        long leerModificar = insertarMedicamento(910_003L, ventas);
+        // Calentamiento de ambos flujos (JIT, pool de conexiones) antes de medir
+        long calentamiento = insertarMedicamento(910_004L, ventas);
+        vender(ventas / 4, () -> vender(calentamiento));
+        vender(ventas / 4, () -> leerModificarGuardar(calentamiento));
+
+        Resultado actual = vender(ventas, () -> vender(condicional));
+        // Con @Version el flujo anterior falla por conflicto en lugar de perder descuentos; se le dan
+        // los mismos reintentos que a crearVenta para comparar ventas completadas
+        Resultado anterior = vender(ventas, () -> reintentos.ejecutar("venta", List.of(leerModificar),
+                () -> leerModificarGuardar(leerModificar)));
+
+        // Ventas que realmente descontaron stock: con el UPDATE condicional, todas
+        long descontadasActual = ventas - stock(condicional);
+        long descontadasAnterior = ventas - stock(leerModificar);
+        assertThat(descontadasActual).isEqualTo(actual.exitosas()).isEqualTo(unidadesVendidas(condicional));
+        // Ya no hay sobreventa, pero cada conflicto cuesta una transacción y una espera más
+        assertThat(descontadasAnterior).isEqualTo(anterior.exitosas()).isEqualTo(unidadesVendidas(leerModificar));
+
+        double porSegundoActual = descontadasActual * 1e9 / actual.nanos();
+        double porSegundoAnterior = descontadasAnterior * 1e9 / anterior.nanos();
+        System.out.printf("crearVenta, %d ventas desde %d hilos: UPDATE condicional %.0f ventas/s; "
+                        + "leer-modificar-guardar con reintentos %.0f ventas/s (%d agotaron los reintentos)%n",
+                ventas, HILOS, porSegundoActual, porSegundoAnterior, anterior.rechazadas());
+        // Con stock para todas, el UPDATE condicional completa cada venta; el flujo anterior pierde
+        // las que agotan los reintentos (la tasa por segundo depende de la carga de la máquina)
+        assertThat(actual.exitosas()).isEqualTo(ventas);
+        assertThat(anterior.exitosas()).isLessThan(actual.exitosas());
+    }
+
+    @Test
+    void crearVentaIdempotente_reintentosConcurrentes_unaSolaVenta() throws Exception {
+        long id = insertarMedicamento(910_005L, 100);
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(id);
+        req.setCantidad(1L);
+        Set<Long> ventasDevueltas = ConcurrentHashMap.newKeySet();
+
+        Resultado r = vender(50, () -> {
+            ventasDevueltas.add(ventaService.crearVentaIdempotente("reintento-910005", req).getId());
+            return null;
+        });
+
+        // Todos los reintentos reciben la misma venta y el stock se descuenta una sola vez
+        assertThat(r.exitosas()).isEqualTo(50);
+        assertThat(ventasDevueltas).hasSize(1);
+        assertThat(stock(id)).isEqualTo(99L);
+        assertThat(unidadesVendidas(id)).isEqualTo(1L);
+    }
+
+    @Test
+    void crearVenta_primerasDelDiaConcurrentes_conBuckets_unaFilaDeResumen() throws Exception {
+        long id = insertarMedicamento(910_006L, 1_000);
+        stockBuckets.configurar(id, 8);
+
+        Resultado r = vender(HILOS, () -> vender(id));
+
+        Map<String, Object> resumen = jdbc.queryForMap(
+                "SELECT UNIDADES, LINEAS FROM VENTA_RESUMEN_DIARIO WHERE FECHA = ? AND ID_MEDICAMENTO = ?",
+                Date.valueOf(LocalDate.now()), id);
+        assertThat(r.exitosas()).isEqualTo(HILOS);
+        assertThat(((Number) resumen.get("UNIDADES")).longValue()).isEqualTo(HILOS);
+        assertThat(((Number) resumen.get("LINEAS")).longValue()).isEqualTo(HILOS);
+    }
+
+    @Test
+    void crearVenta_concurrente_conLotes_asignaFefoSinSobrevenderUnLote() throws Exception {
+        long id = insertarMedicamento(910_007L, 100);
+        insertarLote(910_071L, id, "L-2099", LocalDate.of(2099, 1, 1), 30);
+        insertarLote(910_072L, id, "L-2098", LocalDate.of(2098, 1, 1), 30);
+
+        Resultado r = vender(100, () -> vender(id));
+
+        // Primero el lote que vence antes; las 40 unidades restantes se venden sin lote
+        assertThat(r.exitosas()).isEqualTo(100);
+        assertThat(stock(id)).isZero();
+        assertThat(jdbc.queryForList("SELECT CANTIDAD FROM LOTE WHERE ID_MEDICAMENTO = ?", Long.class, id))
+                .containsOnly(0L);
+        assertThat(jdbc.queryForObject(
+                "SELECT COALESCE(SUM(CANTIDAD), 0) FROM DETALLE_VENTA_LOTE WHERE ID_LOTE IN (?, ?)",
+                Long.class, 910_071L, 910_072L)).isEqualTo(60L);
+    }
+
+    @Test
+    void crearVenta_registraElCambioConLaHoraDelCommit() {
+        long id = insertarMedicamento(910_008L, 10);
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(id);
+        req.setCantidad(1L);
+
+        Long ventaId = ventaService.crearVenta(req).getId();
+
+        // El cambio se fecha al confirmar, después de todo lo que escribió la venta
+        assertThat(jdbc.queryForObject("""
+                SELECT COUNT(*) FROM MEDICAMENTO_CAMBIO c, VENTA v
+                 WHERE c.ID_MEDICAMENTO = ? AND v.ID_VENTA = ? AND c.FECHA_HORA >= v.FECHA_HORA
+                """, Integer.class, id, ventaId)).isEqualTo(1);
+    }
+
+    /** Ventas confirmadas, rechazadas (por falta de stock o conflicto de versión) y el tiempo que tomaron. */
+    record Resultado(long exitosas, long rechazadas, long nanos) {
+    }
+
+    /** Lanza {@code ventas} ventas unitarias desde {@link #HILOS} hilos a la vez. */
+    private Resultado vender(int ventas, Callable<Void> venta) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger exitosas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        List<Future<?>> futuros = new ArrayList<>();
+        for (int i = 0; i < ventas; i++) {
+            futuros.add(pool.submit(() -> {
+                inicio.await();
+                try {
+                    venta.call();
+                    exitosas.incrementAndGet();
+                } catch (BusinessException | ConcurrencyFailureException ex) {
+                    rechazadas.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        long desde = System.nanoTime();
+        inicio.countDown();
+        for (Future<?> f : futuros) f.get(120, TimeUnit.SECONDS);
+        long nanos = System.nanoTime() - desde;
+        pool.shutdown();
+        return new Resultado(exitosas.get(), rechazadas.get(), nanos);
+    }
+
+    private Void vender(long medicamentoId) {
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(medicamentoId);
+        req.setCantidad(1L);
+        ventaService.crearVenta(req);
+        return null;
+    }
+
+    /** Venta unitaria como la hacía {@code crearVenta} antes del UPDATE condicional. */
+    private Void leerModificarGuardar(long medicamentoId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            Medicamento med = medicamentoRepository.findById(medicamentoId).orElseThrow();
+            if (med.getCantidadStock() < 1) throw new BusinessException("Stock insuficiente para la venta");
+            med.setCantidadStock(med.getCantidadStock() - 1);
+            medicamentoRepository.save(med);
+
+            Venta venta = new Venta();
+            venta.setFechaHora(LocalDateTime.now());
+            DetalleVenta det = new DetalleVenta();
+            det.setVenta(venta);
+            det.setMedicamento(med);
+            det.setCantidad(1L);
+            det.setValorUnitario(med.getValorUnitario());
+            det.setValorLinea(med.getValorUnitario());
+            venta.setDetalles(List.of(det));
+            venta.setValorTotal(det.getValorLinea());
+            ventaRepository.save(venta);
+        });
+        return null;
+    }
+
+    private long insertarMedicamento(long id, long stock) {
+        jdbc.update("""
+                INSERT INTO MEDICAMENTO (ID_MEDICAMENTO, NOMBRE, NOMBRE_NORMALIZADO, ID_LABORATORIO,
+                                         FECHA_FABRICACION, FECHA_VENCIMIENTO, CANTIDAD_STOCK, VALOR_UNITARIO, ACTIVO)
+                VALUES (?, 'Ibuprofeno 400', 'IBUPROFENO 400', ?, DATE '2025-01-01', DATE '2099-01-01', ?, 1000, 1)
+                """, id, LABORATORIO, stock);
+        return id;
+    }
+
+    private void insertarLote(long id, long medicamentoId, String codigo, LocalDate vencimiento, long cantidad) {
+        jdbc.update("""
+                INSERT INTO LOTE (ID_LOTE, ID_MEDICAMENTO, CODIGO, FECHA_VENCIMIENTO, CANTIDAD, FECHA_INGRESO)
+                VALUES (?, ?, ?, ?, ?, LOCALTIMESTAMP)
+                """, id, medicamentoId, codigo, Date.valueOf(vencimiento), cantidad);
+    }
+
+    private long stock(long medicamentoId) {
+        return jdbc.queryForObject("SELECT CANTIDAD_STOCK FROM MEDICAMENTO WHERE ID_MEDICAMENTO = ?",
+                Long.class, medicamentoId);
+    }
+
+    private long unidadesVendidas(long medicamentoId) {
+        return jdbc.queryForObject("SELECT COALESCE(SUM(CANTIDAD), 0) FROM DETALLE_VENTA WHERE ID_MEDICAMENTO = ?",
+                Long.class, medicamentoId);
+    }
+}
@@ -1,38 +1,106 @@
 package com.konex.Konex.service;
+import com.konex.Konex.alerting.AlertasStockBajo;
+import com.konex.Konex.alerting.NivelStock;
+import com.konex.Konex.alerting.StockBajoEvent;
+import com.konex.Konex.cache.MedicamentoCache;
+import com.konex.Konex.changelog.MedicamentoChangeLog;
+import com.konex.Konex.dto.CursorPageResponse;
+import com.konex.Konex.dto.MedicamentoResponse;
 import com.konex.Konex.dto.VentaCreateRequest;
+import com.konex.Konex.dto.VentaExportFila;
+import com.konex.Konex.dto.VentaItemRequest;
 import com.konex.Konex.dto.VentaResponse;
 import com.konex.Konex.exception.BusinessException;
 import com.konex.Konex.exception.NotFoundException;
+import com.konex.Konex.exception.StockInsuficienteException;
+import com.konex.Konex.export.FormatoExportacion;
+import com.konex.Konex.groupcommit.GroupCommitQueue;
+import com.konex.Konex.groupcommit.ResultadoLote;
+import com.konex.Konex.idempotency.VentaIdempotenciaStore;
+import com.konex.Konex.model.DetalleVenta;
+import com.konex.Konex.model.DetalleVentaLote;
 import com.konex.Konex.model.Medicamento;
+import com.konex.Konex.model.MedicamentoCambio;
 import com.konex.Konex.model.Venta;
+import com.konex.Konex.model.VentaIdempotencia;
+import com.konex.Konex.model.VentaResumenDiario;
+import com.konex.Konex.repository.LoteRepository;
+import com.konex.Konex.repository.MedicamentoCambioRepository;
 import com.konex.Konex.repository.MedicamentoRepository;
+import com.konex.Konex.repository.MedicamentoStockBucketRepository;
+import com.konex.Konex.repository.VentaIdempotenciaRepository;
 import com.konex.Konex.repository.VentaRepository;
+import com.konex.Konex.repository.VentaResumenDiarioRepository;
 import com.konex.Konex.service.impl.VentaServiceImpl;
+import com.konex.Konex.stock.AsignadorLotesFefo;
+import com.konex.Konex.stock.LoteDisponible;
+import com.konex.Konex.stock.MedicamentoStockBuckets;
+import com.konex.Konex.utils.CursorVenta;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class VentaServiceImplTest {
 
     VentaRepository ventaRepository;
     MedicamentoRepository medicamentoRepository;
+    MedicamentoCache cache;
+    VentaResumenDiarioRepository resumenRepository;
+    VentaIdempotenciaRepository idempotenciaRepository;
+    MedicamentoStockBucketRepository bucketRepository;
+    LoteRepository loteRepository;
+    MedicamentoCambioRepository cambioRepository;
+    ApplicationEventPublisher eventos;
+    AlertasStockBajo alertasStock;
     VentaServiceImpl service;
 
     @BeforeEach
     void setUp() {
         ventaRepository = mock(VentaRepository.class);
         medicamentoRepository = mock(MedicamentoRepository.class);
-        service = new VentaServiceImpl(ventaRepository, medicamentoRepository);
+        cache = new MedicamentoCache(100, Duration.ofMinutes(5));
+        resumenRepository = mock(VentaResumenDiarioRepository.class);
+        idempotenciaRepository = mock(VentaIdempotenciaRepository.class);
+        when(idempotenciaRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+        VentaIdempotenciaStore idempotenciaStore = new VentaIdempotenciaStore(idempotenciaRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), 1000, Duration.ofHours(1));
+        bucketRepository = mock(MedicamentoStockBucketRepository.class);
+        MedicamentoStockBuckets stockBuckets = new MedicamentoStockBuckets(medicamentoRepository, bucketRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), 8, 64, false, Duration.ofMillis(50), 20);
+        loteRepository = mock(LoteRepository.class);
+        cambioRepository = mock(MedicamentoCambioRepository.class);
+        MedicamentoChangeLog changeLog = new MedicamentoChangeLog(cambioRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), Duration.ofSeconds(5), Duration.ofDays(7));
+        eventos = mock(ApplicationEventPublisher.class);
+        alertasStock = new AlertasStockBajo(medicamentoRepository, eventos);
+        service = new VentaServiceImpl(ventaRepository, medicamentoRepository, cache, resumenRepository,
+                idempotenciaStore, stockBuckets, new AsignadorLotesFefo(loteRepository, 2), changeLog, alertasStock);
     }
 
     @Test
@@ -44,7 +112,8 @@ class VentaServiceImplTest {
                 .valorUnitario(new BigDecimal("1000"))
                 .build();
 
-        when(medicamentoRepository.findById(1L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.descontarStock(1L, 3L)).thenReturn(1);
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
         when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> {
             Venta v = inv.getArgument(0);
             v.setId(100L);
@@ -62,10 +131,244 @@ class VentaServiceImplTest {
         assertThat(resp.getId()).isEqualTo(100L);
         assertThat(resp.getValorTotal()).isEqualByComparingTo("3000");
         assertThat(resp.getItems()).hasSize(1);
-        assertThat(med.getCantidadStock()).isEqualTo(7L); // se descontó
 
         verify(ventaRepository, times(1)).save(any(Venta.class));
-        verify(medicamentoRepository, times(1)).save(med);
+        verify(medicamentoRepository, times(1)).descontarStock(1L, 3L); // UPDATE condicional
+        verify(medicamentoRepository, never()).save(any(Medicamento.class));
+        verify(medicamentoRepository, never()).nivelesStock(any()); // sin punto de reorden no se relee
+        verify(cambioRepository).saveAll(argThat((Iterable<MedicamentoCambio> cambios) ->
+                cambios.iterator().next().getMedicamentoId().equals(1L)));
+    }
+
+    @Test
+    void crearVenta_cruzaStockMinimo_alertaUnaVezTrasElCommit() throws InterruptedException {
+        // La lectura de la venta no cambia: otras ventas concurrentes descuentan entre la lectura y el UPDATE
+        Medicamento med = Medicamento.builder()
+                .id(1L).nombre("Ibu")
+                .cantidadStock(10L)
+                .stockMinimo(5L)
+                .activo(1)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        when(medicamentoRepository.descontarStock(eq(1L), anyLong())).thenReturn(1);
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(medicamentoRepository.nivelesStock(List.of(1L))).thenReturn(
+                List.of(new NivelStock(1L, "Ibu", 6L, 5L, 1)),
+                List.of(new NivelStock(1L, "Ibu", 4L, 5L, 1)),
+                List.of(new NivelStock(1L, "Ibu", 3L, 5L, 1)));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(1L);
+        req.setCantidad(1L);
+        service.crearVenta(req);          // queda en 6: sin alerta (la lectura diría 9)
+        verify(medicamentoRepository, timeout(2000).times(1)).nivelesStock(List.of(1L));
+        service.crearVenta(req);          // queda en 4: cruza el mínimo
+        verify(medicamentoRepository, timeout(2000).times(2)).nivelesStock(List.of(1L));
+        service.crearVenta(req);          // queda en 3: la alerta sigue activa, no se repite
+        verify(medicamentoRepository, timeout(2000).times(3)).nivelesStock(List.of(1L));
+        for (int i = 0; i < 200 && !alertaCon(3L); i++) Thread.sleep(10);
+
+        assertThat(alertasStock.activas()).singleElement().satisfies(a -> {
+            assertThat(a.getMedicamentoId()).isEqualTo(1L);
+            assertThat(a.getStockActual()).isEqualTo(3L);
+            assertThat(a.getStockMinimo()).isEqualTo(5L);
+        });
+        verify(eventos, times(1)).publishEvent(any(StockBajoEvent.class));
+    }
+
+    private boolean alertaCon(long stock) {
+        return alertasStock.activas().stream().anyMatch(a -> a.getStockActual() == stock);
+    }
+
+    @Test
+    void crearVenta_invalidaCacheDelMedicamento() {
+        Medicamento med = Medicamento.builder()
+                .id(1L).nombre("Ibu")
+                .cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        cache.obtener(1L, id -> MedicamentoResponse.builder().id(id).cantidadStock(10L).activo(1).build());
+        when(medicamentoRepository.descontarStock(1L, 3L)).thenReturn(1);
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(1L);
+        req.setCantidad(3L);
+        service.crearVenta(req);
+
+        // La entrada previa (stock 10) ya no se sirve: la siguiente lectura vuelve a cargar
+        assertThat(cache.obtener(1L, id -> null)).isNull();
+    }
+
+    @Test
+    void crearVenta_inactivo() {
+        Medicamento med = Medicamento.builder()
+                .id(1L).nombre("Ibu")
+                .cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .activo(0)
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(1L);
+        req.setCantidad(1L);
+
+        assertThatThrownBy(() -> service.crearVenta(req))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("inactivo");
+        verify(medicamentoRepository, never()).descontarStock(anyLong(), anyLong());
+        verify(ventaRepository, never()).save(any(Venta.class));
+    }
+
+    @Test
+    void crearVenta_canasta_unaTransaccionOrdenadaPorId() {
+        Medicamento ibu = Medicamento.builder()
+                .id(3L).nombre("Ibu").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        Medicamento ace = Medicamento.builder()
+                .id(1L).nombre("Ace").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("500"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(ibu, ace));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setItems(List.of(
+                new VentaItemRequest(3L, 2L),
+                new VentaItemRequest(1L, 1L),
+                new VentaItemRequest(3L, 1L)));
+
+        VentaResponse resp = service.crearVenta(req);
+
+        assertThat(resp.getItems()).hasSize(3);
+        assertThat(resp.getValorTotal()).isEqualByComparingTo("3500");
+
+        // Una sola carga (IN) y descuentos consolidados en orden ascendente de id
+        verify(medicamentoRepository, times(1)).findAllById(any());
+        var orden = inOrder(medicamentoRepository);
+        orden.verify(medicamentoRepository).descontarStock(1L, 1L);
+        orden.verify(medicamentoRepository).descontarStock(3L, 3L);
+        verify(ventaRepository, times(1)).save(any(Venta.class));
+    }
+
+    @Test
+    void crearVenta_asignaLotesFefoPartiendoLineas() {
+        Medicamento ibu = Medicamento.builder()
+                .id(3L).nombre("Ibu").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(ibu));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+        // Páginas de 2 lotes: la segunda lectura trae el siguiente en vencer
+        when(loteRepository.abiertosFefo(eq(3L), any()))
+                .thenReturn(List.of(new LoteDisponible(10L, 3), new LoteDisponible(11L, 2)))
+                .thenReturn(List.of(new LoteDisponible(12L, 5)));
+        when(loteRepository.descontar(anyLong(), anyLong())).thenReturn(1);
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setItems(List.of(new VentaItemRequest(3L, 2L), new VentaItemRequest(3L, 4L)));
+        service.crearVenta(req);
+
+        // Un UPDATE por lote con el total del medicamento, no uno por línea
+        var orden = inOrder(loteRepository);
+        orden.verify(loteRepository).descontar(10L, 3L);
+        orden.verify(loteRepository).descontar(11L, 2L);
+        orden.verify(loteRepository).descontar(12L, 1L);
+
+        ArgumentCaptor<Venta> captor = ArgumentCaptor.forClass(Venta.class);
+        verify(ventaRepository).save(captor.capture());
+        List<DetalleVenta> detalles = captor.getValue().getDetalles();
+        assertThat(detalles.get(0).getLotes()).extracting(l -> l.getLoteId() + "x" + l.getCantidad())
+                .containsExactly("10x2");
+        assertThat(detalles.get(1).getLotes()).extracting(l -> l.getLoteId() + "x" + l.getCantidad())
+                .containsExactly("10x1", "11x2", "12x1");
+        assertThat(detalles.get(1).getLotes()).allMatch(l -> l.getDetalle() == detalles.get(1));
+    }
+
+    @Test
+    void crearVenta_loteConsumidoEnParalelo_seRelee_yElRestoSaleSinLote() {
+        Medicamento ibu = Medicamento.builder()
+                .id(3L).nombre("Ibu").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(ibu));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(loteRepository.abiertosFefo(eq(3L), any()))
+                .thenReturn(List.of(new LoteDisponible(10L, 4)))
+                .thenReturn(List.of(new LoteDisponible(10L, 1)))
+                .thenReturn(List.of());
+        when(loteRepository.descontar(10L, 4L)).thenReturn(0);
+        when(loteRepository.descontar(10L, 1L)).thenReturn(1);
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setItems(List.of(new VentaItemRequest(3L, 4L)));
+        service.crearVenta(req);
+
+        ArgumentCaptor<Venta> captor = ArgumentCaptor.forClass(Venta.class);
+        verify(ventaRepository).save(captor.capture());
+        assertThat(captor.getValue().getDetalles().get(0).getLotes())
+                .extracting(DetalleVentaLote::getCantidad).containsExactly(1L);
+        verify(loteRepository, times(3)).abiertosFefo(eq(3L), any());
+    }
+
+    @Test
+    void crearVenta_acumulaResumenDiarioPorMedicamento() {
+        Medicamento ibu = Medicamento.builder()
+                .id(3L).nombre("Ibu").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        Medicamento ace = Medicamento.builder()
+                .id(1L).nombre("Ace").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("500"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(ibu, ace));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setItems(List.of(
+                new VentaItemRequest(3L, 2L),
+                new VentaItemRequest(1L, 1L),
+                new VentaItemRequest(3L, 1L)));
+
+        service.crearVenta(req);
+
+        LocalDate hoy = LocalDate.now();
+        var orden = inOrder(resumenRepository);
+        orden.verify(resumenRepository).acumular(hoy, 1L, 1L, new BigDecimal("500"), 1L);
+        orden.verify(resumenRepository).acumular(hoy, 3L, 3L, new BigDecimal("3000"), 2L);
+        verify(resumenRepository, never()).save(any(VentaResumenDiario.class));
+    }
+
+    @Test
+    void crearVenta_canasta_stockInsuficienteEnUnaLinea() {
+        Medicamento ibu = Medicamento.builder()
+                .id(3L).nombre("Ibu").cantidadStock(1L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        Medicamento ace = Medicamento.builder()
+                .id(1L).nombre("Ace").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("500"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(ibu, ace));
+        when(medicamentoRepository.descontarStock(1L, 1L)).thenReturn(1);
+        when(medicamentoRepository.descontarStock(3L, 2L)).thenReturn(0);
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setItems(List.of(new VentaItemRequest(1L, 1L), new VentaItemRequest(3L, 2L)));
+
+        assertThatThrownBy(() -> service.crearVenta(req))
+                .isInstanceOf(StockInsuficienteException.class)
+                .hasMessageContaining("Stock insuficiente")
+                .hasMessageContaining("Ibu");
+        verify(ventaRepository, never()).save(any(Venta.class));
     }
 
     @Test
@@ -86,20 +389,20 @@ class VentaServiceImplTest {
                 .cantidadStock(2L)
                 .valorUnitario(new BigDecimal("1000"))
                 .build();
-        when(medicamentoRepository.findById(1L)).thenReturn(Optional.of(med));
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
 
         VentaCreateRequest req = new VentaCreateRequest();
         req.setMedicamentoId(1L);
         req.setCantidad(3L);
 
         assertThatThrownBy(() -> service.crearVenta(req))
-                .isInstanceOf(BusinessException.class)
+                .isInstanceOf(StockInsuficienteException.class)
                 .hasMessageContaining("Stock insuficiente");
     }
 
     @Test
     void crearVenta_medicamentoNoExiste() {
-        when(medicamentoRepository.findById(99L)).thenReturn(Optional.empty());
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of());
 
         VentaCreateRequest req = new VentaCreateRequest();
         req.setMedicamentoId(99L);
@@ -119,10 +422,11 @@ class VentaServiceImplTest {
         v.setValorTotal(new BigDecimal("123"));
 
         Pageable pageable = PageRequest.of(0, 2, Sort.by("fechaHora").descending());
-        Page<Venta> page = new PageImpl<>(List.of(v), pageable, 1);
+        Page<Long> ids = new PageImpl<>(List.of(1L), pageable, 1);
 
-        when(ventaRepository.findByFechaHoraBetween(any(), any(), any(Pageable.class)))
-                .thenReturn(page);
+        when(ventaRepository.findPageIdsByFechaHoraBetween(any(), any(), any(Pageable.class)))
+                .thenReturn(ids);
+        when(ventaRepository.findByIdIn(List.of(1L))).thenReturn(List.of(v));
 
         // Act
         var result = service.listarPorRango(LocalDate.now().minusDays(1), LocalDate.now(), pageable);
@@ -131,7 +435,7 @@ class VentaServiceImplTest {
         assertThat(result.getTotalElements()).isEqualTo(1);
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getContent().get(0).getId()).isEqualTo(1L);
-        verify(ventaRepository).findByFechaHoraBetween(any(), any(), eq(pageable));
+        verify(ventaRepository).findPageIdsByFechaHoraBetween(any(), any(), eq(pageable));
     }
 
     @Test
@@ -140,15 +444,109 @@ class VentaServiceImplTest {
         Venta v2 = new Venta(); v2.setId(2L);
 
         var pageable = PageRequest.of(0, 2);
-        Page<Venta> page = new PageImpl<>(List.of(v1, v2), pageable, 10);
+        Page<Long> ids = new PageImpl<>(List.of(1L, 2L), pageable, 10);
 
-        when(ventaRepository.findAll(any(Pageable.class))).thenReturn(page); // ← clave
+        when(ventaRepository.findPageIds(any(Pageable.class))).thenReturn(ids);
+        // El IN puede devolver en cualquier orden: el servicio respeta el orden de la página
+        when(ventaRepository.findByIdIn(List.of(1L, 2L))).thenReturn(List.of(v2, v1));
 
         Page<VentaResponse> result = service.listarTodas(pageable);
 
         assertThat(result.getContent()).hasSize(2);
         assertThat(result.getContent().get(0).getId()).isEqualTo(1L);
-        verify(ventaRepository, times(1)).findAll(any(Pageable.class));
+        assertThat(result.getContent().get(1).getId()).isEqualTo(2L);
+        assertThat(result.getTotalElements()).isEqualTo(10);
+        verify(ventaRepository, times(1)).findPageIds(any(Pageable.class));
+    }
+
+    @Test
+    void listarTodas_consultasConstantesPorPagina() {
+        for (int size : new int[]{2, 20, 200}) {
+            reset(ventaRepository);
+            List<Long> ids = new ArrayList<>();
+            List<Venta> ventas = new ArrayList<>();
+            for (long id = 1; id <= size; id++) {
+                ids.add(id);
+                Venta v = new Venta();
+                v.setId(id);
+                v.addDetalle(DetalleVenta.builder()
+                        .medicamento(Medicamento.builder().id(id).nombre("M" + id).build())
+                        .cantidad(1L)
+                        .valorUnitario(BigDecimal.ONE)
+                        .valorLinea(BigDecimal.ONE)
+                        .build());
+                ventas.add(v);
+            }
+            var pageable = PageRequest.of(0, size);
+            when(ventaRepository.findPageIds(pageable)).thenReturn(new PageImpl<>(ids, pageable, 1_000));
+            when(ventaRepository.findByIdIn(ids)).thenReturn(ventas);
+
+            assertThat(service.listarTodas(pageable).getContent()).hasSize(size);
+
+            // Una consulta de ids (+ COUNT) y una carga con grafo, sin importar el tamaño de página
+            verify(ventaRepository, times(1)).findPageIds(pageable);
+            verify(ventaRepository, times(1)).findByIdIn(ids);
+            verifyNoMoreInteractions(ventaRepository);
+        }
+    }
+
+    @Test
+    void listarTodas_paginaVacia_sinSegundaConsulta() {
+        var pageable = PageRequest.of(5, 10);
+        when(ventaRepository.findPageIds(pageable)).thenReturn(new PageImpl<>(List.of(), pageable, 3));
+
+        Page<VentaResponse> result = service.listarTodas(pageable);
+
+        assertThat(result.getContent()).isEmpty();
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        verify(ventaRepository, never()).findByIdIn(any());
+    }
+
+    @Test
+    void listarTodasCursor_paginaYTokenSiguiente() {
+        LocalDateTime t = LocalDateTime.of(2025, 8, 1, 10, 0);
+        List<Venta> ventas = new ArrayList<>();
+        for (long id = 3; id >= 2; id--) {
+            Venta v = new Venta();
+            v.setId(id);
+            v.setFechaHora(t.minusMinutes(3 - id));
+            ventas.add(v);
+        }
+        when(ventaRepository.findIdsAntesDe(eq(CursorVenta.INICIO.fechaHora()), eq(Long.MAX_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(3L, 2L, 1L)); // size + 1
+        when(ventaRepository.findByIdIn(List.of(3L, 2L))).thenReturn(ventas);
+
+        CursorPageResponse<VentaResponse> pagina = service.listarTodasCursor(null, 2);
+
+        assertThat(pagina.getContent()).extracting(VentaResponse::getId).containsExactly(3L, 2L);
+        assertThat(pagina.isHasNext()).isTrue();
+        assertThat(CursorVenta.decode(pagina.getNext())).isEqualTo(new CursorVenta(t.minusMinutes(1), 2L));
+        verify(ventaRepository, never()).count();
+    }
+
+    @Test
+    void listarPorRangoCursor_ultimaPagina() {
+        CursorVenta cursor = new CursorVenta(LocalDateTime.of(2025, 8, 1, 10, 0), 2L);
+        Venta v = new Venta();
+        v.setId(1L);
+        v.setFechaHora(LocalDateTime.of(2025, 8, 1, 9, 0));
+        when(ventaRepository.findIdsEnRangoAntesDe(any(), any(), eq(cursor.fechaHora()), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(1L));
+        when(ventaRepository.findByIdIn(List.of(1L))).thenReturn(List.of(v));
+
+        var pagina = service.listarPorRangoCursor(LocalDate.of(2025, 8, 1), LocalDate.of(2025, 8, 31),
+                cursor.encode(), 2);
+
+        assertThat(pagina.getContent()).hasSize(1);
+        assertThat(pagina.isHasNext()).isFalse();
+        assertThat(pagina.getNext()).isNull();
+    }
+
+    @Test
+    void listarTodasCursor_tokenInvalido() {
+        assertThatThrownBy(() -> service.listarTodasCursor("no-es-un-cursor", 10))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Cursor");
     }
 
     @Test
@@ -158,12 +556,323 @@ class VentaServiceImplTest {
         v.setFechaHora(LocalDateTime.now());
         v.setValorTotal(new BigDecimal("555"));
 
-        when(ventaRepository.findById(5L)).thenReturn(Optional.of(v));
+        when(ventaRepository.findWithDetallesById(5L)).thenReturn(Optional.of(v));
 
         var resp = service.obtenerVenta(5L);
 
         assertThat(resp.getId()).isEqualTo(5L);
         assertThat(resp.getValorTotal()).isEqualByComparingTo("555");
-        verify(ventaRepository).findById(5L);
+        verify(ventaRepository).findWithDetallesById(5L);
+    }
+
+    @Test
+    void exportarPorRango_csv_escapaYUsaRangoDelDia() throws Exception {
+        LocalDateTime f = LocalDateTime.of(2025, 1, 2, 10, 0);
+        when(ventaRepository.streamExportacion(any(), any())).thenReturn(Stream.of(
+                new VentaExportFila(1L, f, new BigDecimal("7500.00"), 11L, 5L, "Ibu, \"forte\"",
+                        3L, new BigDecimal("2500.00"), new BigDecimal("7500.00"))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long filas = service.exportarPorRango(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                FormatoExportacion.CSV, out);
+
+        assertThat(filas).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id_venta,fecha_hora,valor_total,id_detalle,id_medicamento,medicamento,cantidad,valor_unitario,valor_linea\n"
+                + "1,2025-01-02T10:00:00,7500.00,11,5,\"Ibu, \"\"forte\"\"\",3,2500.00,7500.00\n");
+        verify(ventaRepository).streamExportacion(
+                LocalDateTime.of(2025, 1, 1, 0, 0),
+                LocalDateTime.of(2025, 1, 31, 23, 59, 59, 999_999_999));
+    }
+
+    @Test
+    void exportarPorRango_ndjson_unObjetoPorLinea() throws Exception {
+        LocalDateTime f = LocalDateTime.of(2025, 1, 2, 10, 0, 5);
+        when(ventaRepository.streamExportacion(any(), any())).thenReturn(Stream.of(
+                new VentaExportFila(1L, f, new BigDecimal("10"), 11L, 5L, "Jarabe \"A\"\n",
+                        2L, new BigDecimal("5"), new BigDecimal("10"))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.exportarPorRango(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 2), FormatoExportacion.NDJSON, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"ventaId\":1,\"fechaHora\":\"2025-01-02T10:00:05\",\"valorTotal\":10,\"detalleId\":11,"
+                + "\"medicamentoId\":5,\"medicamentoNombre\":\"Jarabe \\\"A\\\"\\n\",\"cantidad\":2,"
+                + "\"valorUnitario\":5,\"valorLinea\":10}\n");
+    }
+
+    @Test
+    void exportarPorRango_csvVacio_soloEncabezado() throws Exception {
+        when(ventaRepository.streamExportacion(any(), any())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long filas = service.exportarPorRango(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 1), FormatoExportacion.CSV, out);
+
+        assertThat(filas).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("id_venta,").endsWith("\n");
+    }
+
+    /** Stub de una venta unitaria exitosa del medicamento 1; cada {@code save} asigna un id nuevo. */
+    private VentaCreateRequest stubVentaUnitaria(AtomicLong ids) {
+        Medicamento med = Medicamento.builder()
+                .id(1L).nombre("Ibu").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
+        when(medicamentoRepository.descontarStock(1L, 2L)).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> {
+            Venta v = inv.getArgument(0);
+            v.setId(ids.incrementAndGet());
+            return v;
+        });
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(1L);
+        req.setCantidad(2L);
+        return req;
+    }
+
+    @Test
+    void crearVentaIdempotente_reintento_devuelveLaMismaVentaSinDescontar() {
+        VentaCreateRequest req = stubVentaUnitaria(new AtomicLong(100));
+
+        VentaResponse primera = service.crearVentaIdempotente("pos-1-0001", req);
+        VentaResponse reintento = service.crearVentaIdempotente("pos-1-0001", req);
+
+        assertThat(reintento).isSameAs(primera);
+        verify(medicamentoRepository, times(1)).descontarStock(1L, 2L);
+        verify(ventaRepository, times(1)).save(any(Venta.class));
+        var captor = ArgumentCaptor.forClass(VentaIdempotencia.class);
+        verify(idempotenciaRepository, times(1)).saveAndFlush(captor.capture());
+        assertThat(captor.getValue().getVentaId()).isEqualTo(primera.getId());
+    }
+
+    @Test
+    void crearVentaIdempotente_mismaClaveOtraSolicitud_rechaza() {
+        VentaCreateRequest req = stubVentaUnitaria(new AtomicLong(100));
+        service.crearVentaIdempotente("pos-1-0002", req);
+
+        VentaCreateRequest otra = new VentaCreateRequest();
+        otra.setMedicamentoId(1L);
+        otra.setCantidad(5L);
+
+        assertThatThrownBy(() -> service.crearVentaIdempotente("pos-1-0002", otra))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Idempotency-Key");
+    }
+
+    @Test
+    void crearVentaIdempotente_duplicadosConcurrentes_esperanLaOriginal() throws Exception {
+        VentaCreateRequest req = stubVentaUnitaria(new AtomicLong(100));
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(medicamentoRepository.descontarStock(1L, 2L)).thenAnswer(inv -> {
+            enCurso.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<VentaResponse>> resultados = new ArrayList<>();
+            resultados.add(pool.submit(() -> service.crearVentaIdempotente("pos-1-0003", req)));
+            assertThat(enCurso.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                resultados.add(pool.submit(() -> service.crearVentaIdempotente("pos-1-0003", req)));
+            }
+            Thread.sleep(100); // los duplicados quedan esperando a la original
+            liberar.countDown();
+
+            for (Future<VentaResponse> f : resultados) {
+                assertThat(f.get(5, TimeUnit.SECONDS).getId()).isEqualTo(101L);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(medicamentoRepository, times(1)).descontarStock(1L, 2L);
+        verify(ventaRepository, times(1)).save(any(Venta.class));
+    }
+
+    @Test
+    void crearVentaIdempotente_claveRegistradaPorOtraInstancia_respondeDesdeTabla() {
+        VentaCreateRequest req = stubVentaUnitaria(new AtomicLong(100));
+        // Huella que el servicio calcula para esta solicitud
+        service.crearVentaIdempotente("pos-2-0000", req);
+        var captor = ArgumentCaptor.forClass(VentaIdempotencia.class);
+        verify(idempotenciaRepository).saveAndFlush(captor.capture());
+        VentaIdempotencia previa = new VentaIdempotencia("pos-2-0001", captor.getValue().getHuella(), 77L,
+                LocalDateTime.now());
+        clearInvocations(medicamentoRepository);
+
+        // Otra instancia ya registró la clave: el INSERT choca con la PK
+        when(idempotenciaRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("PK"));
+        when(idempotenciaRepository.findById("pos-2-0001")).thenReturn(Optional.of(previa));
+        Venta v = new Venta();
+        v.setId(77L);
+        v.setFechaHora(LocalDateTime.now());
+        v.setValorTotal(new BigDecimal("2000"));
+        when(ventaRepository.findWithDetallesById(77L)).thenReturn(Optional.of(v));
+
+        VentaResponse resp = service.crearVentaIdempotente("pos-2-0001", req);
+
+        assertThat(resp.getId()).isEqualTo(77L);
+        verify(medicamentoRepository, never()).descontarStock(anyLong(), anyLong());
+    }
+
+    @Test
+    void crearVentaIdempotente_fallida_noQuedaRegistradaYElReintentoSeEjecuta() {
+        VentaCreateRequest req = stubVentaUnitaria(new AtomicLong(100));
+        when(medicamentoRepository.descontarStock(1L, 2L)).thenReturn(0, 1);
+
+        assertThatThrownBy(() -> service.crearVentaIdempotente("pos-1-0004", req))
+                .isInstanceOf(StockInsuficienteException.class);
+        VentaResponse reintento = service.crearVentaIdempotente("pos-1-0004", req);
+
+        assertThat(reintento.getId()).isEqualTo(101L);
+        verify(medicamentoRepository, times(2)).descontarStock(1L, 2L);
+    }
+
+    @Test
+    void crearVentasEnLote_unaTransaccion_conResultadoPorSolicitud() {
+        Medicamento ibu = Medicamento.builder().id(1L).nombre("Ibu").cantidadStock(5L)
+                .valorUnitario(new BigDecimal("1000")).build();
+        Medicamento lora = Medicamento.builder().id(3L).nombre("Lora").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("500")).build();
+        when(medicamentoRepository.bloquearPorIds(any())).thenReturn(List.of(ibu, lora));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        AtomicLong ids = new AtomicLong(200);
+        when(ventaRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Venta> ventas = inv.getArgument(0);
+            ventas.forEach(v -> v.setId(ids.incrementAndGet()));
+            return ventas;
+        });
+
+        VentaCreateRequest a = new VentaCreateRequest();
+        a.setItems(List.of(new VentaItemRequest(1L, 3L), new VentaItemRequest(3L, 2L)));
+        VentaCreateRequest sinStock = new VentaCreateRequest();
+        sinStock.setItems(List.of(new VentaItemRequest(3L, 1L), new VentaItemRequest(1L, 3L)));
+        VentaCreateRequest invalida = new VentaCreateRequest();
+        invalida.setMedicamentoId(3L);
+        invalida.setCantidad(0L);
+        VentaCreateRequest b = new VentaCreateRequest();
+        b.setMedicamentoId(1L);
+        b.setCantidad(2L);
+
+        List<ResultadoLote<VentaResponse>> res = service.crearVentasEnLote(List.of(a, sinStock, invalida, b));
+
+        assertThat(res).hasSize(4);
+        assertThat(res.get(0).valor().getId()).isEqualTo(201L);
+        assertThat(res.get(0).valor().getValorTotal()).isEqualByComparingTo("4000");
+        assertThat(res.get(1).error()).isInstanceOf(StockInsuficienteException.class);
+        assertThat(res.get(2).error()).isInstanceOf(BusinessException.class);
+        assertThat(res.get(3).valor().getId()).isEqualTo(202L);
+
+        // Un UPDATE por medicamento con el total aceptado; la canasta rechazada no consume stock
+        verify(medicamentoRepository).descontarStock(1L, 5L);
+        verify(medicamentoRepository).descontarStock(3L, 2L);
+        verify(medicamentoRepository, times(2)).descontarStock(anyLong(), anyLong());
+        verify(ventaRepository, times(1)).saveAll(anyList());
+        verify(ventaRepository, never()).save(any(Venta.class));
+        LocalDate hoy = LocalDate.now();
+        verify(resumenRepository).acumular(hoy, 1L, 5L, new BigDecimal("5000"), 2L);
+        verify(resumenRepository).acumular(hoy, 3L, 2L, new BigDecimal("1000"), 1L);
+    }
+
+    @Test
+    void groupCommit_ventasConcurrentes_seConfirmanPorLotes() throws Exception {
+        Medicamento med = Medicamento.builder().id(1L).nombre("Ibu").cantidadStock(1_000L)
+                .valorUnitario(new BigDecimal("1000")).build();
+        when(medicamentoRepository.bloquearPorIds(any())).thenReturn(List.of(med));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        AtomicLong ids = new AtomicLong();
+        List<Integer> tamanos = new CopyOnWriteArrayList<>();
+        when(ventaRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Venta> ventas = inv.getArgument(0);
+            ventas.forEach(v -> v.setId(ids.incrementAndGet()));
+            return ventas;
+        });
+
+        int llamadores = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(llamadores);
+        try (GroupCommitQueue<VentaCreateRequest, VentaResponse> cola = new GroupCommitQueue<>(
+                "test-group-commit", 64, Duration.ofMillis(200), 1000, lote -> {
+                    tamanos.add(lote.size());
+                    return service.crearVentasEnLote(lote);
+                })) {
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<VentaResponse>> futuros = new ArrayList<>();
+            for (int i = 0; i < llamadores; i++) {
+                long cantidad = i == 0 ? 2_000L : 1L; // la primera excede el stock
+                futuros.add(pool.submit(() -> {
+                    salida.await();
+                    VentaCreateRequest req = new VentaCreateRequest();
+                    req.setMedicamentoId(1L);
+                    req.setCantidad(cantidad);
+                    return cola.enviar(req);
+                }));
+            }
+            salida.countDown();
+
+            assertThatThrownBy(() -> futuros.get(0).get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(StockInsuficienteException.class);
+            for (Future<VentaResponse> f : futuros.subList(1, llamadores)) {
+                assertThat(f.get(5, TimeUnit.SECONDS).getValorTotal()).isEqualByComparingTo("1000");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // Menos transacciones que ventas
+        assertThat(tamanos.stream().mapToInt(Integer::intValue).sum()).isEqualTo(llamadores);
+        assertThat(tamanos.size()).isLessThan(llamadores);
+    }
+
+    @Test
+    void crearVenta_medicamentoConBuckets_noTocaLaFilaPrincipalSiUnBucketAlcanza() {
+        Medicamento med = Medicamento.builder()
+                .id(1L).nombre("Acetaminofén").cantidadStock(0L).stockBuckets(4).stockEnBuckets(400L)
+                .valorUnitario(new BigDecimal("1000"))
+                .build();
+        when(medicamentoRepository.findAllById(any())).thenReturn(List.of(med));
+        when(bucketRepository.descontar(eq(1L), anyInt(), eq(2L))).thenReturn(1);
+        when(ventaRepository.save(any(Venta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        VentaCreateRequest req = new VentaCreateRequest();
+        req.setMedicamentoId(1L);
+        req.setCantidad(2L);
+        VentaResponse resp = service.crearVenta(req);
+
+        assertThat(resp.getValorTotal()).isEqualByComparingTo("2000");
+        verify(bucketRepository, times(1)).descontar(eq(1L), anyInt(), eq(2L));
+    }
+
+    @Test
+    void crearVentasEnLote_conBuckets_bloqueaPorMedicamentoYRepartePorTotal() {
+        Medicamento lora = Medicamento.builder().id(3L).nombre("Lora").cantidadStock(10L)
+                .valorUnitario(new BigDecimal("500")).build();
+        Medicamento ace = Medicamento.builder().id(7L).nombre("Acetaminofén").cantidadStock(1L).stockBuckets(2)
+                .valorUnitario(new BigDecimal("1000")).build();
+        when(medicamentoRepository.conBuckets(any())).thenReturn(List.of(7L));
+        when(medicamentoRepository.bloquearPorIds(List.of(3L))).thenReturn(List.of(lora));
+        when(medicamentoRepository.bloquearPorIds(List.of(7L))).thenReturn(List.of(ace));
+        when(medicamentoRepository.bloquearStock(7L)).thenReturn(1L);
+        when(bucketRepository.bloquearCantidades(7L)).thenReturn(List.of(2L, 2L));
+        when(medicamentoRepository.descontarStock(anyLong(), anyLong())).thenReturn(1);
+        when(bucketRepository.descontar(anyLong(), anyInt(), anyLong())).thenReturn(1);
+        when(ventaRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        VentaCreateRequest a = new VentaCreateRequest();
+        a.setItems(List.of(new VentaItemRequest(3L, 1L), new VentaItemRequest(7L, 4L)));
+        VentaCreateRequest b = new VentaCreateRequest();
+        b.setMedicamentoId(7L);
+        b.setCantidad(2L);
+
+        List<ResultadoLote<VentaResponse>> res = service.crearVentasEnLote(List.of(a, b));
+
+        // Total con buckets = 1 + 2 + 2 = 5: la primera cabe, la segunda no
+        assertThat(res.get(0).error()).isNull();
+        assertThat(res.get(1).error()).isInstanceOf(StockInsuficienteException.class);
+        var orden = inOrder(medicamentoRepository, bucketRepository);
+        orden.verify(medicamentoRepository).bloquearPorIds(List.of(3L));
+        orden.verify(medicamentoRepository).bloquearPorIds(List.of(7L));
+        orden.verify(bucketRepository).bloquearCantidades(7L);
     }
 }